@@ -0,0 +1,81 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.beans.core;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Exposes metrics and management beans created by Astrix in the platform {@link MBeanServer}. <p>
+ * 
+ * All mbeans are registered under the "com.avanza.astrix" domain. Failing to register an mbean
+ * is never considered fatal, it will only be logged.
+ */
+public final class AstrixMBeanExporter {
+	
+	public static final String DOMAIN = "com.avanza.astrix";
+	
+	private static final Logger log = LoggerFactory.getLogger(AstrixMBeanExporter.class);
+	
+	private AstrixMBeanExporter() {
+	}
+
+	/**
+	 * Registers the given mbean using an ObjectName on the form "com.avanza.astrix:type=[type],name=[name]". <p>
+	 * 
+	 * @param mbean
+	 * @param type
+	 * @param name
+	 * @return the ObjectName used to register the mbean, or null if registration failed
+	 */
+	public static ObjectName register(Object mbean, String type, String name) {
+		ObjectName objectName = null;
+		try {
+			objectName = new ObjectName(DOMAIN + ":type=" + type + ",name=" + ObjectName.quote(name));
+			ManagementFactory.getPlatformMBeanServer().registerMBean(mbean, objectName);
+			return objectName;
+		} catch (InstanceAlreadyExistsException e) {
+			log.info("MBean already registered, ignoring new instance. objectName=" + objectName);
+			return null;
+		} catch (Exception e) {
+			log.warn("Failed to register mbean. type=" + type + " name=" + name, e);
+			return null;
+		}
+	}
+	
+	/**
+	 * Unregisters a mbean previously registered using {@link #register(Object, String, String)}. <p>
+	 * 
+	 * @param objectName the ObjectName returned when registering the mbean, might be null
+	 */
+	public static void unregister(ObjectName objectName) {
+		if (objectName == null) {
+			return;
+		}
+		try {
+			ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+		} catch (Exception e) {
+			log.warn("Failed to unregister mbean. objectName=" + objectName, e);
+		}
+	}
+
+}
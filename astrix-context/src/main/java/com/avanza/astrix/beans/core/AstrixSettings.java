@@ -21,6 +21,7 @@ import com.avanza.astrix.config.BooleanSetting;
 import com.avanza.astrix.config.DynamicConfigSource;
 import com.avanza.astrix.config.DynamicPropertyListener;
 import com.avanza.astrix.config.GlobalConfigSourceRegistry;
+import com.avanza.astrix.config.IntSetting;
 import com.avanza.astrix.config.LongSetting;
 import com.avanza.astrix.config.MapConfigSource;
 import com.avanza.astrix.config.MutableConfigSource;
@@ -45,6 +46,66 @@ public class AstrixSettings implements DynamicConfigSource, MutableConfigSource
 	 */
 	public static final LongSetting SERVICE_LEASE_RENEW_INTERVAL = LongSetting.create("AstrixServiceLeaseManager.leaseRenewInterval", 30_000L);
 	
+	/**
+	 * Maximum random deviation, in percent, from {@link #SERVICE_LEASE_RENEW_INTERVAL} (and {@link #BEAN_BIND_ATTEMPT_INTERVAL}) 
+	 * between two consecutive lease renewals (bind attempts) of a given service bean. The lease renewals of all beans are 
+	 * also spread over one interval, in order to avoid renewing all leases in a single burst. 
+	 * 
+	 * Defaults to 20 percent
+	 */
+	public static final LongSetting SERVICE_LEASE_RENEW_JITTER = LongSetting.create("AstrixServiceLeaseManager.leaseRenewJitterPercent", 20);
+	
+	/**
+	 * When a lease renewal for a service bean fails, the interval until the next lease renewal
+	 * is doubled for each consecutive failure, but never exceeds this value. Should be kept close to 
+	 * {@link #SERVICE_LEASE_RENEW_INTERVAL} since a bean bound to a stopped provider is not rebound 
+	 * until its lease is renewed successfully. 
+	 * 
+	 * Defaults to 1 minute (60 000 ms)
+	 */
+	public static final LongSetting SERVICE_LEASE_RENEW_MAX_BACKOFF = LongSetting.create("AstrixServiceLeaseManager.maxLeaseRenewBackoffMillis", 60_000L);
+	
+	/**
+	 * Number of worker threads used by the service-lease-manager to renew leases and bind service beans. 
+	 * Read once when the service-lease-manager is created.
+	 * 
+	 * Defaults to 4
+	 */
+	public static final LongSetting SERVICE_LEASE_WORKER_THREADS = LongSetting.create("AstrixServiceLeaseManager.workerThreads", 4);
+	
+	/**
+	 * Maximum time a single lease renewal or bind attempt for a service bean might execute before
+	 * it is considered failed. A timed out attempt is not interrupted, but no new attempt is started for 
+	 * the bean until it completes.
+	 * 
+	 * Defaults to 10 seconds (10 000 ms)
+	 */
+	public static final LongSetting SERVICE_LEASE_ATTEMPT_TIMEOUT = LongSetting.create("AstrixServiceLeaseManager.attemptTimeoutMillis", 10_000L);
+	
+	/**
+	 * When enabled, all consumed beans declared on the AstrixConfigurer (for instance the consumedAstrixBeans 
+	 * of an AstrixFrameworkBean) are created and bound concurrently when the AstrixContext is configured, 
+	 * instead of one at a time when each bean is first requested. 
+	 * 
+	 * Defaults to false
+	 */
+	public static final BooleanSetting EAGER_BIND_CONSUMED_BEANS = BooleanSetting.create("AstrixContext.eagerBindConsumedBeans", false);
+	
+	/**
+	 * Number of threads used to bind consumed beans when {@link #EAGER_BIND_CONSUMED_BEANS} is enabled.
+	 * 
+	 * Defaults to 8
+	 */
+	public static final LongSetting EAGER_BIND_THREADS = LongSetting.create("AstrixContext.eagerBindThreads", 8);
+	
+	/**
+	 * Maximum time to wait for all consumed beans to be created and bound when {@link #EAGER_BIND_CONSUMED_BEANS} 
+	 * is enabled. Beans that are not bound when the eager bind phase completes are bound by the service-lease-manager.
+	 * 
+	 * Defaults to 30 seconds (30 000 ms)
+	 */
+	public static final LongSetting EAGER_BIND_TIMEOUT = LongSetting.create("AstrixContext.eagerBindTimeoutMillis", 30_000L);
+	
 	public static final BooleanSetting ENFORCE_SUBSYSTEM_BOUNDARIES = BooleanSetting.create("AstrixContext.enforceSubsystemBoundaries", true);
 	
 	public static final String SERVICE_REGISTRY_URI_PROPERTY_NAME = "AstrixServiceRegistry.serviceUri";
@@ -55,6 +116,44 @@ public class AstrixSettings implements DynamicConfigSource, MutableConfigSource
 	 */
 	public static final StringSetting SERVICE_REGISTRY_URI = StringSetting.create(SERVICE_REGISTRY_URI_PROPERTY_NAME, null);
 	
+	/**
+	 * When enabled, service beans discovered using the service-registry are not looked up in the
+	 * service-registry on each lease renewal. Instead the service-registry is watched for changes,
+	 * and a bean is only looked up again when its service has changed in the service-registry. 
+	 * If watching the service-registry fails, for instance if the service-registry does not support
+	 * watching, then each bean falls back to lookup the service-registry on each lease renewal. <p>
+	 * 
+	 * Watching is only used when {@link #SERVICE_REGISTRY_WATCH_INTERVAL} is shorter than {@link #SERVICE_LEASE_RENEW_INTERVAL}.
+	 */
+	public static final BooleanSetting SERVICE_REGISTRY_WATCH_ENABLED = BooleanSetting.create("AstrixServiceRegistry.watchEnabled", true);
+	
+	/**
+	 * Defines the interval (in millis) on which the service-registry is polled for changes when
+	 * {@link #SERVICE_REGISTRY_WATCH_ENABLED} is set.
+	 */
+	public static final LongSetting SERVICE_REGISTRY_WATCH_INTERVAL = LongSetting.create("AstrixServiceRegistry.watchIntervalMillis", 1_000L);
+	
+	/**
+	 * Defines for how long (in millis) a service-registry entry cached by the ServiceRegistryClient is
+	 * used without revalidating it against the service-registry. <p>
+	 * 
+	 * Defaults to 0, i.e. each lookup is revalidated against the service-registry and the cache is only 
+	 * used when the service-registry fails to respond.
+	 */
+	public static final LongSetting SERVICE_REGISTRY_CACHE_TTL = LongSetting.create("AstrixServiceRegistryClient.cacheTtlMillis", 0L);
+	
+	/**
+	 * Defines the maximum age (in millis) of a stale service-registry entry served by the ServiceRegistryClient
+	 * when the service-registry fails to revalidate the entry. 
+	 */
+	public static final LongSetting SERVICE_REGISTRY_CACHE_MAX_STALENESS = LongSetting.create("AstrixServiceRegistryClient.cacheMaxStalenessMillis", 3_600_000L);
+	
+	/**
+	 * Optional file used to persist the service-registry entries cached by the ServiceRegistryClient, allowing
+	 * beans to bind on startup before the service-registry responds. Disabled by default.
+	 */
+	public static final StringSetting SERVICE_REGISTRY_CACHE_SNAPSHOT_FILE = StringSetting.create("AstrixServiceRegistryClient.cacheSnapshotFile", null);
+	
 	public static final BooleanSetting RUN_SERVICE_REGISTRY_EXPORTER = BooleanSetting.create("AstrixContext.runServiceRegistryExporterWorker", true);
 
 	
@@ -81,6 +180,33 @@ public class AstrixSettings implements DynamicConfigSource, MutableConfigSource
 	 */
 	public static final LongSetting SERVICE_REGISTRY_EXPORT_RETRY_INTERVAL = LongSetting.create("ServiceRegistryExporterWorker.retryIntervallMillis", 5_000);
 	
+	/**
+	 * The retry interval, {@link #SERVICE_REGISTRY_EXPORT_RETRY_INTERVAL}, is doubled for each consecutive failure to 
+	 * register the provided services in the service-registry, but never exceeds this value. Should be shorter than
+	 * {@link #SERVICE_REGISTRY_LEASE} to avoid that the registered services expire while the service-registry recovers.
+	 * 
+	 * Defaults to 60 seconds (60 000 ms)
+	 */
+	public static final LongSetting SERVICE_REGISTRY_EXPORT_MAX_RETRY_INTERVAL = LongSetting.create("ServiceRegistryExporterWorker.maxRetryIntervalMillis", 60_000L);
+	
+	/**
+	 * Maximum random deviation, in percent, from {@link #SERVICE_REGISTRY_EXPORT_INTERVAL} between two 
+	 * consecutive registrations of the provided services in the service-registry.
+	 * 
+	 * Defaults to 20 percent
+	 */
+	public static final LongSetting SERVICE_REGISTRY_EXPORT_JITTER = LongSetting.create("ServiceRegistryExporterWorker.exportJitterPercent", 20);
+	
+	/**
+	 * Whether the load of this application, see {@link com.avanza.astrix.beans.registry.ServiceProviderLoad}, is published
+	 * with each registration in the service-registry. Measuring the load wraps each exported service provider in a 
+	 * monitoring proxy, hence this setting is read when the services are exported. The published load is only used 
+	 * when the service-registry is configured with a load aware {@link com.avanza.astrix.beans.registry.ServiceProviderSelector}.
+	 * 
+	 * Disabled by default.
+	 */
+	public static final BooleanSetting SERVICE_PROVIDER_LOAD_PUBLISHING_ENABLED = BooleanSetting.create("ServiceRegistryExporterWorker.publishProviderLoad", false);
+	
 	public static final LongSetting SERVICE_REGISTRY_LEASE = LongSetting.create("ServiceRegistryExporterWorker.serviceLeaseTimeMillis", 120_000L);
 
 	/**
@@ -91,6 +217,15 @@ public class AstrixSettings implements DynamicConfigSource, MutableConfigSource
 	 */
 	public static final StringSetting API_PROVIDER_SCANNER_BASE_PACKAGE = StringSetting.create("AstrixApiProviderScanner.basePackage", "");
 	
+	/**
+	 * Whether to find ApiProvider's using the index (META-INF/astrix/providers.idx) created at compile time
+	 * by the ApiProviderIndexProcessor, rather than scanning the classpath. Classpath scanning is still used 
+	 * for the classpath roots (directories or jars) that contain no index.
+	 * 
+	 * Defaults to true
+	 */
+	public static final BooleanSetting API_PROVIDER_SCANNER_USE_INDEX = BooleanSetting.create("AstrixApiProviderScanner.useIndex", true);
+	
 	public static final StringSetting SUBSYSTEM_NAME = StringSetting.create("AstrixContext.subsystem", "default");
 	
 	public static final BooleanSetting ENABLE_FAULT_TOLERANCE = BooleanSetting.create("AstrixContext.enableFaultTolerance", true);
@@ -103,6 +238,38 @@ public class AstrixSettings implements DynamicConfigSource, MutableConfigSource
 	 */
 	public static final BooleanSetting GS_DISABLE_LOCAL_VIEW = BooleanSetting.create("AstrixGsLocalViewComponent.disableLocalView", false);
 	
+	/**
+	 * Timeout in milliseconds for the lookup of the clustered space used to create a local-view.
+	 */
+	public static final IntSetting GS_LOCAL_VIEW_LOOKUP_TIMEOUT = IntSetting.create("AstrixGsLocalViewComponent.lookupTimeoutMillis", 1_000);
+	
+	/**
+	 * Maximum time in milliseconds to wait for a local-view to be populated before the local-view
+	 * bean is bound. A local-view is considered populated when it contains as many entries as the 
+	 * clustered space contained for each view query when the warm-up started. If the local-view is not 
+	 * populated within the timeout the bean is bound anyway. Zero or a negative value disables the 
+	 * warm-up phase, which is the default.
+	 */
+	public static final LongSetting GS_LOCAL_VIEW_WARMUP_TIMEOUT = LongSetting.create("AstrixGsLocalViewComponent.warmupTimeoutMillis", 0L);
+	
+	/**
+	 * When enabled, a partitioned service invocation ({@link com.avanza.astrix.core.AstrixPartitionedRouting}) using
+	 * {@link AstrixServiceComponentNames#GS_REMOTING} is sent to all target partitions using a single distributed task
+	 * execution, rather than using one task execution per partition. <p>
+	 * 
+	 * Requires that the server is running a version of Astrix that supports batched partitioned requests.
+	 */
+	public static final BooleanSetting GS_BATCH_PARTITIONED_REQUESTS = BooleanSetting.create("AstrixGsRemotingComponent.batchPartitionedRequests", false);
+	
+	/**
+	 * When enabled, a service invocation using {@link AstrixServiceComponentNames#GS_REMOTING} that targets a partition
+	 * hosted by the embedded space in the current processing unit is invoked directly on the local service provider, 
+	 * without using the space. <p>
+	 * 
+	 * Read when a service bean is bound.
+	 */
+	public static final BooleanSetting GS_COLLOCATED_INVOCATION = BooleanSetting.create("AstrixGsRemotingComponent.collocatedInvocation", false);
+	
 	
 	public static final StringSetting APPLICATION_NAME = StringSetting.create("astrix.application.name", null);
 	public static final StringSetting APPLICATION_TAG =  StringSetting.create("astrix.application.tag", null);
@@ -16,9 +16,11 @@
 package com.avanza.astrix.beans.registry;
 
 import java.util.List;
+import java.util.Map;
 
 import com.avanza.astrix.beans.service.ServiceConsumerProperties;
 import com.avanza.astrix.core.AstrixBroadcast;
+import com.avanza.astrix.core.AstrixPartitionedRouting;
 import com.avanza.astrix.core.AstrixRouting;
 /**
  * 
@@ -29,8 +31,30 @@ public interface AstrixServiceRegistry {
 	
 	<T> AstrixServiceRegistryEntry lookup(@AstrixRouting String type, String qualifier, ServiceConsumerProperties serviceConsumerProperties);
 	
+	/**
+	 * Looks up a service provider for each of the given services. Services without any
+	 * available provider are not included in the result. <p>
+	 * 
+	 * The lookup is partitioned on the api type of each service, yielding one request
+	 * per service-registry partition.
+	 * 
+	 * @param serviceKeys
+	 * @param serviceConsumerProperties
+	 * @return
+	 */
+	List<AstrixServiceRegistryEntry> lookupAll(@AstrixPartitionedRouting(routingMethod = "getApiClassName") List<ServiceKey> serviceKeys, ServiceConsumerProperties serviceConsumerProperties);
+	
 	<T> void register(AstrixServiceRegistryEntry properties, long lease);
 	
+	/**
+	 * Registers all given entries using the given lease. The registration is partitioned
+	 * on the api type of each entry, yielding one request per service-registry partition.
+	 * 
+	 * @param entries
+	 * @param lease
+	 */
+	void registerAll(@AstrixPartitionedRouting(routingMethod = "getServiceBeanType") List<AstrixServiceRegistryEntry> entries, long lease);
+	
 	<T> void deregister(AstrixServiceRegistryEntry properties);
 	
 	
@@ -38,5 +62,17 @@ public interface AstrixServiceRegistry {
 	@AstrixBroadcast
 	List<AstrixServiceRegistryEntry> listServices();
 	
-	List<AstrixServiceRegistryEntry> listServices(@AstrixRouting String type, String qualifier);	
+	List<AstrixServiceRegistryEntry> listServices(@AstrixRouting String type, String qualifier);
+	
+	/**
+	 * Returns the services that have changed in each service-registry instance since the revision
+	 * known by the client. Used by clients to watch the service-registry for changes rather than
+	 * polling for the service-properties of each consumed service.
+	 * 
+	 * @param revisionByRegistryInstanceId - the last revision received from each service-registry instance,
+	 * 	empty if no revision is known.
+	 * @return
+	 */
+	@AstrixBroadcast
+	List<ServiceRegistryChanges> changesSince(Map<String, Long> revisionByRegistryInstanceId);
 }
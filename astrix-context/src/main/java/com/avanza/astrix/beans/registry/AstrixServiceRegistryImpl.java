@@ -16,9 +16,10 @@
 package com.avanza.astrix.beans.registry;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
-import java.util.concurrent.atomic.AtomicLong;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -32,10 +33,16 @@ public class AstrixServiceRegistryImpl implements AstrixServiceRegistry {
 	
 	private final Logger log = LoggerFactory.getLogger(AstrixServiceRegistryImpl.class);
 	private final ServiceRegistryEntryRepository serviceRegistryEntryRepo;
-	private final AtomicLong serviceCounter = new AtomicLong();
+	private final ServiceProviderSelector serviceProviderSelector;
+	private volatile ServiceRegistryChangeLog changeLog = new ServiceRegistryChangeLog();
 	
 	public AstrixServiceRegistryImpl(ServiceRegistryEntryRepository serviceRegistryEntryRepo) {
+		this(serviceRegistryEntryRepo, new RoundRobinServiceProviderSelector());
+	}
+	
+	public AstrixServiceRegistryImpl(ServiceRegistryEntryRepository serviceRegistryEntryRepo, ServiceProviderSelector serviceProviderSelector) {
 		this.serviceRegistryEntryRepo = serviceRegistryEntryRepo;
+		this.serviceProviderSelector = Objects.requireNonNull(serviceProviderSelector);
 	}
 	
 	@Override
@@ -48,7 +55,19 @@ public class AstrixServiceRegistryImpl implements AstrixServiceRegistry {
 		if (activeServices.isEmpty()) {
 			return null;
 		}
-		return activeServices.get((int) (serviceCounter.incrementAndGet() % activeServices.size()));
+		return serviceProviderSelector.select(activeServices);
+	}
+
+	@Override
+	public List<AstrixServiceRegistryEntry> lookupAll(List<ServiceKey> serviceKeys, ServiceConsumerProperties serviceConsumerProperties) {
+		List<AstrixServiceRegistryEntry> result = new ArrayList<>(serviceKeys.size());
+		for (ServiceKey serviceKey : serviceKeys) {
+			AstrixServiceRegistryEntry entry = lookup(serviceKey.getApiClassName(), serviceKey.getQualifier(), serviceConsumerProperties);
+			if (entry != null) {
+				result.add(entry);
+			}
+		}
+		return result;
 	}
 
 	private List<AstrixServiceRegistryEntry> getServiceProvidersForConsumer(List<AstrixServiceRegistryEntry> entries, ServiceConsumerProperties serviceConsumer) {
@@ -71,11 +90,21 @@ public class AstrixServiceRegistryImpl implements AstrixServiceRegistry {
 	@Override
 	public <T> void register(AstrixServiceRegistryEntry entry, long lease) {
 		serviceRegistryEntryRepo.insertOrUpdate(entry, lease);
+		changeLog.registered(getServiceProviderKey(entry), entry.getServiceProperties(), lease);
+	}
+	
+	@Override
+	public void registerAll(List<AstrixServiceRegistryEntry> entries, long lease) {
+		for (AstrixServiceRegistryEntry entry : entries) {
+			register(entry, lease);
+		}
 	}
 	
 	@Override
 	public <T> void deregister(AstrixServiceRegistryEntry properties) {
-		serviceRegistryEntryRepo.remove(getServiceProviderKey(properties));
+		ServiceProviderKey serviceProviderKey = getServiceProviderKey(properties);
+		serviceRegistryEntryRepo.remove(serviceProviderKey);
+		changeLog.deregistered(serviceProviderKey);
 	}
 	
 	private ServiceProviderKey getServiceProviderKey(AstrixServiceRegistryEntry properties) {
@@ -97,5 +126,20 @@ public class AstrixServiceRegistryImpl implements AstrixServiceRegistry {
 	public List<AstrixServiceRegistryEntry> listServices(String type, String qualifier) {
 		return serviceRegistryEntryRepo.findByServiceKey(new ServiceKey(type, qualifier));
 	}
+	
+	@Override
+	public List<ServiceRegistryChanges> changesSince(Map<String, Long> revisionByRegistryInstanceId) {
+		ServiceRegistryChangeLog changeLog = this.changeLog;
+		return Collections.singletonList(changeLog.changesSince(revisionByRegistryInstanceId.get(changeLog.getRegistryInstanceId())));
+	}
+	
+	/**
+	 * Discards all tracked changes and starts a new registry instance revision sequence,
+	 * forcing all watching clients to consider all services as changed. Should be invoked 
+	 * when the underlying ServiceRegistryEntryRepository is cleared.
+	 */
+	void resetChangeLog() {
+		this.changeLog = new ServiceRegistryChangeLog();
+	}
 
 }
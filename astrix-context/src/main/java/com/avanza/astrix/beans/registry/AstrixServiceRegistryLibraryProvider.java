@@ -37,7 +37,7 @@ public class AstrixServiceRegistryLibraryProvider implements AstrixConfigAware {
 			zone = subsystem + "#" + applicationTag;
 		}
 		serviceConsumerProperties.setProperty(ServiceConsumerProperties.CONSUMER_ZONE, zone);
-		return new ServiceRegistryClient(serviceRegistry, serviceConsumerProperties);
+		return new ServiceRegistryClient(serviceRegistry, serviceConsumerProperties, config);
 	}
 
 	@Override
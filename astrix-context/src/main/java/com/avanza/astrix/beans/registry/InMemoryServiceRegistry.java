@@ -19,6 +19,7 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import com.avanza.astrix.beans.core.AstrixSettings;
 import com.avanza.astrix.beans.factory.AstrixBeanKey;
@@ -45,9 +46,14 @@ public class InMemoryServiceRegistry implements DynamicConfigSource, AstrixServi
 	private String id;
 	private String configSourceId;
 	private InMemoryServiceRegistryRepo repo = new InMemoryServiceRegistryRepo();
-	private AstrixServiceRegistry serviceRegistry = new AstrixServiceRegistryImpl(repo);
+	private AstrixServiceRegistryImpl serviceRegistry;
 	
 	public InMemoryServiceRegistry() {
+		this(new RoundRobinServiceProviderSelector());
+	}
+	
+	public InMemoryServiceRegistry(ServiceProviderSelector serviceProviderSelector) {
+		this.serviceRegistry = new AstrixServiceRegistryImpl(repo, serviceProviderSelector);
 		this.id = DirectComponent.register(AstrixServiceRegistry.class, this);
 		this.configSourceId = GlobalConfigSourceRegistry.register(this);
 		this.configSource.set(AstrixSettings.SERVICE_REGISTRY_URI, getServiceUri());
@@ -63,11 +69,21 @@ public class InMemoryServiceRegistry implements DynamicConfigSource, AstrixServi
 		return serviceRegistry.lookup(type, qualifier, consumerProperties);
 	}
 	
+	@Override
+	public List<AstrixServiceRegistryEntry> lookupAll(List<ServiceKey> serviceKeys, ServiceConsumerProperties consumerProperties) {
+		return serviceRegistry.lookupAll(serviceKeys, consumerProperties);
+	}
+	
 	@Override
 	public <T> void register(AstrixServiceRegistryEntry properties, long lease) {
 		serviceRegistry.register(properties, lease);
 	}
 	
+	@Override
+	public void registerAll(List<AstrixServiceRegistryEntry> entries, long lease) {
+		serviceRegistry.registerAll(entries, lease);
+	}
+	
 	@Override
 	public <T> void deregister(AstrixServiceRegistryEntry properties) {
 		serviceRegistry.deregister(properties);
@@ -78,12 +94,18 @@ public class InMemoryServiceRegistry implements DynamicConfigSource, AstrixServi
 		return this.serviceRegistry.listServices(type, qualifier);
 	}
 	
+	@Override
+	public List<ServiceRegistryChanges> changesSince(Map<String, Long> revisionByRegistryInstanceId) {
+		return this.serviceRegistry.changesSince(revisionByRegistryInstanceId);
+	}
+	
 	public String getConfigSourceId() {
 		return configSourceId;
 	}
 	
 	public void clear() {
 		this.repo.clear();
+		this.serviceRegistry.resetChangeLog();
 	}
 
 	/**
@@ -162,7 +184,14 @@ public class InMemoryServiceRegistry implements DynamicConfigSource, AstrixServi
 	
 	private static class InMemoryServiceRegistryRepo implements ServiceRegistryEntryRepository {
 		
-		private Map<ServiceProviderKey, AstrixServiceRegistryEntry> servicePropertiesByApplicationInstanceId = new ConcurrentHashMap<>();
+		/*
+		 * IMPLEMENTATION NOTE:
+		 * 
+		 * All entries are indexed on ServiceKey to avoid scanning all registered entries on each lookup. 
+		 * Writes are serialized to keep the index consistent with the entries, whereas reads are lock free.
+		 */
+		private final Map<ServiceProviderKey, AstrixServiceRegistryEntry> servicePropertiesByApplicationInstanceId = new ConcurrentHashMap<>();
+		private final ConcurrentMap<ServiceKey, Map<ServiceProviderKey, AstrixServiceRegistryEntry>> entriesByServiceKey = new ConcurrentHashMap<>();
 
 		@Override
 		public List<AstrixServiceRegistryEntry> findAll() {
@@ -171,23 +200,36 @@ public class InMemoryServiceRegistry implements DynamicConfigSource, AstrixServi
 		
 		@Override
 		public List<AstrixServiceRegistryEntry> findByServiceKey(ServiceKey serviceKey) {
-			List<AstrixServiceRegistryEntry> result = new ArrayList<>();
-			for (AstrixServiceRegistryEntry entry : this.servicePropertiesByApplicationInstanceId.values()) {
-				if (serviceKey.equals(getServiceKey(entry))) {
-					result.add(entry);
-				}
+			Map<ServiceProviderKey, AstrixServiceRegistryEntry> entries = this.entriesByServiceKey.get(serviceKey);
+			if (entries == null) {
+				return new ArrayList<>();
 			}
-			return result;
+			return new ArrayList<>(entries.values());
 		}
 		
 		@Override
-		public void insertOrUpdate(AstrixServiceRegistryEntry entry, long lease) {
-			this.servicePropertiesByApplicationInstanceId.put(getServiceProviderKey(entry), entry);
+		public synchronized void insertOrUpdate(AstrixServiceRegistryEntry entry, long lease) {
+			ServiceProviderKey serviceProviderKey = getServiceProviderKey(entry);
+			this.servicePropertiesByApplicationInstanceId.put(serviceProviderKey, entry);
+			Map<ServiceProviderKey, AstrixServiceRegistryEntry> entries = this.entriesByServiceKey.get(serviceProviderKey.getServiceKey());
+			if (entries == null) {
+				entries = new ConcurrentHashMap<>();
+				this.entriesByServiceKey.put(serviceProviderKey.getServiceKey(), entries);
+			}
+			entries.put(serviceProviderKey, entry);
 		}
 		
 		@Override
-		public void remove(ServiceProviderKey serviceProviderKey) {
+		public synchronized void remove(ServiceProviderKey serviceProviderKey) {
 			this.servicePropertiesByApplicationInstanceId.remove(serviceProviderKey);
+			Map<ServiceProviderKey, AstrixServiceRegistryEntry> entries = this.entriesByServiceKey.get(serviceProviderKey.getServiceKey());
+			if (entries == null) {
+				return;
+			}
+			entries.remove(serviceProviderKey);
+			if (entries.isEmpty()) {
+				this.entriesByServiceKey.remove(serviceProviderKey.getServiceKey());
+			}
 		}
 		
 		private ServiceProviderKey getServiceProviderKey(AstrixServiceRegistryEntry properties) {
@@ -201,8 +243,9 @@ public class InMemoryServiceRegistry implements DynamicConfigSource, AstrixServi
 			return new ServiceKey(api, qualifier);
 		}
 		
-		void clear() {
+		synchronized void clear() {
 			this.servicePropertiesByApplicationInstanceId.clear();
+			this.entriesByServiceKey.clear();
 		}
 		
 	}
@@ -0,0 +1,45 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.beans.registry;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Selects two providers at random and returns the one with the lowest estimated cost, 
+ * see {@link ServiceProviderLoad#getCost()}. <p>
+ * 
+ * Compared to always selecting the least loaded provider, this avoids that all consumers
+ * binding between two load updates are routed to the same provider. 
+ */
+public final class PowerOfTwoChoicesServiceProviderSelector implements ServiceProviderSelector {
+
+	@Override
+	public AstrixServiceRegistryEntry select(List<AstrixServiceRegistryEntry> candidates) {
+		if (candidates.size() == 1) {
+			return candidates.get(0);
+		}
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		int first = random.nextInt(candidates.size());
+		int second = random.nextInt(candidates.size() - 1);
+		if (second >= first) {
+			second++;
+		}
+		double[] costs = ServiceProviderLoad.estimateCosts(candidates);
+		return costs[second] < costs[first] ? candidates.get(second) : candidates.get(first);
+	}
+
+}
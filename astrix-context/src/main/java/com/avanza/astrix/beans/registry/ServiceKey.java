@@ -27,6 +27,10 @@ public class ServiceKey implements Serializable {
 	private static final long serialVersionUID = 1L;
 	private String apiClassName;
 	private String qualifier;
+	
+	private ServiceKey() {
+		// Used by serialization frameworks
+	}
 
 	public ServiceKey(String apiClassName, String qualifier) {
 		this.apiClassName = Objects.requireNonNull(apiClassName);
@@ -48,6 +52,14 @@ public class ServiceKey implements Serializable {
 	public String getQualifier() {
 		return qualifier;
 	}
+	
+	private void setApiClassName(String apiClassName) {
+		this.apiClassName = apiClassName;
+	}
+	
+	private void setQualifier(String qualifier) {
+		this.qualifier = qualifier;
+	}
 
 	@Override
 	public int hashCode() {
@@ -42,6 +42,10 @@ public class ServiceProviderKey implements Serializable {
 		return new ServiceProviderKey(serviceKey, applicationInstanceId);
 	}
 	
+	public ServiceKey getServiceKey() {
+		return serviceKey;
+	}
+	
 	@Override
 	public String toString() {
 		return serviceKey.toString() + "#" + applicationInstanceId;
@@ -0,0 +1,156 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.beans.registry;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Lightweight load information published by a service provider together with each
+ * lease renewal. The load is stored in the service metadata of the service registry entry
+ * (see {@link AstrixServiceRegistryEntry#getServiceMetadata()}) as opposed to the service 
+ * properties, since changes in load should not force consumers to rebind to a new provider. <p>
+ * 
+ * Any part of the load that is not known is represented by a negative value.
+ */
+public final class ServiceProviderLoad {
+	
+	public static final String IN_FLIGHT_REQUESTS = "loadInFlightRequests";
+	public static final String CPU_LOAD = "loadCpu";
+	public static final String P99_LATENCY_MILLIS = "loadP99LatencyMillis";
+	
+	private static final double UNKNOWN = -1;
+	
+	private final double inFlightRequests;
+	private final double cpuLoad;
+	private final double p99LatencyMillis;
+	
+	/**
+	 * @param inFlightRequests - number of currently executing service invocations
+	 * @param cpuLoad - cpu load, where 1.0 corresponds to all available processors being fully utilized
+	 * @param p99LatencyMillis - 99th percentile of service invocation latency
+	 */
+	public ServiceProviderLoad(double inFlightRequests, double cpuLoad, double p99LatencyMillis) {
+		this.inFlightRequests = inFlightRequests;
+		this.cpuLoad = cpuLoad;
+		this.p99LatencyMillis = p99LatencyMillis;
+	}
+	
+	public double getInFlightRequests() {
+		return inFlightRequests;
+	}
+	
+	public double getCpuLoad() {
+		return cpuLoad;
+	}
+	
+	public double getP99LatencyMillis() {
+		return p99LatencyMillis;
+	}
+	
+	/**
+	 * Estimates the relative cost of routing one more consumer to this provider, where 
+	 * a higher value indicates a more loaded provider. Unknown parts of the load do not 
+	 * contribute to the cost.
+	 * 
+	 * @return
+	 */
+	public double getCost() {
+		return (1 + known(inFlightRequests)) * (1 + known(p99LatencyMillis)) * (1 + known(cpuLoad));
+	}
+	
+	public void writeTo(Map<String, String> serviceMetadata) {
+		write(serviceMetadata, IN_FLIGHT_REQUESTS, inFlightRequests);
+		write(serviceMetadata, CPU_LOAD, cpuLoad);
+		write(serviceMetadata, P99_LATENCY_MILLIS, p99LatencyMillis);
+	}
+	
+	/**
+	 * Reads the load published by a service provider.
+	 * 
+	 * @param serviceMetadata
+	 * @return the published load, or null if the provider did not publish any load information
+	 */
+	public static ServiceProviderLoad readFrom(Map<String, String> serviceMetadata) {
+		if (serviceMetadata == null) {
+			return null;
+		}
+		double inFlightRequests = read(serviceMetadata, IN_FLIGHT_REQUESTS);
+		double cpuLoad = read(serviceMetadata, CPU_LOAD);
+		double p99LatencyMillis = read(serviceMetadata, P99_LATENCY_MILLIS);
+		if (inFlightRequests < 0 && cpuLoad < 0 && p99LatencyMillis < 0) {
+			return null;
+		}
+		return new ServiceProviderLoad(inFlightRequests, cpuLoad, p99LatencyMillis);
+	}
+	
+	/**
+	 * Estimates the cost (see {@link #getCost()}) for each of the given providers. Providers that
+	 * does not publish any load information, for instance providers running an older version of Astrix, are
+	 * assigned the average cost of all providers publishing load information.
+	 * 
+	 * @param entries
+	 * @return
+	 */
+	static double[] estimateCosts(List<AstrixServiceRegistryEntry> entries) {
+		double[] costs = new double[entries.size()];
+		double knownCostSum = 0;
+		int knownCostCount = 0;
+		for (int i = 0; i < costs.length; i++) {
+			ServiceProviderLoad load = readFrom(entries.get(i).getServiceMetadata());
+			costs[i] = load != null ? load.getCost() : UNKNOWN;
+			if (load != null) {
+				knownCostSum += costs[i];
+				knownCostCount++;
+			}
+		}
+		double averageCost = knownCostCount > 0 ? knownCostSum / knownCostCount : 1;
+		for (int i = 0; i < costs.length; i++) {
+			if (costs[i] < 0) {
+				costs[i] = averageCost;
+			}
+		}
+		return costs;
+	}
+	
+	private static double known(double value) {
+		return Math.max(value, 0);
+	}
+
+	private static void write(Map<String, String> serviceMetadata, String name, double value) {
+		if (value >= 0) {
+			serviceMetadata.put(name, Double.toString(value));
+		}
+	}
+	
+	private static double read(Map<String, String> serviceMetadata, String name) {
+		String value = serviceMetadata.get(name);
+		if (value == null) {
+			return UNKNOWN;
+		}
+		try {
+			return Double.parseDouble(value);
+		} catch (NumberFormatException e) {
+			return UNKNOWN;
+		}
+	}
+	
+	@Override
+	public String toString() {
+		return "ServiceProviderLoad [inFlightRequests=" + inFlightRequests + ", cpuLoad=" + cpuLoad + ", p99LatencyMillis=" + p99LatencyMillis + "]";
+	}
+
+}
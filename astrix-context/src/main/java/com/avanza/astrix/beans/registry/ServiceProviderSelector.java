@@ -0,0 +1,44 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.beans.registry;
+
+import java.util.List;
+
+/**
+ * Strategy used by the service registry to select which of the available providers of 
+ * a given service a consumer should bind to. <p>
+ * 
+ * Available strategies:
+ * <ul>
+ * <li>{@link RoundRobinServiceProviderSelector} (default) - distributes consumers evenly, ignoring provider load</li>
+ * <li>{@link WeightedServiceProviderSelector} - selects providers randomly, weighted by the inverse of the provider load</li>
+ * <li>{@link PowerOfTwoChoicesServiceProviderSelector} - selects the least loaded of two randomly chosen providers</li>
+ * </ul>
+ * 
+ * The load of each provider is read from the {@link ServiceProviderLoad} published by the provider, see 
+ * {@link com.avanza.astrix.beans.core.AstrixSettings#SERVICE_PROVIDER_LOAD_PUBLISHING_ENABLED}. <p>
+ * 
+ * The strategy is passed to the {@link AstrixServiceRegistryImpl} when the service-registry is created.
+ */
+public interface ServiceProviderSelector {
+	
+	/**
+	 * @param candidates - all providers available to the consumer, never empty
+	 * @return the selected provider
+	 */
+	AstrixServiceRegistryEntry select(List<AstrixServiceRegistryEntry> candidates);
+
+}
@@ -0,0 +1,244 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.beans.registry;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.avanza.astrix.beans.core.AstrixSettings;
+import com.avanza.astrix.beans.service.ServiceProperties;
+import com.avanza.astrix.config.DynamicConfig;
+import com.avanza.astrix.config.DynamicLongProperty;
+/**
+ * Local cache of the ServiceProperties discovered in the service-registry for each {@link ServiceKey}. <p>
+ * 
+ * A cached entry is served without contacting the service-registry as long as it is younger than 
+ * {@link AstrixSettings#SERVICE_REGISTRY_CACHE_TTL}. An older entry is revalidated against the service-registry
+ * on the calling thread, and the stale entry is only served if the revalidation fails. Entries older than
+ * {@link AstrixSettings#SERVICE_REGISTRY_CACHE_MAX_STALENESS} are never served. <p>
+ * 
+ * If {@link AstrixSettings#SERVICE_REGISTRY_CACHE_SNAPSHOT_FILE} is set, then the cache is persisted to the
+ * given file each time the cached content changes, and the cache is populated from the same file on startup,
+ * allowing beans to bind before the service-registry responds on a cold start.
+ */
+final class ServiceRegistryCache implements ServiceRegistryCacheMetricsMXBean {
+	
+	private final Logger log = LoggerFactory.getLogger(ServiceRegistryCache.class);
+	private final ConcurrentMap<ServiceKey, CacheEntry> entries = new ConcurrentHashMap<>();
+	private final DynamicLongProperty ttl;
+	private final DynamicLongProperty maxStaleness;
+	private final File snapshotFile;
+	private final AtomicLong staleHitCount = new AtomicLong();
+	private final AtomicLong revalidationFailureCount = new AtomicLong();
+	private final Object snapshotLock = new Object();
+	
+	ServiceRegistryCache(DynamicConfig config) {
+		this.ttl = AstrixSettings.SERVICE_REGISTRY_CACHE_TTL.getFrom(config);
+		this.maxStaleness = AstrixSettings.SERVICE_REGISTRY_CACHE_MAX_STALENESS.getFrom(config);
+		String snapshotFile = AstrixSettings.SERVICE_REGISTRY_CACHE_SNAPSHOT_FILE.getFrom(config).get();
+		this.snapshotFile = snapshotFile != null ? new File(snapshotFile) : null;
+		loadSnapshot();
+	}
+	
+	/**
+	 * Returns the cached ServiceProperties for a given service, using the given lookup to revalidate 
+	 * the cached entry if it's older than the configured ttl.
+	 * 
+	 * @param serviceKey
+	 * @param lookup - looks up the ServiceProperties for the given service in the service-registry
+	 * @return
+	 */
+	ServiceProperties get(ServiceKey serviceKey, Callable<ServiceProperties> lookup) {
+		CacheEntry entry = entries.get(serviceKey);
+		if (entry != null && entry.age(System.currentTimeMillis()) < ttl.get()) {
+			return entry.serviceProperties;
+		}
+		return revalidate(serviceKey, entry, lookup);
+	}
+	
+	/**
+	 * Revalidates the cached ServiceProperties for a given service regardless of the configured ttl, 
+	 * used when the cached entry is known to be outdated.
+	 * 
+	 * @param serviceKey
+	 * @param lookup - looks up the ServiceProperties for the given service in the service-registry
+	 * @return
+	 */
+	ServiceProperties refresh(ServiceKey serviceKey, Callable<ServiceProperties> lookup) {
+		return revalidate(serviceKey, entries.get(serviceKey), lookup);
+	}
+	
+	/**
+	 * Updates the cache with the ServiceProperties discovered for a given service, or removes the 
+	 * cached entry if no provider was found.
+	 * 
+	 * @param serviceKey
+	 * @param serviceProperties - the ServiceProperties discovered, or null if no provider was found
+	 */
+	void update(ServiceKey serviceKey, ServiceProperties serviceProperties) {
+		CacheEntry previous;
+		if (serviceProperties == null) {
+			previous = entries.remove(serviceKey);
+			if (previous == null) {
+				return;
+			}
+		} else {
+			previous = entries.put(serviceKey, new CacheEntry(serviceProperties, System.currentTimeMillis()));
+			if (previous != null && Objects.equals(previous.serviceProperties, serviceProperties)) {
+				return;
+			}
+		}
+		writeSnapshot();
+	}
+	
+	private ServiceProperties lookupAndCache(ServiceKey serviceKey, Callable<ServiceProperties> lookup) {
+		ServiceProperties serviceProperties;
+		try {
+			serviceProperties = lookup.call();
+		} catch (RuntimeException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new RuntimeException(e);
+		}
+		update(serviceKey, serviceProperties);
+		return serviceProperties;
+	}
+
+	private ServiceProperties revalidate(ServiceKey serviceKey, CacheEntry entry, Callable<ServiceProperties> lookup) {
+		if (entry == null || entry.age(System.currentTimeMillis()) > maxStaleness.get()) {
+			return lookupAndCache(serviceKey, lookup);
+		}
+		try {
+			return lookupAndCache(serviceKey, lookup);
+		} catch (RuntimeException e) {
+			revalidationFailureCount.incrementAndGet();
+			return staleHit(serviceKey, entry, e);
+		}
+	}
+	
+	private ServiceProperties staleHit(ServiceKey serviceKey, CacheEntry staleEntry, Throwable cause) {
+		staleHitCount.incrementAndGet();
+		log.debug(String.format("Failed to revalidate cached service-registry entry, serving stale entry. service=%s ageMillis=%s", 
+				serviceKey, staleEntry.age(System.currentTimeMillis())), cause);
+		return staleEntry.serviceProperties;
+	}
+	
+	private void loadSnapshot() {
+		if (snapshotFile == null || !snapshotFile.exists()) {
+			return;
+		}
+		try (ObjectInputStream in = new ObjectInputStream(new FileInputStream(snapshotFile))) {
+			@SuppressWarnings("unchecked")
+			Map<ServiceKey, CacheEntry> snapshot = (Map<ServiceKey, CacheEntry>) in.readObject();
+			entries.putAll(snapshot);
+			log.info("Loaded service-registry cache snapshot. file={} entries={}", snapshotFile, snapshot.size());
+		} catch (IOException | ClassNotFoundException | RuntimeException e) {
+			log.warn("Failed to load service-registry cache snapshot, ignoring snapshot. file=" + snapshotFile, e);
+		}
+	}
+	
+	private void writeSnapshot() {
+		if (snapshotFile == null) {
+			return;
+		}
+		synchronized (snapshotLock) {
+			File tmpFile = new File(snapshotFile.getPath() + ".tmp");
+			try {
+				try (ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream(tmpFile))) {
+					out.writeObject(new HashMap<>(entries));
+				}
+				Files.move(tmpFile.toPath(), snapshotFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			} catch (IOException | RuntimeException e) {
+				log.warn("Failed to write service-registry cache snapshot. file=" + snapshotFile, e);
+			}
+		}
+	}
+	
+	@Override
+	public int getCachedServiceCount() {
+		return entries.size();
+	}
+	
+	@Override
+	public long getMaxCacheAgeMillis() {
+		long now = System.currentTimeMillis();
+		long maxAge = 0;
+		for (CacheEntry entry : entries.values()) {
+			maxAge = Math.max(maxAge, entry.age(now));
+		}
+		return maxAge;
+	}
+	
+	@Override
+	public double getAverageCacheAgeMillis() {
+		long now = System.currentTimeMillis();
+		long totalAge = 0;
+		int count = 0;
+		for (CacheEntry entry : entries.values()) {
+			totalAge += entry.age(now);
+			count++;
+		}
+		if (count == 0) {
+			return 0;
+		}
+		return totalAge / (double) count;
+	}
+	
+	@Override
+	public long getStaleHitCount() {
+		return staleHitCount.get();
+	}
+	
+	@Override
+	public long getRevalidationFailureCount() {
+		return revalidationFailureCount.get();
+	}
+	
+	private static final class CacheEntry implements Serializable {
+		
+		private static final long serialVersionUID = 1L;
+		
+		private final ServiceProperties serviceProperties;
+		private final long fetchedAt;
+		
+		public CacheEntry(ServiceProperties serviceProperties, long fetchedAt) {
+			this.serviceProperties = serviceProperties;
+			this.fetchedAt = fetchedAt;
+		}
+		
+		long age(long now) {
+			return Math.max(0, now - fetchedAt);
+		}
+	}
+
+}
@@ -0,0 +1,42 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.beans.registry;
+/**
+ * Metrics for the local cache of service-registry entries held by a {@link ServiceRegistryClient}. 
+ */
+public interface ServiceRegistryCacheMetricsMXBean {
+	
+	int getCachedServiceCount();
+	
+	/**
+	 * @return the age of the oldest cached entry, in milliseconds
+	 */
+	long getMaxCacheAgeMillis();
+	
+	/**
+	 * @return the average age of all cached entries, in milliseconds
+	 */
+	double getAverageCacheAgeMillis();
+	
+	/**
+	 * @return the number of lookups served by a stale cache entry since the service-registry 
+	 * 	failed, or did not respond in time, to revalidate the entry
+	 */
+	long getStaleHitCount();
+	
+	long getRevalidationFailureCount();
+
+}
@@ -0,0 +1,166 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.beans.registry;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+/**
+ * Keeps track of which services have changed in a service-registry instance. Each change
+ * to the set of providers for a given service (registration of a new provider, changed
+ * service properties, deregistration or lease expiration) increments the revision of
+ * this registry instance. <p>
+ * 
+ * Only the most recent changes are retained. A client asking for changes since a revision
+ * that is no longer retained, or since a revision of another registry instance, will receive
+ * an incomplete result.
+ */
+final class ServiceRegistryChangeLog {
+	
+	/*
+	 * IMPLEMENTATION NOTE:
+	 * 
+	 * Leases are tracked here, rather than relying on the underlying ServiceRegistryEntryRepository,
+	 * since an expired lease must be visible as a change to watching clients. Expired leases are 
+	 * detected lazily, i.e. on the next registration or poll for changes after the lease expired.
+	 */
+	
+	static final int DEFAULT_MAX_RETAINED_CHANGES = 10_000;
+	
+	private final String registryInstanceId = UUID.randomUUID().toString();
+	private final int maxRetainedChanges;
+	private final Map<ServiceProviderKey, Registration> registrations = new HashMap<>();
+	private final Deque<Change> changes = new ArrayDeque<>();
+	private long revision = 0;
+	private long oldestRetainedRevision = 1;
+	private long nextLeaseExpiry = Long.MAX_VALUE;
+	
+	ServiceRegistryChangeLog() {
+		this(DEFAULT_MAX_RETAINED_CHANGES);
+	}
+	
+	ServiceRegistryChangeLog(int maxRetainedChanges) {
+		if (maxRetainedChanges < 1) {
+			throw new IllegalArgumentException("maxRetainedChanges must be positive: " + maxRetainedChanges);
+		}
+		this.maxRetainedChanges = maxRetainedChanges;
+	}
+	
+	String getRegistryInstanceId() {
+		return registryInstanceId;
+	}
+	
+	synchronized void registered(ServiceProviderKey serviceProviderKey, Map<String, String> serviceProperties, long lease) {
+		long now = System.currentTimeMillis();
+		expireLeases(now);
+		long leaseExpiry = lease > Long.MAX_VALUE - now ? Long.MAX_VALUE : now + lease;
+		Registration previous = this.registrations.put(serviceProviderKey, new Registration(new HashMap<>(serviceProperties), leaseExpiry));
+		this.nextLeaseExpiry = Math.min(this.nextLeaseExpiry, leaseExpiry);
+		if (previous == null || !Objects.equals(previous.serviceProperties, serviceProperties)) {
+			recordChange(serviceProviderKey.getServiceKey());
+		}
+	}
+	
+	synchronized void deregistered(ServiceProviderKey serviceProviderKey) {
+		this.registrations.remove(serviceProviderKey);
+		// The provider might have been registered in a previous registry instance, hence always record the change
+		recordChange(serviceProviderKey.getServiceKey());
+	}
+	
+	/**
+	 * Returns all services that have changed after the given revision.
+	 * 
+	 * @param sinceRevision - revision of this registry instance known by the client, or null if unknown
+	 * @return
+	 */
+	synchronized ServiceRegistryChanges changesSince(Long sinceRevision) {
+		expireLeases(System.currentTimeMillis());
+		ServiceRegistryChanges result = new ServiceRegistryChanges();
+		result.setRegistryInstanceId(registryInstanceId);
+		result.setRevision(revision);
+		if (sinceRevision == null || sinceRevision > revision || sinceRevision < oldestRetainedRevision - 1) {
+			result.setComplete(false);
+			return result;
+		}
+		Set<ServiceKey> changedServices = new LinkedHashSet<>();
+		Iterator<Change> newestFirst = changes.descendingIterator();
+		while (newestFirst.hasNext()) {
+			Change change = newestFirst.next();
+			if (change.revision <= sinceRevision) {
+				break;
+			}
+			changedServices.add(change.serviceKey);
+		}
+		result.setComplete(true);
+		result.setChangedServices(new ArrayList<>(changedServices));
+		return result;
+	}
+	
+	private void expireLeases(long now) {
+		if (now < nextLeaseExpiry) {
+			return;
+		}
+		long nextExpiry = Long.MAX_VALUE;
+		Iterator<Map.Entry<ServiceProviderKey, Registration>> it = registrations.entrySet().iterator();
+		while (it.hasNext()) {
+			Map.Entry<ServiceProviderKey, Registration> registration = it.next();
+			if (registration.getValue().leaseExpiry <= now) {
+				it.remove();
+				recordChange(registration.getKey().getServiceKey());
+			} else {
+				nextExpiry = Math.min(nextExpiry, registration.getValue().leaseExpiry);
+			}
+		}
+		this.nextLeaseExpiry = nextExpiry;
+	}
+
+	private void recordChange(ServiceKey serviceKey) {
+		revision++;
+		changes.addLast(new Change(revision, serviceKey));
+		while (changes.size() > maxRetainedChanges) {
+			changes.removeFirst();
+			oldestRetainedRevision = changes.peekFirst().revision;
+		}
+	}
+	
+	private static final class Registration {
+		private final Map<String, String> serviceProperties;
+		private final long leaseExpiry;
+		
+		public Registration(Map<String, String> serviceProperties, long leaseExpiry) {
+			this.serviceProperties = serviceProperties;
+			this.leaseExpiry = leaseExpiry;
+		}
+	}
+	
+	private static final class Change {
+		private final long revision;
+		private final ServiceKey serviceKey;
+		
+		public Change(long revision, ServiceKey serviceKey) {
+			this.revision = revision;
+			this.serviceKey = serviceKey;
+		}
+	}
+
+}
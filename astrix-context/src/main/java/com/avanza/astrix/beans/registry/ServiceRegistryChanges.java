@@ -0,0 +1,73 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.beans.registry;
+
+import java.util.ArrayList;
+import java.util.List;
+/**
+ * Describes the set of services that have changed in a given service-registry instance since
+ * a given revision. <p>
+ * 
+ * If the changes could not be computed, for instance if the requested revision belongs to another 
+ * registry instance or if the changes are no longer retained by the registry, then the result is 
+ * marked as incomplete, and the client should consider all services as changed.
+ */
+public class ServiceRegistryChanges {
+	
+	private String registryInstanceId;
+	private long revision;
+	private boolean complete;
+	private List<ServiceKey> changedServices = new ArrayList<>();
+	
+	public String getRegistryInstanceId() {
+		return registryInstanceId;
+	}
+	
+	public void setRegistryInstanceId(String registryInstanceId) {
+		this.registryInstanceId = registryInstanceId;
+	}
+	
+	public long getRevision() {
+		return revision;
+	}
+	
+	public void setRevision(long revision) {
+		this.revision = revision;
+	}
+	
+	public boolean isComplete() {
+		return complete;
+	}
+	
+	public void setComplete(boolean complete) {
+		this.complete = complete;
+	}
+	
+	public List<ServiceKey> getChangedServices() {
+		return changedServices;
+	}
+	
+	public void setChangedServices(List<ServiceKey> changedServices) {
+		this.changedServices = changedServices;
+	}
+	
+	@Override
+	public String toString() {
+		return "ServiceRegistryChanges [registryInstanceId=" + registryInstanceId + ", revision=" + revision
+				+ ", complete=" + complete + ", changedServices=" + changedServices + "]";
+	}
+
+}
@@ -16,12 +16,26 @@
 package com.avanza.astrix.beans.registry;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.Callable;
 
+import javax.annotation.PreDestroy;
+import javax.management.ObjectName;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.avanza.astrix.beans.core.AstrixMBeanExporter;
 import com.avanza.astrix.beans.factory.AstrixBeanKey;
 import com.avanza.astrix.beans.service.ServiceConsumerProperties;
 import com.avanza.astrix.beans.service.ServiceProperties;
+import com.avanza.astrix.config.DynamicConfig;
+import com.avanza.astrix.config.MapConfigSource;
+import com.avanza.astrix.core.RemoteServiceInvocationException;
 /**
  * 
  * @author Elias Lindholm (elilin)
@@ -31,18 +45,117 @@ public class ServiceRegistryClient {
 	
 	private final AstrixServiceRegistry serviceRegistry;
 	private final ServiceConsumerProperties consumerProperties;
+	private final ServiceRegistryCache cache;
+	private final ObjectName cacheMetricsName;
+	private final Logger log = LoggerFactory.getLogger(ServiceRegistryClient.class);
+	private volatile boolean bulkLookupSupported = true;
 
 	public ServiceRegistryClient(AstrixServiceRegistry serviceRegistry, ServiceConsumerProperties serviceConsumerProperties) {
+		this(serviceRegistry, serviceConsumerProperties, new DynamicConfig(new MapConfigSource()));
+	}
+	
+	public ServiceRegistryClient(AstrixServiceRegistry serviceRegistry, ServiceConsumerProperties serviceConsumerProperties, DynamicConfig config) {
 		this.consumerProperties = Objects.requireNonNull(serviceConsumerProperties);
 		this.serviceRegistry = Objects.requireNonNull(serviceRegistry);
+		this.cache = new ServiceRegistryCache(config);
+		String zone = serviceConsumerProperties.getProperty(ServiceConsumerProperties.CONSUMER_ZONE);
+		this.cacheMetricsName = AstrixMBeanExporter.register(cache, "ServiceRegistryClientCache", zone != null ? zone : "default");
 	}
 
+	/**
+	 * Looks up a provider for the given service. The result is cached, see {@link ServiceRegistryCache}.
+	 * 
+	 * @param beanKey
+	 * @return the ServiceProperties for the discovered provider, or null if no provider is available
+	 */
 	public <T> ServiceProperties lookup(AstrixBeanKey<T> beanKey) {
-		AstrixServiceRegistryEntry entry = serviceRegistry.lookup(beanKey.getBeanType().getName(), beanKey.getQualifier(), consumerProperties);
-		if (entry == null) {
-			return null;
+		return cache.get(toServiceKey(beanKey), lookupInServiceRegistry(beanKey));
+	}
+	
+	/**
+	 * Looks up a provider for the given service in the service-registry without serving a cached entry
+	 * that has not yet expired. Used when the service is known to have changed in the service-registry. 
+	 * 
+	 * @param beanKey
+	 * @return the ServiceProperties for the discovered provider, or null if no provider is available
+	 */
+	public <T> ServiceProperties refresh(AstrixBeanKey<T> beanKey) {
+		return cache.refresh(toServiceKey(beanKey), lookupInServiceRegistry(beanKey));
+	}
+	
+	private <T> Callable<ServiceProperties> lookupInServiceRegistry(final AstrixBeanKey<T> beanKey) {
+		return new Callable<ServiceProperties>() {
+			@Override
+			public ServiceProperties call() {
+				AstrixServiceRegistryEntry entry = serviceRegistry.lookup(beanKey.getBeanType().getName(), beanKey.getQualifier(), consumerProperties);
+				if (entry == null) {
+					return null;
+				}
+				return new ServiceProperties(entry.getServiceProperties());
+			}
+		};
+	}
+	
+	ServiceRegistryCacheMetricsMXBean getCacheMetrics() {
+		return cache;
+	}
+	
+	@PreDestroy
+	public void destroy() {
+		AstrixMBeanExporter.unregister(cacheMetricsName);
+	}
+	
+	private static ServiceKey toServiceKey(AstrixBeanKey<?> beanKey) {
+		return new ServiceKey(beanKey.getBeanType().getName(), beanKey.getQualifier());
+	}
+
+	/**
+	 * Looks up the given services using one service-registry invocation per service-registry partition.
+	 * Falls back to lookup each service individually when the service-registry does not support bulk lookups. <p>
+	 * 
+	 * Always looks up each service in the service-registry, and updates the cache with the result.
+	 * 
+	 * @param beanKeys
+	 * @return the discovered ServiceProperties for each service with an available provider 
+	 */
+	public Map<AstrixBeanKey<?>, ServiceProperties> lookupAll(Collection<? extends AstrixBeanKey<?>> beanKeys) {
+		Map<AstrixBeanKey<?>, ServiceProperties> result = new HashMap<>();
+		if (beanKeys.isEmpty()) {
+			return result;
+		}
+		if (bulkLookupSupported) {
+			Map<ServiceKey, AstrixBeanKey<?>> beanKeyByServiceKey = new HashMap<>();
+			for (AstrixBeanKey<?> beanKey : beanKeys) {
+				beanKeyByServiceKey.put(toServiceKey(beanKey), beanKey);
+			}
+			try {
+				List<AstrixServiceRegistryEntry> entries = serviceRegistry.lookupAll(new ArrayList<>(beanKeyByServiceKey.keySet()), consumerProperties);
+				for (AstrixServiceRegistryEntry entry : entries) {
+					ServiceKey serviceKey = new ServiceKey(entry.getServiceBeanType(), entry.getServiceProperties().get(ServiceProperties.QUALIFIER));
+					AstrixBeanKey<?> beanKey = beanKeyByServiceKey.get(serviceKey);
+					if (beanKey != null) {
+						result.put(beanKey, new ServiceProperties(entry.getServiceProperties()));
+					}
+				}
+				for (Map.Entry<ServiceKey, AstrixBeanKey<?>> requested : beanKeyByServiceKey.entrySet()) {
+					cache.update(requested.getKey(), result.get(requested.getValue()));
+				}
+				return result;
+			} catch (RemoteServiceInvocationException e) {
+				if (!isMissingServiceMethod(e)) {
+					throw e;
+				}
+				log.info("Service registry does not support bulk lookups, looking up each service individually");
+				bulkLookupSupported = false;
+			}
+		}
+		for (AstrixBeanKey<?> beanKey : beanKeys) {
+			ServiceProperties serviceProperties = refresh(beanKey);
+			if (serviceProperties != null) {
+				result.put(beanKey, serviceProperties);
+			}
 		}
-		return new ServiceProperties(entry.getServiceProperties());
+		return result;
 	}
 
 	public <T> List<ServiceProperties> list(AstrixBeanKey<T> beanKey) {
@@ -53,5 +166,17 @@ public class ServiceRegistryClient {
 		}
 		return result;
 	}
+	
+	public List<ServiceRegistryChanges> changesSince(Map<String, Long> revisionByRegistryInstanceId) {
+		return serviceRegistry.changesSince(revisionByRegistryInstanceId);
+	}
+	
+	/**
+	 * Whether the given exception indicates that the service-registry is running an older version
+	 * that does not provide the invoked service method.
+	 */
+	static boolean isMissingServiceMethod(RemoteServiceInvocationException e) {
+		return e.getExceptionType() != null && e.getExceptionType().endsWith(".MissingServiceMethodException");
+	}
 
 }
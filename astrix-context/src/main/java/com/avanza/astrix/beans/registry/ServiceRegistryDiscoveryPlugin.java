@@ -15,15 +15,41 @@
  */
 package com.avanza.astrix.beans.registry;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.PreDestroy;
+
 import org.kohsuke.MetaInfServices;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import com.avanza.astrix.beans.core.AstrixSettings;
 import com.avanza.astrix.beans.factory.AstrixBeanKey;
+import com.avanza.astrix.beans.inject.AstrixInject;
+import com.avanza.astrix.beans.publish.AstrixConfigAware;
 import com.avanza.astrix.beans.publish.AstrixPublishedBeans;
 import com.avanza.astrix.beans.publish.AstrixPublishedBeansAware;
 import com.avanza.astrix.beans.service.ServiceDiscoveryMetaFactoryPlugin;
+import com.avanza.astrix.beans.service.ServiceLeaseManager;
+import com.avanza.astrix.beans.service.ServiceLeaseRenewalListener;
 import com.avanza.astrix.beans.service.ServiceProperties;
 import com.avanza.astrix.beans.service.ServiceConsumerProperties;
 import com.avanza.astrix.beans.service.ServiceDiscovery;
+import com.avanza.astrix.beans.service.ServiceDiscoveryPrefetcher;
+import com.avanza.astrix.config.DynamicConfig;
+import com.avanza.astrix.config.DynamicLongProperty;
+import com.avanza.astrix.core.util.Intervals;
 import com.avanza.astrix.provider.core.AstrixServiceRegistryDiscovery;
 /**
  * 
@@ -31,9 +57,16 @@ import com.avanza.astrix.provider.core.AstrixServiceRegistryDiscovery;
  *
  */
 @MetaInfServices(ServiceDiscoveryMetaFactoryPlugin.class)
-public class ServiceRegistryDiscoveryPlugin implements ServiceDiscoveryMetaFactoryPlugin<AstrixServiceRegistryDiscovery>, AstrixPublishedBeansAware {
+public class ServiceRegistryDiscoveryPlugin implements ServiceDiscoveryMetaFactoryPlugin<AstrixServiceRegistryDiscovery>, ServiceDiscoveryPrefetcher, AstrixPublishedBeansAware, AstrixConfigAware {
 
+	private final Logger log = LoggerFactory.getLogger(ServiceRegistryDiscoveryPlugin.class);
+	private final List<ServiceRegistryDiscovery> discoveries = new CopyOnWriteArrayList<>();
+	private final ConcurrentMap<AstrixBeanKey<?>, PrefetchedServiceProperties> prefetchedByBeanKey = new ConcurrentHashMap<>();
+	private final AtomicBoolean watcherStarted = new AtomicBoolean(false);
 	private AstrixPublishedBeans beans;
+	private DynamicConfig config;
+	private ServiceLeaseManager leaseManager;
+	private ServiceRegistryWatcher watcher;
 
 	@Override
 	public Class<AstrixServiceRegistryDiscovery> getDiscoveryAnnotationType() {
@@ -44,10 +77,143 @@ public class ServiceRegistryDiscoveryPlugin implements ServiceDiscoveryMetaFacto
 	public void setAstrixBeans(AstrixPublishedBeans beans) {
 		this.beans = beans;
 	}
+	
+	@Override
+	public void setConfig(DynamicConfig config) {
+		this.config = config;
+	}
+	
+	@AstrixInject
+	public void setLeaseManager(ServiceLeaseManager leaseManager) {
+		this.leaseManager = leaseManager;
+		this.leaseManager.addLeaseRenewalListener(new PrefetchingLeaseRenewalListener());
+	}
 
 	@Override
 	public ServiceDiscovery create(AstrixBeanKey<?> key, AstrixServiceRegistryDiscovery lookupAnnotation) {
-		return new ServiceRegistryDiscovery(key, beans);
+		ServiceRegistryWatcher watcher = getWatcher();
+		ServiceRegistryDiscovery discovery = new ServiceRegistryDiscovery(key, beans, watcher, AstrixSettings.SERVICE_LEASE_RENEW_INTERVAL.getFrom(config));
+		PrefetchedServiceProperties prefetched = this.prefetchedByBeanKey.remove(key);
+		if (prefetched != null) {
+			discovery.prefetched(prefetched);
+		}
+		this.discoveries.add(discovery);
+		return discovery;
+	}
+	
+	/**
+	 * Discovers the given beans using a single bulk lookup. The result is used by the first bind 
+	 * attempt of each ServiceRegistryDiscovery created for the given beans, unless a change is
+	 * detected for the given service, or a regular lease renewal interval passes, before the
+	 * prefetched result is used.
+	 */
+	@Override
+	public void prefetch(Collection<? extends AstrixBeanKey<?>> beanKeys) {
+		if (AstrixSettings.SERVICE_REGISTRY_URI.getFrom(config).get() == null) {
+			return; // No service-registry configured
+		}
+		long epoch = getWatcher().currentEpoch();
+		Map<AstrixBeanKey<?>, ServiceProperties> servicePropertiesByBeanKey = beans.getBean(AstrixBeanKey.create(ServiceRegistryClient.class, null)).lookupAll(beanKeys);
+		for (Map.Entry<AstrixBeanKey<?>, ServiceProperties> discovered : servicePropertiesByBeanKey.entrySet()) {
+			this.prefetchedByBeanKey.put(discovered.getKey(), new PrefetchedServiceProperties(new CachedServiceProperties(discovered.getValue(), epoch, 0)));
+		}
+	}
+	
+	private ServiceRegistryWatcher getWatcher() {
+		synchronized (watcherStarted) {
+			if (!watcherStarted.get()) {
+				this.watcher = new ServiceRegistryWatcher(beans, config, new ServiceRegistryChangeListener());
+				this.watcher.start();
+				watcherStarted.set(true);
+			}
+			return this.watcher;
+		}
+	}
+	
+	@PreDestroy
+	public void destroy() {
+		synchronized (watcherStarted) {
+			if (watcherStarted.get()) {
+				this.watcher.stop();
+			}
+		}
+	}
+	
+	/**
+	 * Discovers the ServiceProperties for all given discoveries that does not hold valid cached 
+	 * ServiceProperties using a single bulk lookup, which are then used on the next
+	 * invocation of {@link ServiceRegistryDiscovery#run()}.
+	 */
+	private void prefetch(List<ServiceRegistryDiscovery> discoveries) {
+		long epoch = watcher.currentEpoch();
+		Map<ServiceRegistryDiscovery, Long> invalidationCountByDiscovery = new HashMap<>();
+		Set<AstrixBeanKey<?>> beanKeys = new HashSet<>();
+		for (ServiceRegistryDiscovery discovery : discoveries) {
+			if (!discovery.hasValidCachedServiceProperties(epoch)) {
+				invalidationCountByDiscovery.put(discovery, discovery.invalidationCount.get());
+				beanKeys.add(discovery.beanKey);
+			}
+		}
+		if (beanKeys.isEmpty()) {
+			return;
+		}
+		Map<AstrixBeanKey<?>, ServiceProperties> servicePropertiesByBeanKey = beans.getBean(AstrixBeanKey.create(ServiceRegistryClient.class, null)).lookupAll(beanKeys);
+		for (Map.Entry<ServiceRegistryDiscovery, Long> discovery : invalidationCountByDiscovery.entrySet()) {
+			ServiceProperties serviceProperties = servicePropertiesByBeanKey.get(discovery.getKey().beanKey);
+			discovery.getKey().prefetched(new PrefetchedServiceProperties(new CachedServiceProperties(serviceProperties, epoch, discovery.getValue())));
+		}
+	}
+	
+	private class PrefetchingLeaseRenewalListener implements ServiceLeaseRenewalListener {
+		@Override
+		public void beforeLeaseRenewal() {
+			if (watcherStarted.get()) {
+				prefetch(discoveries);
+			}
+		}
+	}
+	
+	private class ServiceRegistryChangeListener implements ServiceRegistryWatcher.Listener {
+		@Override
+		public void servicesChanged(Set<ServiceKey> changedServices) {
+			for (AstrixBeanKey<?> prefetched : prefetchedByBeanKey.keySet()) {
+				if (changedServices.contains(new ServiceKey(prefetched.getBeanType().getName(), prefetched.getQualifier()))) {
+					prefetchedByBeanKey.remove(prefetched);
+				}
+			}
+			List<ServiceRegistryDiscovery> changed = new ArrayList<>();
+			for (ServiceRegistryDiscovery discovery : discoveries) {
+				if (changedServices.contains(discovery.serviceKey)) {
+					changed.add(discovery);
+				}
+			}
+			renewLeases(changed, 0);
+		}
+		
+		@Override
+		public void allServicesChanged() {
+			prefetchedByBeanKey.clear();
+			// Spread renewals over one watch interval to avoid renewing all leases in a single burst
+			renewLeases(discoveries, AstrixSettings.SERVICE_REGISTRY_WATCH_INTERVAL.getFrom(config).get());
+		}
+
+		private void renewLeases(List<ServiceRegistryDiscovery> changed, long spreadMillis) {
+			for (ServiceRegistryDiscovery discovery : changed) {
+				discovery.invalidate();
+			}
+			try {
+				prefetch(changed);
+			} catch (Exception e) {
+				log.warn("Failed to lookup changed services in bulk, falling back to lookup each service individually", e);
+			}
+			for (ServiceRegistryDiscovery discovery : changed) {
+				if (spreadMillis > 0) {
+					leaseManager.renewLease(discovery.beanKey, Intervals.spread(spreadMillis));
+				} else {
+					leaseManager.renewLease(discovery.beanKey);
+				}
+			}
+		}
 	}
 	
 	private static class ServiceRegistryDiscovery implements ServiceDiscovery {
@@ -60,14 +226,37 @@ public class ServiceRegistryDiscoveryPlugin implements ServiceDiscoveryMetaFacto
 		 * (behind the AstrixPublishedBeansAware interface) before an instance of ServiceRegistryDiscovery
 		 * is created, we have to inject the AstrixPublishedBeans here and query it for an instance
 		 * on each invocation.
+		 * 
+		 * While the ServiceRegistryWatcher is watching the service-registry, the last discovered 
+		 * ServiceProperties are reused until the service is changed in the service-registry. A lookup result 
+		 * is only cached if no change was detected for the given service while the lookup was in progress. 
+		 * A failed lookup (no provider found) is never cached, since an unbound bean should bind as soon as
+		 * possible on the next bind attempt.
+		 * 
+		 * ServiceProperties prefetched by a bulk lookup are used once, by the next invocation of run, unless
+		 * a change was detected for the given service since the bulk lookup was started, or the prefetched 
+		 * result is older than one lease renewal interval (in which case a regular lookup is made). 
+		 * 
+		 * A lookup following a detected change bypasses the cache in the ServiceRegistryClient, see 
+		 * AstrixSettings.SERVICE_REGISTRY_CACHE_TTL, since the cached entry is known to be outdated.
 		 */
-		private AstrixPublishedBeans beans;
-		private AstrixBeanKey<?> beanKey;
+		private final AstrixPublishedBeans beans;
+		private final AstrixBeanKey<?> beanKey;
+		private final ServiceKey serviceKey;
+		private final ServiceRegistryWatcher watcher;
+		private final DynamicLongProperty maxPrefetchAge;
+		private final AtomicLong invalidationCount = new AtomicLong();
+		private volatile long lookupInvalidationCount = 0;
+		private volatile CachedServiceProperties cachedServiceProperties;
+		private volatile PrefetchedServiceProperties prefetchedServiceProperties;
 
 		public ServiceRegistryDiscovery(AstrixBeanKey<?> key,
-				AstrixPublishedBeans beans) {
+				AstrixPublishedBeans beans, ServiceRegistryWatcher watcher, DynamicLongProperty maxPrefetchAge) {
 			this.beanKey = key;
 			this.beans = beans;
+			this.watcher = watcher;
+			this.maxPrefetchAge = maxPrefetchAge;
+			this.serviceKey = new ServiceKey(key.getBeanType().getName(), key.getQualifier());
 		}
 		
 		@Override
@@ -77,9 +266,89 @@ public class ServiceRegistryDiscoveryPlugin implements ServiceDiscoveryMetaFacto
 
 		@Override
 		public ServiceProperties run() {
-			return beans.getBean(AstrixBeanKey.create(ServiceRegistryClient.class, null)).lookup(beanKey);
+			long epoch = watcher.currentEpoch();
+			CachedServiceProperties cached = this.cachedServiceProperties;
+			long invalidationCount = this.invalidationCount.get();
+			if (cached != null && cached.isValid(epoch, invalidationCount)) {
+				return cached.serviceProperties;
+			}
+			PrefetchedServiceProperties prefetched = this.prefetchedServiceProperties;
+			this.prefetchedServiceProperties = null;
+			ServiceProperties serviceProperties;
+			long lookupEpoch;
+			if (prefetched != null && prefetched.isValid(invalidationCount, maxPrefetchAge.get())) {
+				serviceProperties = prefetched.serviceProperties.serviceProperties;
+				lookupEpoch = prefetched.serviceProperties.epoch;
+			} else {
+				serviceProperties = lookup(invalidationCount);
+				lookupEpoch = epoch;
+			}
+			if (serviceProperties != null && lookupEpoch != ServiceRegistryWatcher.UNAVAILABLE) {
+				this.cachedServiceProperties = new CachedServiceProperties(serviceProperties, lookupEpoch, invalidationCount);
+			} else {
+				this.cachedServiceProperties = null;
+			}
+			return serviceProperties;
+		}
+		
+		private ServiceProperties lookup(long invalidationCount) {
+			ServiceRegistryClient serviceRegistryClient = beans.getBean(AstrixBeanKey.create(ServiceRegistryClient.class, null));
+			ServiceProperties serviceProperties;
+			if (invalidationCount != this.lookupInvalidationCount) {
+				// The service changed since the last lookup, don't serve an outdated entry cached by the ServiceRegistryClient
+				serviceProperties = serviceRegistryClient.refresh(beanKey);
+			} else {
+				serviceProperties = serviceRegistryClient.lookup(beanKey);
+			}
+			this.lookupInvalidationCount = invalidationCount;
+			return serviceProperties;
+		}
+		
+		private boolean hasValidCachedServiceProperties(long epoch) {
+			CachedServiceProperties cached = this.cachedServiceProperties;
+			return cached != null && cached.isValid(epoch, this.invalidationCount.get());
+		}
+		
+		private void prefetched(PrefetchedServiceProperties prefetchedServiceProperties) {
+			this.prefetchedServiceProperties = prefetchedServiceProperties;
+		}
+		
+		private void invalidate() {
+			this.invalidationCount.incrementAndGet();
+		}
+		
+	}
+	
+	private static class PrefetchedServiceProperties {
+		private final CachedServiceProperties serviceProperties;
+		private final long prefetchedAt = System.currentTimeMillis();
+		
+		public PrefetchedServiceProperties(CachedServiceProperties serviceProperties) {
+			this.serviceProperties = serviceProperties;
 		}
 		
+		boolean isValid(long currentInvalidationCount, long maxAgeMillis) {
+			return this.serviceProperties.invalidationCount == currentInvalidationCount 
+					&& System.currentTimeMillis() - prefetchedAt <= maxAgeMillis;
+		}
+	}
+	
+	private static class CachedServiceProperties {
+		private final ServiceProperties serviceProperties;
+		private final long epoch;
+		private final long invalidationCount;
+		
+		public CachedServiceProperties(ServiceProperties serviceProperties, long epoch, long invalidationCount) {
+			this.serviceProperties = serviceProperties;
+			this.epoch = epoch;
+			this.invalidationCount = invalidationCount;
+		}
+		
+		boolean isValid(long currentEpoch, long currentInvalidationCount) {
+			return currentEpoch != ServiceRegistryWatcher.UNAVAILABLE 
+					&& this.epoch == currentEpoch 
+					&& this.invalidationCount == currentInvalidationCount;
+		}
 	}
 
 }
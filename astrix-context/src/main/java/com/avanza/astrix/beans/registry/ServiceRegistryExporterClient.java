@@ -15,9 +15,15 @@
  */
 package com.avanza.astrix.beans.registry;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Objects;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 import com.avanza.astrix.beans.service.ServiceProperties;
+import com.avanza.astrix.core.RemoteServiceInvocationException;
 /**
  * 
  * @author Elias Lindholm (elilin)
@@ -38,6 +44,8 @@ public class ServiceRegistryExporterClient {
 	private final String subsystem;
 	private final String applicationInstanceId;
 	private final String zone;
+	private final Logger log = LoggerFactory.getLogger(ServiceRegistryExporterClient.class);
+	private volatile boolean bulkRegistrationSupported = true;
 	
 	public ServiceRegistryExporterClient(AstrixServiceRegistry serviceRegistry, String subsystem, String applicationInstanceId) {
 		this(serviceRegistry, subsystem, applicationInstanceId, subsystem);
@@ -51,13 +59,63 @@ public class ServiceRegistryExporterClient {
 	}
 
 	public <T> void register(Class<T> type, ServiceProperties properties, long lease) {
+		this.serviceRegistry.register(createEntry(type, properties), lease);
+	}
+	
+	/**
+	 * Registers all given services using one service-registry invocation per service-registry partition. 
+	 * Falls back to register each service individually when the service-registry does not support bulk
+	 * registration.
+	 * 
+	 * @param properties - the ServiceProperties for each service, see {@link ServiceProperties#getApi()}
+	 * @param lease
+	 */
+	public void registerAll(List<ServiceProperties> properties, long lease) {
+		registerAll(properties, lease, null);
+	}
+	
+	/**
+	 * Registers all given services, see {@link #registerAll(List, long)}, and publishes the current 
+	 * load of this application with each registered service.
+	 * 
+	 * @param properties - the ServiceProperties for each service, see {@link ServiceProperties#getApi()}
+	 * @param lease
+	 * @param load - the current load of this application, or null if no load should be published
+	 */
+	public void registerAll(List<ServiceProperties> properties, long lease, ServiceProviderLoad load) {
+		List<AstrixServiceRegistryEntry> entries = new ArrayList<>(properties.size());
+		for (ServiceProperties serviceProperties : properties) {
+			AstrixServiceRegistryEntry entry = createEntry(serviceProperties.getApi(), serviceProperties);
+			if (load != null) {
+				load.writeTo(entry.getServiceMetadata());
+			}
+			entries.add(entry);
+		}
+		if (bulkRegistrationSupported) {
+			try {
+				this.serviceRegistry.registerAll(entries, lease);
+				return;
+			} catch (RemoteServiceInvocationException e) {
+				if (!ServiceRegistryClient.isMissingServiceMethod(e)) {
+					throw e;
+				}
+				log.info("Service registry does not support bulk registration, registering each service individually");
+				bulkRegistrationSupported = false;
+			}
+		}
+		for (AstrixServiceRegistryEntry entry : entries) {
+			this.serviceRegistry.register(entry, lease);
+		}
+	}
+
+	private AstrixServiceRegistryEntry createEntry(Class<?> type, ServiceProperties properties) {
 		properties.setProperty(ServiceProperties.SUBSYSTEM, this.subsystem);
 		properties.setProperty(ServiceProperties.APPLICATION_INSTANCE_ID, this.applicationInstanceId);
 		properties.setProperty(ServiceProperties.SERVICE_ZONE, zone);
 		AstrixServiceRegistryEntry entry = new AstrixServiceRegistryEntry();
 		entry.setServiceProperties(properties.getProperties());
 		entry.setServiceBeanType(type.getName());
-		this.serviceRegistry.register(entry, lease);
+		return entry;
 	}
 	
 }
@@ -0,0 +1,200 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.beans.registry;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.avanza.astrix.beans.core.AstrixSettings;
+import com.avanza.astrix.beans.factory.AstrixBeanKey;
+import com.avanza.astrix.beans.publish.AstrixPublishedBeans;
+import com.avanza.astrix.config.DynamicBooleanProperty;
+import com.avanza.astrix.config.DynamicConfig;
+import com.avanza.astrix.config.DynamicLongProperty;
+/**
+ * Polls the service-registry for changes and notifies a {@link Listener} about services
+ * that have changed. <p>
+ * 
+ * The watcher defines an epoch, see {@link #currentEpoch()}, that is changed each time the
+ * watcher can no longer guarantee that all changes since the previous epoch have been detected, 
+ * i.e. when the watcher recovers from a failure to poll the service-registry, or when the 
+ * service-registry only returns an incomplete set of changes. Service-properties looked up 
+ * during a given epoch stays valid for as long as the epoch is current and no change for the given
+ * service is detected.
+ */
+final class ServiceRegistryWatcher {
+	
+	static final long UNAVAILABLE = -1L;
+	
+	private final Logger log = LoggerFactory.getLogger(ServiceRegistryWatcher.class);
+	private final AstrixPublishedBeans beans;
+	private final Listener listener;
+	private final DynamicBooleanProperty watchEnabled;
+	private final DynamicLongProperty watchInterval;
+	private final DynamicLongProperty leaseRenewInterval;
+	private final WatchThread watchThread = new WatchThread();
+	private Map<String, Long> revisionByRegistryInstanceId = Collections.emptyMap();
+	private volatile boolean healthy = false;
+	private volatile long epoch = 0;
+	private volatile long lastSuccessfulPoll = 0;
+	
+	ServiceRegistryWatcher(AstrixPublishedBeans beans, DynamicConfig config, Listener listener) {
+		this.beans = beans;
+		this.listener = listener;
+		this.watchEnabled = AstrixSettings.SERVICE_REGISTRY_WATCH_ENABLED.getFrom(config);
+		this.watchInterval = AstrixSettings.SERVICE_REGISTRY_WATCH_INTERVAL.getFrom(config);
+		this.leaseRenewInterval = AstrixSettings.SERVICE_LEASE_RENEW_INTERVAL.getFrom(config);
+	}
+	
+	/**
+	 * Polls the service-registry once on the calling thread before starting to watch it in the background, 
+	 * allowing services looked up after this method returns to be cached within the current epoch. 
+	 */
+	void start() {
+		pollIfEnabled();
+		this.watchThread.start();
+	}
+	
+	void stop() {
+		this.watchThread.interrupt();
+	}
+	
+	/**
+	 * Returns the current epoch, or {@link #UNAVAILABLE} if the service-registry is currently not watched, in 
+	 * which case all service-properties should be looked up in the service-registry.
+	 * 
+	 * @return
+	 */
+	long currentEpoch() {
+		if (!healthy || !watchEnabled.get()) {
+			return UNAVAILABLE;
+		}
+		if (watchInterval.get() >= leaseRenewInterval.get()) {
+			// Watching does not detect changes faster than regular lease renewal
+			return UNAVAILABLE;
+		}
+		// Guard against a watch thread that does not make progress, for instance a poll that does not time out 
+		if (System.currentTimeMillis() - lastSuccessfulPoll > 3 * Math.max(watchInterval.get(), 1_000L)) {
+			return UNAVAILABLE;
+		}
+		return epoch;
+	}
+	
+	void poll() {
+		ServiceRegistryClient serviceRegistryClient = beans.getBean(AstrixBeanKey.create(ServiceRegistryClient.class, null));
+		List<ServiceRegistryChanges> changesByRegistryInstance = serviceRegistryClient.changesSince(new HashMap<>(this.revisionByRegistryInstanceId));
+		boolean complete = true;
+		Set<ServiceKey> changedServices = new LinkedHashSet<>();
+		Map<String, Long> revisionByRegistryInstanceId = new HashMap<>();
+		for (ServiceRegistryChanges changes : changesByRegistryInstance) {
+			revisionByRegistryInstanceId.put(changes.getRegistryInstanceId(), changes.getRevision());
+			if (!changes.isComplete()) {
+				complete = false;
+			} else {
+				changedServices.addAll(changes.getChangedServices());
+			}
+		}
+		this.revisionByRegistryInstanceId = revisionByRegistryInstanceId;
+		boolean wasHealthy = this.healthy;
+		if (!complete || !wasHealthy) {
+			this.epoch++;
+		}
+		this.lastSuccessfulPoll = System.currentTimeMillis();
+		this.healthy = true;
+		if (!wasHealthy) {
+			// Changes made before this poll, for instance while the watcher was failing, are not detected
+			log.info("Watching service-registry for changes, all services are considered changed. epoch={}", this.epoch);
+			listener.allServicesChanged();
+			return;
+		}
+		if (!complete) {
+			log.info("Received incomplete changes from service-registry, all services are considered changed. epoch={}", this.epoch);
+			listener.allServicesChanged();
+			return;
+		}
+		if (!changedServices.isEmpty()) {
+			log.debug("Services changed in service-registry: {}", changedServices);
+			listener.servicesChanged(changedServices);
+		}
+	}
+	
+	/**
+	 * @return false if polling the service-registry failed
+	 */
+	private boolean pollIfEnabled() {
+		if (!watchEnabled.get()) {
+			this.healthy = false;
+			this.revisionByRegistryInstanceId = Collections.emptyMap();
+			return true;
+		}
+		try {
+			poll();
+			return true;
+		} catch (Exception e) {
+			pollFailed(e);
+			return false;
+		}
+	}
+	
+	private void pollFailed(Exception e) {
+		if (this.healthy) {
+			log.warn("Failed to watch service-registry for changes, falling back to lookup service-registry on each lease renewal", e);
+		} else {
+			log.debug("Failed to watch service-registry for changes", e);
+		}
+		this.healthy = false;
+		this.revisionByRegistryInstanceId = Collections.emptyMap();
+	}
+	
+	interface Listener {
+		void servicesChanged(Set<ServiceKey> changedServices);
+		void allServicesChanged();
+	}
+	
+	private class WatchThread extends Thread {
+		
+		public WatchThread() {
+			super("Astrix-ServiceRegistryWatch");
+			setDaemon(true);
+		}
+		
+		@Override
+		public void run() {
+			long sleepTime = watchInterval.get();
+			while (!interrupted()) {
+				try {
+					Thread.sleep(sleepTime);
+				} catch (InterruptedException e) {
+					interrupt();
+					break;
+				}
+				sleepTime = watchInterval.get();
+				if (!pollIfEnabled()) {
+					sleepTime = Math.max(sleepTime, leaseRenewInterval.get());
+				}
+			}
+			log.info("Terminating thread=" + getName());
+		}
+	}
+
+}
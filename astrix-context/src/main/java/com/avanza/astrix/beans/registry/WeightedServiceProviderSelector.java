@@ -0,0 +1,49 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.beans.registry;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Selects a provider at random where the probability for a given provider to be selected
+ * is inversely proportional to its estimated cost, see {@link ServiceProviderLoad#getCost()}.
+ */
+public final class WeightedServiceProviderSelector implements ServiceProviderSelector {
+
+	@Override
+	public AstrixServiceRegistryEntry select(List<AstrixServiceRegistryEntry> candidates) {
+		if (candidates.size() == 1) {
+			return candidates.get(0);
+		}
+		double[] costs = ServiceProviderLoad.estimateCosts(candidates);
+		double[] weights = new double[costs.length];
+		double totalWeight = 0;
+		for (int i = 0; i < costs.length; i++) {
+			weights[i] = 1 / costs[i];
+			totalWeight += weights[i];
+		}
+		double selected = ThreadLocalRandom.current().nextDouble(totalWeight);
+		for (int i = 0; i < weights.length; i++) {
+			selected -= weights[i];
+			if (selected < 0) {
+				return candidates.get(i);
+			}
+		}
+		return candidates.get(candidates.size() - 1);
+	}
+
+}
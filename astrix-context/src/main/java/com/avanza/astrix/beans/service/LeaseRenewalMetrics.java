@@ -0,0 +1,79 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.beans.service;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+public final class LeaseRenewalMetrics implements LeaseRenewalMetricsMXBean {
+	
+	private static final double NANOS_PER_MILLI = TimeUnit.MILLISECONDS.toNanos(1);
+	
+	private final AtomicLong renewalCount = new AtomicLong();
+	private final AtomicLong renewalFailureCount = new AtomicLong();
+	private final AtomicLong totalLatencyNanos = new AtomicLong();
+	private final AtomicLong maxLatencyNanos = new AtomicLong();
+	private volatile long lastLatencyNanos;
+	
+	public void renewed(long latencyNanos) {
+		record(latencyNanos);
+	}
+	
+	public void renewalFailed(long latencyNanos) {
+		renewalFailureCount.incrementAndGet();
+		record(latencyNanos);
+	}
+
+	private void record(long latencyNanos) {
+		renewalCount.incrementAndGet();
+		totalLatencyNanos.addAndGet(latencyNanos);
+		lastLatencyNanos = latencyNanos;
+		long max;
+		do {
+			max = maxLatencyNanos.get();
+		} while (latencyNanos > max && !maxLatencyNanos.compareAndSet(max, latencyNanos));
+	}
+	
+	@Override
+	public long getRenewalCount() {
+		return renewalCount.get();
+	}
+
+	@Override
+	public long getRenewalFailureCount() {
+		return renewalFailureCount.get();
+	}
+
+	@Override
+	public double getLastRenewalLatencyMillis() {
+		return lastLatencyNanos / NANOS_PER_MILLI;
+	}
+
+	@Override
+	public double getMaxRenewalLatencyMillis() {
+		return maxLatencyNanos.get() / NANOS_PER_MILLI;
+	}
+
+	@Override
+	public double getAverageRenewalLatencyMillis() {
+		long count = renewalCount.get();
+		if (count == 0) {
+			return 0;
+		}
+		return totalLatencyNanos.get() / NANOS_PER_MILLI / count;
+	}
+
+}
@@ -89,7 +89,12 @@ public class ServiceBeanInstance<T> implements StatefulAstrixBean, InvocationHan
 		return new ServiceBeanInstance<T>(serviceDefinition, beanKey, serviceDiscovery, serviceComponents, config);
 	}
 	
-	public void renewLease() {
+	/**
+	 * Discovers the current provider of the service and rebinds the bean if the provider has changed.
+	 * 
+	 * @return true if the lease was successfully renewed, false otherwise
+	 */
+	public boolean renewLease() {
 		beanStateLock.lock();
 		try {
 			ServiceProperties serviceProperties = serviceDiscovery.run();
@@ -98,8 +103,10 @@ public class ServiceBeanInstance<T> implements StatefulAstrixBean, InvocationHan
 			} else {
 				log.debug("Service properties have not changed. No need to bind bean=" + getBeanKey());
 			}
+			return true;
 		} catch (Exception e) {
 			log.warn(String.format("Failed to renew lease for service bean. bean=%s astrixBeanId=%s", getBeanKey(), id), e);
+			return false;
 		} finally {
 			beanStateLock.unlock();
 		}
@@ -17,10 +17,12 @@ package com.avanza.astrix.beans.service;
 
 import java.lang.annotation.Annotation;
 import java.lang.reflect.AnnotatedElement;
+import java.util.Collection;
 import java.util.List;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 
+import com.avanza.astrix.beans.factory.AstrixBeanKey;
 import com.avanza.astrix.provider.core.AstrixServiceRegistryDiscovery;
 
 /**
@@ -56,6 +58,20 @@ public class ServiceDiscoveryMetaFactory {
 		return discoveryStrategyByAnnotationType.get(discoveryStrategy);
 	}
 	
+	/**
+	 * Prefetches the given beans using all discovery plugins that supports bulk lookups, 
+	 * see {@link ServiceDiscoveryPrefetcher}.
+	 * 
+	 * @param beanKeys
+	 */
+	public void prefetch(Collection<? extends AstrixBeanKey<?>> beanKeys) {
+		for (ServiceDiscoveryMetaFactoryPlugin<?> discoveryPlugin : discoveryStrategyByAnnotationType.values()) {
+			if (discoveryPlugin instanceof ServiceDiscoveryPrefetcher) {
+				ServiceDiscoveryPrefetcher.class.cast(discoveryPlugin).prefetch(beanKeys);
+			}
+		}
+	}
+	
 	public Class<?> getLookupStrategy(AnnotatedElement annotatedElement) {
 		for (ServiceDiscoveryMetaFactoryPlugin<?> discoveryPlugin : discoveryStrategyByAnnotationType.values()) {
 			if (annotatedElement.isAnnotationPresent(discoveryPlugin.getDiscoveryAnnotationType())) {
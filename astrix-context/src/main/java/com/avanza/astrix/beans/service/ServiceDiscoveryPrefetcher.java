@@ -0,0 +1,39 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.beans.service;
+
+import java.util.Collection;
+
+import com.avanza.astrix.beans.factory.AstrixBeanKey;
+
+/**
+ * Optional interface for a {@link ServiceDiscoveryMetaFactoryPlugin} that supports discovering
+ * many services using a single bulk lookup. <p>
+ * 
+ * The prefetched result is used by the first bind attempt of each {@link ServiceDiscovery} created
+ * by the plugin for a given bean, which avoids one lookup per bean when many beans are bound at once.
+ */
+public interface ServiceDiscoveryPrefetcher {
+	
+	/**
+	 * Discovers the given beans using a bulk lookup. Beans that are not discovered using the 
+	 * current plugin are ignored.
+	 * 
+	 * @param beanKeys
+	 */
+	void prefetch(Collection<? extends AstrixBeanKey<?>> beanKeys);
+
+}
@@ -17,15 +17,28 @@ package com.avanza.astrix.beans.service;
 
 import java.util.List;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.annotation.PreDestroy;
+import javax.management.ObjectName;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.avanza.astrix.beans.core.AstrixMBeanExporter;
 import com.avanza.astrix.beans.core.AstrixSettings;
+import com.avanza.astrix.beans.factory.AstrixBeanKey;
 import com.avanza.astrix.config.DynamicConfig;
+import com.avanza.astrix.config.DynamicLongProperty;
+import com.avanza.astrix.core.util.Intervals;
+import com.avanza.astrix.core.util.NamedThreadFactory;
 /**
  * 
  * @author Elias Lindholm (elilin)
@@ -33,15 +46,52 @@ import com.avanza.astrix.config.DynamicConfig;
  */
 public class ServiceLeaseManager {
 	
+	/*
+	 * IMPLEMENTATION NOTE:
+	 * 
+	 * Each service bean is managed by a separately scheduled task. A bound bean renews its lease 
+	 * once every lease renewal interval, whereas an unbound bean attempts to bind once every bind attempt 
+	 * interval. The first attempt for each bean is spread randomly over one interval, and each following 
+	 * attempt is scheduled using a jittered interval, see AstrixSettings.SERVICE_LEASE_RENEW_JITTER. This 
+	 * avoids that all leases are renewed in a single burst, and that applications started at the same time
+	 * renews their leases in lockstep. Failed lease renewals backs off exponentially.
+	 * 
+	 * The scheduling thread only dispatches attempts to a bounded pool of worker threads. An attempt that 
+	 * does not complete within AstrixSettings.SERVICE_LEASE_ATTEMPT_TIMEOUT is considered failed and the next 
+	 * attempt is scheduled, but the attempt is not interrupted. A bean never has more than one attempt running 
+	 * at a time, i.e attempts are skipped until the timed out attempt completes. Hence a bean that hangs in
+	 * discovery or bind occupies at most one worker thread and does not delay other beans as long as 
+	 * there are available workers.
+	 * 
+	 * The lease renewal listeners are notified on their own jittered schedule, once per lease renewal 
+	 * interval.
+	 */
+	
 	private final Logger log = LoggerFactory.getLogger(ServiceLeaseManager.class);
-	private final List<ServiceBeanInstance<?>> leasedServices = new CopyOnWriteArrayList<>();
+	private final List<LeasedService> leasedServices = new CopyOnWriteArrayList<>();
+	private final List<ServiceLeaseRenewalListener> leaseRenewalListeners = new CopyOnWriteArrayList<>();
 	private final DynamicConfig config;
-	private final ServiceLeaseRenewalThread leaseRenewalThread = new ServiceLeaseRenewalThread();
-	private final ServiceBindThread serviceBindThread = new ServiceBindThread();
+	private final DynamicLongProperty leaseRenewInterval;
+	private final DynamicLongProperty leaseRenewJitter;
+	private final DynamicLongProperty maxLeaseRenewBackoff;
+	private final DynamicLongProperty bindAttemptInterval;
+	private final DynamicLongProperty attemptTimeout;
+	private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("Astrix-ServiceLeaseRenewal"));
+	private final ThreadPoolExecutor workerPool;
 	private final AtomicBoolean isStarted = new AtomicBoolean(false);
+	private final LeaseManagerMetrics metrics = new LeaseManagerMetrics();
+	private volatile ObjectName metricsName;
 	
 	public ServiceLeaseManager(DynamicConfig config) {
 		this.config = config;
+		this.leaseRenewInterval = AstrixSettings.SERVICE_LEASE_RENEW_INTERVAL.getFrom(config);
+		this.leaseRenewJitter = AstrixSettings.SERVICE_LEASE_RENEW_JITTER.getFrom(config);
+		this.maxLeaseRenewBackoff = AstrixSettings.SERVICE_LEASE_RENEW_MAX_BACKOFF.getFrom(config);
+		this.bindAttemptInterval = AstrixSettings.BEAN_BIND_ATTEMPT_INTERVAL.getFrom(config);
+		this.attemptTimeout = AstrixSettings.SERVICE_LEASE_ATTEMPT_TIMEOUT.getFrom(config);
+		int workerThreads = (int) Math.max(1, AstrixSettings.SERVICE_LEASE_WORKER_THREADS.getFrom(config).get());
+		this.workerPool = new ThreadPoolExecutor(workerThreads, workerThreads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new NamedThreadFactory("Astrix-ServiceLeaseWorker"));
+		this.workerPool.allowCoreThreadTimeOut(true);
 	}
 	
 	public <T> void startManageLease(ServiceBeanInstance<T> serviceBeanInstance) {
@@ -50,90 +100,351 @@ public class ServiceLeaseManager {
 				start();
 			}
 		}
-		leasedServices.add(serviceBeanInstance);
+		LeasedService leasedService = new LeasedService(serviceBeanInstance);
+		leasedServices.add(leasedService);
+		leasedService.schedule(Intervals.spread(leasedService.getInterval()));
+	}
+	
+	public void addLeaseRenewalListener(ServiceLeaseRenewalListener leaseRenewalListener) {
+		this.leaseRenewalListeners.add(leaseRenewalListener);
+	}
+	
+	/**
+	 * Asynchronously renews the lease for all service beans managed by this instance with the 
+	 * given bean key, without waiting for the next regular lease renewal.
+	 * 
+	 * @param beanKey
+	 */
+	public void renewLease(AstrixBeanKey<?> beanKey) {
+		for (LeasedService leasedService : leasedServices) {
+			if (leasedService.serviceBeanInstance.getBeanKey().equals(beanKey)) {
+				leasedService.requestAttempt();
+			}
+		}
+	}
+	
+	/**
+	 * Renews the lease for all service beans managed by this instance with the given bean key 
+	 * after the given delay, see {@link #renewLease(AstrixBeanKey)}.
+	 * 
+	 * @param beanKey
+	 * @param delayMillis
+	 */
+	public void renewLease(final AstrixBeanKey<?> beanKey, long delayMillis) {
+		schedule(new Runnable() {
+			@Override
+			public void run() {
+				renewLease(beanKey);
+			}
+		}, delayMillis);
+	}
+	
+	public ServiceLeaseManagerMetricsMXBean getLeaseRenewalMetrics() {
+		return metrics;
 	}
 	
 	private void start() {
-		this.leaseRenewalThread.start();
-		this.serviceBindThread.start();
+		this.metricsName = AstrixMBeanExporter.register(metrics, "ServiceLeaseManager", AstrixSettings.SUBSYSTEM_NAME.getFrom(config).get());
+		new LeaseRenewalListenerNotification().schedule(Intervals.spread(leaseRenewInterval.get()));
 		isStarted.set(true);
 	}
 
 	@PreDestroy
 	public void destroy() {
-		this.leaseRenewalThread.interrupt();
-		this.serviceBindThread.interrupt();
-		for (ServiceBeanInstance<?> leasedService : this.leasedServices) {
+		this.scheduler.shutdownNow();
+		this.workerPool.shutdownNow();
+		AstrixMBeanExporter.unregister(metricsName);
+		for (LeasedService leasedService : this.leasedServices) {
 			try {
-				leasedService.destroy();
+				leasedService.serviceBeanInstance.destroy();
 			} catch (Exception e) {
-				log.warn(String.format("Failed to release service bean: %s", leasedService.getBeanKey()), e);
+				log.warn(String.format("Failed to release service bean: %s", leasedService.serviceBeanInstance.getBeanKey()), e);
 			}
 		}
 	}
-
-	private class ServiceBindThread extends Thread {
-		
-		public ServiceBindThread() {
-			super("Astrix-ServiceBind");
-			setDaemon(true);
+	
+	private void schedule(Runnable task, long delayMillis) {
+		try {
+			scheduler.schedule(task, delayMillis, TimeUnit.MILLISECONDS);
+		} catch (RejectedExecutionException e) {
+			// ServiceLeaseManager is destroyed
 		}
+	}
+	
+	private class LeasedService implements Runnable {
+		
+		private final ServiceBeanInstance<?> serviceBeanInstance;
+		private final AtomicBoolean attemptInProgress = new AtomicBoolean(false);
+		private final AtomicBoolean attemptRequested = new AtomicBoolean(false);
+		private volatile int consecutiveFailures = 0;
+		private volatile long lastAttemptStart = 0;
+		private volatile long lastAttemptCompleted = System.currentTimeMillis();
 		
+		public LeasedService(ServiceBeanInstance<?> serviceBeanInstance) {
+			this.serviceBeanInstance = serviceBeanInstance;
+		}
+
+		/**
+		 * Invoked by the scheduler when its time for the next regular attempt.
+		 */
 		@Override
 		public void run() {
-			while (!interrupted()) {
-				for (ServiceBeanInstance<?> leasedService : leasedServices) {
-					if (!leasedService.isBound()) {
-						bind(leasedService);
+			if (!submitAttempt(true)) {
+				log.debug("Previous attempt still in progress, skipping attempt. bean={}", serviceBeanInstance.getBeanKey());
+				scheduleNext();
+			}
+		}
+		
+		/**
+		 * Requests an attempt outside the regular schedule. If an attempt is already in progress, 
+		 * a new attempt is submitted when the current attempt completes.
+		 */
+		private void requestAttempt() {
+			attemptRequested.set(true);
+			if (submitAttempt(false)) {
+				attemptRequested.set(false);
+			}
+		}
+		
+		/**
+		 * @param regular - whether the attempt is part of the regular schedule, in which case the next 
+		 * 		regular attempt is scheduled when the attempt completes or times out
+		 * @return false if a previous attempt is still in progress
+		 */
+		private boolean submitAttempt(boolean regular) {
+			if (!attemptInProgress.compareAndSet(false, true)) {
+				return false;
+			}
+			Attempt attempt = new Attempt(regular);
+			try {
+				workerPool.execute(attempt);
+			} catch (RejectedExecutionException e) {
+				// ServiceLeaseManager is destroyed
+				attemptInProgress.set(false);
+			}
+			return true;
+		}
+		
+		private void scheduleNext() {
+			schedule(Intervals.jitter(getInterval(), leaseRenewJitter.get()));
+		}
+		
+		private long getInterval() {
+			if (!serviceBeanInstance.isBound()) {
+				return bindAttemptInterval.get();
+			}
+			return Intervals.exponentialBackoff(leaseRenewInterval.get(), consecutiveFailures, maxLeaseRenewBackoff.get());
+		}
+		
+		private void schedule(long delayMillis) {
+			ServiceLeaseManager.this.schedule(this, delayMillis);
+		}
+		
+		private class Attempt implements Runnable {
+			
+			private final boolean regular;
+			private final AtomicBoolean concluded = new AtomicBoolean(false);
+			
+			public Attempt(boolean regular) {
+				this.regular = regular;
+			}
+
+			@Override
+			public void run() {
+				// The timeout applies from the start of execution, an attempt waiting for a worker thread never times out
+				ServiceLeaseManager.this.schedule(new AttemptTimeout(this), attemptTimeout.get());
+				long start = System.nanoTime();
+				if (regular) {
+					long now = System.currentTimeMillis();
+					if (lastAttemptStart != 0) {
+						metrics.renewalCycleCompleted(now - lastAttemptStart);
 					}
+					lastAttemptStart = now;
 				}
+				boolean leaseRenewal = serviceBeanInstance.isBound();
+				boolean successful = false;
 				try {
-					Thread.sleep(AstrixSettings.BEAN_BIND_ATTEMPT_INTERVAL.getFrom(config).get());
-				} catch (InterruptedException e) {
-					interrupt();
+					successful = leaseRenewal ? renewLease() : bind();
+				} finally {
+					lastAttemptCompleted = System.currentTimeMillis();
+					attemptInProgress.set(false);
+					if (concluded.compareAndSet(false, true)) {
+						if (leaseRenewal) {
+							leaseRenewalCompleted(successful, System.nanoTime() - start);
+						}
+						if (regular) {
+							scheduleNext();
+						}
+					}
+					if (attemptRequested.getAndSet(false)) {
+						requestAttempt();
+					}
+				}
+			}
+
+			private boolean renewLease() {
+				try {
+					return serviceBeanInstance.renewLease();
+				} catch (Exception e) {
+					log.warn("Failed to renew lease for service: " + serviceBeanInstance.getBeanKey(), e);
+					return false;
+				}
+			}
+			
+			private boolean bind() {
+				try {
+					log.debug("Attempting to bind service={}", serviceBeanInstance.getBeanKey());
+					serviceBeanInstance.bind();
+					return serviceBeanInstance.isBound();
+				} catch (Exception e) {
+					log.warn("Failed to bind service: " + serviceBeanInstance.getBeanKey(), e);
+					return false;
 				}
 			}
-			log.info("Terminating thread=" + getName());
 		}
 		
-		private void bind(ServiceBeanInstance<?> leasedService) {
-			try {
-				log.debug("Attempting to bind service={}", leasedService.getBeanKey());
-				leasedService.bind();
-			} catch (Exception e) {
-				log.warn("Failed to bind service: " + leasedService.getBeanKey(), e);
+		private void leaseRenewalCompleted(boolean successful, long latencyNanos) {
+			if (successful) {
+				consecutiveFailures = 0;
+				metrics.leaseRenewalMetrics.renewed(latencyNanos);
+			} else {
+				consecutiveFailures++;
+				metrics.leaseRenewalMetrics.renewalFailed(latencyNanos);
 			}
 		}
-	}
-	
-	private class ServiceLeaseRenewalThread extends Thread {
 		
-		public ServiceLeaseRenewalThread() {
-			super("Astrix-ServiceLeaseRenewal");
-			setDaemon(true);
+		private class AttemptTimeout implements Runnable {
+			
+			private final Attempt attempt;
+			
+			public AttemptTimeout(Attempt attempt) {
+				this.attempt = attempt;
+			}
+
+			@Override
+			public void run() {
+				if (!attempt.concluded.compareAndSet(false, true)) {
+					return; // Already completed
+				}
+				// The attempt is left running on its worker thread, next attempt is skipped until the timed out attempt completes
+				log.warn(String.format("Lease renewal or bind attempt did not complete within %s ms, considering attempt failed. bean=%s", 
+						attemptTimeout.get(), serviceBeanInstance.getBeanKey()));
+				metrics.attemptTimeoutCount.incrementAndGet();
+				if (serviceBeanInstance.isBound()) {
+					leaseRenewalCompleted(false, TimeUnit.MILLISECONDS.toNanos(attemptTimeout.get()));
+				}
+				if (attempt.regular) {
+					scheduleNext();
+				}
+			}
 		}
+	}
+	
+	private class LeaseRenewalListenerNotification implements Runnable {
 		
 		@Override
 		public void run() {
-			while (!interrupted()) {
-				for (ServiceBeanInstance<?> leasedService : leasedServices) {
-					renewLease(leasedService);
-				}
+			try {
+				notifyLeaseRenewalListeners();
+			} finally {
+				schedule(Intervals.jitter(leaseRenewInterval.get(), leaseRenewJitter.get()));
+			}
+		}
+		
+		private void schedule(long delayMillis) {
+			ServiceLeaseManager.this.schedule(this, delayMillis);
+		}
+		
+		private void notifyLeaseRenewalListeners() {
+			for (ServiceLeaseRenewalListener leaseRenewalListener : leaseRenewalListeners) {
 				try {
-					Thread.sleep(AstrixSettings.SERVICE_LEASE_RENEW_INTERVAL.getFrom(config).get());
-				} catch (InterruptedException e) {
-					interrupt();
+					leaseRenewalListener.beforeLeaseRenewal();
+				} catch (Exception e) {
+					log.warn("Lease renewal listener failed: " + leaseRenewalListener, e);
 				}
 			}
-			log.info("Terminating thread=" + getName());
 		}
+	}
+	
+	private class LeaseManagerMetrics implements ServiceLeaseManagerMetricsMXBean {
 		
-		private void renewLease(ServiceBeanInstance<?> leasedService) {
-			try {
-				leasedService.renewLease();
-			} catch (Exception e) {
-				log.warn("Failed to renew lease for service: " + leasedService.getBeanKey(), e);
+		private final LeaseRenewalMetrics leaseRenewalMetrics = new LeaseRenewalMetrics();
+		private final AtomicLong attemptTimeoutCount = new AtomicLong();
+		private final AtomicLong renewalCycleCount = new AtomicLong();
+		private final AtomicLong totalRenewalCycleTimeMillis = new AtomicLong();
+		private final AtomicLong maxRenewalCycleTimeMillis = new AtomicLong();
+		
+		void renewalCycleCompleted(long cycleTimeMillis) {
+			renewalCycleCount.incrementAndGet();
+			totalRenewalCycleTimeMillis.addAndGet(cycleTimeMillis);
+			long max;
+			do {
+				max = maxRenewalCycleTimeMillis.get();
+			} while (cycleTimeMillis > max && !maxRenewalCycleTimeMillis.compareAndSet(max, cycleTimeMillis));
+		}
+		
+		@Override
+		public long getRenewalCount() {
+			return leaseRenewalMetrics.getRenewalCount();
+		}
+
+		@Override
+		public long getRenewalFailureCount() {
+			return leaseRenewalMetrics.getRenewalFailureCount();
+		}
+
+		@Override
+		public double getLastRenewalLatencyMillis() {
+			return leaseRenewalMetrics.getLastRenewalLatencyMillis();
+		}
+
+		@Override
+		public double getMaxRenewalLatencyMillis() {
+			return leaseRenewalMetrics.getMaxRenewalLatencyMillis();
+		}
+
+		@Override
+		public double getAverageRenewalLatencyMillis() {
+			return leaseRenewalMetrics.getAverageRenewalLatencyMillis();
+		}
+
+		@Override
+		public int getLeasedServiceCount() {
+			return leasedServices.size();
+		}
+
+		@Override
+		public int getRunningAttemptCount() {
+			return workerPool.getActiveCount();
+		}
+
+		@Override
+		public long getAttemptTimeoutCount() {
+			return attemptTimeoutCount.get();
+		}
+
+		@Override
+		public double getAverageRenewalCycleTimeMillis() {
+			long count = renewalCycleCount.get();
+			if (count == 0) {
+				return 0;
+			}
+			return totalRenewalCycleTimeMillis.get() / (double) count;
+		}
+
+		@Override
+		public long getMaxRenewalCycleTimeMillis() {
+			return maxRenewalCycleTimeMillis.get();
+		}
+
+		@Override
+		public long getMaxTimeSinceLastCompletedAttemptMillis() {
+			long now = System.currentTimeMillis();
+			long result = 0;
+			for (LeasedService leasedService : leasedServices) {
+				result = Math.max(result, now - leasedService.lastAttemptCompleted);
 			}
+			return result;
 		}
 	}
 	
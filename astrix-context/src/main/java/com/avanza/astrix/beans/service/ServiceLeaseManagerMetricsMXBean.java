@@ -0,0 +1,51 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.beans.service;
+/**
+ * Metrics for the lease renewals and bind attempts managed by a {@link ServiceLeaseManager}. 
+ */
+public interface ServiceLeaseManagerMetricsMXBean extends LeaseRenewalMetricsMXBean {
+	
+	int getLeasedServiceCount();
+	
+	/**
+	 * @return the number of lease renewal or bind attempts currently executing
+	 */
+	int getRunningAttemptCount();
+	
+	/**
+	 * @return the number of lease renewal or bind attempts that did not complete within 
+	 * 	the attempt timeout, see AstrixSettings.SERVICE_LEASE_ATTEMPT_TIMEOUT
+	 */
+	long getAttemptTimeoutCount();
+	
+	/**
+	 * The renewal cycle time is the time between the start of two consecutive regular
+	 * lease renewal or bind attempts for a given bean.
+	 * 
+	 * @return
+	 */
+	double getAverageRenewalCycleTimeMillis();
+	
+	long getMaxRenewalCycleTimeMillis();
+	
+	/**
+	 * @return the longest time any managed bean has waited since its last lease renewal 
+	 * 	or bind attempt completed, in milliseconds
+	 */
+	long getMaxTimeSinceLastCompletedAttemptMillis();
+
+}
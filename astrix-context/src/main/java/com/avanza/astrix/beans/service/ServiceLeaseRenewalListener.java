@@ -0,0 +1,29 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.beans.service;
+
+/**
+ * Listener notified by the {@link ServiceLeaseManager} once every lease renewal interval. Allows
+ * a service discovery strategy to discover the ServiceProperties for all beans in bulk, rather
+ * than on each individual {@link ServiceDiscovery#run()}. Note that the lease renewals of individual 
+ * beans are spread over the lease renewal interval, i.e. they are not executed directly after
+ * the listener is notified.
+ */
+public interface ServiceLeaseRenewalListener {
+	
+	void beforeLeaseRenewal();
+
+}
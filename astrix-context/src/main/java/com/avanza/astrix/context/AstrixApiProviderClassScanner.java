@@ -15,21 +15,36 @@
  */
 package com.avanza.astrix.context;
 
+import java.io.IOException;
 import java.lang.annotation.Annotation;
+import java.net.URL;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Enumeration;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 
 import org.reflections.Reflections;
+import org.reflections.util.ConfigurationBuilder;
+import org.reflections.util.FilterBuilder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.avanza.astrix.beans.publish.ApiProviderClass;
 import com.avanza.astrix.beans.publish.ApiProviders;
+import com.avanza.astrix.provider.index.ApiProviderIndex;
 /**
- * Uses classpath scanning to find api-providers. <p>
+ * Finds api-providers using the {@link ApiProviderIndex} created at compile time, and falls back to
+ * classpath scanning when no index is available. <p>
+ * 
+ * The index is used for each classpath root (directory or jar) that contains an index file. The remaining
+ * classpath roots that contain the given base package (for instance modules compiled without the 
+ * ApiProviderIndexProcessor) are scanned. All classpath roots are scanned when the index is disabled, 
+ * or when scanning for an annotation type that is not indexed. <p>
  * 
  * @author Elias Lindholm (elilin)
  *
@@ -41,6 +56,7 @@ public class AstrixApiProviderClassScanner implements ApiProviders {
 	private static final Map<String, List<ApiProviderClass>> apiProvidersByBasePackage = new ConcurrentHashMap<>();
 	private final List<String> basePackages = new ArrayList<>();
 	private final List<Class<? extends Annotation>> providerAnnotationsToScanFor;
+	private boolean useIndex = true;
 	
 	public AstrixApiProviderClassScanner(List<Class<? extends Annotation>> providerAnnotationsToScanFor, String basePackage, String... otherBasePackages) {
 		this.providerAnnotationsToScanFor = providerAnnotationsToScanFor;
@@ -59,7 +75,8 @@ public class AstrixApiProviderClassScanner implements ApiProviders {
 
 	private List<ApiProviderClass> scanPackage(String basePackage) {
 		log.debug("Scanning package for api-providers: package={}", basePackage);
-		List<ApiProviderClass> providerClasses = apiProvidersByBasePackage.get(basePackage);
+		String cacheKey = (useIndex ? "index:" : "scan:") + basePackage + ":" + getAllProviderAnnotationTypes();
+		List<ApiProviderClass> providerClasses = apiProvidersByBasePackage.get(cacheKey);
 		if (providerClasses != null) {
 			log.debug("Returning cached api-providers found on earlier scan types={}", providerClasses);
 			return providerClasses;
@@ -67,18 +84,117 @@ public class AstrixApiProviderClassScanner implements ApiProviders {
 		List<Class<? extends Annotation>> allProviderAnnotationTypes = getAllProviderAnnotationTypes();
 		log.debug("Running scan for api-providers of types={}", allProviderAnnotationTypes);
 		List<ApiProviderClass> discoveredApiPRoviders = new ArrayList<>();
-		Reflections reflections = new Reflections(basePackage);
-		for (Class<? extends Annotation> apiAnnotation : allProviderAnnotationTypes) { 
-			for (Class<?> providerClass : reflections.getTypesAnnotatedWith(apiAnnotation)) {
-				ApiProviderClass provider = ApiProviderClass.create(providerClass);
-				log.debug("Found api provider {}", provider);
-				discoveredApiPRoviders.add(provider);
+		ApiProviderIndex index = useIndex ? readIndex() : null;
+		Reflections reflections = null;
+		Reflections unindexedRootsReflections = null;
+		for (Class<? extends Annotation> apiAnnotation : allProviderAnnotationTypes) {
+			if (index == null || !index.isIndexed(apiAnnotation)) {
+				if (reflections == null) {
+					reflections = new Reflections(basePackage);
+				}
+				addProviders(discoveredApiPRoviders, reflections.getTypesAnnotatedWith(apiAnnotation));
+				continue;
+			}
+			Set<Class<?>> annotatedClasses = new LinkedHashSet<>(getIndexedProviderClasses(index, apiAnnotation, basePackage));
+			if (unindexedRootsReflections == null) {
+				unindexedRootsReflections = createUnindexedRootsReflections(index, basePackage);
 			}
+			if (unindexedRootsReflections != null) {
+				annotatedClasses.addAll(unindexedRootsReflections.getTypesAnnotatedWith(apiAnnotation));
+			}
+			addProviders(discoveredApiPRoviders, annotatedClasses);
 		}
-		apiProvidersByBasePackage.put(basePackage, discoveredApiPRoviders);
+		apiProvidersByBasePackage.put(cacheKey, discoveredApiPRoviders);
 		return discoveredApiPRoviders;
 	}
 	
+	private void addProviders(List<ApiProviderClass> discoveredApiProviders, Collection<Class<?>> providerClasses) {
+		for (Class<?> providerClass : providerClasses) {
+			ApiProviderClass provider = ApiProviderClass.create(providerClass);
+			log.debug("Found api provider {}", provider);
+			discoveredApiProviders.add(provider);
+		}
+	}
+	
+	/**
+	 * @return the indexed classes in the given package annotated with the given annotation type
+	 */
+	private List<Class<?>> getIndexedProviderClasses(ApiProviderIndex index, Class<? extends Annotation> apiAnnotation, String basePackage) {
+		List<Class<?>> result = new ArrayList<>();
+		for (String className : index.getAnnotatedClassNames(apiAnnotation)) {
+			if (!className.startsWith(basePackage + ".")) {
+				continue;
+			}
+			try {
+				Class<?> providerClass = Class.forName(className, false, getClassLoader());
+				if (providerClass.isAnnotationPresent(apiAnnotation)) {
+					result.add(providerClass);
+				}
+			} catch (ClassNotFoundException | LinkageError e) {
+				log.debug("Ignoring indexed class that could not be loaded: className={}", className);
+			}
+		}
+		return result;
+	}
+	
+	/**
+	 * @return a Reflections instance that scans the given package in all classpath roots without an index file,
+	 * 			or null if the package is only found in indexed classpath roots
+	 */
+	private Reflections createUnindexedRootsReflections(ApiProviderIndex index, String basePackage) {
+		List<URL> unindexedRoots = new ArrayList<>();
+		String packageResourceName = basePackage.replace('.', '/');
+		try {
+			Enumeration<URL> packageResources = getClassLoader().getResources(packageResourceName);
+			while (packageResources.hasMoreElements()) {
+				String root = ApiProviderIndex.getRoot(packageResources.nextElement(), packageResourceName);
+				if (!index.isIndexedRoot(root)) {
+					unindexedRoots.add(new URL(root));
+				}
+			}
+		} catch (IOException e) {
+			log.warn("Failed to resolve classpath roots, falling back to scanning all classpath roots: package=" + basePackage, e);
+			return new Reflections(basePackage);
+		}
+		if (unindexedRoots.isEmpty()) {
+			return null;
+		}
+		log.debug("Scanning classpath roots without api-provider index: package={} roots={}", basePackage, unindexedRoots);
+		return new Reflections(new ConfigurationBuilder().setUrls(unindexedRoots)
+														 .addClassLoader(getClassLoader())
+														 .filterInputsBy(new FilterBuilder().includePackage(basePackage)));
+	}
+	
+	private ApiProviderIndex readIndex() {
+		try {
+			ApiProviderIndex index = ApiProviderIndex.read(getClassLoader());
+			if (index == null) {
+				log.debug("No api-provider index found on classpath, falling back to classpath scanning");
+			}
+			return index;
+		} catch (IOException e) {
+			log.warn("Failed to read api-provider index, falling back to classpath scanning", e);
+			return null;
+		}
+	}
+	
+	private ClassLoader getClassLoader() {
+		ClassLoader contextClassLoader = Thread.currentThread().getContextClassLoader();
+		if (contextClassLoader != null) {
+			return contextClassLoader;
+		}
+		return AstrixApiProviderClassScanner.class.getClassLoader();
+	}
+	
+	/**
+	 * Whether to use the api-provider index created at compile time, see {@link ApiProviderIndex}. Defaults to true.
+	 * 
+	 * @param useIndex
+	 */
+	void setUseIndex(boolean useIndex) {
+		this.useIndex = useIndex;
+	}
+	
 	void addBasePackage(String basePackage) {
 		this.basePackages.add(basePackage);
 	}
@@ -20,6 +20,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -49,6 +50,7 @@ import com.avanza.astrix.beans.publish.AstrixConfigAware;
 import com.avanza.astrix.beans.publish.AstrixPublishedBeans;
 import com.avanza.astrix.beans.publish.AstrixPublishedBeansAware;
 import com.avanza.astrix.beans.service.AstrixVersioningPlugin;
+import com.avanza.astrix.beans.service.ServiceDiscoveryMetaFactory;
 import com.avanza.astrix.config.DynamicConfig;
 import com.avanza.astrix.config.LongSetting;
 import com.avanza.astrix.config.PropertiesConfigSource;
@@ -77,6 +79,7 @@ public class AstrixConfigurer {
 	private DynamicConfig customConfig = null;
 	private final DynamicConfig wellKnownConfigSources = DynamicConfig.create(new SystemPropertiesConfigSource(), settings, PropertiesConfigSource.optionalClasspathPropertiesFile(CLASSPATH_OVERRIDE_SETTINGS));
 	private final Set<String> activeProfiles = new HashSet<>();
+	private final Set<AstrixBeanKey<?>> consumedBeans = new LinkedHashSet<>();
 	private DynamicConfig config;
 	
 	/**
@@ -99,6 +102,9 @@ public class AstrixConfigurer {
 			log.debug("Registering standalone factory: bean={}", beanFactory.getBeanKey());
 			context.registerBeanFactory(beanFactory);
 		}
+		if (AstrixSettings.EAGER_BIND_CONSUMED_BEANS.getFrom(config).get() && !consumedBeans.isEmpty()) {
+			new EagerBeanBinder(context, injector.getBean(ServiceDiscoveryMetaFactory.class), config).bindAll(consumedBeans);
+		}
 		return context;
 	}
 	
@@ -178,10 +184,14 @@ public class AstrixConfigurer {
 			return astrixApiProviders;
 		}
 		String basePackage = AstrixSettings.API_PROVIDER_SCANNER_BASE_PACKAGE.getFrom(config).get();
+		AstrixApiProviderClassScanner scanner;
 		if (!basePackage.trim().isEmpty()) {
-			return new AstrixApiProviderClassScanner(getAllApiProviderAnnotationsTypes(astrixPlugins), "com.avanza.astrix", basePackage.split(",")); // Always scan com.avanza.astrix package
+			scanner = new AstrixApiProviderClassScanner(getAllApiProviderAnnotationsTypes(astrixPlugins), "com.avanza.astrix", basePackage.split(",")); // Always scan com.avanza.astrix package
+		} else {
+			scanner = new AstrixApiProviderClassScanner(getAllApiProviderAnnotationsTypes(astrixPlugins), "com.avanza.astrix");
 		}
-		return new AstrixApiProviderClassScanner(getAllApiProviderAnnotationsTypes(astrixPlugins), "com.avanza.astrix"); 
+		scanner.setUseIndex(AstrixSettings.API_PROVIDER_SCANNER_USE_INDEX.getFrom(config).get());
+		return scanner;
 	}
 	
 	private List<Class<? extends Annotation>> getAllApiProviderAnnotationsTypes(AstrixPlugins astrixPlugins) {
@@ -192,6 +202,21 @@ public class AstrixConfigurer {
 		return result;
 	}
 
+	/**
+	 * Declares beans consumed by the application. When {@link AstrixSettings#EAGER_BIND_CONSUMED_BEANS} is
+	 * enabled all consumed beans are created and bound concurrently when the AstrixContext is configured. Otherwise
+	 * each bean is created when first requested.<p>
+	 * 
+	 * @param beanTypes
+	 * @return
+	 */
+	public AstrixConfigurer addConsumedBeans(Collection<? extends Class<?>> beanTypes) {
+		for (Class<?> beanType : beanTypes) {
+			this.consumedBeans.add(AstrixBeanKey.create(beanType));
+		}
+		return this;
+	}
+	
 	/**
 	 * Sets the base-package used when scanning for {@link AstrixApiProvider}'s.<p> 
 	 * 
@@ -41,13 +41,7 @@ public class AstrixLibraryFactory<T> implements StandardFactoryBean<T> {
 
 	@Override
 	public T create(AstrixBeans beans) {
-		List<AstrixBeanKey<?>> beanDependencies = new ArrayList<>(factoryMethod.getParameterTypes().length);
-		for (int argumentIndex = 0; argumentIndex < factoryMethod.getParameterTypes().length; argumentIndex++) {
-			Class<?> parameterType = factoryMethod.getParameterTypes()[argumentIndex];
-			String parameterQualifier = getParameterQualifier(argumentIndex);
-			beanDependencies.add(AstrixBeanKey.create(parameterType, parameterQualifier));
-		}
-		
+		List<AstrixBeanKey<?>> beanDependencies = getDependencies();
 		Object[] args = new Object[factoryMethod.getParameterTypes().length];
 		for (int argumentIndex = 0; argumentIndex < factoryMethod.getParameterTypes().length; argumentIndex++) {
 			AstrixBeanKey<?> dep = beanDependencies.get(argumentIndex);
@@ -64,6 +58,19 @@ public class AstrixLibraryFactory<T> implements StandardFactoryBean<T> {
 		return beanKey.getBeanType().cast(result);
 	}
 
+	/**
+	 * @return the beans passed as arguments to the factory method, i.e. the direct dependencies of the library
+	 */
+	List<AstrixBeanKey<?>> getDependencies() {
+		List<AstrixBeanKey<?>> beanDependencies = new ArrayList<>(factoryMethod.getParameterTypes().length);
+		for (int argumentIndex = 0; argumentIndex < factoryMethod.getParameterTypes().length; argumentIndex++) {
+			Class<?> parameterType = factoryMethod.getParameterTypes()[argumentIndex];
+			String parameterQualifier = getParameterQualifier(argumentIndex);
+			beanDependencies.add(AstrixBeanKey.create(parameterType, parameterQualifier));
+		}
+		return beanDependencies;
+	}
+
 	private String getParameterQualifier(int argumentIndex) {
 		for (Annotation parameterAnnotation : factoryMethod.getParameterAnnotations()[argumentIndex]) {
 			if (parameterAnnotation instanceof AstrixQualifier) {
@@ -0,0 +1,233 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.context;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.avanza.astrix.beans.core.AstrixSettings;
+import com.avanza.astrix.beans.factory.AstrixBeanKey;
+import com.avanza.astrix.beans.factory.AstrixFactoryBeanRegistry;
+import com.avanza.astrix.beans.factory.MissingBeanProviderException;
+import com.avanza.astrix.beans.factory.StandardFactoryBean;
+import com.avanza.astrix.beans.service.ServiceDiscoveryMetaFactory;
+import com.avanza.astrix.config.DynamicConfig;
+import com.avanza.astrix.core.ServiceUnavailableException;
+import com.avanza.astrix.core.util.NamedThreadFactory;
+/**
+ * Creates and binds a set of beans concurrently, see {@link AstrixSettings#EAGER_BIND_CONSUMED_BEANS}. <p>
+ * 
+ * Each bean gets one bind attempt (the one performed when the bean is created). Beans that
+ * could not be bound are bound later by the service-lease-manager as usual.
+ */
+final class EagerBeanBinder {
+	
+	/*
+	 * IMPLEMENTATION NOTE:
+	 * 
+	 * Before creating the beans all beans are prefetched using the ServiceDiscoveryMetaFactory, which allows
+	 * discovery strategies that support bulk lookups (i.e. the service-registry) to discover all beans
+	 * using a single lookup, rather than one lookup per bean. Libraries are not discovered, hence
+	 * the beans consumed by a library (as declared by its factory method) are prefetched in place of 
+	 * the library itself. 
+	 * 
+	 * Bind attempts that do not complete before the timeout are left running in the background, rather
+	 * than interrupted, since interrupting a thread that is creating a bean might leave the bean in 
+	 * an unusable state.
+	 */
+	
+	private static final Logger log = LoggerFactory.getLogger(EagerBeanBinder.class);
+	private final AstrixContextImpl astrixContext;
+	private final ServiceDiscoveryMetaFactory serviceDiscoveryMetaFactory;
+	private final AstrixFactoryBeanRegistry beanFactoryRegistry;
+	private final DynamicConfig config;
+	
+	EagerBeanBinder(AstrixContextImpl astrixContext, ServiceDiscoveryMetaFactory serviceDiscoveryMetaFactory, DynamicConfig config) {
+		this.astrixContext = astrixContext;
+		this.beanFactoryRegistry = astrixContext.getInstance(AstrixFactoryBeanRegistry.class);
+		this.serviceDiscoveryMetaFactory = serviceDiscoveryMetaFactory;
+		this.config = config;
+	}
+	
+	/**
+	 * Creates and binds all given beans concurrently, and waits at most {@link AstrixSettings#EAGER_BIND_TIMEOUT}
+	 * for all beans to complete their bind attempt.
+	 * 
+	 * @param beanKeys
+	 * @return the bind result for each bean, in the same order as the given beans
+	 */
+	List<BeanBindResult> bindAll(Collection<? extends AstrixBeanKey<?>> beanKeys) {
+		long start = System.nanoTime();
+		prefetch(getDiscoveredBeans(beanKeys));
+		List<BindTask> bindTasks = new ArrayList<>(beanKeys.size());
+		for (AstrixBeanKey<?> beanKey : beanKeys) {
+			bindTasks.add(new BindTask(beanKey));
+		}
+		int threadCount = (int) Math.max(1, Math.min(AstrixSettings.EAGER_BIND_THREADS.getFrom(config).get(), bindTasks.size()));
+		ExecutorService executor = Executors.newFixedThreadPool(threadCount, new NamedThreadFactory("Astrix-EagerBind"));
+		for (BindTask bindTask : bindTasks) {
+			executor.submit(bindTask);
+		}
+		executor.shutdown();
+		try {
+			executor.awaitTermination(AstrixSettings.EAGER_BIND_TIMEOUT.getFrom(config).get(), TimeUnit.MILLISECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		long durationMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+		List<BeanBindResult> result = new ArrayList<>(bindTasks.size());
+		int boundCount = 0;
+		for (BindTask bindTask : bindTasks) {
+			BeanBindResult bindResult = bindTask.getResult(durationMillis);
+			if (!bindResult.isCompleted()) {
+				log.warn("Eager bind attempt did not complete before timeout. bean={} durationMillis={}", bindResult.getBeanKey(), bindResult.getDurationMillis());
+			} else {
+				log.info(String.format("Eager bind attempt completed. bean=%s bound=%s durationMillis=%s", bindResult.getBeanKey(), bindResult.isBound(), bindResult.getDurationMillis()));
+			}
+			if (bindResult.isBound()) {
+				boundCount++;
+			}
+			result.add(bindResult);
+		}
+		log.info(String.format("Eager bind completed. beanCount=%s boundCount=%s threadCount=%s durationMillis=%s", bindTasks.size(), boundCount, threadCount, durationMillis));
+		return result;
+	}
+
+	/**
+	 * Replaces each library among the given beans with the beans it consumes, transitively.
+	 */
+	private Set<AstrixBeanKey<?>> getDiscoveredBeans(Collection<? extends AstrixBeanKey<?>> beanKeys) {
+		Set<AstrixBeanKey<?>> result = new HashSet<>();
+		Set<AstrixBeanKey<?>> visited = new HashSet<>();
+		Queue<AstrixBeanKey<?>> remaining = new LinkedList<AstrixBeanKey<?>>(beanKeys);
+		while (!remaining.isEmpty()) {
+			AstrixBeanKey<?> beanKey = remaining.poll();
+			if (!visited.add(beanKey)) {
+				continue;
+			}
+			StandardFactoryBean<?> factoryBean;
+			try {
+				factoryBean = beanFactoryRegistry.getFactoryBean(beanFactoryRegistry.resolveBean(beanKey));
+			} catch (MissingBeanProviderException e) {
+				continue; // Reported when the bean is created
+			}
+			if (factoryBean instanceof AstrixLibraryFactory) {
+				remaining.addAll(AstrixLibraryFactory.class.cast(factoryBean).getDependencies());
+			} else {
+				result.add(beanKey);
+			}
+		}
+		return result;
+	}
+
+	private void prefetch(Collection<? extends AstrixBeanKey<?>> beanKeys) {
+		try {
+			serviceDiscoveryMetaFactory.prefetch(beanKeys);
+		} catch (Exception e) {
+			log.info("Failed to prefetch beans, each bean will be discovered individually", e);
+		}
+	}
+	
+	private class BindTask implements Callable<Void> {
+		
+		private final AstrixBeanKey<?> beanKey;
+		private volatile BeanBindResult result;
+		
+		public BindTask(AstrixBeanKey<?> beanKey) {
+			this.beanKey = beanKey;
+		}
+
+		@Override
+		public Void call() throws Exception {
+			long start = System.nanoTime();
+			boolean bound = false;
+			try {
+				// Creates the bean, and all its dependencies, if not created before
+				astrixContext.waitForBean(beanKey.getBeanType(), beanKey.getQualifier(), 0);
+				bound = true;
+			} catch (ServiceUnavailableException e) {
+				// Bean (or one of its dependencies) not bound
+			} catch (Exception e) {
+				log.warn("Failed to create bean: " + beanKey, e);
+			}
+			this.result = new BeanBindResult(beanKey, true, bound, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+			return null;
+		}
+		
+		private BeanBindResult getResult(long elapsedMillis) {
+			BeanBindResult result = this.result;
+			if (result == null) {
+				return new BeanBindResult(beanKey, false, false, elapsedMillis);
+			}
+			return result;
+		}
+	}
+	
+	static final class BeanBindResult {
+		
+		private final AstrixBeanKey<?> beanKey;
+		private final boolean completed;
+		private final boolean bound;
+		private final long durationMillis;
+		
+		BeanBindResult(AstrixBeanKey<?> beanKey, boolean completed, boolean bound, long durationMillis) {
+			this.beanKey = beanKey;
+			this.completed = completed;
+			this.bound = bound;
+			this.durationMillis = durationMillis;
+		}
+		
+		AstrixBeanKey<?> getBeanKey() {
+			return beanKey;
+		}
+		
+		/**
+		 * @return false if the bind attempt did not complete before the eager bind timeout
+		 */
+		boolean isCompleted() {
+			return completed;
+		}
+		
+		/**
+		 * @return true if the bean, and all its dependencies, were bound when the bind attempt completed
+		 */
+		boolean isBound() {
+			return bound;
+		}
+		
+		long getDurationMillis() {
+			return durationMillis;
+		}
+		
+		@Override
+		public String toString() {
+			return "BeanBindResult [beanKey=" + beanKey + ", completed=" + completed + ", bound=" + bound + ", durationMillis=" + durationMillis + "]";
+		}
+	}
+
+}
@@ -91,6 +91,10 @@ public class TestAstrixConfigurer {
 		standaloneFactories.add(factoryBean);
 	}
 
+	public void addConsumedBeans(Collection<? extends Class<?>> beanTypes) {
+		configurer.addConsumedBeans(beanTypes);
+	}
+	
 	public <T> void registerPlugin(Class<T> c, T provider) {
 		configurer.registerPlugin(c, provider);
 	}
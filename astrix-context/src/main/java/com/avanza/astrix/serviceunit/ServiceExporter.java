@@ -41,13 +41,15 @@ public class ServiceExporter {
 	private final ServiceRegistryExporter serviceRegistryExporter;
 	private final ConcurrentMap<Class<?>, Object> serviceProviderByType = new ConcurrentHashMap<>();
 	private final ServiceProviderPlugins serviceProviderPlugins;
+	private final ServiceProviderLoadMonitor serviceProviderLoadMonitor;
 	
 	
 	
-	public ServiceExporter(ServiceComponents serviceComponents, ServiceRegistryExporter serviceRegistryExporter, ServiceProviderPlugins serviceProviderPlugins) {
+	public ServiceExporter(ServiceComponents serviceComponents, ServiceRegistryExporter serviceRegistryExporter, ServiceProviderPlugins serviceProviderPlugins, ServiceProviderLoadMonitor serviceProviderLoadMonitor) {
 		this.serviceComponents = serviceComponents;
 		this.serviceRegistryExporter = serviceRegistryExporter;
 		this.serviceProviderPlugins = serviceProviderPlugins;
+		this.serviceProviderLoadMonitor = serviceProviderLoadMonitor;
 	}
 
 	public void addServiceProvider(Object bean) {
@@ -84,7 +86,7 @@ public class ServiceExporter {
 			ServiceComponent serviceComponent = getServiceComponent(serviceBeanDefintion);
 			Object provider = null;
 			if (serviceComponent.requiresProviderInstance()) {
-				provider = getProvider(serviceBeanDefintion);
+				provider = monitor(serviceBeanDefintion.getBeanType(), getProvider(serviceBeanDefintion));
 			}
 			exportService(serviceBeanDefintion.getBeanType(), provider, versioningContext, serviceComponent); 
 			if (serviceBeanDefintion.usesServiceRegistry()) {
@@ -105,6 +107,10 @@ public class ServiceExporter {
 		return provider;
 	}
 	
+	private <T> T monitor(Class<T> providedApi, Object provider) {
+		return serviceProviderLoadMonitor.monitor(providedApi, providedApi.cast(provider));
+	}
+	
 	private <T> void exportService(Class<T> providedApi, Object provider, ServiceDefinition versioningContext, ServiceComponent serviceComponent) {
 		serviceComponent.exportService(providedApi, providedApi.cast(provider), versioningContext);
 	}
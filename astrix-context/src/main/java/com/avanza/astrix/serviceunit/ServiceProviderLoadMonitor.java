@@ -0,0 +1,150 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.serviceunit;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+
+import com.avanza.astrix.beans.core.AstrixSettings;
+import com.avanza.astrix.beans.registry.ServiceProviderLoad;
+import com.avanza.astrix.config.DynamicBooleanProperty;
+import com.avanza.astrix.config.DynamicConfig;
+
+/**
+ * Server side component that keeps track of the load of all services exported by
+ * the current application. The load is published to the service registry with each 
+ * lease renewal, see {@link ServiceRegistryExporterWorker}. <p>
+ * 
+ * Load monitoring is disabled unless {@link AstrixSettings#SERVICE_PROVIDER_LOAD_PUBLISHING_ENABLED} is set, 
+ * in which case service providers are exported as is and no load is published.
+ */
+public class ServiceProviderLoadMonitor {
+	
+	/*
+	 * IMPLEMENTATION NOTE:
+	 * 
+	 * The latency percentile is calculated from a fixed size sample of the invocations since the 
+	 * last time the load was read, i.e. since the last lease renewal. For asynchronous services the
+	 * measured latency is the time until the service method returns, not the time until the returned
+	 * Future/Observable completes.
+	 */
+	
+	private static final int LATENCY_SAMPLE_SIZE = 1024;
+	
+	private final AtomicInteger inFlightRequests = new AtomicInteger();
+	private final AtomicReference<LatencySample> latencySample = new AtomicReference<>(new LatencySample());
+	private final OperatingSystemMXBean operatingSystem = ManagementFactory.getOperatingSystemMXBean();
+	private final DynamicBooleanProperty enabled;
+	
+	public ServiceProviderLoadMonitor(DynamicConfig config) {
+		this.enabled = AstrixSettings.SERVICE_PROVIDER_LOAD_PUBLISHING_ENABLED.getFrom(config);
+	}
+	
+	/**
+	 * Decorates a service provider with load monitoring, unless load monitoring is disabled.
+	 * 
+	 * @param providedApi
+	 * @param provider
+	 * @return the decorated provider, or the given provider if load monitoring is disabled
+	 */
+	public <T> T monitor(Class<T> providedApi, final T provider) {
+		if (!enabled.get()) {
+			return provider;
+		}
+		return providedApi.cast(Proxy.newProxyInstance(providedApi.getClassLoader(), new Class<?>[] { providedApi }, new InvocationHandler() {
+			@Override
+			public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+				if (method.getDeclaringClass().equals(Object.class)) {
+					return invokeProvider(provider, method, args);
+				}
+				inFlightRequests.incrementAndGet();
+				long start = System.nanoTime();
+				try {
+					return invokeProvider(provider, method, args);
+				} finally {
+					inFlightRequests.decrementAndGet();
+					latencySample.get().record(System.nanoTime() - start);
+				}
+			}
+		}));
+	}
+	
+	private static Object invokeProvider(Object provider, Method method, Object[] args) throws Throwable {
+		try {
+			return method.invoke(provider, args);
+		} catch (InvocationTargetException e) {
+			throw e.getTargetException();
+		}
+	}
+	
+	/**
+	 * Returns the current load and starts a new latency sample.
+	 * 
+	 * @return the current load, or null if load monitoring is disabled
+	 */
+	public ServiceProviderLoad getCurrentLoad() {
+		if (!enabled.get()) {
+			return null;
+		}
+		LatencySample sample = latencySample.getAndSet(new LatencySample());
+		return new ServiceProviderLoad(inFlightRequests.get(), getCpuLoad(), sample.getP99LatencyMillis());
+	}
+
+	private double getCpuLoad() {
+		double systemLoadAverage = operatingSystem.getSystemLoadAverage();
+		if (systemLoadAverage < 0) {
+			return -1; // Not available on this platform
+		}
+		return systemLoadAverage / operatingSystem.getAvailableProcessors();
+	}
+	
+	private static class LatencySample {
+		
+		private final AtomicLongArray latencyNanos = new AtomicLongArray(LATENCY_SAMPLE_SIZE);
+		private final AtomicInteger count = new AtomicInteger();
+		
+		void record(long nanos) {
+			int index = count.getAndIncrement();
+			if (index >= 0) {
+				latencyNanos.set(index % LATENCY_SAMPLE_SIZE, nanos);
+			}
+		}
+		
+		double getP99LatencyMillis() {
+			int size = Math.min(count.get(), LATENCY_SAMPLE_SIZE);
+			if (size <= 0) {
+				return -1; // No invocations in sample
+			}
+			long[] sorted = new long[size];
+			for (int i = 0; i < size; i++) {
+				sorted[i] = latencyNanos.get(i);
+			}
+			Arrays.sort(sorted);
+			int p99Index = (int) Math.ceil(size * 0.99) - 1;
+			return sorted[p99Index] / (double) TimeUnit.MILLISECONDS.toNanos(1);
+		}
+	}
+
+}
@@ -15,24 +15,30 @@
  */
 package com.avanza.astrix.serviceunit;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.CopyOnWriteArrayList;
 
 import javax.annotation.PreDestroy;
+import javax.management.ObjectName;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.avanza.astrix.beans.core.AstrixMBeanExporter;
 import com.avanza.astrix.beans.core.AstrixSettings;
 import com.avanza.astrix.beans.factory.AstrixBeanKey;
 import com.avanza.astrix.beans.publish.AstrixPublishedBeans;
 import com.avanza.astrix.beans.publish.AstrixPublishedBeansAware;
 import com.avanza.astrix.beans.registry.AstrixServiceRegistry;
 import com.avanza.astrix.beans.registry.ServiceRegistryExporterClient;
+import com.avanza.astrix.beans.service.LeaseRenewalMetrics;
+import com.avanza.astrix.beans.service.LeaseRenewalMetricsMXBean;
 import com.avanza.astrix.beans.service.ServiceProperties;
 import com.avanza.astrix.config.DynamicConfig;
 import com.avanza.astrix.config.DynamicLongProperty;
 import com.avanza.astrix.core.ServiceUnavailableException;
+import com.avanza.astrix.core.util.Intervals;
 /**
  * The service registry worker is a server-side component responsible for continuously publishing 
  * all exported services from the current application onto the service registry.
@@ -48,14 +54,22 @@ public class ServiceRegistryExporterWorker extends Thread implements AstrixPubli
 	private final DynamicLongProperty exportIntervallMillis;		  
 	private final DynamicLongProperty serviceLeaseTimeMillis;
 	private final DynamicLongProperty retryIntervallMillis;
+	private final DynamicLongProperty maxRetryIntervalMillis;
+	private final DynamicLongProperty exportJitterPercent;
 	private final DynamicConfig config;
 	private final Timer timer = new Timer();
+	private final ServiceProviderLoadMonitor serviceProviderLoadMonitor;
+	private final LeaseRenewalMetrics exportMetrics = new LeaseRenewalMetrics();
+	private volatile ObjectName exportMetricsName;
 
-	public ServiceRegistryExporterWorker(DynamicConfig config) {
+	public ServiceRegistryExporterWorker(DynamicConfig config, ServiceProviderLoadMonitor serviceProviderLoadMonitor) {
 		this.config = config;
+		this.serviceProviderLoadMonitor = serviceProviderLoadMonitor;
 		this.exportIntervallMillis = AstrixSettings.SERVICE_REGISTRY_EXPORT_INTERVAL.getFrom(config);
 		this.retryIntervallMillis = AstrixSettings.SERVICE_REGISTRY_EXPORT_RETRY_INTERVAL.getFrom(config);
 		this.serviceLeaseTimeMillis = AstrixSettings.SERVICE_REGISTRY_LEASE.getFrom(config);
+		this.maxRetryIntervalMillis = AstrixSettings.SERVICE_REGISTRY_EXPORT_MAX_RETRY_INTERVAL.getFrom(config);
+		this.exportJitterPercent = AstrixSettings.SERVICE_REGISTRY_EXPORT_JITTER.getFrom(config);
 	}
 	
 	public void startServiceExporter() {
@@ -63,12 +77,18 @@ public class ServiceRegistryExporterWorker extends Thread implements AstrixPubli
 			log.info("No ServiceExporters configured. No services will be published to service registry");
 			return;
 		}
+		this.exportMetricsName = AstrixMBeanExporter.register(exportMetrics, "ServiceRegistryExporterWorker", AstrixSettings.SUBSYSTEM_NAME.getFrom(config).get());
 		start();
 	}
 	
 	@PreDestroy
 	public void destroy() {
 		interrupt();
+		AstrixMBeanExporter.unregister(exportMetricsName);
+	}
+	
+	public LeaseRenewalMetricsMXBean getExportMetrics() {
+		return exportMetrics;
 	}
 	
 	public void triggerServiceExport() {
@@ -77,15 +97,21 @@ public class ServiceRegistryExporterWorker extends Thread implements AstrixPubli
 	
 	@Override
 	public void run() {
+		int consecutiveFailures = 0;
 		while (!interrupted()) {
-			long sleepTimeUntilNextAttempt = this.exportIntervallMillis.get();
+			long sleepTimeUntilNextAttempt = Intervals.jitter(this.exportIntervallMillis.get(), this.exportJitterPercent.get());
+			long start = System.nanoTime();
 			try {
 				exportProvidedServcies();
+				consecutiveFailures = 0;
+				exportMetrics.renewed(System.nanoTime() - start);
 			} catch (ServiceUnavailableException e) {
 				// Not bound to service registry
-				sleepTimeUntilNextAttempt = this.retryIntervallMillis.get();
+				exportMetrics.renewalFailed(System.nanoTime() - start);
+				sleepTimeUntilNextAttempt = getRetryInterval(consecutiveFailures++);
 				log.info(String.format("Failed to export services to registry. Sleeping %s millis until next attempt.", sleepTimeUntilNextAttempt), e);
 			} catch (Exception e) {
+				exportMetrics.renewalFailed(System.nanoTime() - start);
 				log.info(String.format("Failed to export services to registry. Sleeping %s millis until next attempt.", sleepTimeUntilNextAttempt), e);
 			} 
 			try {
@@ -97,10 +123,18 @@ public class ServiceRegistryExporterWorker extends Thread implements AstrixPubli
 		log.info("ServiceRegistryExporterWorker is interrupted, won't publish to service registry anymore.");
 	}
 
+	private long getRetryInterval(int consecutiveFailures) {
+		long retryInterval = Intervals.exponentialBackoff(this.retryIntervallMillis.get(), consecutiveFailures, this.maxRetryIntervalMillis.get());
+		return Intervals.jitter(retryInterval, this.exportJitterPercent.get());
+	}
+
 	private void exportProvidedServcies() {
+		List<ServiceProperties> exportedServiceProperties = new ArrayList<>(exportedServices.size());
 		for (ServiceRegistryExportedService exportedService : exportedServices) {
-			ServiceProperties serviceProperties = exportedService.exportServiceProperties();
-			serviceRegistryProviderClient.register(serviceProperties.getApi(), serviceProperties, serviceLeaseTimeMillis.get());
+			exportedServiceProperties.add(exportedService.exportServiceProperties());
+		}
+		serviceRegistryProviderClient.registerAll(exportedServiceProperties, serviceLeaseTimeMillis.get(), serviceProviderLoadMonitor.getCurrentLoad());
+		for (ServiceProperties serviceProperties : exportedServiceProperties) {
 			log.debug("Exported to service registry. service={} properties={}", serviceProperties.getApi().getName(), serviceProperties);
 		}
 	}
@@ -15,24 +15,39 @@
  */
 package com.avanza.astrix.beans.registry;
 
+import static org.hamcrest.Matchers.equalTo;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 
 import org.junit.Test;
 
 import com.avanza.astrix.beans.core.AstrixSettings;
 import com.avanza.astrix.beans.factory.AstrixBeanKey;
+import com.avanza.astrix.beans.service.AstrixVersioningPlugin;
 import com.avanza.astrix.beans.service.DirectComponent;
+import com.avanza.astrix.beans.service.ObjectSerializerDefinition;
+import com.avanza.astrix.beans.service.ServiceConsumerProperties;
 import com.avanza.astrix.beans.service.ServiceProperties;
+import com.avanza.astrix.config.DynamicConfig;
+import com.avanza.astrix.config.MapConfigSource;
+import com.avanza.astrix.context.AstrixApplicationContext;
 import com.avanza.astrix.context.AstrixContext;
 import com.avanza.astrix.context.TestAstrixConfigurer;
+import com.avanza.astrix.core.AstrixObjectSerializer;
+import com.avanza.astrix.core.CorrelationId;
+import com.avanza.astrix.core.RemoteServiceInvocationException;
 import com.avanza.astrix.core.ServiceUnavailableException;
+import com.avanza.astrix.core.function.Supplier;
 import com.avanza.astrix.provider.core.AstrixApiProvider;
 import com.avanza.astrix.provider.core.Service;
 import com.avanza.astrix.test.util.AstrixTestUtil;
+import com.avanza.astrix.test.util.Poller;
 
 public class AstrixServiceRegistryTest {
 	
@@ -159,6 +174,136 @@ public class AstrixServiceRegistryTest {
 		
 	}
 	
+	@Test
+	public void rebindsToChangedProviderWithoutWaitingForLeaseRenewalWhenWatchingServiceRegistry() throws Exception {
+		InMemoryServiceRegistry serviceRegistry = new InMemoryServiceRegistry();
+		
+		TestAstrixConfigurer astrixConfigurer = new TestAstrixConfigurer();
+		astrixConfigurer.set(AstrixSettings.SERVICE_REGISTRY_URI, serviceRegistry.getServiceUri());
+		astrixConfigurer.set(AstrixSettings.SERVICE_LEASE_RENEW_INTERVAL, 3_600_000L);
+		astrixConfigurer.set(AstrixSettings.SERVICE_REGISTRY_WATCH_INTERVAL, 10L);
+		astrixConfigurer.registerApiProvider(PingApiProvider.class);
+		clientContext = astrixConfigurer.configure();
+		
+		ServiceRegistryExporterClient server1serviceRegistryClient = new ServiceRegistryExporterClient(serviceRegistry, "default", "server-1");
+		server1serviceRegistryClient.register(Ping.class, DirectComponent.registerAndGetProperties(Ping.class, new PingImpl("1")), Integer.MAX_VALUE);
+		
+		final Ping ping = clientContext.getBean(Ping.class);
+		assertEquals("1", ping.ping());
+		
+		server1serviceRegistryClient.register(Ping.class, DirectComponent.registerAndGetProperties(Ping.class, new PingImpl("2")), Integer.MAX_VALUE);
+		new Poller(5_000, 10).check(AstrixTestUtil.serviceInvocationResult(new Supplier<String>() {
+			@Override
+			public String get() {
+				return ping.ping();
+			}
+		}, equalTo("2")));
+	}
+	
+	@Test
+	public void rebindsToChangedProviderWhenServiceRegistryClientCachesEntries() throws Exception {
+		InMemoryServiceRegistry serviceRegistry = new InMemoryServiceRegistry();
+		
+		TestAstrixConfigurer astrixConfigurer = new TestAstrixConfigurer();
+		astrixConfigurer.set(AstrixSettings.SERVICE_REGISTRY_URI, serviceRegistry.getServiceUri());
+		astrixConfigurer.set(AstrixSettings.SERVICE_LEASE_RENEW_INTERVAL, 3_600_000L);
+		astrixConfigurer.set(AstrixSettings.SERVICE_REGISTRY_WATCH_INTERVAL, 10L);
+		astrixConfigurer.set(AstrixSettings.SERVICE_REGISTRY_CACHE_TTL, 3_600_000L);
+		astrixConfigurer.registerApiProvider(PingApiProvider.class);
+		clientContext = astrixConfigurer.configure();
+		
+		ServiceRegistryExporterClient server1serviceRegistryClient = new ServiceRegistryExporterClient(serviceRegistry, "default", "server-1");
+		server1serviceRegistryClient.register(Ping.class, DirectComponent.registerAndGetProperties(Ping.class, new PingImpl("1")), Integer.MAX_VALUE);
+		
+		final Ping ping = clientContext.getBean(Ping.class);
+		assertEquals("1", ping.ping());
+		
+		server1serviceRegistryClient.register(Ping.class, DirectComponent.registerAndGetProperties(Ping.class, new PingImpl("2")), Integer.MAX_VALUE);
+		new Poller(5_000, 10).check(AstrixTestUtil.serviceInvocationResult(new Supplier<String>() {
+			@Override
+			public String get() {
+				return ping.ping();
+			}
+		}, equalTo("2")));
+	}
+	
+	@Test
+	public void refreshBypassesServiceRegistryClientCache() throws Exception {
+		InMemoryServiceRegistry serviceRegistry = new InMemoryServiceRegistry();
+		ServiceRegistryExporterClient exporterClient = new ServiceRegistryExporterClient(serviceRegistry, "default", "server-1");
+		exporterClient.register(Ping.class, DirectComponent.registerAndGetProperties(Ping.class, new PingImpl("1")), Integer.MAX_VALUE);
+		MapConfigSource config = new MapConfigSource();
+		config.set(AstrixSettings.SERVICE_REGISTRY_CACHE_TTL, 3_600_000L);
+		ServiceRegistryClient serviceRegistryClient = new ServiceRegistryClient(serviceRegistry, new ServiceConsumerProperties(), new DynamicConfig(config));
+		ServiceProperties cached = serviceRegistryClient.lookup(AstrixBeanKey.create(Ping.class));
+		
+		ServiceProperties changed = DirectComponent.registerAndGetProperties(Ping.class, new PingImpl("2"));
+		exporterClient.register(Ping.class, changed, Integer.MAX_VALUE);
+		
+		assertEquals(cached, serviceRegistryClient.lookup(AstrixBeanKey.create(Ping.class)));
+		assertEquals(changed, serviceRegistryClient.refresh(AstrixBeanKey.create(Ping.class)));
+		assertEquals(changed, serviceRegistryClient.lookup(AstrixBeanKey.create(Ping.class)));
+	}
+	
+	@Test
+	public void lookupAllReturnsServicePropertiesForEachServiceWithAnAvailableProvider() throws Exception {
+		InMemoryServiceRegistry serviceRegistry = new InMemoryServiceRegistry();
+		ServiceRegistryExporterClient exporterClient = new ServiceRegistryExporterClient(serviceRegistry, "default", "server-1");
+		ServiceProperties pingProperties = DirectComponent.registerAndGetProperties(Ping.class, new PingImpl("1"));
+		ServiceProperties qualifiedPingProperties = DirectComponent.registerAndGetProperties(Ping.class, new PingImpl("2"));
+		qualifiedPingProperties.setQualifier("my-qualifier");
+		exporterClient.registerAll(Arrays.asList(pingProperties, qualifiedPingProperties), Integer.MAX_VALUE);
+		
+		ServiceRegistryClient serviceRegistryClient = new ServiceRegistryClient(serviceRegistry, new ServiceConsumerProperties());
+		Map<AstrixBeanKey<?>, ServiceProperties> result = serviceRegistryClient.lookupAll(Arrays.asList(AstrixBeanKey.create(Ping.class), 
+																									 AstrixBeanKey.create(Ping.class, "my-qualifier"), 
+																									 AstrixBeanKey.create(Ping.class, "unavailable-qualifier")));
+		assertEquals(2, result.size());
+		assertEquals(pingProperties, result.get(AstrixBeanKey.create(Ping.class)));
+		assertEquals("my-qualifier", result.get(AstrixBeanKey.create(Ping.class, "my-qualifier")).getQualifier());
+	}
+	
+	@Test
+	public void fallsBackToIndividualLookupsAndRegistrationsWhenServiceRegistryDoesNotSupportBulkOperations() throws Exception {
+		final RemoteServiceInvocationException missingServiceMethod = 
+				new RemoteServiceInvocationException("Missing service method", "com.avanza.astrix.remoting.client.MissingServiceMethodException", CorrelationId.undefined());
+		InMemoryServiceRegistry serviceRegistry = new InMemoryServiceRegistry() {
+			@Override
+			public List<AstrixServiceRegistryEntry> lookupAll(List<ServiceKey> serviceKeys, ServiceConsumerProperties consumerProperties) {
+				throw missingServiceMethod;
+			}
+			@Override
+			public void registerAll(List<AstrixServiceRegistryEntry> entries, long lease) {
+				throw missingServiceMethod;
+			}
+		};
+		ServiceRegistryExporterClient exporterClient = new ServiceRegistryExporterClient(serviceRegistry, "default", "server-1");
+		exporterClient.registerAll(Arrays.asList(DirectComponent.registerAndGetProperties(Ping.class, new PingImpl("1"))), Integer.MAX_VALUE);
+		
+		ServiceRegistryClient serviceRegistryClient = new ServiceRegistryClient(serviceRegistry, new ServiceConsumerProperties());
+		Map<AstrixBeanKey<?>, ServiceProperties> result = serviceRegistryClient.lookupAll(Arrays.asList(AstrixBeanKey.create(Ping.class)));
+		assertEquals(1, result.size());
+	}
+	
+	@Test
+	public void serviceRegistryChangesAreSerializable() throws Exception {
+		AstrixApplicationContext context = (AstrixApplicationContext) new TestAstrixConfigurer().enableVersioning(true).configure();
+		AstrixVersioningPlugin versioningPlugin = context.getPlugin(AstrixVersioningPlugin.class);
+		AstrixObjectSerializer objectSerializer = versioningPlugin.create(ObjectSerializerDefinition.versionedService(2, ServiceRegistryObjectSerializerConfigurer.class));
+		
+		ServiceRegistryChanges changes = new ServiceRegistryChanges();
+		changes.setRegistryInstanceId("registry-1");
+		changes.setRevision(21);
+		changes.setComplete(true);
+		changes.getChangedServices().add(new ServiceKey(Ping.class.getName(), "my-qualifier"));
+		
+		ServiceRegistryChanges deserialized = objectSerializer.deserialize(objectSerializer.serialize(changes, 2), ServiceRegistryChanges.class, 2);
+		assertEquals("registry-1", deserialized.getRegistryInstanceId());
+		assertEquals(21, deserialized.getRevision());
+		assertTrue(deserialized.isComplete());
+		assertEquals(Arrays.asList(new ServiceKey(Ping.class.getName(), "my-qualifier")), deserialized.getChangedServices());
+	}
+	
 	@AstrixApiProvider
 	public interface PingApiProvider {
 		@Service
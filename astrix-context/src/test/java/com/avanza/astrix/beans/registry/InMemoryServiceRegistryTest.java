@@ -17,9 +17,14 @@ package com.avanza.astrix.beans.registry;
 
 import static org.junit.Assert.*;
 
+import java.util.HashMap;
+import java.util.Map;
+
 import org.junit.Test;
 
 import com.avanza.astrix.beans.core.AstrixSettings;
+import com.avanza.astrix.beans.service.ServiceConsumerProperties;
+import com.avanza.astrix.beans.service.ServiceProperties;
 import com.avanza.astrix.context.AstrixContext;
 import com.avanza.astrix.context.TestAstrixConfigurer;
 import com.avanza.astrix.provider.core.AstrixApiProvider;
@@ -44,6 +49,38 @@ public class InMemoryServiceRegistryTest {
 		assertEquals("foo", ping.ping("foo"));
 	}
 	
+	@Test
+	public void lookupOnlyReturnsRegisteredProvidersForRequestedService() throws Exception {
+		InMemoryServiceRegistry registry = new InMemoryServiceRegistry();
+		AstrixServiceRegistryEntry pingProvider = createEntry(Ping.class.getName(), "ping-1");
+		AstrixServiceRegistryEntry otherPingProvider = createEntry(Ping.class.getName(), "ping-2");
+		AstrixServiceRegistryEntry pongProvider = createEntry("Pong", "pong-1");
+		registry.register(pingProvider, 60_000);
+		registry.register(otherPingProvider, 60_000);
+		registry.register(pongProvider, 60_000);
+		
+		assertEquals(2, registry.listServices(Ping.class.getName(), null).size());
+		
+		registry.deregister(pingProvider);
+		assertEquals(1, registry.listServices(Ping.class.getName(), null).size());
+		assertEquals("ping-2", registry.lookup(Ping.class.getName(), null, new ServiceConsumerProperties()).getServiceProperties().get(ServiceProperties.APPLICATION_INSTANCE_ID));
+		
+		registry.deregister(otherPingProvider);
+		assertNull(registry.lookup(Ping.class.getName(), null, new ServiceConsumerProperties()));
+		assertEquals(1, registry.listServices("Pong", null).size());
+	}
+	
+	private static AstrixServiceRegistryEntry createEntry(String api, String applicationInstanceId) {
+		Map<String, String> properties = new HashMap<>();
+		properties.put(ServiceProperties.API, api);
+		properties.put(ServiceProperties.APPLICATION_INSTANCE_ID, applicationInstanceId);
+		properties.put(ServiceProperties.PUBLISHED, "true");
+		AstrixServiceRegistryEntry entry = new AstrixServiceRegistryEntry();
+		entry.setServiceBeanType(api);
+		entry.setServiceProperties(properties);
+		return entry;
+	}
+	
 	public interface Ping {
 		String ping(String msg);
 	}
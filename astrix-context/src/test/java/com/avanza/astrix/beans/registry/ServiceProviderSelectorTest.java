@@ -0,0 +1,115 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.beans.registry;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.avanza.astrix.beans.service.ServiceConsumerProperties;
+import com.avanza.astrix.beans.service.ServiceProperties;
+
+public class ServiceProviderSelectorTest {
+	
+	private final AstrixServiceRegistryEntry idleProvider = createEntry(new ServiceProviderLoad(0, 0.1, 1));
+	private final AstrixServiceRegistryEntry busyProvider = createEntry(new ServiceProviderLoad(2, 0.5, 5));
+	private final AstrixServiceRegistryEntry degradedProvider = createEntry(new ServiceProviderLoad(20, 0.9, 500));
+	
+	@Test
+	public void roundRobinDistributesSelectionsEvenly() throws Exception {
+		List<AstrixServiceRegistryEntry> candidates = Arrays.asList(idleProvider, degradedProvider);
+		RoundRobinServiceProviderSelector selector = new RoundRobinServiceProviderSelector();
+		
+		assertNotSame(selector.select(candidates), selector.select(candidates));
+	}
+	
+	@Test
+	public void powerOfTwoChoicesNeverSelectsTheMostLoadedProvider() throws Exception {
+		List<AstrixServiceRegistryEntry> candidates = Arrays.asList(idleProvider, busyProvider, degradedProvider);
+		PowerOfTwoChoicesServiceProviderSelector selector = new PowerOfTwoChoicesServiceProviderSelector();
+		
+		for (int i = 0; i < 1000; i++) {
+			assertNotSame(degradedProvider, selector.select(candidates));
+		}
+	}
+	
+	@Test
+	public void weightedSelectorRarelySelectsDegradedProvider() throws Exception {
+		List<AstrixServiceRegistryEntry> candidates = Arrays.asList(idleProvider, degradedProvider);
+		WeightedServiceProviderSelector selector = new WeightedServiceProviderSelector();
+		
+		int degradedSelections = 0;
+		for (int i = 0; i < 10_000; i++) {
+			if (selector.select(candidates) == degradedProvider) {
+				degradedSelections++;
+			}
+		}
+		assertTrue("Expected degraded provider to receive less than 1% of selections, was: " + degradedSelections, degradedSelections < 100);
+	}
+	
+	@Test
+	public void providersNotPublishingLoadAreAssignedAverageCost() throws Exception {
+		AstrixServiceRegistryEntry providerWithoutLoad = createEntry(null);
+		double idleCost = new ServiceProviderLoad(0, 0.1, 1).getCost();
+		double busyCost = new ServiceProviderLoad(2, 0.5, 5).getCost();
+		
+		double[] costs = ServiceProviderLoad.estimateCosts(Arrays.asList(idleProvider, busyProvider, providerWithoutLoad));
+		
+		assertArrayEquals(new double[] { idleCost, busyCost, (idleCost + busyCost) / 2 }, costs, 0.0001);
+	}
+	
+	@Test
+	public void serviceRegistrySelectsProviderBasedOnLoadPublishedByExporter() throws Exception {
+		InMemoryServiceRegistry serviceRegistry = new InMemoryServiceRegistry(new PowerOfTwoChoicesServiceProviderSelector());
+		new ServiceRegistryExporterClient(serviceRegistry, "subsystem", "degraded-instance")
+				.registerAll(Collections.singletonList(createServiceProperties()), 60_000, new ServiceProviderLoad(20, 0.9, 500));
+		new ServiceRegistryExporterClient(serviceRegistry, "subsystem", "idle-instance")
+				.registerAll(Collections.singletonList(createServiceProperties()), 60_000, new ServiceProviderLoad(0, 0.1, 1));
+		
+		for (int i = 0; i < 10; i++) {
+			AstrixServiceRegistryEntry selected = serviceRegistry.lookup(Ping.class.getName(), null, new ServiceConsumerProperties());
+			assertEquals("idle-instance", selected.getServiceProperties().get(ServiceProperties.APPLICATION_INSTANCE_ID));
+		}
+	}
+
+	private static ServiceProperties createServiceProperties() {
+		ServiceProperties serviceProperties = new ServiceProperties();
+		serviceProperties.setApi(Ping.class);
+		serviceProperties.setProperty(ServiceProperties.PUBLISHED, "true");
+		return serviceProperties;
+	}
+	
+	private static AstrixServiceRegistryEntry createEntry(ServiceProviderLoad load) {
+		AstrixServiceRegistryEntry entry = new AstrixServiceRegistryEntry();
+		entry.setServiceBeanType(Ping.class.getName());
+		if (load != null) {
+			load.writeTo(entry.getServiceMetadata());
+		}
+		return entry;
+	}
+	
+	public interface Ping {
+		String ping(String msg);
+	}
+
+}
@@ -0,0 +1,171 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.beans.registry;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.avanza.astrix.beans.core.AstrixSettings;
+import com.avanza.astrix.beans.service.ServiceProperties;
+import com.avanza.astrix.config.DynamicConfig;
+import com.avanza.astrix.config.MapConfigSource;
+import com.avanza.astrix.core.ServiceUnavailableException;
+
+public class ServiceRegistryCacheTest {
+	
+	private static final ServiceKey PING = new ServiceKey("com.foo.Ping");
+	
+	@Rule
+	public TemporaryFolder tmpFolder = new TemporaryFolder();
+	
+	private final MapConfigSource settings = new MapConfigSource();
+	private ServiceRegistryCache cache;
+	
+	@Test
+	public void servesStaleEntryWhenServiceRegistryFailsToRevalidate() throws Exception {
+		cache = new ServiceRegistryCache(new DynamicConfig(settings));
+		assertEquals("1", cache.get(PING, lookupReturning("1")).getProperty("id"));
+		
+		assertEquals("1", cache.get(PING, failingLookup()).getProperty("id"));
+		assertEquals(1, cache.getStaleHitCount());
+		assertEquals(1, cache.getRevalidationFailureCount());
+		
+		assertEquals("2", cache.get(PING, lookupReturning("2")).getProperty("id"));
+	}
+	
+	@Test
+	public void revalidatesExpiredEntryOnCallingThread() throws Exception {
+		cache = new ServiceRegistryCache(new DynamicConfig(settings));
+		cache.get(PING, lookupReturning("1"));
+		
+		final Thread callingThread = Thread.currentThread();
+		ServiceProperties result = cache.get(PING, new Callable<ServiceProperties>() {
+			@Override
+			public ServiceProperties call() throws Exception {
+				assertSame(callingThread, Thread.currentThread());
+				return properties("2");
+			}
+		});
+		
+		assertEquals("2", result.getProperty("id"));
+		assertEquals(0, cache.getStaleHitCount());
+	}
+	
+	@Test
+	public void refreshBypassesTtl() throws Exception {
+		settings.set(AstrixSettings.SERVICE_REGISTRY_CACHE_TTL, 60_000);
+		cache = new ServiceRegistryCache(new DynamicConfig(settings));
+		cache.get(PING, lookupReturning("1"));
+		
+		assertEquals("2", cache.refresh(PING, lookupReturning("2")).getProperty("id"));
+		assertEquals("2", cache.get(PING, lookupReturning("3")).getProperty("id"));
+		assertEquals("2", cache.refresh(PING, failingLookup()).getProperty("id"));
+		assertEquals(1, cache.getStaleHitCount());
+	}
+	
+	@Test
+	public void servesCachedEntryWithoutRevalidationWithinTtl() throws Exception {
+		settings.set(AstrixSettings.SERVICE_REGISTRY_CACHE_TTL, 60_000);
+		cache = new ServiceRegistryCache(new DynamicConfig(settings));
+		AtomicInteger lookupCount = new AtomicInteger();
+		cache.get(PING, countingLookup(lookupCount));
+		cache.get(PING, countingLookup(lookupCount));
+		
+		assertEquals(1, lookupCount.get());
+	}
+	
+	@Test
+	public void doesNotServeEntriesOlderThanMaxStaleness() throws Exception {
+		settings.set(AstrixSettings.SERVICE_REGISTRY_CACHE_MAX_STALENESS, 0);
+		cache = new ServiceRegistryCache(new DynamicConfig(settings));
+		cache.get(PING, lookupReturning("1"));
+		Thread.sleep(2);
+		
+		try {
+			cache.get(PING, failingLookup());
+			fail("Expected lookup to fail");
+		} catch (ServiceUnavailableException e) {
+			// Expected
+		}
+	}
+	
+	@Test
+	public void removesEntryWhenNoProviderIsFound() throws Exception {
+		cache = new ServiceRegistryCache(new DynamicConfig(settings));
+		cache.get(PING, lookupReturning("1"));
+		cache.update(PING, null);
+		
+		assertEquals(0, cache.getCachedServiceCount());
+		assertNull(cache.get(PING, lookupReturning(null)));
+	}
+	
+	@Test
+	public void populatesCacheFromSnapshotOnStartup() throws Exception {
+		File snapshotFile = new File(tmpFolder.getRoot(), "registry-snapshot");
+		settings.set(AstrixSettings.SERVICE_REGISTRY_CACHE_SNAPSHOT_FILE, snapshotFile.getAbsolutePath());
+		ServiceRegistryCache firstCache = new ServiceRegistryCache(new DynamicConfig(settings));
+		firstCache.get(PING, lookupReturning("1"));
+		
+		cache = new ServiceRegistryCache(new DynamicConfig(settings));
+		assertEquals(1, cache.getCachedServiceCount());
+		assertEquals("1", cache.get(PING, failingLookup()).getProperty("id"));
+	}
+	
+	private static Callable<ServiceProperties> lookupReturning(final String id) {
+		return new Callable<ServiceProperties>() {
+			@Override
+			public ServiceProperties call() throws Exception {
+				return id != null ? properties(id) : null;
+			}
+		};
+	}
+	
+	private static Callable<ServiceProperties> countingLookup(final AtomicInteger lookupCount) {
+		return new Callable<ServiceProperties>() {
+			@Override
+			public ServiceProperties call() throws Exception {
+				lookupCount.incrementAndGet();
+				return properties("1");
+			}
+		};
+	}
+	
+	private static Callable<ServiceProperties> failingLookup() {
+		return new Callable<ServiceProperties>() {
+			@Override
+			public ServiceProperties call() throws Exception {
+				throw new ServiceUnavailableException("Service registry not available");
+			}
+		};
+	}
+	
+	private static ServiceProperties properties(String id) {
+		ServiceProperties result = new ServiceProperties();
+		result.setProperty("id", id);
+		return result;
+	}
+
+}
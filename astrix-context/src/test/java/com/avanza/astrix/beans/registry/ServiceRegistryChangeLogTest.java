@@ -0,0 +1,102 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.beans.registry;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+public class ServiceRegistryChangeLogTest {
+	
+	private static final ServiceKey PING = new ServiceKey("com.foo.Ping");
+	private static final ServiceKey PONG = new ServiceKey("com.foo.Pong");
+	
+	ServiceRegistryChangeLog changeLog = new ServiceRegistryChangeLog(3);
+	
+	@Test
+	public void unknownRevisionYieldsIncompleteChanges() throws Exception {
+		changeLog.registered(ServiceProviderKey.create(PING, "server-1"), properties("server-1"), 60_000);
+		
+		ServiceRegistryChanges changes = changeLog.changesSince(null);
+		assertFalse(changes.isComplete());
+		assertEquals(1, changes.getRevision());
+		assertEquals(changeLog.getRegistryInstanceId(), changes.getRegistryInstanceId());
+	}
+	
+	@Test
+	public void returnsServicesChangedSinceGivenRevision() throws Exception {
+		changeLog.registered(ServiceProviderKey.create(PING, "server-1"), properties("server-1"), 60_000);
+		long revision = changeLog.changesSince(null).getRevision();
+		
+		changeLog.registered(ServiceProviderKey.create(PONG, "server-1"), properties("server-1"), 60_000);
+		changeLog.deregistered(ServiceProviderKey.create(PONG, "server-1"));
+		
+		ServiceRegistryChanges changes = changeLog.changesSince(revision);
+		assertTrue(changes.isComplete());
+		assertEquals(Arrays.asList(PONG), changes.getChangedServices());
+		assertEquals(Collections.emptyList(), changeLog.changesSince(changes.getRevision()).getChangedServices());
+	}
+	
+	@Test
+	public void renewedRegistrationWithUnchangedPropertiesIsNotAChange() throws Exception {
+		changeLog.registered(ServiceProviderKey.create(PING, "server-1"), properties("server-1"), 60_000);
+		long revision = changeLog.changesSince(null).getRevision();
+		
+		changeLog.registered(ServiceProviderKey.create(PING, "server-1"), properties("server-1"), 60_000);
+		assertEquals(revision, changeLog.changesSince(revision).getRevision());
+		
+		Map<String, String> changedProperties = properties("server-1");
+		changedProperties.put("foo", "bar");
+		changeLog.registered(ServiceProviderKey.create(PING, "server-1"), changedProperties, 60_000);
+		assertEquals(Arrays.asList(PING), changeLog.changesSince(revision).getChangedServices());
+	}
+	
+	@Test
+	public void expiredLeaseIsAChange() throws Exception {
+		changeLog.registered(ServiceProviderKey.create(PING, "server-1"), properties("server-1"), 50);
+		long revision = changeLog.changesSince(null).getRevision();
+		
+		Thread.sleep(100);
+		
+		ServiceRegistryChanges changes = changeLog.changesSince(revision);
+		assertTrue(changes.isComplete());
+		assertEquals(Arrays.asList(PING), changes.getChangedServices());
+	}
+	
+	@Test
+	public void changesNoLongerRetainedYieldsIncompleteChanges() throws Exception {
+		long revision = changeLog.changesSince(null).getRevision();
+		for (int i = 0; i < 4; i++) {
+			changeLog.registered(ServiceProviderKey.create(PING, "server-" + i), properties("server-" + i), 60_000);
+		}
+		assertFalse(changeLog.changesSince(revision).isComplete());
+		assertTrue(changeLog.changesSince(revision + 1).isComplete());
+	}
+	
+	private static Map<String, String> properties(String applicationInstanceId) {
+		Map<String, String> result = new HashMap<>();
+		result.put("applicationInstanceId", applicationInstanceId);
+		return result;
+	}
+
+}
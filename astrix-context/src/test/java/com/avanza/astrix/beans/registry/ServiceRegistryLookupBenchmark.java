@@ -0,0 +1,79 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.beans.registry;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import com.avanza.astrix.beans.service.ServiceConsumerProperties;
+import com.avanza.astrix.beans.service.ServiceProperties;
+
+/**
+ * Measures the cost of looking up a service in the service registry with 10 000 registered
+ * service providers, spread across 2 500 services with 4 providers each. <p>
+ * 
+ * Not run as part of the build, run the main method to benchmark.
+ */
+public class ServiceRegistryLookupBenchmark {
+	
+	private static final int SERVICE_COUNT = 2_500;
+	private static final int PROVIDERS_PER_SERVICE = 4;
+	private static final int WARMUP_LOOKUPS = 20_000;
+	private static final int MEASURED_LOOKUPS = 100_000;
+
+	public static void main(String[] args) {
+		InMemoryServiceRegistry serviceRegistry = new InMemoryServiceRegistry();
+		for (int service = 0; service < SERVICE_COUNT; service++) {
+			for (int provider = 0; provider < PROVIDERS_PER_SERVICE; provider++) {
+				serviceRegistry.register(createEntry(service, provider), TimeUnit.HOURS.toMillis(1));
+			}
+		}
+		ServiceConsumerProperties consumerProperties = new ServiceConsumerProperties();
+		lookup(serviceRegistry, consumerProperties, WARMUP_LOOKUPS);
+		long start = System.nanoTime();
+		int found = lookup(serviceRegistry, consumerProperties, MEASURED_LOOKUPS);
+		long elapsed = System.nanoTime() - start;
+		System.out.println(String.format("Registered providers: %d, lookups: %d (found: %d), total time: %d ms, avg lookup time: %d ns", 
+				SERVICE_COUNT * PROVIDERS_PER_SERVICE, MEASURED_LOOKUPS, found, TimeUnit.NANOSECONDS.toMillis(elapsed), elapsed / MEASURED_LOOKUPS));
+	}
+
+	private static int lookup(InMemoryServiceRegistry serviceRegistry, ServiceConsumerProperties consumerProperties, int lookups) {
+		int found = 0;
+		for (int i = 0; i < lookups; i++) {
+			if (serviceRegistry.lookup(apiName(i % SERVICE_COUNT), null, consumerProperties) != null) {
+				found++;
+			}
+		}
+		return found;
+	}
+
+	private static AstrixServiceRegistryEntry createEntry(int service, int provider) {
+		Map<String, String> properties = new HashMap<>();
+		properties.put(ServiceProperties.API, apiName(service));
+		properties.put(ServiceProperties.APPLICATION_INSTANCE_ID, "instance-" + provider);
+		properties.put(ServiceProperties.PUBLISHED, "true");
+		AstrixServiceRegistryEntry entry = new AstrixServiceRegistryEntry();
+		entry.setServiceBeanType(apiName(service));
+		entry.setServiceProperties(properties);
+		return entry;
+	}
+
+	private static String apiName(int service) {
+		return "com.avanza.benchmark.Service" + service;
+	}
+
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.beans.registry;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.avanza.astrix.beans.factory.AstrixBeanKey;
+import com.avanza.astrix.beans.publish.AstrixPublishedBeans;
+import com.avanza.astrix.beans.service.ServiceConsumerProperties;
+import com.avanza.astrix.beans.service.ServiceProperties;
+import com.avanza.astrix.config.DynamicConfig;
+import com.avanza.astrix.config.MapConfigSource;
+
+public class ServiceRegistryWatcherTest {
+	
+	private final InMemoryServiceRegistry serviceRegistry = new InMemoryServiceRegistry();
+	private final ServiceRegistryClient serviceRegistryClient = new ServiceRegistryClient(serviceRegistry, new ServiceConsumerProperties());
+	private final ServiceRegistryExporterClient exporterClient = new ServiceRegistryExporterClient(serviceRegistry, "default", "server-1");
+	private final RecordingListener listener = new RecordingListener();
+	private final ServiceRegistryWatcher watcher = new ServiceRegistryWatcher(new AstrixPublishedBeans() {
+		@Override
+		@SuppressWarnings("unchecked")
+		public <T> T getBean(AstrixBeanKey<T> beanKey) {
+			return (T) serviceRegistryClient;
+		}
+	}, new DynamicConfig(new MapConfigSource()), listener);
+	
+	@After
+	public void after() {
+		serviceRegistryClient.destroy();
+	}
+	
+	@Test
+	public void allServicesAreConsideredChangedWhenWatcherBecomesHealthy() throws Exception {
+		register(Ping.class);
+		
+		watcher.poll();
+		
+		assertEquals(1, listener.allServicesChangedCount);
+		assertEquals(0, listener.changedServices.size());
+	}
+	
+	@Test
+	public void notifiesChangedServicesOnceWatcherIsHealthy() throws Exception {
+		watcher.poll();
+		register(Ping.class);
+		
+		watcher.poll();
+		
+		assertEquals(1, listener.allServicesChangedCount);
+		assertEquals(1, listener.changedServices.size());
+		assertEquals(new ServiceKey(Ping.class.getName(), null), listener.changedServices.get(0));
+	}
+	
+	private void register(Class<?> api) {
+		ServiceProperties serviceProperties = new ServiceProperties();
+		serviceProperties.setApi(api);
+		exporterClient.register(api, serviceProperties, Integer.MAX_VALUE);
+	}
+	
+	public interface Ping {
+	}
+	
+	private static class RecordingListener implements ServiceRegistryWatcher.Listener {
+		
+		private final List<ServiceKey> changedServices = new ArrayList<>();
+		private int allServicesChangedCount = 0;
+		
+		@Override
+		public void servicesChanged(Set<ServiceKey> changedServices) {
+			this.changedServices.addAll(changedServices);
+		}
+		
+		@Override
+		public void allServicesChanged() {
+			allServicesChangedCount++;
+		}
+	}
+
+}
@@ -18,11 +18,16 @@ package com.avanza.astrix.beans.service;
 import static com.avanza.astrix.test.util.AstrixTestUtil.serviceInvocationException;
 import static com.avanza.astrix.test.util.AstrixTestUtil.serviceInvocationResult;
 import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
 import static org.hamcrest.Matchers.greaterThanOrEqualTo;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.fail;
 
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+
 import org.hamcrest.CoreMatchers;
 import org.junit.After;
 import org.junit.Test;
@@ -161,6 +166,30 @@ public class ServiceBeanInstanceTest {
 	}
 	
 	
+	@Test
+	public void leaseRenewalsAreRecordedInLeaseRenewalMetrics() throws Exception {
+		InMemoryServiceRegistry serviceRegistry = new InMemoryServiceRegistry();
+		serviceRegistry.registerProvider(Ping.class, new PingImpl());
+		
+		TestAstrixConfigurer astrixConfigurer = new TestAstrixConfigurer();
+		astrixConfigurer.registerApiProvider(PingApiProvider.class);
+		astrixConfigurer.set(AstrixSettings.SERVICE_LEASE_RENEW_INTERVAL, 5);
+		astrixConfigurer.set(AstrixSettings.SERVICE_REGISTRY_URI, serviceRegistry.getServiceUri());
+		AstrixApplicationContext astrixContext = (AstrixApplicationContext) astrixConfigurer.configure();
+		this.astrixContext = astrixContext;
+		
+		assertEquals("foo", astrixContext.getBean(Ping.class).ping("foo"));
+		
+		final LeaseRenewalMetricsMXBean leaseRenewalMetrics = astrixContext.getInstance(ServiceLeaseManager.class).getLeaseRenewalMetrics();
+		assertEventually(serviceInvocationResult(new Supplier<Long>() {
+			@Override
+			public Long get() {
+				return leaseRenewalMetrics.getRenewalCount();
+			}
+		}, greaterThan(0L)));
+		assertEquals(0, leaseRenewalMetrics.getRenewalFailureCount());
+	}
+	
 	private void assertEventually(Probe serviceInvocationException)
 			throws InterruptedException {
 		new Poller(100, 1).check(serviceInvocationException);
@@ -250,6 +279,62 @@ public class ServiceBeanInstanceTest {
 		astrixContext.waitForBean(Ping.class, 100);
 	}
 	
+	@Test
+	public void hangingBindAttemptDoesNotPreventOtherBeansFromBinding() throws Exception {
+		TestAstrixConfigurer astrixConfigurer = new TestAstrixConfigurer();
+		astrixConfigurer.set(AstrixSettings.BEAN_BIND_ATTEMPT_INTERVAL, 1);
+		astrixConfigurer.set(AstrixSettings.SERVICE_LEASE_WORKER_THREADS, 2);
+		astrixConfigurer.set(AstrixSettings.SERVICE_LEASE_ATTEMPT_TIMEOUT, 50);
+		astrixConfigurer.registerApiProvider(PingApiProviderUsingConfigLookup.class);
+		astrixConfigurer.registerApiProvider(PongApiProviderUsingConfigLookup.class);
+		HangingComponent hangingComponent = new HangingComponent();
+		astrixConfigurer.registerPlugin(ServiceComponent.class, hangingComponent);
+		astrixConfigurer.registerPlugin(ServiceComponent.class, new DirectComponent());
+		AstrixApplicationContext astrixContext = (AstrixApplicationContext) astrixConfigurer.configure();
+		this.astrixContext = astrixContext;
+		
+		// Get beans, will be unbound
+		astrixContext.getBean(Ping.class);
+		astrixContext.getBean(Pong.class);
+		
+		// Ping bind attempt hangs until released, occupying one worker thread
+		astrixConfigurer.set("pingUri", "hang:");
+		astrixConfigurer.set("pongUri", DirectComponent.registerAndGetUri(Pong.class, new PongImpl()));
+		
+		assertEquals("foo", astrixContext.waitForBean(Pong.class, 2_000).pong("foo"));
+		final ServiceLeaseManagerMetricsMXBean leaseManagerMetrics = astrixContext.getInstance(ServiceLeaseManager.class).getLeaseRenewalMetrics();
+		assertEventually(serviceInvocationResult(new Supplier<Long>() {
+			@Override
+			public Long get() {
+				return leaseManagerMetrics.getAttemptTimeoutCount();
+			}
+		}, greaterThan(0L)));
+		assertFalse("Timed out attempt should not be interrupted", hangingComponent.interrupted.get());
+		hangingComponent.release.countDown();
+	}
+	
+	static class HangingComponent extends DirectComponent {
+		
+		private final CountDownLatch release = new CountDownLatch(1);
+		private final AtomicBoolean interrupted = new AtomicBoolean(false);
+		
+		@Override
+		public <T> BoundServiceBeanInstance<T> bind(ServiceDefinition<T> versioningContext, ServiceProperties serviceProperties) {
+			try {
+				release.await();
+			} catch (InterruptedException e) {
+				interrupted.set(true);
+				Thread.currentThread().interrupt();
+			}
+			throw new ServiceUnavailableException("Bind attempt released");
+		}
+		
+		@Override
+		public String getName() {
+			return "hang";
+		}
+	}
+	
 	static class FakeComponent extends DirectComponent {
 		
 		@Override
@@ -281,6 +366,23 @@ public class ServiceBeanInstanceTest {
 		Ping ping();
 	}
 	
+	@AstrixApiProvider
+	public interface PongApiProviderUsingConfigLookup {
+		@AstrixConfigDiscovery("pongUri")
+		@Service
+		Pong pong();
+	}
+	
+	public interface Pong {
+		String pong(String msg);
+	}
+	
+	public static class PongImpl implements Pong {
+		public String pong(String msg) {
+			return msg;
+		}
+	}
+	
 	public interface Ping {
 		String ping(String msg);
 	}
@@ -18,20 +18,40 @@ package com.avanza.astrix.context;
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.hasItem;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeNotNull;
 
+import java.io.File;
 import java.lang.annotation.Annotation;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
 
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+
 import org.junit.Assert;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 import com.avanza.astrix.beans.publish.ApiProviderClass;
+import com.avanza.astrix.provider.core.AstrixApiProvider;
+import com.avanza.astrix.provider.index.ApiProviderIndex;
 
 
 
 public class AstrixApiProviderClassScannerTest {
 	
+	@Rule
+	public TemporaryFolder tempFolder = new TemporaryFolder();
+	
 	@Test
 	public void scansDefinedPackagesForDefinedAnnotations() throws Exception {
 		List<ApiProviderClass> apiDescriptors = new AstrixApiProviderClassScanner(asList(DummyDescriptor.class), "com.avanza.astrix.context").getAll();
@@ -46,6 +66,93 @@ public class AstrixApiProviderClassScannerTest {
 		assertEquals(0, apiDescriptors.size());
 	}
 
+	@Test
+	public void findsApiProvidersUsingIndexCreatedAtCompileTime() throws Exception {
+		ApiProviderIndex index = ApiProviderIndex.read(getClass().getClassLoader());
+		assertNotNull(index);
+		Assert.assertThat(index.getAnnotatedClassNames(AstrixApiProvider.class), hasItem(equalTo(IndexedApiProvider.class.getName())));
+		
+		List<ApiProviderClass> apiProviders = new AstrixApiProviderClassScanner(asList(AstrixApiProvider.class), "com.avanza.astrix.context").getAll();
+		Assert.assertThat(apiProviders, hasItem(equalTo(ApiProviderClass.create(IndexedApiProvider.class))));
+	}
+	
+	@Test
+	public void findsSameApiProvidersUsingIndexAsUsingClasspathScanning() throws Exception {
+		AstrixApiProviderClassScanner scanner = new AstrixApiProviderClassScanner(asList(AstrixApiProvider.class), "com.avanza.astrix");
+		scanner.setUseIndex(false);
+		List<ApiProviderClass> scannedApiProviders = scanner.getAll();
+		List<ApiProviderClass> indexedApiProviders = new AstrixApiProviderClassScanner(asList(AstrixApiProvider.class), "com.avanza.astrix").getAll();
+		
+		assertEquals(new HashSet<>(scannedApiProviders), new HashSet<>(indexedApiProviders));
+	}
+
+	@Test
+	public void scansClasspathRootsWithoutIndexWhenPackageIsIndexedInOtherClasspathRoot() throws Exception {
+		JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+		assumeNotNull(compiler);
+		String basePackage = "com.avanza.astrix.context.roots";
+		File indexedRoot = tempFolder.newFolder("indexed");
+		File unindexedRoot = tempFolder.newFolder("unindexed");
+		compileApiProvider(compiler, indexedRoot, basePackage, "IndexedProvider");
+		compileApiProvider(compiler, unindexedRoot, basePackage, "UnindexedProvider");
+		File indexFile = new File(indexedRoot, ApiProviderIndex.LOCATION);
+		indexFile.getParentFile().mkdirs();
+		Files.write(indexFile.toPath(), (AstrixApiProvider.class.getName() + " " + basePackage + ".IndexedProvider\n").getBytes(StandardCharsets.UTF_8));
+		
+		ClassLoader contextClassLoader = Thread.currentThread().getContextClassLoader();
+		URLClassLoader classLoader = new URLClassLoader(new URL[] { indexedRoot.toURI().toURL(), unindexedRoot.toURI().toURL() }, getClass().getClassLoader());
+		Thread.currentThread().setContextClassLoader(classLoader);
+		List<String> apiProviders = new ArrayList<>();
+		try {
+			for (ApiProviderClass apiProvider : new AstrixApiProviderClassScanner(asList(AstrixApiProvider.class), basePackage).getAll()) {
+				apiProviders.add(apiProvider.getProviderClassName());
+			}
+		} finally {
+			Thread.currentThread().setContextClassLoader(contextClassLoader);
+			classLoader.close();
+		}
+		
+		assertEquals(new HashSet<>(Arrays.asList(basePackage + ".IndexedProvider", basePackage + ".UnindexedProvider")), new HashSet<>(apiProviders));
+	}
+	
+	@Test
+	public void doesNotScanClasspathRootCompiledWithoutApiProviders() throws Exception {
+		JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+		assumeNotNull(compiler);
+		String basePackage = "com.avanza.astrix.context.noproviders";
+		File root = tempFolder.newFolder("noproviders");
+		// Compiled with the ApiProviderIndexProcessor, which should write an empty index
+		compile(compiler, root, "PlainClass", "package " + basePackage + "; public class PlainClass {}");
+		assertTrue(new File(root, ApiProviderIndex.LOCATION).exists());
+		// Only found if the root is scanned, since it is not part of the index
+		compileApiProvider(compiler, root, basePackage, "UnindexedProvider");
+		
+		ClassLoader contextClassLoader = Thread.currentThread().getContextClassLoader();
+		URLClassLoader classLoader = new URLClassLoader(new URL[] { root.toURI().toURL() }, getClass().getClassLoader());
+		Thread.currentThread().setContextClassLoader(classLoader);
+		try {
+			assertEquals(0, new AstrixApiProviderClassScanner(asList(AstrixApiProvider.class), basePackage).getAll().size());
+		} finally {
+			Thread.currentThread().setContextClassLoader(contextClassLoader);
+			classLoader.close();
+		}
+	}
+	
+	private void compileApiProvider(JavaCompiler compiler, File classpathRoot, String packageName, String className) throws Exception {
+		String source = "package " + packageName + "; @" + AstrixApiProvider.class.getName() + " public interface " + className + " {}";
+		compile(compiler, classpathRoot, className, source, "-proc:none");
+	}
+	
+	private void compile(JavaCompiler compiler, File classpathRoot, String className, String source, String... options) throws Exception {
+		File sourceFile = new File(tempFolder.newFolder(), className + ".java");
+		Files.write(sourceFile.toPath(), source.getBytes(StandardCharsets.UTF_8));
+		String classpath = new File(AstrixApiProvider.class.getProtectionDomain().getCodeSource().getLocation().toURI()).getPath();
+		List<String> arguments = new ArrayList<>(Arrays.asList(options));
+		arguments.addAll(Arrays.asList("-classpath", classpath, "-d", classpathRoot.getPath(), sourceFile.getPath()));
+		int result = compiler.run(null, null, null, arguments.toArray(new String[arguments.size()]));
+		assertEquals("Failed to compile " + className, 0, result);
+	}
+
 	private List<Class<? extends Annotation>> asList(Class<? extends Annotation> classes) {
 		return Arrays.<Class<? extends Annotation>>asList(classes);
 	}
@@ -61,5 +168,9 @@ public class AstrixApiProviderClassScannerTest {
 	@DummyDescriptor
 	public static class DescriptorB {
 	}
+	
+	@AstrixApiProvider
+	public interface IndexedApiProvider {
+	}
 
 }
@@ -0,0 +1,262 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.context;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.avanza.astrix.beans.core.AstrixSettings;
+import com.avanza.astrix.beans.factory.AstrixBeanKey;
+import com.avanza.astrix.beans.registry.AstrixServiceRegistryEntry;
+import com.avanza.astrix.beans.registry.InMemoryServiceRegistry;
+import com.avanza.astrix.beans.registry.ServiceKey;
+import com.avanza.astrix.beans.service.BoundServiceBeanInstance;
+import com.avanza.astrix.beans.service.DirectComponent;
+import com.avanza.astrix.beans.service.ServiceComponent;
+import com.avanza.astrix.beans.service.ServiceConsumerProperties;
+import com.avanza.astrix.beans.service.ServiceDefinition;
+import com.avanza.astrix.beans.service.ServiceDiscoveryMetaFactory;
+import com.avanza.astrix.beans.service.ServiceProperties;
+import com.avanza.astrix.core.ServiceUnavailableException;
+import com.avanza.astrix.provider.core.AstrixApiProvider;
+import com.avanza.astrix.provider.core.AstrixConfigDiscovery;
+import com.avanza.astrix.provider.core.Library;
+import com.avanza.astrix.provider.core.Service;
+import com.avanza.astrix.test.util.AstrixTestUtil;
+
+public class EagerBeanBinderTest {
+	
+	private AstrixContext astrixContext;
+	
+	@After
+	public void after() {
+		AstrixTestUtil.closeSafe(astrixContext);
+	}
+	
+	@Test
+	public void consumedBeansAreBoundConcurrentlyWhenContextIsConfigured() throws Exception {
+		TestAstrixConfigurer astrixConfigurer = new TestAstrixConfigurer();
+		astrixConfigurer.set(AstrixSettings.EAGER_BIND_CONSUMED_BEANS, true);
+		astrixConfigurer.registerApiProvider(PingApiProviderUsingConfigDiscovery.class);
+		astrixConfigurer.registerApiProvider(PongApiProviderUsingConfigDiscovery.class);
+		// Each bind attempt waits for the other bind attempt to start
+		astrixConfigurer.registerPlugin(ServiceComponent.class, new LatchedDirectComponent(new CountDownLatch(2)));
+		astrixConfigurer.set("pingUri", DirectComponent.registerAndGetUri(Ping.class, new PingImpl()));
+		astrixConfigurer.set("pongUri", DirectComponent.registerAndGetUri(Pong.class, new PongImpl()));
+		astrixConfigurer.addConsumedBeans(Arrays.asList(Ping.class, Pong.class));
+		astrixContext = astrixConfigurer.configure();
+		
+		assertEquals("foo", astrixContext.waitForBean(Ping.class, 0).ping("foo"));
+		assertEquals("foo", astrixContext.waitForBean(Pong.class, 0).pong("foo"));
+	}
+	
+	@Test
+	public void consumedBeansAreCreatedWhenFirstRequestedUnlessEagerBindIsEnabled() throws Exception {
+		TestAstrixConfigurer astrixConfigurer = new TestAstrixConfigurer();
+		astrixConfigurer.registerApiProvider(PingApiProviderUsingConfigDiscovery.class);
+		astrixConfigurer.set("pingUri", DirectComponent.registerAndGetUri(Ping.class, new PingImpl()));
+		astrixConfigurer.addConsumedBeans(Arrays.<Class<?>>asList(Ping.class));
+		LatchedDirectComponent component = new LatchedDirectComponent(new CountDownLatch(0));
+		astrixConfigurer.registerPlugin(ServiceComponent.class, component);
+		astrixContext = astrixConfigurer.configure();
+		
+		assertEquals(0, component.bindCount.get());
+		astrixContext.getBean(Ping.class);
+		assertEquals(1, component.bindCount.get());
+	}
+	
+	@Test
+	public void reportsBindResultForEachBean() throws Exception {
+		TestAstrixConfigurer astrixConfigurer = new TestAstrixConfigurer();
+		astrixConfigurer.registerApiProvider(PingApiProviderUsingConfigDiscovery.class);
+		astrixConfigurer.registerApiProvider(PongApiProviderUsingConfigDiscovery.class);
+		astrixConfigurer.set("pingUri", DirectComponent.registerAndGetUri(Ping.class, new PingImpl()));
+		AstrixContextImpl astrixContext = (AstrixContextImpl) astrixConfigurer.configure();
+		this.astrixContext = astrixContext;
+		
+		EagerBeanBinder eagerBeanBinder = new EagerBeanBinder(astrixContext, astrixContext.getInstance(ServiceDiscoveryMetaFactory.class), astrixContext.getConfig());
+		List<EagerBeanBinder.BeanBindResult> result = eagerBeanBinder.bindAll(Arrays.asList(AstrixBeanKey.create(Ping.class), AstrixBeanKey.create(Pong.class)));
+		
+		assertEquals(2, result.size());
+		assertEquals(AstrixBeanKey.create(Ping.class), result.get(0).getBeanKey());
+		assertTrue(result.get(0).isCompleted());
+		assertTrue(result.get(0).isBound());
+		assertEquals(AstrixBeanKey.create(Pong.class), result.get(1).getBeanKey());
+		assertTrue(result.get(1).isCompleted());
+		assertFalse("No pongUri configured", result.get(1).isBound());
+	}
+	
+	@Test
+	public void serviceRegistryBeansAreDiscoveredUsingABulkLookup() throws Exception {
+		LookupCountingServiceRegistry serviceRegistry = new LookupCountingServiceRegistry();
+		serviceRegistry.registerProvider(Ping.class, new PingImpl());
+		serviceRegistry.registerProvider(Pong.class, new PongImpl());
+		
+		TestAstrixConfigurer astrixConfigurer = new TestAstrixConfigurer();
+		astrixConfigurer.set(AstrixSettings.EAGER_BIND_CONSUMED_BEANS, true);
+		astrixConfigurer.set(AstrixSettings.SERVICE_REGISTRY_URI, serviceRegistry.getServiceUri());
+		astrixConfigurer.setSubsystem("default");
+		astrixConfigurer.registerApiProvider(PingApiProvider.class);
+		astrixConfigurer.registerApiProvider(PongApiProvider.class);
+		astrixConfigurer.addConsumedBeans(Arrays.asList(Ping.class, Pong.class));
+		astrixContext = astrixConfigurer.configure();
+		
+		assertEquals("foo", astrixContext.waitForBean(Ping.class, 0).ping("foo"));
+		assertEquals("foo", astrixContext.waitForBean(Pong.class, 0).pong("foo"));
+		assertEquals(1, serviceRegistry.lookupAllCount.get());
+		assertEquals(0, serviceRegistry.lookupCount.get());
+	}
+	
+	@Test
+	public void servicesConsumedByLibrariesAreDiscoveredUsingABulkLookup() throws Exception {
+		LookupCountingServiceRegistry serviceRegistry = new LookupCountingServiceRegistry();
+		serviceRegistry.registerProvider(Ping.class, new PingImpl());
+		serviceRegistry.registerProvider(Pong.class, new PongImpl());
+		
+		TestAstrixConfigurer astrixConfigurer = new TestAstrixConfigurer();
+		astrixConfigurer.set(AstrixSettings.EAGER_BIND_CONSUMED_BEANS, true);
+		astrixConfigurer.set(AstrixSettings.SERVICE_REGISTRY_URI, serviceRegistry.getServiceUri());
+		astrixConfigurer.setSubsystem("default");
+		astrixConfigurer.registerApiProvider(PingApiProvider.class);
+		astrixConfigurer.registerApiProvider(PongApiProvider.class);
+		astrixConfigurer.registerApiProvider(PingPongLibraryProvider.class);
+		astrixConfigurer.addConsumedBeans(Arrays.<Class<?>>asList(PingPong.class));
+		astrixContext = astrixConfigurer.configure();
+		
+		assertEquals("foo", astrixContext.waitForBean(PingPong.class, 0).pingPong("foo"));
+		assertEquals(1, serviceRegistry.lookupAllCount.get());
+		assertEquals(0, serviceRegistry.lookupCount.get());
+	}
+	
+	static class LatchedDirectComponent extends DirectComponent {
+		
+		private final CountDownLatch bindAttempts;
+		private final AtomicInteger bindCount = new AtomicInteger();
+		
+		public LatchedDirectComponent(CountDownLatch bindAttempts) {
+			this.bindAttempts = bindAttempts;
+		}
+
+		@Override
+		public <T> BoundServiceBeanInstance<T> bind(ServiceDefinition<T> serviceDefinition, ServiceProperties serviceProperties) {
+			bindCount.incrementAndGet();
+			bindAttempts.countDown();
+			try {
+				if (!bindAttempts.await(5, TimeUnit.SECONDS)) {
+					throw new ServiceUnavailableException("Bind attempts not executed concurrently");
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new ServiceUnavailableException("Interrupted");
+			}
+			return super.bind(serviceDefinition, serviceProperties);
+		}
+	}
+	
+	static class LookupCountingServiceRegistry extends InMemoryServiceRegistry {
+		
+		private final AtomicInteger lookupCount = new AtomicInteger();
+		private final AtomicInteger lookupAllCount = new AtomicInteger();
+		
+		@Override
+		public <T> AstrixServiceRegistryEntry lookup(String type, String qualifier, ServiceConsumerProperties consumerProperties) {
+			lookupCount.incrementAndGet();
+			return super.lookup(type, qualifier, consumerProperties);
+		}
+		
+		@Override
+		public List<AstrixServiceRegistryEntry> lookupAll(List<ServiceKey> serviceKeys, ServiceConsumerProperties consumerProperties) {
+			lookupAllCount.incrementAndGet();
+			return super.lookupAll(serviceKeys, consumerProperties);
+		}
+	}
+	
+	public interface Ping {
+		String ping(String msg);
+	}
+	
+	public interface Pong {
+		String pong(String msg);
+	}
+	
+	public static class PingImpl implements Ping {
+		@Override
+		public String ping(String msg) {
+			return msg;
+		}
+	}
+	
+	public static class PongImpl implements Pong {
+		@Override
+		public String pong(String msg) {
+			return msg;
+		}
+	}
+	
+	public interface PingPong {
+		String pingPong(String msg);
+	}
+	
+	@AstrixApiProvider
+	public interface PingApiProviderUsingConfigDiscovery {
+		@AstrixConfigDiscovery("pingUri")
+		@Service
+		Ping ping();
+	}
+	
+	@AstrixApiProvider
+	public interface PongApiProviderUsingConfigDiscovery {
+		@AstrixConfigDiscovery("pongUri")
+		@Service
+		Pong pong();
+	}
+	
+	@AstrixApiProvider
+	public interface PingApiProvider {
+		@Service
+		Ping ping();
+	}
+	
+	@AstrixApiProvider
+	public interface PongApiProvider {
+		@Service
+		Pong pong();
+	}
+	
+	@AstrixApiProvider
+	public static class PingPongLibraryProvider {
+		@Library
+		public PingPong pingPong(final Ping ping, final Pong pong) {
+			return new PingPong() {
+				@Override
+				public String pingPong(String msg) {
+					return pong.pong(ping.ping(msg));
+				}
+			};
+		}
+	}
+
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.serviceunit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import com.avanza.astrix.beans.core.AstrixSettings;
+import com.avanza.astrix.beans.registry.ServiceProviderLoad;
+import com.avanza.astrix.config.DynamicConfig;
+import com.avanza.astrix.config.MapConfigSource;
+
+public class ServiceProviderLoadMonitorTest {
+	
+	private final MapConfigSource settings = new MapConfigSource();
+	
+	@Test
+	public void exportsProviderAsIsWhenLoadPublishingIsDisabled() throws Exception {
+		ServiceProviderLoadMonitor monitor = new ServiceProviderLoadMonitor(new DynamicConfig(settings));
+		Ping provider = new PingImpl();
+		
+		assertSame(provider, monitor.monitor(Ping.class, provider));
+		assertNull(monitor.getCurrentLoad());
+	}
+	
+	@Test
+	public void measuresLoadOfMonitoredProvidersWhenLoadPublishingIsEnabled() throws Exception {
+		settings.set(AstrixSettings.SERVICE_PROVIDER_LOAD_PUBLISHING_ENABLED, true);
+		ServiceProviderLoadMonitor monitor = new ServiceProviderLoadMonitor(new DynamicConfig(settings));
+		Ping provider = new PingImpl();
+		Ping monitored = monitor.monitor(Ping.class, provider);
+		
+		assertNotSame(provider, monitored);
+		assertEquals("foo", monitored.ping("foo"));
+		ServiceProviderLoad load = monitor.getCurrentLoad();
+		assertEquals(0, load.getInFlightRequests(), 0);
+		assertTrue(load.getP99LatencyMillis() >= 0);
+	}
+	
+	public interface Ping {
+		String ping(String msg);
+	}
+	
+	public static class PingImpl implements Ping {
+		@Override
+		public String ping(String msg) {
+			return msg;
+		}
+	}
+
+}
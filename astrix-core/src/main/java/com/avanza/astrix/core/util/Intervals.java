@@ -0,0 +1,78 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.core.util;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Utility methods for calculating delays between executions of periodic tasks. <p>
+ * 
+ * Randomizing the delays avoids that a large number of applications started at the same time,
+ * for instance after a mass restart, executes periodic tasks against shared resources in lockstep.
+ */
+public final class Intervals {
+	
+	private Intervals() {
+	}
+	
+	/**
+	 * Returns a random delay in the range [0, intervalMillis), used to spread the first
+	 * execution of periodic tasks over one interval.
+	 * 
+	 * @param intervalMillis
+	 * @return
+	 */
+	public static long spread(long intervalMillis) {
+		if (intervalMillis <= 0) {
+			return 0;
+		}
+		return ThreadLocalRandom.current().nextLong(intervalMillis);
+	}
+	
+	/**
+	 * Returns a random delay in the range [intervalMillis * (1 - jitterPercent/100), intervalMillis * (1 + jitterPercent/100)]. 
+	 * 
+	 * @param intervalMillis
+	 * @param jitterPercent - the maximum deviation from the given interval, in percent of the interval. 
+	 * @return
+	 */
+	public static long jitter(long intervalMillis, long jitterPercent) {
+		long maxJitter = intervalMillis * Math.min(Math.max(jitterPercent, 0), 100) / 100;
+		if (maxJitter <= 0) {
+			return intervalMillis;
+		}
+		return intervalMillis - maxJitter + ThreadLocalRandom.current().nextLong(2 * maxJitter + 1);
+	}
+	
+	/**
+	 * Returns intervalMillis * 2^consecutiveFailures, but never more than maxIntervalMillis 
+	 * (or intervalMillis if maxIntervalMillis is less than intervalMillis).
+	 * 
+	 * @param intervalMillis
+	 * @param consecutiveFailures
+	 * @param maxIntervalMillis
+	 * @return
+	 */
+	public static long exponentialBackoff(long intervalMillis, int consecutiveFailures, long maxIntervalMillis) {
+		long max = Math.max(intervalMillis, maxIntervalMillis);
+		long result = intervalMillis;
+		for (int i = 0; i < consecutiveFailures && result < max; i++) {
+			result *= 2;
+		}
+		return Math.min(result, max);
+	}
+
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.core.util;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Gives access to virtual threads when running on a JDK that supports them (Java 21 or later). <p>
+ * 
+ * Astrix is compiled for older Java versions, hence the virtual thread API is accessed reflectively. Virtual
+ * threads are a preview feature on Java 19 and 20, where Thread.ofVirtual exists but fails unless the JVM is
+ * started with --enable-preview, hence support is detected by invoking Thread.ofVirtual once.
+ */
+public final class VirtualThreads {
+	
+	private static final Method OF_VIRTUAL = findOfVirtualMethod();
+	
+	private VirtualThreads() {
+	}
+	
+	/**
+	 * @return true if the running JVM supports virtual threads
+	 */
+	public static boolean isSupported() {
+		return OF_VIRTUAL != null;
+	}
+	
+	/**
+	 * Creates a ThreadFactory for virtual threads. Thread names will be namePrefix-<threadId>. <p>
+	 * 
+	 * @param namePrefix
+	 * @return
+	 * @throws UnsupportedOperationException if the running JVM does not support virtual threads
+	 */
+	public static ThreadFactory newThreadFactory(String namePrefix) {
+		if (!isSupported()) {
+			throw new UnsupportedOperationException("Virtual threads requires Java 21 or later, running on: " + System.getProperty("java.version"));
+		}
+		try {
+			Object builder = OF_VIRTUAL.invoke(null);
+			Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+			builder = builderType.getMethod("name", String.class, long.class).invoke(builder, namePrefix + "-", 1L);
+			return (ThreadFactory) builderType.getMethod("factory").invoke(builder);
+		} catch (Exception e) {
+			throw new RuntimeException("Failed to create virtual thread factory", e);
+		}
+	}
+	
+	private static Method findOfVirtualMethod() {
+		try {
+			Method ofVirtual = Thread.class.getMethod("ofVirtual");
+			ofVirtual.invoke(null);
+			return ofVirtual;
+		} catch (Exception | LinkageError e) {
+			return null;
+		}
+	}
+
+}
@@ -40,6 +40,12 @@ public class AstrixServiceComponentNames {
 	 */
 	public static final String GS_REMOTING = "gs-remoting";
 	
+	/**
+	 * This component can be used to export remote services using persistent, multiplexed
+	 * tcp connections as service transport. It does not require a space.
+	 */
+	public static final String TCP_REMOTING = "tcp-remoting";
+	
 	/**
 	 * Used export local-view GigaSpace as a service. Requires a LocalViewConfigurer
 	 * class to be defined as additional service configuration, see @ServiceConfig
@@ -0,0 +1,150 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.provider.index;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.lang.annotation.Annotation;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.avanza.astrix.provider.core.AstrixApiProvider;
+import com.avanza.astrix.provider.core.AstrixApplication;
+
+/**
+ * An index of all classes annotated with one of the indexed annotation types, i.e {@link AstrixApiProvider} 
+ * and {@link AstrixApplication}, found on the classpath. <p>
+ * 
+ * The index is created at compile time by the {@link ApiProviderIndexProcessor}, which writes one index file
+ * per compiled module to {@link #LOCATION}. Each line in an index file contains the name of an indexed annotation 
+ * type followed by the binary name of a class annotated with it, separated by whitespace. <p>
+ * 
+ * Since a module compiled without the ApiProviderIndexProcessor has no index file, the index only
+ * covers the classpath roots (directories or jars) that contain an index file, see {@link #isIndexedRoot(String)}.
+ */
+public final class ApiProviderIndex {
+	
+	public static final String LOCATION = "META-INF/astrix/providers.idx";
+	
+	static final List<String> INDEXED_ANNOTATION_TYPES = Collections.unmodifiableList(Arrays.asList(AstrixApiProvider.class.getName(), 
+																									AstrixApplication.class.getName()));
+	
+	private final Map<String, Set<String>> classNamesByAnnotationType = new HashMap<>();
+	private final Set<String> indexedRoots = new HashSet<>();
+	
+	private ApiProviderIndex() {
+	}
+	
+	/**
+	 * Reads all index files available using the given ClassLoader.
+	 * 
+	 * @param classLoader
+	 * @return the merged index, or null if no index file was found
+	 * @throws IOException if an index file could not be read
+	 */
+	public static ApiProviderIndex read(ClassLoader classLoader) throws IOException {
+		Enumeration<URL> indexFiles = classLoader.getResources(LOCATION);
+		if (!indexFiles.hasMoreElements()) {
+			return null;
+		}
+		ApiProviderIndex index = new ApiProviderIndex();
+		while (indexFiles.hasMoreElements()) {
+			index.read(indexFiles.nextElement());
+		}
+		return index;
+	}
+	
+	private void read(URL indexFile) throws IOException {
+		this.indexedRoots.add(getRoot(indexFile, LOCATION));
+		try (BufferedReader reader = new BufferedReader(new InputStreamReader(indexFile.openStream(), StandardCharsets.UTF_8))) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				String[] entry = line.trim().split("\\s+");
+				if (entry.length != 2) {
+					continue; // Empty line
+				}
+				add(entry[0], entry[1]);
+			}
+		}
+	}
+	
+	private void add(String annotationType, String className) {
+		Set<String> classNames = this.classNamesByAnnotationType.get(annotationType);
+		if (classNames == null) {
+			classNames = new LinkedHashSet<>();
+			this.classNamesByAnnotationType.put(annotationType, classNames);
+		}
+		classNames.add(className);
+	}
+	
+	/**
+	 * @param annotationType
+	 * @return true if classes annotated with the given annotation type are indexed
+	 */
+	public boolean isIndexed(Class<? extends Annotation> annotationType) {
+		return INDEXED_ANNOTATION_TYPES.contains(annotationType.getName());
+	}
+	
+	/**
+	 * Returns the binary name of all indexed classes annotated with the given annotation type.
+	 * 
+	 * @param annotationType
+	 * @return
+	 */
+	public Set<String> getAnnotatedClassNames(Class<? extends Annotation> annotationType) {
+		Set<String> classNames = this.classNamesByAnnotationType.get(annotationType.getName());
+		if (classNames == null) {
+			return Collections.emptySet();
+		}
+		return Collections.unmodifiableSet(classNames);
+	}
+	
+	/**
+	 * @param classpathRoot the url of a directory or jar on the classpath, as returned by {@link #getRoot(URL, String)}
+	 * @return true if the given classpath root contains an index file
+	 */
+	public boolean isIndexedRoot(String classpathRoot) {
+		return this.indexedRoots.contains(classpathRoot);
+	}
+	
+	/**
+	 * Returns the classpath root (directory or jar) that contains a given resource.
+	 * 
+	 * @param resource the url of the resource, as returned by {@link ClassLoader#getResources(String)}
+	 * @param resourceName the name used to request the resource
+	 * @return the url of the classpath root, in external form
+	 */
+	public static String getRoot(URL resource, String resourceName) {
+		String url = resource.toExternalForm();
+		int rootEnd = url.lastIndexOf(resourceName);
+		return rootEnd == -1 ? url : url.substring(0, rootEnd);
+	}
+	
+	static String entry(String annotationType, String className) {
+		return annotationType + " " + className;
+	}
+
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.provider.index;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.TreeSet;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.Processor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.TypeElement;
+import javax.tools.Diagnostic.Kind;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+
+import org.kohsuke.MetaInfServices;
+
+/**
+ * Annotation processor that writes an {@link ApiProviderIndex} file containing all classes 
+ * annotated with one of the indexed annotation types in the current compilation. The index
+ * file is written even if the compilation contains no such classes, which tells the 
+ * AstrixApiProviderClassScanner that the classpath root does not need to be scanned. <p>
+ * 
+ * The processor is registered as a service, and hence is run by javac for every module that 
+ * has astrix-core on its compile classpath.
+ */
+@MetaInfServices(Processor.class)
+public class ApiProviderIndexProcessor extends AbstractProcessor {
+	
+	/*
+	 * IMPLEMENTATION NOTE:
+	 * 
+	 * Entries from an existing index file in the output directory are kept, since an 
+	 * incremental compilation only processes the changed source files.
+	 * 
+	 * The processor supports all annotation types ("*"), since javac only runs a processor for 
+	 * a compilation that contains one of its supported annotation types, and an (empty) index 
+	 * must be written for every compilation. No annotations are claimed.
+	 */
+	
+	private final Set<String> entries = new TreeSet<>();
+	
+	@Override
+	public Set<String> getSupportedAnnotationTypes() {
+		return Collections.singleton("*");
+	}
+	
+	@Override
+	public SourceVersion getSupportedSourceVersion() {
+		return SourceVersion.latestSupported();
+	}
+
+	@Override
+	public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+		if (roundEnv.processingOver()) {
+			writeIndex();
+			return false;
+		}
+		for (TypeElement annotation : annotations) {
+			if (!ApiProviderIndex.INDEXED_ANNOTATION_TYPES.contains(annotation.getQualifiedName().toString())) {
+				continue;
+			}
+			for (Element element : roundEnv.getElementsAnnotatedWith(annotation)) {
+				if (element.getKind().isClass() || element.getKind().isInterface()) {
+					String className = processingEnv.getElementUtils().getBinaryName((TypeElement) element).toString();
+					entries.add(ApiProviderIndex.entry(annotation.getQualifiedName().toString(), className));
+				}
+			}
+		}
+		return false; // Do not claim the annotations
+	}
+
+	private void writeIndex() {
+		Set<String> allEntries = new TreeSet<>(entries);
+		allEntries.addAll(readExistingEntries());
+		try {
+			FileObject indexFile = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "", ApiProviderIndex.LOCATION);
+			try (Writer writer = new OutputStreamWriter(indexFile.openOutputStream(), StandardCharsets.UTF_8)) {
+				for (String entry : allEntries) {
+					writer.write(entry);
+					writer.write("\n");
+				}
+			}
+		} catch (IOException e) {
+			processingEnv.getMessager().printMessage(Kind.ERROR, "Failed to write " + ApiProviderIndex.LOCATION + ": " + e);
+		}
+	}
+
+	private Set<String> readExistingEntries() {
+		Set<String> result = new HashSet<>();
+		try {
+			FileObject existing = processingEnv.getFiler().getResource(StandardLocation.CLASS_OUTPUT, "", ApiProviderIndex.LOCATION);
+			try (BufferedReader reader = new BufferedReader(new InputStreamReader(existing.openInputStream(), StandardCharsets.UTF_8))) {
+				String line;
+				while ((line = reader.readLine()) != null) {
+					if (!line.trim().isEmpty()) {
+						result.add(line.trim());
+					}
+				}
+			}
+		} catch (IOException e) {
+			// No existing index
+		}
+		return result;
+	}
+
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.core.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class IntervalsTest {
+	
+	@Test
+	public void jitteredIntervalIsWithinJitterRange() throws Exception {
+		for (int i = 0; i < 1000; i++) {
+			long interval = Intervals.jitter(1000, 20);
+			assertTrue("Expected interval in range [800, 1200], was: " + interval, interval >= 800 && interval <= 1200);
+		}
+		assertEquals(1000, Intervals.jitter(1000, 0));
+	}
+	
+	@Test
+	public void spreadIsWithinOneInterval() throws Exception {
+		for (int i = 0; i < 1000; i++) {
+			long delay = Intervals.spread(1000);
+			assertTrue("Expected delay in range [0, 1000), was: " + delay, delay >= 0 && delay < 1000);
+		}
+		assertEquals(0, Intervals.spread(0));
+	}
+	
+	@Test
+	public void exponentialBackoffDoublesIntervalForEachFailureUpToMaxInterval() throws Exception {
+		assertEquals(1000, Intervals.exponentialBackoff(1000, 0, 10_000));
+		assertEquals(2000, Intervals.exponentialBackoff(1000, 1, 10_000));
+		assertEquals(8000, Intervals.exponentialBackoff(1000, 3, 10_000));
+		assertEquals(10_000, Intervals.exponentialBackoff(1000, 4, 10_000));
+		assertEquals(10_000, Intervals.exponentialBackoff(1000, Integer.MAX_VALUE, 10_000));
+		assertEquals(1000, Intervals.exponentialBackoff(1000, 4, 500));
+	}
+
+}
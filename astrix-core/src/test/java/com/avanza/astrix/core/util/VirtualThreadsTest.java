@@ -0,0 +1,48 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.core.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.ThreadFactory;
+
+import org.junit.Test;
+
+
+public class VirtualThreadsTest {
+	
+	@Test
+	public void createsNamedVirtualThreadsWhenSupported() throws Exception {
+		if (!VirtualThreads.isSupported()) {
+			try {
+				VirtualThreads.newThreadFactory("test");
+				fail("Expected UnsupportedOperationException");
+			} catch (UnsupportedOperationException e) {
+				// expected
+			}
+			return;
+		}
+		ThreadFactory threadFactory = VirtualThreads.newThreadFactory("test");
+		Thread thread = threadFactory.newThread(new Runnable() {
+			@Override
+			public void run() {
+			}
+		});
+		assertEquals("test-1", thread.getName());
+	}
+
+}
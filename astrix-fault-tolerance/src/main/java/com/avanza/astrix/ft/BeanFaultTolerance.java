@@ -94,7 +94,7 @@ public class BeanFaultTolerance {
 						.withCoreSize(settings.getCoreSize());
 
 		return com.netflix.hystrix.HystrixCommand.Setter.withGroupKey(getGroupKey())
-				.andCommandKey(getCommandKey())
+				.andCommandKey(getCommandKey(settings.getCommandKeySuffix()))
 				.andCommandPropertiesDefaults(commandPropertiesDefault)
 				.andThreadPoolPropertiesDefaults(threadPoolPropertiesDefaults);
 	}
@@ -115,6 +115,13 @@ public class BeanFaultTolerance {
 	HystrixCommandKey getCommandKey() {
 		return HystrixCommandKey.Factory.asKey(commandNamingStrategy.getCommandKeyName(beanDefinition));
 	}
+	
+	HystrixCommandKey getCommandKey(String commandKeySuffix) {
+		if (commandKeySuffix == null) {
+			return getCommandKey();
+		}
+		return HystrixCommandKey.Factory.asKey(commandNamingStrategy.getCommandKeyName(beanDefinition) + "." + commandKeySuffix);
+	}
 
 	HystrixCommandGroupKey getGroupKey() {
 		return HystrixCommandGroupKey.Factory.asKey(commandNamingStrategy.getGroupKeyName(beanDefinition));
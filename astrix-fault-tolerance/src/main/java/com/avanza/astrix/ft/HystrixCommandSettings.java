@@ -31,9 +31,21 @@ public class HystrixCommandSettings {
 	private int metricsRollingStatisticalWindowInMilliseconds = 10_000;
 	private int maxQueueSize = 1_000_000;
 	private ExecutionIsolationStrategy executionIsolationStrategy = ExecutionIsolationStrategy.THREAD;
+	private String commandKeySuffix = null;
 	
 	public HystrixCommandSettings() {
 	}
+	
+	public HystrixCommandSettings(HystrixCommandSettings other) {
+		this.queueSizeRejectionThreshold = other.queueSizeRejectionThreshold;
+		this.coreSize = other.coreSize;
+		this.semaphoreMaxConcurrentRequests = other.semaphoreMaxConcurrentRequests;
+		this.executionIsolationThreadTimeoutInMilliseconds = other.executionIsolationThreadTimeoutInMilliseconds;
+		this.metricsRollingStatisticalWindowInMilliseconds = other.metricsRollingStatisticalWindowInMilliseconds;
+		this.maxQueueSize = other.maxQueueSize;
+		this.executionIsolationStrategy = other.executionIsolationStrategy;
+		this.commandKeySuffix = other.commandKeySuffix;
+	}
 
 	public int getMaxQueueSize() {
 		return maxQueueSize;
@@ -90,4 +102,18 @@ public class HystrixCommandSettings {
 	public ExecutionIsolationStrategy getExecutionIsolationStrategy() {
 		return executionIsolationStrategy;
 	}
+	
+	public String getCommandKeySuffix() {
+		return commandKeySuffix;
+	}
+	
+	/**
+	 * Appends a suffix to the command key used for the bean, which allows different 
+	 * kinds of invocations on the same bean to be isolated and measured separately. 
+	 * 
+	 * @param commandKeySuffix the suffix, or null to use the command key of the bean.
+	 */
+	public void setCommandKeySuffix(String commandKeySuffix) {
+		this.commandKeySuffix = commandKeySuffix;
+	}
 }
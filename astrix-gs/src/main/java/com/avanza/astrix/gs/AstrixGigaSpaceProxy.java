@@ -17,44 +17,132 @@ package com.avanza.astrix.gs;
 
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
+import java.util.EnumMap;
+import java.util.Map;
 import java.util.Objects;
 
 import org.openspaces.core.GigaSpace;
 
+import com.avanza.astrix.config.DynamicConfig;
+import com.avanza.astrix.config.DynamicIntProperty;
+import com.avanza.astrix.config.DynamicLongProperty;
 import com.avanza.astrix.core.ServiceUnavailableException;
 import com.avanza.astrix.core.util.ReflectionUtil;
 import com.avanza.astrix.ft.BeanFaultTolerance;
 import com.avanza.astrix.ft.CheckedCommand;
 import com.avanza.astrix.ft.HystrixCommandSettings;
 import com.gigaspaces.internal.client.cache.SpaceCacheException;
+import com.netflix.hystrix.HystrixCommandProperties.ExecutionIsolationStrategy;
 /**
  * This proxy adds fault tolerance to a GigaSpace clustered proxy.
  * 
- * 1. All invocations will be protected using AstrixFaultTolerance.
+ * 1. All invocations interacting with the space will be protected using AstrixFaultTolerance.
  * 2. Some exceptions thrown by the space-proxy will be wrapped in ServiceUnavailableException
  *    to ensure circuit-breaker logic is triggered when space is not available.
+ * 3. {@link GigaSpaceOperation#LOCAL} invocations are not protected at all.
+ * 4. Reads are protected using semaphore isolation, optionally each {@link GigaSpaceOperation} uses a separate command key, 
+ *    and concurrent readById(Class, Object) invocations are coalesced into readByIds invocations, 
+ *    see {@link #create(GigaSpace, BeanFaultTolerance, HystrixCommandSettings, DynamicConfig)}.
  * 
  * @author Elias Lindholm (elilin)
  *
  */
 public class AstrixGigaSpaceProxy implements InvocationHandler {
+	
+	static final int MIN_READ_SEMAPHORE_MAX_CONCURRENT_REQUESTS = 100;
 
 	private final GigaSpace gigaSpace;
 	private final BeanFaultTolerance faultTolerance;
-	private final HystrixCommandSettings hystrixSettings;
+	private final Map<GigaSpaceOperation, HystrixCommandSettings> hystrixSettingsByOperation = new EnumMap<>(GigaSpaceOperation.class);
+	private final ReadByIdBatcher readByIdBatcher;
 
 	public AstrixGigaSpaceProxy(GigaSpace gigaSpace, BeanFaultTolerance faultTolerance, HystrixCommandSettings hystrixSettings) {
+		this(gigaSpace, faultTolerance, hystrixSettings, false, false, null, null);
+	}
+	
+	private AstrixGigaSpaceProxy(GigaSpace gigaSpace, BeanFaultTolerance faultTolerance, HystrixCommandSettings hystrixSettings, boolean operationCommandKeys,
+								 boolean semaphoreIsolatedReads, DynamicLongProperty readByIdBatchWindowMicros, DynamicIntProperty readByIdMaxBatchSize) {
 		this.gigaSpace = Objects.requireNonNull(gigaSpace);
 		this.faultTolerance = Objects.requireNonNull(faultTolerance);
-		this.hystrixSettings = Objects.requireNonNull(hystrixSettings);
+		Objects.requireNonNull(hystrixSettings);
+		for (GigaSpaceOperation operation : GigaSpaceOperation.values()) {
+			this.hystrixSettingsByOperation.put(operation, createOperationHystrixSettings(operation, hystrixSettings, operationCommandKeys, semaphoreIsolatedReads));
+		}
+		if (readByIdBatchWindowMicros == null) {
+			this.readByIdBatcher = null;
+		} else {
+			this.readByIdBatcher = new ReadByIdBatcher(new ReadByIdBatcher.BatchReader() {
+				@Override
+				public Object[] readByIds(Class<?> type, Object[] ids) throws Throwable {
+					return AstrixGigaSpaceProxy.this.readByIds(type, ids);
+				}
+			}, readByIdBatchWindowMicros, readByIdMaxBatchSize);
+		}
 	}
 
 	public static GigaSpace create(GigaSpace gigaSpace, BeanFaultTolerance faultTolerance, HystrixCommandSettings hystrixSettings) {
 		return ReflectionUtil.newProxy(GigaSpace.class, new AstrixGigaSpaceProxy(gigaSpace, faultTolerance, hystrixSettings));
 	}
+	
+	/**
+	 * Creates a proxy that also supports coalescing of concurrent readById(Class, Object) invocations. Batching is 
+	 * enabled by setting "astrix.beans.gigaspace.<spaceName>.readByIdBatching.windowMicros" to a positive value, 
+	 * which is the time the first readById waits for other readById's against the same type before issuing 
+	 * a readByIds. A batch is issued immediately when it contains 
+	 * "astrix.beans.gigaspace.<spaceName>.readByIdBatching.maxBatchSize" ids (default 100). <p>
+	 * 
+	 * Reads are protected using semaphore isolation to avoid a thread handoff on the most frequent operation, 
+	 * which also means that a read is not interrupted when it times out. Since the isolation strategy is a 
+	 * property of the command key, reads always use a separate command key, "<beanCommandKey>.read". Thread 
+	 * isolated reads using the command key of the bean are restored by setting 
+	 * "astrix.beans.gigaspace.<spaceName>.semaphoreIsolatedReads" to false. <p>
+	 * 
+	 * By setting "astrix.beans.gigaspace.<spaceName>.operationCommandKeys" to true each {@link GigaSpaceOperation} 
+	 * uses a separate command key, e.g "<beanCommandKey>.write", i.e has its own metrics and circuit-breaker. By default 
+	 * all operations except reads use the command key and settings of the bean. <p>
+	 * 
+	 * Both settings are read when the proxy is created.
+	 * 
+	 * @param gigaSpace
+	 * @param faultTolerance
+	 * @param hystrixSettings
+	 * @param config
+	 * @return
+	 */
+	public static GigaSpace create(GigaSpace gigaSpace, BeanFaultTolerance faultTolerance, HystrixCommandSettings hystrixSettings, DynamicConfig config) {
+		String spaceName = gigaSpace.getName();
+		DynamicLongProperty windowMicros = config.getLongProperty("astrix.beans.gigaspace." + spaceName + ".readByIdBatching.windowMicros", 0);
+		DynamicIntProperty maxBatchSize = config.getIntProperty("astrix.beans.gigaspace." + spaceName + ".readByIdBatching.maxBatchSize", 100);
+		boolean operationCommandKeys = config.getBooleanProperty("astrix.beans.gigaspace." + spaceName + ".operationCommandKeys", false).get();
+		boolean semaphoreIsolatedReads = config.getBooleanProperty("astrix.beans.gigaspace." + spaceName + ".semaphoreIsolatedReads", true).get();
+		return ReflectionUtil.newProxy(GigaSpace.class, new AstrixGigaSpaceProxy(gigaSpace, faultTolerance, hystrixSettings, operationCommandKeys, semaphoreIsolatedReads, 
+																				 windowMicros, maxBatchSize));
+	}
+	
+	private static HystrixCommandSettings createOperationHystrixSettings(GigaSpaceOperation operation, HystrixCommandSettings hystrixSettings, 
+																		 boolean operationCommandKeys, boolean semaphoreIsolatedReads) {
+		boolean semaphoreIsolated = semaphoreIsolatedReads && operation == GigaSpaceOperation.READ;
+		if (!operationCommandKeys && !semaphoreIsolated) {
+			return hystrixSettings;
+		}
+		HystrixCommandSettings result = new HystrixCommandSettings(hystrixSettings);
+		result.setCommandKeySuffix(operation.name().toLowerCase());
+		if (semaphoreIsolated) {
+			result.setExecutionIsolationStrategy(ExecutionIsolationStrategy.SEMAPHORE);
+			result.setSemaphoreMaxConcurrentRequests(Math.max(MIN_READ_SEMAPHORE_MAX_CONCURRENT_REQUESTS, hystrixSettings.getSemaphoreMaxConcurrentRequests()));
+		}
+		return result;
+	}
 
 	@Override
 	public Object invoke(Object proxy, final Method method, final Object[] args) throws Throwable {
+		GigaSpaceOperation operation = GigaSpaceOperation.of(method);
+		if (operation == GigaSpaceOperation.LOCAL) {
+			return ReflectionUtil.invokeMethod(method, gigaSpace, args);
+		}
+		if (isBatchableReadById(method, args)) {
+			return readByIdBatcher.readById((Class<?>) args[0], args[1]);
+		}
 		return faultTolerance.execute(new CheckedCommand<Object>() {
 			@Override
 			public Object call() throws Throwable {
@@ -64,7 +152,29 @@ public class AstrixGigaSpaceProxy implements InvocationHandler {
 					throw new ServiceUnavailableException("SpaceCacheNotAvailable", e);
 				}
 			}
-		}, this.hystrixSettings);
+		}, this.hystrixSettingsByOperation.get(operation));
+	}
+	
+	private boolean isBatchableReadById(Method method, Object[] args) {
+		return readByIdBatcher != null 
+				&& method.getName().equals("readById") 
+				&& args != null && args.length == 2 
+				&& args[0] instanceof Class 
+				&& args[1] != null
+				&& readByIdBatcher.isEnabled();
+	}
+	
+	private Object[] readByIds(final Class<?> type, final Object[] ids) throws Throwable {
+		return faultTolerance.execute(new CheckedCommand<Object[]>() {
+			@Override
+			public Object[] call() throws Throwable {
+				try {
+					return gigaSpace.readByIds(type, ids).getResultsArray();
+				} catch (SpaceCacheException e) {
+					throw new ServiceUnavailableException("SpaceCacheNotAvailable", e);
+				}
+			}
+		}, this.hystrixSettingsByOperation.get(GigaSpaceOperation.READ));
 	}
 
 }
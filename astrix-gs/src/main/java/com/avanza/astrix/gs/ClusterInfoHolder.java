@@ -17,10 +17,13 @@ package com.avanza.astrix.gs;
 
 import org.openspaces.core.cluster.ClusterInfo;
 import org.openspaces.core.cluster.ClusterInfoAware;
+import org.openspaces.core.space.mode.AfterSpaceModeChangeEvent;
+import org.springframework.context.ApplicationListener;
 
-public class ClusterInfoHolder implements ClusterInfoAware {
+public class ClusterInfoHolder implements ClusterInfoAware, ApplicationListener<AfterSpaceModeChangeEvent> {
 
 	private ClusterInfo clusterInfo;
+	private volatile boolean primary = false;
 
 	@Override
 	public void setClusterInfo(ClusterInfo clusterInfo) {
@@ -30,5 +33,17 @@ public class ClusterInfoHolder implements ClusterInfoAware {
 	public ClusterInfo getClusterInfo() {
 		return clusterInfo;
 	}
+	
+	@Override
+	public void onApplicationEvent(AfterSpaceModeChangeEvent event) {
+		this.primary = event.isPrimary();
+	}
+	
+	/**
+	 * @return true if the embedded space in the current processing unit is in primary mode
+	 */
+	public boolean isPrimary() {
+		return primary;
+	}
 
 }
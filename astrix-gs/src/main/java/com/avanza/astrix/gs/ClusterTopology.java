@@ -0,0 +1,135 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.gs;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openspaces.core.GigaSpace;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.avanza.astrix.config.DynamicConfig;
+import com.avanza.astrix.config.DynamicLongProperty;
+import com.avanza.astrix.remoting.client.RoutingKey;
+import com.gigaspaces.internal.client.spaceproxy.SpaceProxyImpl;
+import com.j_spaces.core.IJSpace;
+/**
+ * Cached view of the topology of a clustered space, i.e the number of partitions and 
+ * the routing key used to target each partition. <p>
+ * 
+ * The topology is read from the clustered proxy when first requested, and then re-read
+ * at most once every "astrix.beans.gigaspace.<spaceName>.clusterTopology.refreshInterval"
+ * milliseconds (default 60 seconds), or on the next request after {@link #invalidate()} is invoked. 
+ * This allows routing a request to be a plain array lookup rather than inspecting the proxy on 
+ * each invocation. <p>
+ * 
+ * IMPLEMENTATION NOTE: GigaSpaces routes a task to the partition given by the hash of its routing key 
+ * modulo the number of partitions. Hence, the "member" owning a partition is addressed using 
+ * a routing key whose hash is the partition id, which is what {@link #getRoutingKey(int)} returns.
+ */
+public final class ClusterTopology {
+	
+	private static final Logger log = LoggerFactory.getLogger(ClusterTopology.class);
+	private final GigaSpace gigaSpace;
+	private final DynamicLongProperty refreshInterval;
+	private volatile Partitions partitions;
+	
+	public ClusterTopology(GigaSpace gigaSpace, DynamicConfig config) {
+		this.gigaSpace = gigaSpace;
+		this.refreshInterval = config.getLongProperty("astrix.beans.gigaspace." + gigaSpace.getName() + ".clusterTopology.refreshInterval", 60_000);
+	}
+	
+	public int getPartitionCount() {
+		return getPartitions().routingKeys.length;
+	}
+	
+	/**
+	 * Returns the partition that a given routing key is routed to by GigaSpaces. Only
+	 * valid for routing keys with a non negative hash. 
+	 * 
+	 * @param routingKey
+	 * @return
+	 */
+	public int getPartition(RoutingKey routingKey) {
+		return routingKey.hashCode() % getPartitionCount();
+	}
+	
+	/**
+	 * Returns a routing key targeting the given partition.
+	 * 
+	 * @param partition
+	 * @return
+	 */
+	public RoutingKey getRoutingKey(int partition) {
+		return getPartitions().routingKeys[partition];
+	}
+	
+	/**
+	 * Forces the topology to be re-read from the clustered proxy on next access. 
+	 */
+	public void invalidate() {
+		this.partitions = null;
+	}
+	
+	private Partitions getPartitions() {
+		Partitions result = this.partitions;
+		if (result == null || result.isExpired()) {
+			result = readPartitions(result);
+			this.partitions = result;
+		}
+		return result;
+	}
+	
+	private Partitions readPartitions(Partitions previous) {
+		int partitionCount = readPartitionCount();
+		if (previous != null && previous.routingKeys.length != partitionCount) {
+			log.info(String.format("Cluster topology changed. space=%s oldPartitionCount=%s newPartitionCount=%s", 
+								   gigaSpace.getName(), previous.routingKeys.length, partitionCount));
+		}
+		long expiresAt = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(refreshInterval.get());
+		if (previous != null && previous.routingKeys.length == partitionCount) {
+			return new Partitions(previous.routingKeys, expiresAt);
+		}
+		RoutingKey[] routingKeys = new RoutingKey[partitionCount];
+		for (int partition = 0; partition < partitionCount; partition++) {
+			routingKeys[partition] = RoutingKey.create(partition);
+		}
+		return new Partitions(routingKeys, expiresAt);
+	}
+	
+	private int readPartitionCount() {
+		IJSpace space = this.gigaSpace.getSpace();
+		if (space instanceof SpaceProxyImpl) {
+			return SpaceProxyImpl.class.cast(space).getSpaceClusterInfo().getNumberOfPartitions();
+		}
+		throw new IllegalStateException("Cant decide cluster topology on clustered proxy: " + this.gigaSpace.getName());
+	}
+	
+	private static final class Partitions {
+		private final RoutingKey[] routingKeys;
+		private final long expiresAt;
+		
+		public Partitions(RoutingKey[] routingKeys, long expiresAt) {
+			this.routingKeys = routingKeys;
+			this.expiresAt = expiresAt;
+		}
+		
+		boolean isExpired() {
+			return System.nanoTime() - expiresAt > 0;
+		}
+	}
+
+}
@@ -93,6 +93,7 @@ public class ClusteredProxyCache implements AstrixConfigAware {
 		private volatile SpaceTaskDispatcher spaceTaskDispatcher;
 		private final Lock spaceTaskDispatcherStateLock = new ReentrantLock();
 		private final DynamicConfig config;
+		private final ClusterTopology clusterTopology;
 		
 		public GigaSpaceInstance(String spaceUrl, DynamicConfig dynamicConfig) {
 			this.spaceUrl = spaceUrl;
@@ -100,6 +101,7 @@ public class ClusteredProxyCache implements AstrixConfigAware {
 			this.urlSpaceConfigurer = new UrlSpaceConfigurer(spaceUrl);
 			IJSpace space = urlSpaceConfigurer.create();
 			this.proxy = new GigaSpaceConfigurer(space).create();
+			this.clusterTopology = new ClusterTopology(proxy, dynamicConfig);
 		}
 
 		public void incConsumerCount() {
@@ -110,11 +112,15 @@ public class ClusteredProxyCache implements AstrixConfigAware {
 			return proxy;
 		}
 		
+		public ClusterTopology getClusterTopology() {
+			return clusterTopology;
+		}
+		
 		public SpaceTaskDispatcher getSpaceTaskDispatcher() {
 			spaceTaskDispatcherStateLock.lock();
 			try {
 				if (spaceTaskDispatcher == null) {
-					this.spaceTaskDispatcher = new SpaceTaskDispatcher(proxy, config); 
+					this.spaceTaskDispatcher = new SpaceTaskDispatcher(proxy, clusterTopology, config); 
 				}
 				return spaceTaskDispatcher;
 			} finally {
@@ -0,0 +1,79 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.gs;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+/**
+ * Classifies the methods of a GigaSpace proxy into operation classes that might be
+ * protected and measured separately by {@link AstrixGigaSpaceProxy}. 
+ */
+public enum GigaSpaceOperation {
+	
+	/**
+	 * read*, asyncRead*, count and iterator operations.
+	 */
+	READ,
+	/**
+	 * write*, change*, asyncChange* and clear operations.
+	 */
+	WRITE,
+	/**
+	 * take*, asyncTake* operations.
+	 */
+	TAKE,
+	/**
+	 * execute* operations, and any other operation not classified.
+	 */
+	EXECUTE,
+	/**
+	 * Getters and Object methods that only inspect the local proxy and never 
+	 * interacts with the space.
+	 */
+	LOCAL;
+	
+	private static final ConcurrentMap<Method, GigaSpaceOperation> operationByMethod = new ConcurrentHashMap<>();
+	
+	public static GigaSpaceOperation of(Method method) {
+		GigaSpaceOperation result = operationByMethod.get(method);
+		if (result == null) {
+			result = classify(method.getName());
+			operationByMethod.put(method, result);
+		}
+		return result;
+	}
+	
+	static GigaSpaceOperation classify(String methodName) {
+		if (methodName.startsWith("read") || methodName.startsWith("asyncRead") 
+				|| methodName.equals("count") || methodName.equals("iterator")) {
+			return READ;
+		}
+		if (methodName.startsWith("write") || methodName.startsWith("change") || methodName.startsWith("asyncChange") 
+				|| methodName.equals("clear")) {
+			return WRITE;
+		}
+		if (methodName.startsWith("take") || methodName.startsWith("asyncTake")) {
+			return TAKE;
+		}
+		if (methodName.startsWith("get") || methodName.equals("toString") 
+				|| methodName.equals("hashCode") || methodName.equals("equals")) {
+			return LOCAL;
+		}
+		return EXECUTE;
+	}
+
+}
@@ -19,11 +19,13 @@ import org.kohsuke.MetaInfServices;
 import org.openspaces.core.GigaSpace;
 
 import com.avanza.astrix.beans.inject.AstrixInject;
+import com.avanza.astrix.beans.publish.AstrixConfigAware;
 import com.avanza.astrix.beans.service.BoundServiceBeanInstance;
 import com.avanza.astrix.beans.service.ServiceComponent;
 import com.avanza.astrix.beans.service.ServiceDefinition;
 import com.avanza.astrix.beans.service.ServiceProperties;
 import com.avanza.astrix.beans.service.UnsupportedTargetTypeException;
+import com.avanza.astrix.config.DynamicConfig;
 import com.avanza.astrix.ft.BeanFaultTolerance;
 import com.avanza.astrix.ft.BeanFaultToleranceFactory;
 import com.avanza.astrix.ft.HystrixCommandSettings;
@@ -37,13 +39,13 @@ import com.avanza.astrix.spring.AstrixSpringContext;
  *
  */
 @MetaInfServices(ServiceComponent.class)
-public class GsComponent implements ServiceComponent {
+public class GsComponent implements ServiceComponent, AstrixConfigAware {
 
 	private GsBinder gsBinder;
 	private BeanFaultToleranceFactory faultToleranceFactory;
 	private AstrixSpringContext astrixSpringContext;
 	private ClusteredProxyCache proxyCache;
-	
+	private DynamicConfig config;
 	
 	@Override
 	public <T> BoundServiceBeanInstance<T> bind(ServiceDefinition<T> serviceDefinition, ServiceProperties serviceProperties) {
@@ -53,7 +55,7 @@ public class GsComponent implements ServiceComponent {
 		}
 		GigaSpaceInstance gigaSpaceInstance = proxyCache.getProxy(serviceProperties);
 		BeanFaultTolerance beanFaultTolerance = faultToleranceFactory.create(serviceDefinition);
-		T proxyWithFaultTolerance = targetType.cast(AstrixGigaSpaceProxy.create(gigaSpaceInstance.get(), beanFaultTolerance, new HystrixCommandSettings()));
+		T proxyWithFaultTolerance = targetType.cast(AstrixGigaSpaceProxy.create(gigaSpaceInstance.get(), beanFaultTolerance, new HystrixCommandSettings(), config));
 		return BoundProxyServiceBeanInstance.create(proxyWithFaultTolerance, gigaSpaceInstance);
 	}
 	
@@ -111,5 +113,10 @@ public class GsComponent implements ServiceComponent {
 	public void setFaultTolerance(BeanFaultToleranceFactory beanFaultToleranceFactory) {
 		this.faultToleranceFactory = beanFaultToleranceFactory;
 	}
+	
+	@Override
+	public void setConfig(DynamicConfig config) {
+		this.config = config;
+	}
 
 }
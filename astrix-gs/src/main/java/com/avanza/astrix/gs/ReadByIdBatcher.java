@@ -0,0 +1,183 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.gs;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import javax.annotation.concurrent.GuardedBy;
+
+import com.avanza.astrix.config.DynamicIntProperty;
+import com.avanza.astrix.config.DynamicLongProperty;
+import com.avanza.astrix.core.ServiceUnavailableException;
+/**
+ * Coalesces concurrent readById invocations for the same type into a single readByIds invocation. <p>
+ * 
+ * The first thread reading an entry of a given type opens a batch and waits for the configured window (or until 
+ * the batch is full) while other threads might add ids to the same batch. The opening thread then reads all ids 
+ * in the batch using a single readByIds invocation, and distributes the result to all threads waiting on the batch. <p>
+ * 
+ * Batching is disabled when the window is zero or negative. If the opening thread is interrupted while waiting
+ * for the window to elapse, the batch is issued immediately and the interrupt status is restored when the read completes. 
+ */
+final class ReadByIdBatcher {
+	
+	interface BatchReader {
+		/**
+		 * Reads the entries with the given ids.
+		 * 
+		 * @return an array with the same size as ids containing the entry for each id, or null if not found.
+		 */
+		Object[] readByIds(Class<?> type, Object[] ids) throws Throwable;
+	}
+	
+	private final ConcurrentMap<Class<?>, Batch> openBatchByType = new ConcurrentHashMap<>();
+	private final BatchReader batchReader;
+	private final DynamicLongProperty windowMicros;
+	private final DynamicIntProperty maxBatchSize;
+	
+	ReadByIdBatcher(BatchReader batchReader, DynamicLongProperty windowMicros, DynamicIntProperty maxBatchSize) {
+		this.batchReader = batchReader;
+		this.windowMicros = windowMicros;
+		this.maxBatchSize = maxBatchSize;
+	}
+	
+	boolean isEnabled() {
+		return windowMicros.get() > 0;
+	}
+	
+	Object readById(Class<?> type, Object id) throws Throwable {
+		while (true) {
+			Batch batch = openBatchByType.get(type);
+			if (batch == null) {
+				Batch newBatch = new Batch(Thread.currentThread());
+				int index = newBatch.add(id, Integer.MAX_VALUE);
+				if (openBatchByType.putIfAbsent(type, newBatch) == null) {
+					return readAsLeader(type, newBatch, index);
+				}
+				continue;
+			}
+			int index = batch.add(id, maxBatchSize.get());
+			if (index < 0) {
+				// Batch already flushed by leader
+				openBatchByType.remove(type, batch);
+				continue;
+			}
+			if (batch.isClosed()) {
+				// Batch is full, flush it without waiting for window to elapse
+				openBatchByType.remove(type, batch);
+				LockSupport.unpark(batch.leader);
+			}
+			return batch.await(index);
+		}
+	}
+
+	private Object readAsLeader(Class<?> type, Batch batch, int index) throws Throwable {
+		long deadline = System.nanoTime() + TimeUnit.MICROSECONDS.toNanos(windowMicros.get());
+		long remaining;
+		boolean interrupted = false;
+		while (!batch.isClosed() && (remaining = deadline - System.nanoTime()) > 0) {
+			LockSupport.parkNanos(this, remaining);
+			if (Thread.interrupted()) {
+				// Flush the batch immediately, parkNanos would otherwise return immediately for the rest of the window
+				interrupted = true;
+				break;
+			}
+		}
+		Object[] ids = batch.close();
+		openBatchByType.remove(type, batch);
+		try {
+			batch.complete(batchReader.readByIds(type, ids), null);
+		} catch (Throwable e) {
+			batch.complete(null, e);
+		} finally {
+			if (interrupted) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		return batch.getResult(index);
+	}
+	
+	private static final class Batch {
+		
+		private final Thread leader;
+		private final CountDownLatch done = new CountDownLatch(1);
+		@GuardedBy("this")
+		private final List<Object> ids = new ArrayList<>();
+		private volatile boolean closed = false;
+		private volatile Object[] results;
+		private volatile Throwable error;
+		
+		public Batch(Thread leader) {
+			this.leader = leader;
+		}
+
+		/**
+		 * @return the index of the id in this batch, or -1 if this batch is closed.
+		 */
+		synchronized int add(Object id, int maxSize) {
+			if (closed) {
+				return -1;
+			}
+			ids.add(id);
+			if (ids.size() >= maxSize) {
+				closed = true;
+			}
+			return ids.size() - 1;
+		}
+		
+		synchronized Object[] close() {
+			closed = true;
+			return ids.toArray();
+		}
+		
+		boolean isClosed() {
+			return closed;
+		}
+		
+		void complete(Object[] results, Throwable error) {
+			this.results = results;
+			this.error = error;
+			this.done.countDown();
+		}
+		
+		Object await(int index) throws Throwable {
+			try {
+				done.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new ServiceUnavailableException("Interrupted while waiting for batched readById");
+			}
+			return getResult(index);
+		}
+		
+		/**
+		 * Returns the result for the given index of a completed batch.
+		 */
+		Object getResult(int index) throws Throwable {
+			if (error != null) {
+				throw error;
+			}
+			return results[index];
+		}
+	}
+
+}
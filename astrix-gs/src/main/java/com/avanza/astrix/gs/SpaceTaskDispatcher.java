@@ -16,11 +16,22 @@
 package com.avanza.astrix.gs;
 
 import java.io.Serializable;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 
+import javax.management.ObjectName;
+
 import org.openspaces.core.GigaSpace;
 import org.openspaces.core.executor.DistributedTask;
 import org.openspaces.core.executor.Task;
@@ -31,13 +42,17 @@ import rx.Observable;
 import rx.Observable.OnSubscribe;
 import rx.Subscriber;
 
+import com.avanza.astrix.beans.core.AstrixMBeanExporter;
+import com.avanza.astrix.config.DynamicBooleanProperty;
 import com.avanza.astrix.config.DynamicConfig;
 import com.avanza.astrix.config.DynamicIntProperty;
+import com.avanza.astrix.config.DynamicLongProperty;
 import com.avanza.astrix.config.DynamicPropertyListener;
+import com.avanza.astrix.core.ServiceUnavailableException;
 import com.avanza.astrix.core.util.NamedThreadFactory;
+import com.avanza.astrix.core.util.VirtualThreads;
 import com.avanza.astrix.remoting.util.GsUtil;
 import com.gigaspaces.async.AsyncFuture;
-import com.gigaspaces.internal.client.spaceproxy.SpaceProxyImpl;
 import com.j_spaces.core.IJSpace;
 /**
  * 
@@ -54,20 +69,64 @@ public final class SpaceTaskDispatcher {
 	 * resources are available to process the request. In order to ensure a non-blocking programming model
 	 * we associate each clustered proxy with a dedicated thread pool to submit task executions, which ensures
 	 * that a service invocation will never block, see com.avanza.astrix.gs.remoting.GsRemotingTransport
+	 * 
+	 * The queue in front of the thread pool is unbounded by default. By setting 
+	 * "astrix.beans.gigaspace.<spaceName>.spaceTaskDispatcher.maxQueueSize" to a positive value
+	 * tasks will be rejected with a ServiceUnavailableException when the queue is full, which allows 
+	 * the fault tolerance layer to see the overload instead of letting callers queue up behind a blocked 
+	 * space. The limit is checked on each submission rather than enforced by a bounded queue in order to 
+	 * allow it to be changed at runtime. 
+	 * 
+	 * Since GigaSpace.execute only blocks in rare conditions, the thread hop might be avoided by setting 
+	 * "astrix.beans.gigaspace.<spaceName>.spaceTaskDispatcher.inlineSubmission" to true. Tasks are then submitted
+	 * on the calling thread as long as the space is considered healthy. A watchdog thread monitors all inline 
+	 * submissions, and if one takes longer than "inlineSubmissionBlockedThreshold" (millis) inline submission 
+	 * is suspended and all tasks are submitted using the thread pool until "inlineSubmissionSuspendTime" (millis) 
+	 * has passed without detecting any more blocked submissions. Note that the watchdog can't release a caller that
+	 * is already blocked, it only protects subsequent callers.
+	 * 
+	 * When running on a JDK with support for virtual threads (Java 21 or later) the thread pool might be replaced
+	 * by a virtual thread per task by setting "astrix.beans.gigaspace.<spaceName>.spaceTaskDispatcher.virtualThreads"
+	 * to true. The number of concurrently blocked submissions is then no longer capped by "poolsize". The setting 
+	 * is ignored (with a warning) on older JDKs.
 	 */
 	
+	private static final long WATCHDOG_INTERVAL_MILLIS = 50;
+	
 	private static final Logger log = LoggerFactory.getLogger(SpaceTaskDispatcher.class);
 	private final GigaSpace gigaSpace;
 	private final ThreadPoolExecutor executorService;
+	private ThreadPerTaskExecutor virtualThreadExecutor;
+	private volatile Executor executor;
+	private final DynamicIntProperty maxQueueSize;
+	private final DynamicBooleanProperty inlineSubmission;
+	private final DynamicLongProperty inlineSubmissionBlockedThreshold;
+	private final DynamicLongProperty inlineSubmissionSuspendTime;
+	private final ConcurrentMap<Thread, Long> inlineSubmissions = new ConcurrentHashMap<>();
+	private volatile long inlineSubmissionSuspendedUntil = System.nanoTime();
+	private volatile ScheduledExecutorService watchdog;
+	private boolean destroyed = false;
+	private final ClusterTopology clusterTopology;
+	private final SpaceTaskDispatcherMetrics metrics = new SpaceTaskDispatcherMetrics();
+	private final ObjectName metricsMBeanName;
 
 	public SpaceTaskDispatcher(GigaSpace gigaSpace, DynamicConfig config) {
+		this(gigaSpace, new ClusterTopology(gigaSpace, config), config);
+	}
+	
+	public SpaceTaskDispatcher(GigaSpace gigaSpace, ClusterTopology clusterTopology, DynamicConfig config) {
 		this.gigaSpace = gigaSpace;
+		this.clusterTopology = clusterTopology;
 		/* 
 		 * TODO 
 		 * 	(1) Improve configuration mechanism used to configure thread pool. 
 		 */
 		String spaceInstanceName = gigaSpace.getName();
 		DynamicIntProperty poolSize = config.getIntProperty("astrix.beans.gigaspace." + spaceInstanceName + ".spaceTaskDispatcher.poolsize", 10);
+		this.maxQueueSize = config.getIntProperty("astrix.beans.gigaspace." + spaceInstanceName + ".spaceTaskDispatcher.maxQueueSize", -1);
+		this.inlineSubmission = config.getBooleanProperty("astrix.beans.gigaspace." + spaceInstanceName + ".spaceTaskDispatcher.inlineSubmission", false);
+		this.inlineSubmissionBlockedThreshold = config.getLongProperty("astrix.beans.gigaspace." + spaceInstanceName + ".spaceTaskDispatcher.inlineSubmissionBlockedThreshold", 200);
+		this.inlineSubmissionSuspendTime = config.getLongProperty("astrix.beans.gigaspace." + spaceInstanceName + ".spaceTaskDispatcher.inlineSubmissionSuspendTime", 30_000);
 		this.executorService = new ThreadPoolExecutor(poolSize.get(), 
 											 poolSize.get(), 
 											 0, 
@@ -84,6 +143,35 @@ public final class SpaceTaskDispatcher {
 				executorService.setMaximumPoolSize(newValue);
 			}
 		});
+		final DynamicBooleanProperty virtualThreads = config.getBooleanProperty("astrix.beans.gigaspace." + spaceInstanceName + ".spaceTaskDispatcher.virtualThreads", false);
+		this.executor = selectExecutor(virtualThreads.get());
+		virtualThreads.addListener(new DynamicPropertyListener<Boolean>() {
+			@Override
+			public void propertyChanged(Boolean newValue) {
+				executor = selectExecutor(newValue);
+			}
+		});
+		this.metricsMBeanName = AstrixMBeanExporter.register(metrics, "SpaceTaskDispatcher", spaceInstanceName);
+	}
+	
+	private synchronized Executor selectExecutor(boolean useVirtualThreads) {
+		if (!useVirtualThreads) {
+			return executorService;
+		}
+		if (!VirtualThreads.isSupported()) {
+			log.warn(String.format("Virtual threads not supported by running JVM, using thread pool for SpaceTaskDispatcher. space=%s javaVersion=%s", 
+								   gigaSpace.getName(), System.getProperty("java.version")));
+			return executorService;
+		}
+		if (virtualThreadExecutor == null) {
+			// Created on first use, in order to never touch the virtual thread api unless enabled
+			virtualThreadExecutor = new ThreadPerTaskExecutor(VirtualThreads.newThreadFactory(String.format("SpaceTaskDispatcher[%s]", gigaSpace.getName())));
+			if (destroyed) {
+				virtualThreadExecutor.shutdown();
+			}
+		}
+		log.info(String.format("Using virtual threads for SpaceTaskDispatcher. space=%s", gigaSpace.getName()));
+		return virtualThreadExecutor;
 	}
 
 
@@ -92,62 +180,258 @@ public final class SpaceTaskDispatcher {
 	}
 	
 	public int partitionCount() {
-		IJSpace space = this.gigaSpace.getSpace();
-		if (space instanceof SpaceProxyImpl) {
-			return SpaceProxyImpl.class.cast(space).getSpaceClusterInfo().getNumberOfPartitions();
-		}
-		throw new IllegalStateException("Cant decide cluster topology on clustered proxy: " + this.gigaSpace.getName());
+		return clusterTopology.getPartitionCount();
+	}
+	
+	public ClusterTopology getClusterTopology() {
+		return clusterTopology;
 	}
 
 	public <T extends Serializable> Observable<T> observe(final Task<T> task, final Object routingKey) {
+		return observe(new SpaceTaskSubmission<T>() {
+			@Override
+			public AsyncFuture<T> submit() {
+				return gigaSpace.execute(task, routingKey);
+			}
+		});
+	}
+
+	public <T extends Serializable, R> Observable<R> observe(final DistributedTask<T, R> distributedTask) {
+		return observe(new SpaceTaskSubmission<R>() {
+			@Override
+			public AsyncFuture<R> submit() {
+				return gigaSpace.execute(distributedTask);
+			}
+		});
+	}
+	
+	/**
+	 * Executes a DistributedTask on the partitions identified by the given routing keys. <p>
+	 * 
+	 * @param distributedTask
+	 * @param routingKeys
+	 * @return
+	 */
+	public <T extends Serializable, R> Observable<R> observeRouted(final DistributedTask<T, R> distributedTask, final Object[] routingKeys) {
+		return observe(new SpaceTaskSubmission<R>() {
+			@Override
+			public AsyncFuture<R> submit() {
+				return gigaSpace.execute(distributedTask, routingKeys);
+			}
+		});
+	}
+	
+	/**
+	 * Executes a task that does not use the space, for instance a service invocation on a collocated
+	 * service provider, using the thread pool of this dispatcher. The task is never executed on the 
+	 * subscribing thread, and is subject to the same queue limit as tasks submitted to the space. <p>
+	 * 
+	 * @param task
+	 * @return
+	 */
+	public <T> Observable<T> observeLocal(final Callable<T> task) {
 		return Observable.create(new OnSubscribe<T>() {
 			@Override
 			public void call(final Subscriber<? super T> t1) {
-				executorService.execute(new Runnable() {
+				dispatch(t1, new DispatchedTask() {
 					@Override
-					public void run() {
+					public void run(long startedAt) {
+						boolean successful = false;
+						T result;
 						try {
-							// Submit task on current thread in executorService
-							AsyncFuture<T> taskResult = gigaSpace.execute(task, routingKey);
-							GsUtil.subscribe(taskResult, t1);
+							result = task.call();
+							successful = true;
 						} catch (Exception e) {
 							t1.onError(e);
+							return;
+						} finally {
+							metrics.submissionCompleted(startedAt, successful);
 						}
+						t1.onNext(result);
+						t1.onCompleted();
 					}
 				});
 			}
 		});
 	}
-
-	public <T extends Serializable, R> Observable<R> observe(final DistributedTask<T, R> distributedTask) {
-		return Observable.create(new OnSubscribe<R>() {
+	
+	private <T> Observable<T> observe(final SpaceTaskSubmission<T> submission) {
+		return Observable.create(new OnSubscribe<T>() {
 			@Override
-			public void call(final Subscriber<? super R> t1) {
-				executorService.execute(new Runnable() {
+			public void call(final Subscriber<? super T> t1) {
+				if (isInlineSubmissionAllowed()) {
+					submitInline(submission, t1);
+					return;
+				}
+				dispatch(t1, new DispatchedTask() {
 					@Override
-					public void run() {
-						try {
-							// Submit task on current thread in executorService
-							AsyncFuture<R> taskResult = gigaSpace.execute(distributedTask);
-							GsUtil.subscribe(taskResult, t1);
-						} catch (Exception e) {
-							t1.onError(e);
-						}
+					public void run(long startedAt) {
+						// Submit task on current thread in executorService
+						submit(submission, t1, startedAt);
 					}
 				});
 			}
 		});
 	}
 	
+	private void dispatch(Subscriber<?> t1, final DispatchedTask task) {
+		int maxQueueSize = this.maxQueueSize.get();
+		if (maxQueueSize > 0 && metrics.getQueueSize() >= maxQueueSize) {
+			metrics.taskRejected(false);
+			t1.onError(new ServiceUnavailableException(String.format("SpaceTaskDispatcher queue is full. space=%s maxQueueSize=%s", 
+																	 gigaSpace.getName(), maxQueueSize)));
+			return;
+		}
+		final long queuedAt = metrics.taskQueued();
+		try {
+			executor.execute(new Runnable() {
+				@Override
+				public void run() {
+					task.run(metrics.submissionStarted(queuedAt));
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			metrics.taskRejected(true);
+			t1.onError(new ServiceUnavailableException("SpaceTaskDispatcher rejected task. space=" + gigaSpace.getName(), e));
+		}
+	}
+	
+	private <T> void submit(SpaceTaskSubmission<T> submission, Subscriber<? super T> t1, long submissionStart) {
+		boolean successful = false;
+		try {
+			AsyncFuture<T> taskResult = submission.submit();
+			successful = true;
+			GsUtil.subscribe(taskResult, t1);
+		} catch (Exception e) {
+			t1.onError(e);
+		} finally {
+			metrics.submissionCompleted(submissionStart, successful);
+		}
+	}
+	
+	private boolean isInlineSubmissionAllowed() {
+		return inlineSubmission.get() && System.nanoTime() - inlineSubmissionSuspendedUntil >= 0;
+	}
+	
+	private <T> void submitInline(SpaceTaskSubmission<T> submission, Subscriber<? super T> t1) {
+		startWatchdogIfNotRunning();
+		Thread submitter = Thread.currentThread();
+		long submissionStart = metrics.inlineSubmissionStarted();
+		// A task might be submitted from within the listener of another task completed on the same thread
+		Long outerSubmissionStart = inlineSubmissions.put(submitter, submissionStart);
+		try {
+			submit(submission, t1, submissionStart);
+		} finally {
+			if (outerSubmissionStart != null) {
+				inlineSubmissions.put(submitter, outerSubmissionStart);
+			} else {
+				inlineSubmissions.remove(submitter);
+			}
+		}
+	}
+	
+	private void startWatchdogIfNotRunning() {
+		if (watchdog != null) {
+			return;
+		}
+		synchronized (this) {
+			if (watchdog != null || destroyed) {
+				return;
+			}
+			ScheduledExecutorService newWatchdog = Executors.newSingleThreadScheduledExecutor(
+					new NamedThreadFactory(String.format("SpaceTaskDispatcher-Watchdog[%s]", gigaSpace.getName())));
+			newWatchdog.scheduleWithFixedDelay(new Runnable() {
+				@Override
+				public void run() {
+					detectBlockedInlineSubmissions();
+				}
+			}, WATCHDOG_INTERVAL_MILLIS, WATCHDOG_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+			this.watchdog = newWatchdog;
+		}
+	}
+	
+	private void detectBlockedInlineSubmissions() {
+		long now = System.nanoTime();
+		long blockedThreshold = TimeUnit.MILLISECONDS.toNanos(inlineSubmissionBlockedThreshold.get());
+		for (Map.Entry<Thread, Long> inlineSubmission : inlineSubmissions.entrySet()) {
+			long submissionTime = now - inlineSubmission.getValue();
+			if (submissionTime > blockedThreshold) {
+				suspendInlineSubmission(inlineSubmission.getKey(), submissionTime, now);
+				return;
+			}
+		}
+	}
+
+	private void suspendInlineSubmission(Thread blockedThread, long submissionTime, long now) {
+		boolean alreadySuspended = now - inlineSubmissionSuspendedUntil < 0;
+		inlineSubmissionSuspendedUntil = now + TimeUnit.MILLISECONDS.toNanos(inlineSubmissionSuspendTime.get());
+		if (!alreadySuspended) {
+			metrics.inlineSubmissionSuspended();
+			log.warn(String.format("Detected blocked inline task submission, suspending inline submission. space=%s thread=%s submissionTimeMillis=%s", 
+									gigaSpace.getName(), blockedThread.getName(), TimeUnit.NANOSECONDS.toMillis(submissionTime)));
+		}
+	}
+	
 	/**
 	 * Destroys the {@link SpaceTaskDispatcher} by shutting down the underlying
 	 * {@link ExecutorService}. <p>
 	 */
 	public void destroy() {
 		this.executorService.shutdown();
+		synchronized (this) {
+			if (this.virtualThreadExecutor != null) {
+				this.virtualThreadExecutor.shutdown();
+			}
+			this.destroyed = true;
+			if (this.watchdog != null) {
+				this.watchdog.shutdown();
+			}
+		}
+		AstrixMBeanExporter.unregister(metricsMBeanName);
 	}
 
 	public String getSpaceName() {
 		return gigaSpace.getName();
 	}
+	
+	SpaceTaskDispatcherMetricsMBean getMetrics() {
+		return metrics;
+	}
+	
+	synchronized boolean isWatchdogRunning() {
+		return watchdog != null && !watchdog.isShutdown();
+	}
+	
+	private interface SpaceTaskSubmission<T> {
+		AsyncFuture<T> submit();
+	}
+	
+	private interface DispatchedTask {
+		/**
+		 * @param startedAt the time (System.nanoTime) when a dispatcher thread started executing the task
+		 */
+		void run(long startedAt);
+	}
+	
+	private static final class ThreadPerTaskExecutor implements Executor {
+		
+		private final ThreadFactory threadFactory;
+		private volatile boolean shutdown = false;
+		
+		public ThreadPerTaskExecutor(ThreadFactory threadFactory) {
+			this.threadFactory = threadFactory;
+		}
+
+		@Override
+		public void execute(Runnable command) {
+			if (shutdown) {
+				throw new RejectedExecutionException("Executor is shut down");
+			}
+			threadFactory.newThread(command).start();
+		}
+		
+		public void shutdown() {
+			this.shutdown = true;
+		}
+	}
 }
\ No newline at end of file
@@ -0,0 +1,187 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.gs;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Metrics collected by a {@link SpaceTaskDispatcher}.
+ */
+public final class SpaceTaskDispatcherMetrics implements SpaceTaskDispatcherMetricsMBean {
+	
+	private final AtomicInteger queueSize = new AtomicInteger();
+	private final AtomicInteger activeSubmissions = new AtomicInteger();
+	private final AtomicLong rejectedTaskCount = new AtomicLong();
+	private final AtomicLong failedSubmissionCount = new AtomicLong();
+	private final AtomicLong inlineSubmissionCount = new AtomicLong();
+	private final AtomicLong inlineSubmissionSuspendedCount = new AtomicLong();
+	private final DurationStats queueTime = new DurationStats();
+	private final DurationStats executeTime = new DurationStats();
+	
+	/**
+	 * Registers that a task was added to the dispatcher queue.
+	 * 
+	 * @return the time (System.nanoTime) when the task was queued
+	 */
+	long taskQueued() {
+		queueSize.incrementAndGet();
+		return System.nanoTime();
+	}
+	
+	/**
+	 * Registers that a task was removed from the queue by a dispatcher thread
+	 * and that submission of the task is about to start.
+	 * 
+	 * @param queuedAtNanos
+	 * @return the time (System.nanoTime) when the submission started
+	 */
+	long submissionStarted(long queuedAtNanos) {
+		queueSize.decrementAndGet();
+		activeSubmissions.incrementAndGet();
+		long now = System.nanoTime();
+		queueTime.record(now - queuedAtNanos);
+		return now;
+	}
+	
+	/**
+	 * Registers that a task submission is about to start on the calling thread.
+	 * 
+	 * @return the time (System.nanoTime) when the submission started
+	 */
+	long inlineSubmissionStarted() {
+		activeSubmissions.incrementAndGet();
+		inlineSubmissionCount.incrementAndGet();
+		return System.nanoTime();
+	}
+	
+	void inlineSubmissionSuspended() {
+		inlineSubmissionSuspendedCount.incrementAndGet();
+	}
+	
+	void submissionCompleted(long startedAtNanos, boolean successful) {
+		activeSubmissions.decrementAndGet();
+		executeTime.record(System.nanoTime() - startedAtNanos);
+		if (!successful) {
+			failedSubmissionCount.incrementAndGet();
+		}
+	}
+	
+	/**
+	 * Registers that a task was rejected.
+	 * 
+	 * @param queued whether the task was registered using {@link #taskQueued()} before it was rejected
+	 */
+	void taskRejected(boolean queued) {
+		if (queued) {
+			queueSize.decrementAndGet();
+		}
+		rejectedTaskCount.incrementAndGet();
+	}
+	
+	@Override
+	public int getQueueSize() {
+		return queueSize.get();
+	}
+	
+	@Override
+	public int getActiveSubmissions() {
+		return activeSubmissions.get();
+	}
+	
+	@Override
+	public long getSubmittedTaskCount() {
+		return executeTime.getCount();
+	}
+	
+	@Override
+	public long getRejectedTaskCount() {
+		return rejectedTaskCount.get();
+	}
+	
+	@Override
+	public long getFailedSubmissionCount() {
+		return failedSubmissionCount.get();
+	}
+	
+	@Override
+	public long getInlineSubmissionCount() {
+		return inlineSubmissionCount.get();
+	}
+	
+	@Override
+	public long getInlineSubmissionSuspendedCount() {
+		return inlineSubmissionSuspendedCount.get();
+	}
+	
+	@Override
+	public double getAverageQueueTimeMillis() {
+		return queueTime.getAverageMillis();
+	}
+	
+	@Override
+	public double getMaxQueueTimeMillis() {
+		return queueTime.getMaxMillis();
+	}
+	
+	@Override
+	public double getAverageExecuteTimeMillis() {
+		return executeTime.getAverageMillis();
+	}
+	
+	@Override
+	public double getMaxExecuteTimeMillis() {
+		return executeTime.getMaxMillis();
+	}
+	
+	private static final class DurationStats {
+		
+		private final AtomicLong count = new AtomicLong();
+		private final AtomicLong totalNanos = new AtomicLong();
+		private final AtomicLong maxNanos = new AtomicLong();
+		
+		void record(long durationNanos) {
+			count.incrementAndGet();
+			totalNanos.addAndGet(durationNanos);
+			long currentMax = maxNanos.get();
+			while (durationNanos > currentMax && !maxNanos.compareAndSet(currentMax, durationNanos)) {
+				currentMax = maxNanos.get();
+			}
+		}
+		
+		long getCount() {
+			return count.get();
+		}
+		
+		double getAverageMillis() {
+			long n = count.get();
+			if (n == 0) {
+				return 0;
+			}
+			return toMillis(totalNanos.get() / n);
+		}
+		
+		double getMaxMillis() {
+			return toMillis(maxNanos.get());
+		}
+		
+		private static double toMillis(long nanos) {
+			return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+		}
+	}
+
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.gs;
+
+/**
+ * JMX view of the metrics collected by a {@link SpaceTaskDispatcher}.
+ */
+public interface SpaceTaskDispatcherMetricsMBean {
+	
+	/**
+	 * @return number of tasks currently waiting for a dispatcher thread
+	 */
+	int getQueueSize();
+	
+	/**
+	 * @return number of dispatcher threads currently submitting a task using GigaSpace.execute
+	 */
+	int getActiveSubmissions();
+	
+	long getSubmittedTaskCount();
+	
+	/**
+	 * @return number of tasks rejected by the dispatcher without being submitted to the space
+	 */
+	long getRejectedTaskCount();
+	
+	/**
+	 * @return number of tasks where GigaSpace.execute threw an exception
+	 */
+	long getFailedSubmissionCount();
+	
+	/**
+	 * @return number of tasks submitted on the calling thread, bypassing the dispatcher queue
+	 */
+	long getInlineSubmissionCount();
+	
+	/**
+	 * @return number of times inline submission was suspended due to a blocked submission
+	 */
+	long getInlineSubmissionSuspendedCount();
+	
+	double getAverageQueueTimeMillis();
+	
+	double getMaxQueueTimeMillis();
+	
+	/**
+	 * @return average time spent in GigaSpace.execute, i.e the time it takes to submit a task (not including execution time in the space)
+	 */
+	double getAverageExecuteTimeMillis();
+	
+	double getMaxExecuteTimeMillis();
+
+}
@@ -15,6 +15,8 @@
  */
 package com.avanza.astrix.gs.localview;
 
+import javax.management.ObjectName;
+
 import org.kohsuke.MetaInfServices;
 import org.openspaces.core.GigaSpace;
 import org.openspaces.core.GigaSpaceConfigurer;
@@ -23,6 +25,7 @@ import org.openspaces.core.space.cache.LocalViewSpaceConfigurer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.avanza.astrix.beans.core.AstrixMBeanExporter;
 import com.avanza.astrix.beans.core.AstrixSettings;
 import com.avanza.astrix.beans.inject.AstrixInject;
 import com.avanza.astrix.beans.inject.AstrixInjector;
@@ -35,6 +38,8 @@ import com.avanza.astrix.beans.service.ServiceProperties;
 import com.avanza.astrix.beans.service.UnsupportedTargetTypeException;
 import com.avanza.astrix.config.DynamicBooleanProperty;
 import com.avanza.astrix.config.DynamicConfig;
+import com.avanza.astrix.config.DynamicIntProperty;
+import com.avanza.astrix.config.DynamicLongProperty;
 import com.avanza.astrix.core.util.ReflectionUtil;
 import com.avanza.astrix.ft.BeanFaultTolerance;
 import com.avanza.astrix.ft.BeanFaultToleranceFactory;
@@ -58,6 +63,8 @@ public class GsLocalViewComponent implements ServiceComponent, AstrixConfigAware
 	private GsBinder gsBinder;
 	private AstrixSpringContext astrixSpringContext;
 	private DynamicBooleanProperty disableLocalView;
+	private DynamicIntProperty lookupTimeout;
+	private DynamicLongProperty warmupTimeout;
 	/*
 	 * To avoid circular dependency between GsLocalViewComponent and ServiceComponents
 	 * we have to use the AstrixInjetor to retrieve ServiceComponents.
@@ -82,10 +89,11 @@ public class GsLocalViewComponent implements ServiceComponent, AstrixConfigAware
 		Class<LocalViewConfigurer> serviceConfigClass = serviceDefinition.getServiceConfigClass(LocalViewConfigurer.class);	
 		LocalViewConfigurer localViewConfigurer = ReflectionUtil.newInstance(serviceConfigClass);
 		UrlSpaceConfigurer gsSpaceConfigurer = new UrlSpaceConfigurer(serviceProperties.getProperty(GsBinder.SPACE_URL_PROPERTY));
-		IJSpace space = gsSpaceConfigurer.lookupTimeout(1_000).create();
+		IJSpace space = gsSpaceConfigurer.lookupTimeout(lookupTimeout.get()).create();
 		
 		LocalViewSpaceConfigurer gslocalViewSpaceConfigurer = new LocalViewSpaceConfigurer(space);
-		localViewConfigurer.configure(new LocalViewSpaceConfigurerAdapter(gslocalViewSpaceConfigurer));
+		LocalViewSpaceConfigurerAdapter localViewDefinition = new LocalViewSpaceConfigurerAdapter(gslocalViewSpaceConfigurer);
+		localViewConfigurer.configure(localViewDefinition);
 		
 		String spaceName = serviceProperties.getProperty(GsBinder.SPACE_NAME_PROPERTY);
 		String commandKey = spaceName + "_" + GigaSpace.class.getSimpleName();
@@ -100,10 +108,18 @@ public class GsLocalViewComponent implements ServiceComponent, AstrixConfigAware
 		BeanFaultTolerance faultTolerance = faultToleranceFactory.create(serviceDefinition);
 		
 		IJSpace localViewSpace = gslocalViewSpaceConfigurer.create();
-		GigaSpace localViewGigaSpace = AstrixGigaSpaceProxy.create(new GigaSpaceConfigurer(localViewSpace).create(), faultTolerance, hystrixSettings);
+		GigaSpace rawLocalViewGigaSpace = new GigaSpaceConfigurer(localViewSpace).create();
+		if (warmupTimeout.get() > 0) {
+			// The bean is not bound until bind returns, hence no reads hit the local-view before warm-up completes
+			new LocalViewWarmup(spaceName, rawLocalViewGigaSpace, new GigaSpaceConfigurer(space).create(), localViewDefinition.getViewQueries())
+					.await(warmupTimeout.get());
+		}
+		LocalViewMetrics localViewMetrics = new LocalViewMetrics(rawLocalViewGigaSpace, localViewDefinition.getViewQueries());
+		ObjectName localViewMetricsName = AstrixMBeanExporter.register(localViewMetrics, "LocalView", commandKey);
+		GigaSpace localViewGigaSpace = AstrixGigaSpaceProxy.create(localViewMetrics.createInstrumentedLocalView(), faultTolerance, hystrixSettings);
 		
 		BoundLocalViewGigaSpaceBeanInstance localViewGigaSpaceBeanInstance = 
-				new BoundLocalViewGigaSpaceBeanInstance(localViewGigaSpace, gslocalViewSpaceConfigurer, gsSpaceConfigurer);
+				new BoundLocalViewGigaSpaceBeanInstance(localViewGigaSpace, gslocalViewSpaceConfigurer, gsSpaceConfigurer, localViewMetricsName);
 		return (BoundServiceBeanInstance<T>) localViewGigaSpaceBeanInstance;
 	}
 
@@ -168,6 +184,8 @@ public class GsLocalViewComponent implements ServiceComponent, AstrixConfigAware
 	@Override
 	public void setConfig(DynamicConfig config) {
 		this.disableLocalView = AstrixSettings.GS_DISABLE_LOCAL_VIEW.getFrom(config);
+		this.lookupTimeout = AstrixSettings.GS_LOCAL_VIEW_LOOKUP_TIMEOUT.getFrom(config);
+		this.warmupTimeout = AstrixSettings.GS_LOCAL_VIEW_WARMUP_TIMEOUT.getFrom(config);
 	}
 	
 	private static class BoundLocalViewGigaSpaceBeanInstance implements BoundServiceBeanInstance<GigaSpace> {
@@ -175,13 +193,16 @@ public class GsLocalViewComponent implements ServiceComponent, AstrixConfigAware
 		private GigaSpace instance;
 		private LocalViewSpaceConfigurer localViewSpaceConfigurer;
 		private UrlSpaceConfigurer spaceConfigurer;
+		private ObjectName localViewMetricsName;
 		
 		public BoundLocalViewGigaSpaceBeanInstance(GigaSpace instance,
 				LocalViewSpaceConfigurer localViewSpaceConfigurer,
-				UrlSpaceConfigurer spaceConfigurer) {
+				UrlSpaceConfigurer spaceConfigurer,
+				ObjectName localViewMetricsName) {
 			this.instance = instance;
 			this.localViewSpaceConfigurer = localViewSpaceConfigurer;
 			this.spaceConfigurer = spaceConfigurer;
+			this.localViewMetricsName = localViewMetricsName;
 		}
 
 		@Override
@@ -191,6 +212,7 @@ public class GsLocalViewComponent implements ServiceComponent, AstrixConfigAware
 
 		@Override
 		public void release() {
+			AstrixMBeanExporter.unregister(localViewMetricsName);
 			try {
 				localViewSpaceConfigurer.destroy();
 				spaceConfigurer.destroy();
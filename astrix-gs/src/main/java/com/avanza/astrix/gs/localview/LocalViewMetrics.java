@@ -0,0 +1,180 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.gs.localview;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openspaces.core.GigaSpace;
+
+import com.avanza.astrix.core.util.ReflectionUtil;
+import com.avanza.astrix.gs.GigaSpaceOperation;
+import com.j_spaces.core.client.SQLQuery;
+/**
+ * Counts the read operations on a local-view, separating reads that are served by the local-view 
+ * from reads that bypass it. <p>
+ * 
+ * IMPLEMENTATION NOTE: A read is only counted as local when the local-view is known to serve it, 
+ * i.e when the view holds all entries of the target type (a view query without criteria) or when 
+ * the read uses an SQLQuery identical to one of the view queries. All other reads, including queries 
+ * against a partially covered type whose criteria might be contained by a view query, are counted 
+ * as remote since the GigaSpaces client API does not expose whether a query was delegated to the 
+ * clustered space. Memory footprint and replication lag are not exposed either and hence not measured. 
+ */
+public final class LocalViewMetrics implements LocalViewMetricsMXBean {
+	
+	private static final String UNKNOWN_TYPE = "<unknown>";
+	
+	private final GigaSpace localView;
+	private final List<SQLQuery<?>> viewQueries;
+	private final Set<String> fullyCoveredTypes = new HashSet<>();
+	private final ConcurrentMap<String, AtomicLong> localReadsByType = new ConcurrentHashMap<>();
+	private final ConcurrentMap<String, AtomicLong> remoteReadsByType = new ConcurrentHashMap<>();
+	
+	LocalViewMetrics(GigaSpace localView, List<SQLQuery<?>> viewQueries) {
+		this.localView = localView;
+		this.viewQueries = viewQueries;
+		for (SQLQuery<?> viewQuery : viewQueries) {
+			if (viewQuery.getQuery() == null || viewQuery.getQuery().trim().isEmpty()) {
+				this.fullyCoveredTypes.add(viewQuery.getTypeName());
+			}
+		}
+	}
+	
+	/**
+	 * Creates a GigaSpace that counts all read operations and delegates to the local-view.
+	 * 
+	 * @return
+	 */
+	GigaSpace createInstrumentedLocalView() {
+		return ReflectionUtil.newProxy(GigaSpace.class, new InvocationHandler() {
+			@Override
+			public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+				if (GigaSpaceOperation.of(method) == GigaSpaceOperation.READ) {
+					readPerformed(args);
+				}
+				return ReflectionUtil.invokeMethod(method, localView, args);
+			}
+		});
+	}
+	
+	private void readPerformed(Object[] args) {
+		String type = getTargetType(args);
+		ConcurrentMap<String, AtomicLong> readsByType = isServedByLocalView(type, args) ? localReadsByType : remoteReadsByType;
+		AtomicLong reads = readsByType.get(type);
+		if (reads == null) {
+			readsByType.putIfAbsent(type, new AtomicLong());
+			reads = readsByType.get(type);
+		}
+		reads.incrementAndGet();
+	}
+	
+	private boolean isServedByLocalView(String type, Object[] args) {
+		if (fullyCoveredTypes.contains(type)) {
+			return true;
+		}
+		if (args == null || args.length == 0 || !(args[0] instanceof SQLQuery)) {
+			return false;
+		}
+		SQLQuery<?> query = SQLQuery.class.cast(args[0]);
+		for (SQLQuery<?> viewQuery : viewQueries) {
+			if (viewQuery.getTypeName().equals(query.getTypeName()) 
+					&& viewQuery.getQuery().equals(query.getQuery()) 
+					&& Arrays.equals(viewQuery.getParameters(), query.getParameters())) {
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	private static String getTargetType(Object[] args) {
+		if (args == null || args.length == 0 || args[0] == null) {
+			return UNKNOWN_TYPE;
+		}
+		Object target = args[0];
+		if (target instanceof Class) {
+			return Class.class.cast(target).getName();
+		}
+		if (target instanceof SQLQuery) {
+			return SQLQuery.class.cast(target).getTypeName();
+		}
+		return target.getClass().getName();
+	}
+
+	@Override
+	public long getLocalReadCount() {
+		return sum(localReadsByType);
+	}
+
+	@Override
+	public long getRemoteReadCount() {
+		return sum(remoteReadsByType);
+	}
+
+	@Override
+	public Map<String, Long> getLocalReadCountByType() {
+		return snapshot(localReadsByType);
+	}
+
+	@Override
+	public Map<String, Long> getRemoteReadCountByType() {
+		return snapshot(remoteReadsByType);
+	}
+
+	@Override
+	public long getEntryCount() {
+		long result = 0;
+		for (Integer entries : getEntryCountByViewQuery().values()) {
+			result += entries;
+		}
+		return result;
+	}
+
+	@Override
+	public Map<String, Integer> getEntryCountByViewQuery() {
+		Map<String, Integer> result = new HashMap<>();
+		for (SQLQuery<?> viewQuery : viewQueries) {
+			result.put(viewQuery.getTypeName() + "[" + viewQuery.getQuery() + "]", localView.count(viewQuery));
+		}
+		return result;
+	}
+	
+	private static long sum(Map<String, AtomicLong> counters) {
+		long result = 0;
+		for (AtomicLong counter : counters.values()) {
+			result += counter.get();
+		}
+		return result;
+	}
+	
+	private static Map<String, Long> snapshot(Map<String, AtomicLong> counters) {
+		Map<String, Long> result = new HashMap<>();
+		for (Map.Entry<String, AtomicLong> counter : counters.entrySet()) {
+			result.put(counter.getKey(), counter.getValue().get());
+		}
+		return result;
+	}
+
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.gs.localview;
+
+import java.util.Map;
+/**
+ * Management interface exposing the effectiveness of a local-view. 
+ */
+public interface LocalViewMetricsMXBean {
+	
+	/**
+	 * @return total number of read operations served by the local-view, i.e reads against a type
+	 * 		   fully held by the view or reads using a query identical to a view query.
+	 */
+	long getLocalReadCount();
+	
+	/**
+	 * @return total number of read operations that are not known to be served by the local-view, i.e
+	 * 		   reads that might be served by the clustered space.
+	 */
+	long getRemoteReadCount();
+	
+	Map<String, Long> getLocalReadCountByType();
+	
+	Map<String, Long> getRemoteReadCountByType();
+	
+	/**
+	 * @return the number of entries held by the local-view
+	 */
+	long getEntryCount();
+	
+	/**
+	 * @return the number of entries held by the local-view for each view query
+	 */
+	Map<String, Integer> getEntryCountByViewQuery();
+
+}
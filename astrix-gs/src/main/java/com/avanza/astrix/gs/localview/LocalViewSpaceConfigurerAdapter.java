@@ -15,6 +15,10 @@
  */
 package com.avanza.astrix.gs.localview;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
 import org.openspaces.core.space.cache.LocalViewSpaceConfigurer;
 
 import com.j_spaces.core.client.SQLQuery;
@@ -24,6 +28,7 @@ import com.j_spaces.core.client.SQLQuery;
 public class LocalViewSpaceConfigurerAdapter implements LocalViewDefinition {
 	
 	private final LocalViewSpaceConfigurer localViewSpaceConfigurer;
+	private final List<SQLQuery<?>> viewQueries = new ArrayList<>();
 
 	public LocalViewSpaceConfigurerAdapter(
 			LocalViewSpaceConfigurer localViewSpaceConfigurer) {
@@ -33,6 +38,14 @@ public class LocalViewSpaceConfigurerAdapter implements LocalViewDefinition {
 	@Override
 	public void addViewQuery(SQLQuery<?> sqlQuery) {
 		this.localViewSpaceConfigurer.addViewQuery(sqlQuery);
+		this.viewQueries.add(sqlQuery);
+	}
+	
+	/**
+	 * @return all view queries added to the local-view.
+	 */
+	public List<SQLQuery<?>> getViewQueries() {
+		return Collections.unmodifiableList(viewQueries);
 	}
 
 	@Override
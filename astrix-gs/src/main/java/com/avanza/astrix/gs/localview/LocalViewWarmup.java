@@ -0,0 +1,139 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.gs.localview;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.openspaces.core.GigaSpace;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.avanza.astrix.core.util.NamedThreadFactory;
+import com.j_spaces.core.client.SQLQuery;
+/**
+ * Waits for a newly created local-view to be populated. <p>
+ * 
+ * Each view query is monitored in parallel. The matching entries in the clustered space are counted once 
+ * when the warm-up starts (which in turn counts the entries on all partitions in parallel), and a view query is 
+ * considered loaded when the local-view contains at least that many matching entries. Entries written to the 
+ * cluster after the warm-up started are not awaited. Progress is logged periodically while waiting. <p>
+ * 
+ * IMPLEMENTATION NOTE: Counting the entries in the local-view is a local operation, but counting the
+ * entries in the clustered space puts load on every partition. Re-counting the cluster on each poll would 
+ * multiply that load with the number of consumers that start at the same time, for instance after a mass 
+ * restart. The local-view is polled with an exponential back-off, starting at {@link #MIN_POLL_INTERVAL_MILLIS}, 
+ * to detect small views quickly without spinning on large views.
+ */
+final class LocalViewWarmup {
+	
+	private static final Logger log = LoggerFactory.getLogger(LocalViewWarmup.class);
+	static final long MIN_POLL_INTERVAL_MILLIS = 10;
+	static final long MAX_POLL_INTERVAL_MILLIS = 1_000;
+	private static final long PROGRESS_LOG_INTERVAL_MILLIS = 5_000;
+	
+	private final String spaceName;
+	private final GigaSpace localView;
+	private final GigaSpace clusteredSpace;
+	private final List<SQLQuery<?>> viewQueries;
+	
+	LocalViewWarmup(String spaceName, GigaSpace localView, GigaSpace clusteredSpace, List<SQLQuery<?>> viewQueries) {
+		this.spaceName = spaceName;
+		this.localView = localView;
+		this.clusteredSpace = clusteredSpace;
+		this.viewQueries = viewQueries;
+	}
+
+	/**
+	 * Waits for all view queries to be loaded into the local-view.
+	 * 
+	 * @param timeoutMillis
+	 * @return true if the local-view was populated within the given timeout, false otherwise.
+	 */
+	boolean await(long timeoutMillis) {
+		if (viewQueries.isEmpty()) {
+			return true;
+		}
+		log.info(String.format("Warming up local-view. space=%s viewQueries=%s timeoutMillis=%s", spaceName, viewQueries.size(), timeoutMillis));
+		final long start = System.nanoTime();
+		final long deadline = start + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+		ExecutorService executor = Executors.newFixedThreadPool(viewQueries.size(), new NamedThreadFactory("LocalViewWarmup[" + spaceName + "]"));
+		try {
+			List<Future<Integer>> loadedEntries = new ArrayList<>(viewQueries.size());
+			for (final SQLQuery<?> viewQuery : viewQueries) {
+				loadedEntries.add(executor.submit(new Callable<Integer>() {
+					@Override
+					public Integer call() throws Exception {
+						return awaitLoaded(viewQuery, start);
+					}
+				}));
+			}
+			int totalEntries = 0;
+			for (Future<Integer> entries : loadedEntries) {
+				totalEntries += entries.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+			}
+			log.info(String.format("Local-view warm-up completed. space=%s entries=%s loadTimeMillis=%s", 
+								   spaceName, totalEntries, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)));
+			return true;
+		} catch (TimeoutException e) {
+			log.warn(String.format("Local-view not populated within timeout, proceeding with partially loaded local-view. space=%s timeoutMillis=%s", 
+								   spaceName, timeoutMillis));
+			return false;
+		} catch (ExecutionException e) {
+			log.warn(String.format("Local-view warm-up failed, proceeding with partially loaded local-view. space=%s", spaceName), e.getCause());
+			return false;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+	
+	private int awaitLoaded(SQLQuery<?> viewQuery, long start) throws InterruptedException {
+		int clusterEntries = clusteredSpace.count(viewQuery);
+		long nextProgressLog = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(PROGRESS_LOG_INTERVAL_MILLIS);
+		long pollInterval = MIN_POLL_INTERVAL_MILLIS;
+		while (true) {
+			int localEntries = localView.count(viewQuery);
+			if (localEntries >= clusterEntries) {
+				log.info(String.format("Local-view query loaded. space=%s query=%s entries=%s loadTimeMillis=%s", 
+									   spaceName, toString(viewQuery), localEntries, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)));
+				return localEntries;
+			}
+			long now = System.nanoTime();
+			if (now - nextProgressLog > 0) {
+				log.info(String.format("Loading local-view query. space=%s query=%s localEntries=%s clusterEntries=%s", 
+									   spaceName, toString(viewQuery), localEntries, clusterEntries));
+				nextProgressLog = now + TimeUnit.MILLISECONDS.toNanos(PROGRESS_LOG_INTERVAL_MILLIS);
+			}
+			Thread.sleep(pollInterval);
+			pollInterval = Math.min(MAX_POLL_INTERVAL_MILLIS, pollInterval * 2);
+		}
+	}
+	
+	private static String toString(SQLQuery<?> viewQuery) {
+		return viewQuery.getTypeName() + "[" + viewQuery.getQuery() + "]";
+	}
+
+}
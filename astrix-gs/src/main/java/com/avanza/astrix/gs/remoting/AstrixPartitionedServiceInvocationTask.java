@@ -0,0 +1,122 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.gs.remoting;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+
+import javax.annotation.Resource;
+
+import org.openspaces.core.cluster.ClusterInfo;
+import org.openspaces.core.executor.AutowireTask;
+import org.openspaces.core.executor.DistributedTask;
+
+import com.avanza.astrix.gs.ClusterInfoHolder;
+import com.avanza.astrix.gs.ClusterTopology;
+import com.avanza.astrix.remoting.client.AstrixServiceInvocationRequest;
+import com.avanza.astrix.remoting.client.AstrixServiceInvocationResponse;
+import com.avanza.astrix.remoting.client.RoutingKey;
+import com.avanza.astrix.remoting.server.AstrixServiceActivator;
+import com.avanza.astrix.spring.AstrixSpringContext;
+import com.gigaspaces.async.AsyncResult;
+/**
+ * Carries the AstrixServiceInvocationRequest's targeting a set of partitions from client 
+ * to server in a single distributed execution. Each partition selects and invokes 
+ * the requests routed to it and returns the corresponding responses.
+ */
+@AutowireTask
+public class AstrixPartitionedServiceInvocationTask implements DistributedTask<ArrayList<AstrixServiceInvocationResponse>, List<AsyncResult<ArrayList<AstrixServiceInvocationResponse>>>> {
+
+	private static final long serialVersionUID = 1L;
+	@Resource
+	private transient AstrixSpringContext astrixSpringContext;
+	@Resource
+	private transient ClusterInfoHolder clusterInfoHolder;
+	private final HashMap<Integer, ArrayList<AstrixServiceInvocationRequest>> requestsByPartition = new HashMap<>();
+	
+	/**
+	 * Adds a request to be invoked on a given partition.
+	 * 
+	 * @param partitionId zero based id of the target partition
+	 * @param request
+	 */
+	public void addRequest(int partitionId, AstrixServiceInvocationRequest request) {
+		ArrayList<AstrixServiceInvocationRequest> partitionRequests = requestsByPartition.get(partitionId);
+		if (partitionRequests == null) {
+			partitionRequests = new ArrayList<>();
+			requestsByPartition.put(partitionId, partitionRequests);
+		}
+		partitionRequests.add(request);
+	}
+	
+	/**
+	 * Routing keys that will route this task to all partitions with at least one request. 
+	 * 
+	 * @param clusterTopology
+	 * @return
+	 */
+	public Object[] getTargetPartitionRoutingKeys(ClusterTopology clusterTopology) {
+		List<RoutingKey> result = new ArrayList<>(requestsByPartition.size());
+		for (Integer partitionId : requestsByPartition.keySet()) {
+			result.add(clusterTopology.getRoutingKey(partitionId.intValue()));
+		}
+		return result.toArray();
+	}
+	
+	public int requestCount() {
+		int result = 0;
+		for (List<AstrixServiceInvocationRequest> partitionRequests : requestsByPartition.values()) {
+			result += partitionRequests.size();
+		}
+		return result;
+	}
+
+	@Override
+	public ArrayList<AstrixServiceInvocationResponse> execute() throws Exception {
+		AstrixServiceActivator serviceActivator = astrixSpringContext.getInstance(AstrixServiceActivator.class);
+		List<AstrixServiceInvocationRequest> partitionRequests = getRequests(localPartitionId());
+		ArrayList<AstrixServiceInvocationResponse> responses = new ArrayList<>(partitionRequests.size());
+		for (AstrixServiceInvocationRequest request : partitionRequests) {
+			responses.add(serviceActivator.invokeService(request));
+		}
+		return responses;
+	}
+
+	private List<AstrixServiceInvocationRequest> getRequests(int partitionId) {
+		List<AstrixServiceInvocationRequest> result = requestsByPartition.get(partitionId);
+		if (result == null) {
+			return Collections.emptyList();
+		}
+		return result;
+	}
+	
+	private int localPartitionId() {
+		ClusterInfo clusterInfo = clusterInfoHolder.getClusterInfo();
+		if (clusterInfo == null || clusterInfo.getInstanceId() == null) {
+			// Not a partitioned space
+			return 0;
+		}
+		return clusterInfo.getInstanceId() - 1;
+	}
+	
+	@Override
+	public List<AsyncResult<ArrayList<AstrixServiceInvocationResponse>>> reduce(List<AsyncResult<ArrayList<AstrixServiceInvocationResponse>>> results) throws Exception {
+		return results;
+	}
+
+}
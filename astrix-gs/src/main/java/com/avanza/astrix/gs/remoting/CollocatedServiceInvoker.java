@@ -0,0 +1,145 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.gs.remoting;
+
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+import org.openspaces.core.GigaSpace;
+import org.openspaces.core.cluster.ClusterInfo;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationContext;
+
+import rx.Observable;
+
+import com.avanza.astrix.gs.ClusterInfoHolder;
+import com.avanza.astrix.gs.GsBinder;
+import com.avanza.astrix.gs.SpaceTaskDispatcher;
+import com.avanza.astrix.remoting.client.AstrixServiceInvocationRequest;
+import com.avanza.astrix.remoting.client.AstrixServiceInvocationResponse;
+import com.avanza.astrix.remoting.server.AstrixServiceActivator;
+import com.avanza.astrix.spring.AstrixSpringContext;
+/**
+ * Invokes services directly in the local {@link AstrixServiceActivator} when the target partition
+ * of a service invocation is hosted by the embedded space in the current processing unit.
+ */
+final class CollocatedServiceInvoker {
+	
+	/*
+	 * IMPLEMENTATION NOTE:
+	 * 
+	 * Collocation can't be decided when the service bean is bound, since service beans are typically
+	 * bound while the spring ApplicationContext is created, i.e before the embedded space is started.
+	 * Therefore collocation is decided on each invocation:
+	 * 
+	 * 1. The embedded space must be in primary mode, otherwise the target partition is hosted by another processing unit.
+	 * 2. The embedded space must be the same space as the one the bean is bound to (decided once).
+	 * 3. The routing key must target the partition hosted by the embedded space.
+	 * 
+	 * Collocated invocations are executed on the thread pool of the SpaceTaskDispatcher, just like remote 
+	 * invocations are submitted to the space, in order to never block the subscribing thread (which might 
+	 * be a hystrix or event-loop thread for asynchronous invocations) for the duration of the service call.
+	 * 
+	 * The request arguments are still marshalled by the object serializer. For apis without versioning that is a 
+	 * pass-through, and for versioned apis the consumer and provider within the same processing unit always use 
+	 * the same version. Hence no version migration is applied on collocated invocations.  
+	 */
+	
+	static final int NOT_COLLOCATED = -1;
+	private static final Logger log = LoggerFactory.getLogger(CollocatedServiceInvoker.class);
+	
+	private final AstrixSpringContext astrixSpringContext;
+	private final GsBinder gsBinder;
+	private final AstrixServiceActivator serviceActivator;
+	private final SpaceTaskDispatcher spaceTaskDispatcher;
+	private final String spaceUrl;
+	private volatile ClusterInfoHolder clusterInfoHolder;
+	private volatile boolean clusterInfoHolderResolved = false;
+	private volatile Boolean boundToEmbeddedSpace;
+	
+	CollocatedServiceInvoker(AstrixSpringContext astrixSpringContext, GsBinder gsBinder, AstrixServiceActivator serviceActivator, 
+							 SpaceTaskDispatcher spaceTaskDispatcher, String spaceUrl) {
+		this.astrixSpringContext = astrixSpringContext;
+		this.gsBinder = gsBinder;
+		this.serviceActivator = serviceActivator;
+		this.spaceTaskDispatcher = spaceTaskDispatcher;
+		this.spaceUrl = spaceUrl;
+	}
+	
+	/**
+	 * @return the zero based id of the partition hosted by the embedded space if the bound space
+	 * 	is hosted by the current processing unit, otherwise {@link #NOT_COLLOCATED}
+	 */
+	int getLocalPartitionId() {
+		ClusterInfoHolder clusterInfoHolder = getClusterInfoHolder();
+		if (clusterInfoHolder == null || !clusterInfoHolder.isPrimary()) {
+			return NOT_COLLOCATED;
+		}
+		if (!isBoundToEmbeddedSpace()) {
+			return NOT_COLLOCATED;
+		}
+		ClusterInfo clusterInfo = clusterInfoHolder.getClusterInfo();
+		if (clusterInfo == null || clusterInfo.getInstanceId() == null) {
+			// Not a partitioned space
+			return 0;
+		}
+		return clusterInfo.getInstanceId() - 1;
+	}
+	
+	Observable<AstrixServiceInvocationResponse> invoke(final AstrixServiceInvocationRequest request) {
+		return spaceTaskDispatcher.observeLocal(new Callable<AstrixServiceInvocationResponse>() {
+			@Override
+			public AstrixServiceInvocationResponse call() throws Exception {
+				return serviceActivator.invokeService(request);
+			}
+		});
+	}
+
+	private ClusterInfoHolder getClusterInfoHolder() {
+		if (clusterInfoHolderResolved) {
+			return clusterInfoHolder;
+		}
+		ApplicationContext applicationContext = astrixSpringContext.getApplicationContext();
+		if (applicationContext == null) {
+			// Not running in a spring application, or not yet initialized
+			return null;
+		}
+		Map<String, ClusterInfoHolder> clusterInfoHolders = applicationContext.getBeansOfType(ClusterInfoHolder.class);
+		if (clusterInfoHolders.size() == 1) {
+			this.clusterInfoHolder = clusterInfoHolders.values().iterator().next();
+		}
+		this.clusterInfoHolderResolved = true;
+		return this.clusterInfoHolder;
+	}
+	
+	private boolean isBoundToEmbeddedSpace() {
+		if (boundToEmbeddedSpace != null) {
+			return boundToEmbeddedSpace;
+		}
+		boolean result;
+		try {
+			GigaSpace embeddedSpace = gsBinder.getEmbeddedSpace(astrixSpringContext.getApplicationContext());
+			result = spaceUrl.equals(gsBinder.createProperties(embeddedSpace).getProperty(GsBinder.SPACE_URL_PROPERTY));
+		} catch (Exception e) {
+			log.debug("Failed to resolve embedded space, invocations will not be collocated. spaceUrl=" + spaceUrl, e);
+			result = false;
+		}
+		this.boundToEmbeddedSpace = result;
+		return result;
+	}
+
+}
@@ -18,12 +18,16 @@ package com.avanza.astrix.gs.remoting;
 import org.kohsuke.MetaInfServices;
 import org.openspaces.core.GigaSpace;
 
+import com.avanza.astrix.beans.core.AstrixSettings;
 import com.avanza.astrix.beans.inject.AstrixInject;
+import com.avanza.astrix.beans.publish.AstrixConfigAware;
 import com.avanza.astrix.beans.service.AstrixVersioningPlugin;
 import com.avanza.astrix.beans.service.BoundServiceBeanInstance;
 import com.avanza.astrix.beans.service.ServiceComponent;
 import com.avanza.astrix.beans.service.ServiceDefinition;
 import com.avanza.astrix.beans.service.ServiceProperties;
+import com.avanza.astrix.config.DynamicBooleanProperty;
+import com.avanza.astrix.config.DynamicConfig;
 import com.avanza.astrix.core.AstrixObjectSerializer;
 import com.avanza.astrix.core.util.ReflectionUtil;
 import com.avanza.astrix.ft.BeanFaultTolerance;
@@ -44,7 +48,7 @@ import com.avanza.astrix.spring.AstrixSpringContext;
  *
  */
 @MetaInfServices(ServiceComponent.class)
-public class GsRemotingComponent implements ServiceComponent {
+public class GsRemotingComponent implements ServiceComponent, AstrixConfigAware {
 
 	private GsBinder gsBinder;
 	private BeanFaultToleranceFactory beanFaultToleranceFactory;
@@ -52,6 +56,8 @@ public class GsRemotingComponent implements ServiceComponent {
 	private AstrixServiceActivator serviceActivator;
 	private AstrixVersioningPlugin versioningPlugin;
 	private ClusteredProxyCache proxyCache;
+	private DynamicBooleanProperty batchPartitionedRequests;
+	private DynamicBooleanProperty collocatedInvocation;
 	
 	@Override
 	public <T> BoundServiceBeanInstance<T> bind(ServiceDefinition<T> serviceDefinition, ServiceProperties serviceProperties) {
@@ -59,7 +65,12 @@ public class GsRemotingComponent implements ServiceComponent {
 		
 		GigaSpaceInstance proxyInstance = proxyCache.getProxy(serviceProperties);
 		BeanFaultTolerance faultTolerance = beanFaultToleranceFactory.create(serviceDefinition);
-		GsRemotingTransport gsRemotingTransport = new GsRemotingTransport(proxyInstance.getSpaceTaskDispatcher(), faultTolerance);
+		CollocatedServiceInvoker collocatedServiceInvoker = null;
+		if (collocatedInvocation.get()) {
+			collocatedServiceInvoker = new CollocatedServiceInvoker(astrixSpringContext, gsBinder, serviceActivator, proxyInstance.getSpaceTaskDispatcher(), 
+																   serviceProperties.getProperty(GsBinder.SPACE_URL_PROPERTY));
+		}
+		GsRemotingTransport gsRemotingTransport = new GsRemotingTransport(proxyInstance.getSpaceTaskDispatcher(), faultTolerance, batchPartitionedRequests, collocatedServiceInvoker);
 		RemotingTransport remotingTransport = RemotingTransport.create(gsRemotingTransport);
 		T proxy = RemotingProxy.create(serviceDefinition.getServiceType(), ReflectionUtil.classForName(serviceProperties.getProperty(ServiceProperties.API))
 				, remotingTransport, objectSerializer, new GsRoutingStrategy());
@@ -131,4 +142,10 @@ public class GsRemotingComponent implements ServiceComponent {
 		this.versioningPlugin = versioningPlugin;
 	}
 	
+	@Override
+	public void setConfig(DynamicConfig config) {
+		this.batchPartitionedRequests = AstrixSettings.GS_BATCH_PARTITIONED_REQUESTS.getFrom(config);
+		this.collocatedInvocation = AstrixSettings.GS_COLLOCATED_INVOCATION.getFrom(config);
+	}
+	
 }
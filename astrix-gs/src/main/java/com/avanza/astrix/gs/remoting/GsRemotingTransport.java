@@ -15,16 +15,21 @@
  */
 package com.avanza.astrix.gs.remoting;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 
 import rx.Observable;
+import rx.functions.Action1;
 import rx.functions.Func1;
 
+import com.avanza.astrix.config.DynamicBooleanProperty;
+import com.avanza.astrix.core.ServiceUnavailableException;
 import com.avanza.astrix.core.function.Supplier;
 import com.avanza.astrix.ft.BeanFaultTolerance;
 import com.avanza.astrix.ft.HystrixObservableCommandSettings;
+import com.avanza.astrix.gs.ClusterTopology;
 import com.avanza.astrix.gs.SpaceTaskDispatcher;
 import com.avanza.astrix.remoting.client.AstrixServiceInvocationRequest;
 import com.avanza.astrix.remoting.client.AstrixServiceInvocationResponse;
@@ -43,10 +48,23 @@ public class GsRemotingTransport implements RemotingTransportSpi {
 
 	private final SpaceTaskDispatcher spaceTaskDispatcher;
 	private final BeanFaultTolerance faultTolerance;
+	private final DynamicBooleanProperty batchPartitionedRequests;
+	private final CollocatedServiceInvoker collocatedServiceInvoker;
 	
-	public GsRemotingTransport(SpaceTaskDispatcher spaceTaskDispatcher, BeanFaultTolerance faultTolerance) {
+	public GsRemotingTransport(SpaceTaskDispatcher spaceTaskDispatcher, BeanFaultTolerance faultTolerance, DynamicBooleanProperty batchPartitionedRequests) {
+		this(spaceTaskDispatcher, faultTolerance, batchPartitionedRequests, null);
+	}
+	
+	/**
+	 * @param collocatedServiceInvoker used to invoke requests targeting a partition hosted by the current 
+	 * 		processing unit without using the space, might be null.
+	 */
+	GsRemotingTransport(SpaceTaskDispatcher spaceTaskDispatcher, BeanFaultTolerance faultTolerance, DynamicBooleanProperty batchPartitionedRequests,
+						CollocatedServiceInvoker collocatedServiceInvoker) {
 		this.spaceTaskDispatcher = spaceTaskDispatcher;
 		this.faultTolerance = faultTolerance;
+		this.batchPartitionedRequests = batchPartitionedRequests;
+		this.collocatedServiceInvoker = collocatedServiceInvoker;
 	}
 	
 	@Override
@@ -85,10 +103,42 @@ public class GsRemotingTransport implements RemotingTransportSpi {
 	
 	private Observable<AstrixServiceInvocationResponse> observeRoutedRequest(AstrixServiceInvocationRequest request,
 																			  RoutingKey routingKey) {
+		int localPartitionId = localPartitionId();
+		if (localPartitionId != CollocatedServiceInvoker.NOT_COLLOCATED && isTargetingPartition(routingKey, localPartitionId)) {
+			return collocatedServiceInvoker.invoke(request);
+		}
 		return spaceTaskDispatcher.observe(new AstrixServiceInvocationTask(request), routingKey);
 	}
 	
 	private Observable<List<AstrixServiceInvocationResponse>> observeRoutedReqeuests(Collection<RoutedServiceInvocationRequest> requests) {
+		int localPartitionId = localPartitionId();
+		if (localPartitionId == CollocatedServiceInvoker.NOT_COLLOCATED) {
+			return observeRemoteRoutedRequests(requests);
+		}
+		List<RoutedServiceInvocationRequest> remoteRequests = new ArrayList<>(requests.size());
+		Observable<AstrixServiceInvocationResponse> result = Observable.empty();
+		for (RoutedServiceInvocationRequest request : requests) {
+			if (isTargetingPartition(request.getRoutingkey(), localPartitionId)) {
+				result = result.mergeWith(collocatedServiceInvoker.invoke(request.getRequest()));
+			} else {
+				remoteRequests.add(request);
+			}
+		}
+		if (!remoteRequests.isEmpty()) {
+			result = result.mergeWith(observeRemoteRoutedRequests(remoteRequests).flatMap(new Func1<List<AstrixServiceInvocationResponse>, Observable<AstrixServiceInvocationResponse>>() {
+				@Override
+				public Observable<AstrixServiceInvocationResponse> call(List<AstrixServiceInvocationResponse> remoteResponses) {
+					return Observable.from(remoteResponses);
+				}
+			}));
+		}
+		return result.toList();
+	}
+	
+	private Observable<List<AstrixServiceInvocationResponse>> observeRemoteRoutedRequests(Collection<RoutedServiceInvocationRequest> requests) {
+		if (requests.size() > 1 && batchPartitionedRequests.get() && hasNonNegativeRoutingKeys(requests)) {
+			return observeBatchedRoutedRequests(requests);
+		}
 		Observable<AstrixServiceInvocationResponse> result = Observable.empty();
 		for (RoutedServiceInvocationRequest request : requests) {
 			result = result.mergeWith(spaceTaskDispatcher.observe(new AstrixServiceInvocationTask(request.getRequest()), request.getRoutingkey()));
@@ -96,7 +146,58 @@ public class GsRemotingTransport implements RemotingTransportSpi {
 		return result.toList();
 	}
 	
+	private Observable<List<AstrixServiceInvocationResponse>> observeBatchedRoutedRequests(Collection<RoutedServiceInvocationRequest> requests) {
+		final ClusterTopology clusterTopology = spaceTaskDispatcher.getClusterTopology();
+		AstrixPartitionedServiceInvocationTask task = new AstrixPartitionedServiceInvocationTask();
+		for (RoutedServiceInvocationRequest request : requests) {
+			task.addRequest(clusterTopology.getPartition(request.getRoutingkey()), request.getRequest());
+		}
+		final int expectedResponseCount = task.requestCount();
+		Observable<List<AsyncResult<ArrayList<AstrixServiceInvocationResponse>>>> responses = spaceTaskDispatcher.observeRouted(task, task.getTargetPartitionRoutingKeys(clusterTopology));
+		Func1<List<AsyncResult<ArrayList<AstrixServiceInvocationResponse>>>, Observable<ArrayList<AstrixServiceInvocationResponse>>> listToObservable = 
+				GsUtil.asyncResultListToObservable();
+		return responses.flatMap(listToObservable).flatMap(new Func1<ArrayList<AstrixServiceInvocationResponse>, Observable<AstrixServiceInvocationResponse>>() {
+			@Override
+			public Observable<AstrixServiceInvocationResponse> call(ArrayList<AstrixServiceInvocationResponse> partitionResponses) {
+				return Observable.from(partitionResponses);
+			}
+		}).toList().map(new Func1<List<AstrixServiceInvocationResponse>, List<AstrixServiceInvocationResponse>>() {
+			@Override
+			public List<AstrixServiceInvocationResponse> call(List<AstrixServiceInvocationResponse> allResponses) {
+				if (allResponses.size() != expectedResponseCount) {
+					throw new ServiceUnavailableException(String.format("Partitioned invocation did not receive a response for every request. expectedResponses=%s receivedResponses=%s",
+																		 expectedResponseCount, allResponses.size()));
+				}
+				return allResponses;
+			}
+		}).doOnError(new Action1<Throwable>() {
+			@Override
+			public void call(Throwable t1) {
+				// Requests are routed using the client side view of the topology, which might be outdated
+				clusterTopology.invalidate();
+			}
+		});
+	}
+	
+	/*
+	 * The partition of each request is calculated on the client side using the same 
+	 * function as GigaSpaces (hash % partitionCount), which only is safe for non negative hashes
+	 */
+	private static boolean hasNonNegativeRoutingKeys(Collection<RoutedServiceInvocationRequest> requests) {
+		for (RoutedServiceInvocationRequest request : requests) {
+			if (request.getRoutingkey().hashCode() < 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
 	private Observable<List<AstrixServiceInvocationResponse>> observeBroadcastRequest(AstrixServiceInvocationRequest request) {
+		// A broadcast is only invoked collocated on a single-partition space. On a partitioned space the
+		// broadcast is always submitted to the space, even if one of the partitions is hosted locally.
+		if (localPartitionId() == 0 && partitionCount() == 1) {
+			return collocatedServiceInvoker.invoke(request).toList();
+		}
 		Observable<List<AsyncResult<AstrixServiceInvocationResponse>>> responses = spaceTaskDispatcher.observe(new AstrixDistributedServiceInvocationTask(request));
 		Func1<List<AsyncResult<AstrixServiceInvocationResponse>>, Observable<AstrixServiceInvocationResponse>> listToObservable = 
 				GsUtil.asyncResultListToObservable();
@@ -104,6 +205,17 @@ public class GsRemotingTransport implements RemotingTransportSpi {
 		return responseStream.toList();
 	}
 	
+	private int localPartitionId() {
+		if (collocatedServiceInvoker == null) {
+			return CollocatedServiceInvoker.NOT_COLLOCATED;
+		}
+		return collocatedServiceInvoker.getLocalPartitionId();
+	}
+	
+	private boolean isTargetingPartition(RoutingKey routingKey, int partitionId) {
+		return routingKey.hashCode() >= 0 && spaceTaskDispatcher.getClusterTopology().getPartition(routingKey) == partitionId;
+	}
+	
 	@Override
 	public int partitionCount() {
 		return this.spaceTaskDispatcher.partitionCount();
@@ -16,10 +16,12 @@
 package com.avanza.astrix.gs;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.fail;
 
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mockito;
 import org.openspaces.core.GigaSpace;
 
@@ -32,10 +34,12 @@ import com.avanza.astrix.config.MapConfigSource;
 import com.avanza.astrix.core.ServiceUnavailableException;
 import com.avanza.astrix.ft.BeanFaultTolerance;
 import com.avanza.astrix.ft.BeanFaultToleranceFactory;
+import com.avanza.astrix.ft.CheckedCommand;
 import com.avanza.astrix.ft.DefaultHystrixCommandNamingStrategy;
 import com.avanza.astrix.ft.HystrixBeanFaultToleranceProvider;
 import com.avanza.astrix.ft.HystrixCommandSettings;
 import com.gigaspaces.internal.client.cache.SpaceCacheException;
+import com.netflix.hystrix.HystrixCommandProperties.ExecutionIsolationStrategy;
 
 
 public class AstrixGigaSpaceProxyTest {
@@ -76,5 +80,62 @@ public class AstrixGigaSpaceProxyTest {
 			// Expected
 		}
 	}
+	
+	@Test
+	public void readsUseSemaphoreIsolationAndOtherOperationsUseSettingsOfBeanByDefault() throws Throwable {
+		BeanFaultTolerance faultTolerance = Mockito.mock(BeanFaultTolerance.class);
+		HystrixCommandSettings hystrixSettings = new HystrixCommandSettings();
+		GigaSpace proxied = AstrixGigaSpaceProxy.create(gigaSpace(), faultTolerance, hystrixSettings, DynamicConfig.create(new MapConfigSource()));
+		
+		proxied.readById(String.class, 1);
+		proxied.write("entry");
+		
+		ArgumentCaptor<HystrixCommandSettings> settings = ArgumentCaptor.forClass(HystrixCommandSettings.class);
+		Mockito.verify(faultTolerance, Mockito.times(2)).execute(Mockito.any(CheckedCommand.class), settings.capture());
+		assertEquals("read", settings.getAllValues().get(0).getCommandKeySuffix());
+		assertEquals(ExecutionIsolationStrategy.SEMAPHORE, settings.getAllValues().get(0).getExecutionIsolationStrategy());
+		assertSame(hystrixSettings, settings.getAllValues().get(1));
+	}
+	
+	@Test
+	public void allOperationsUseSettingsOfBeanWhenSemaphoreIsolatedReadsIsDisabled() throws Throwable {
+		BeanFaultTolerance faultTolerance = Mockito.mock(BeanFaultTolerance.class);
+		HystrixCommandSettings hystrixSettings = new HystrixCommandSettings();
+		MapConfigSource configSource = new MapConfigSource();
+		configSource.set("astrix.beans.gigaspace.test-space.semaphoreIsolatedReads", "false");
+		GigaSpace proxied = AstrixGigaSpaceProxy.create(gigaSpace(), faultTolerance, hystrixSettings, DynamicConfig.create(configSource));
+		
+		proxied.readById(String.class, 1);
+		proxied.write("entry");
+		
+		ArgumentCaptor<HystrixCommandSettings> settings = ArgumentCaptor.forClass(HystrixCommandSettings.class);
+		Mockito.verify(faultTolerance, Mockito.times(2)).execute(Mockito.any(CheckedCommand.class), settings.capture());
+		for (HystrixCommandSettings operationSettings : settings.getAllValues()) {
+			assertSame(hystrixSettings, operationSettings);
+		}
+	}
+	
+	@Test
+	public void eachOperationUsesSeparateCommandKeyWhenEnabled() throws Throwable {
+		BeanFaultTolerance faultTolerance = Mockito.mock(BeanFaultTolerance.class);
+		MapConfigSource configSource = new MapConfigSource();
+		configSource.set("astrix.beans.gigaspace.test-space.operationCommandKeys", "true");
+		GigaSpace proxied = AstrixGigaSpaceProxy.create(gigaSpace(), faultTolerance, new HystrixCommandSettings(), DynamicConfig.create(configSource));
+		
+		proxied.readById(String.class, 1);
+		proxied.write("entry");
+		
+		ArgumentCaptor<HystrixCommandSettings> settings = ArgumentCaptor.forClass(HystrixCommandSettings.class);
+		Mockito.verify(faultTolerance, Mockito.times(2)).execute(Mockito.any(CheckedCommand.class), settings.capture());
+		assertEquals("read", settings.getAllValues().get(0).getCommandKeySuffix());
+		assertEquals(ExecutionIsolationStrategy.SEMAPHORE, settings.getAllValues().get(0).getExecutionIsolationStrategy());
+		assertEquals("write", settings.getAllValues().get(1).getCommandKeySuffix());
+	}
+	
+	private static GigaSpace gigaSpace() {
+		GigaSpace gigaSpace = Mockito.mock(GigaSpace.class);
+		Mockito.stub(gigaSpace.getName()).toReturn("test-space");
+		return gigaSpace;
+	}
 
 }
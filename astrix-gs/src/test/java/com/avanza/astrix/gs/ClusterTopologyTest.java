@@ -0,0 +1,107 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.gs;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.openspaces.core.GigaSpace;
+
+import com.avanza.astrix.config.DynamicConfig;
+import com.avanza.astrix.config.MapConfigSource;
+import com.avanza.astrix.remoting.client.RoutingKey;
+import com.gigaspaces.internal.client.spaceproxy.SpaceProxyImpl;
+import com.gigaspaces.internal.cluster.SpaceClusterInfo;
+import com.j_spaces.core.IJSpace;
+
+
+public class ClusterTopologyTest {
+	
+	private final MapConfigSource configSource = new MapConfigSource();
+	private final GigaSpace gigaSpace = Mockito.mock(GigaSpace.class);
+	private final SpaceProxyImpl space = Mockito.mock(SpaceProxyImpl.class);
+	private final SpaceClusterInfo spaceClusterInfo = Mockito.mock(SpaceClusterInfo.class);
+	
+	@Before
+	public void setup() {
+		Mockito.stub(gigaSpace.getName()).toReturn("test-space");
+		Mockito.stub(gigaSpace.getSpace()).toReturn(space);
+		Mockito.stub(space.getSpaceClusterInfo()).toReturn(spaceClusterInfo);
+	}
+	
+	@Test
+	public void readsPartitionCountFromClusteredProxy() throws Exception {
+		clusterWithPartitions(4);
+		
+		assertEquals(4, new ClusterTopology(gigaSpace, DynamicConfig.create(configSource)).getPartitionCount());
+	}
+	
+	@Test
+	public void routingKeyForPartitionIsRoutedToThatPartition() throws Exception {
+		clusterWithPartitions(4);
+		ClusterTopology clusterTopology = new ClusterTopology(gigaSpace, DynamicConfig.create(configSource));
+		
+		for (int partition = 0; partition < 4; partition++) {
+			assertEquals(partition, clusterTopology.getPartition(clusterTopology.getRoutingKey(partition)));
+		}
+		assertEquals(1, clusterTopology.getPartition(RoutingKey.create(5)));
+	}
+	
+	@Test
+	public void topologyIsCachedUntilInvalidated() throws Exception {
+		clusterWithPartitions(2);
+		ClusterTopology clusterTopology = new ClusterTopology(gigaSpace, DynamicConfig.create(configSource));
+		assertEquals(2, clusterTopology.getPartitionCount());
+		
+		clusterWithPartitions(3);
+		assertEquals(2, clusterTopology.getPartitionCount());
+		
+		clusterTopology.invalidate();
+		assertEquals(3, clusterTopology.getPartitionCount());
+	}
+	
+	@Test
+	public void topologyIsReReadWhenRefreshIntervalHasPassed() throws Exception {
+		configSource.set("astrix.beans.gigaspace.test-space.clusterTopology.refreshInterval", "0");
+		clusterWithPartitions(2);
+		ClusterTopology clusterTopology = new ClusterTopology(gigaSpace, DynamicConfig.create(configSource));
+		assertEquals(2, clusterTopology.getPartitionCount());
+		
+		clusterWithPartitions(3);
+		Thread.sleep(1);
+		assertEquals(3, clusterTopology.getPartitionCount());
+	}
+	
+	@Test
+	public void failsOnNonClusteredProxy() throws Exception {
+		Mockito.stub(gigaSpace.getSpace()).toReturn(Mockito.mock(IJSpace.class));
+		ClusterTopology clusterTopology = new ClusterTopology(gigaSpace, DynamicConfig.create(configSource));
+		try {
+			clusterTopology.getPartitionCount();
+			fail("Expected IllegalStateException");
+		} catch (IllegalStateException e) {
+			// Expected
+		}
+	}
+	
+	private void clusterWithPartitions(int partitionCount) {
+		Mockito.stub(spaceClusterInfo.getNumberOfPartitions()).toReturn(partitionCount);
+	}
+
+}
@@ -0,0 +1,43 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.gs;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+import org.openspaces.core.GigaSpace;
+
+
+public class GigaSpaceOperationTest {
+	
+	@Test
+	public void classifiesGigaSpaceMethods() throws Exception {
+		assertEquals(GigaSpaceOperation.READ, GigaSpaceOperation.of(GigaSpace.class.getMethod("readById", Class.class, Object.class)));
+		assertEquals(GigaSpaceOperation.READ, GigaSpaceOperation.of(GigaSpace.class.getMethod("count", Object.class)));
+		assertEquals(GigaSpaceOperation.WRITE, GigaSpaceOperation.of(GigaSpace.class.getMethod("write", Object.class)));
+		assertEquals(GigaSpaceOperation.WRITE, GigaSpaceOperation.of(GigaSpace.class.getMethod("clear", Object.class)));
+		assertEquals(GigaSpaceOperation.TAKE, GigaSpaceOperation.of(GigaSpace.class.getMethod("take", Object.class)));
+		assertEquals(GigaSpaceOperation.LOCAL, GigaSpaceOperation.of(GigaSpace.class.getMethod("getName")));
+		assertEquals(GigaSpaceOperation.LOCAL, GigaSpaceOperation.of(GigaSpace.class.getMethod("getSpace")));
+	}
+	
+	@Test
+	public void unknownOperationsAreClassifiedAsExecute() throws Exception {
+		assertEquals(GigaSpaceOperation.EXECUTE, GigaSpaceOperation.classify("execute"));
+		assertEquals(GigaSpaceOperation.EXECUTE, GigaSpaceOperation.classify("snapshot"));
+	}
+
+}
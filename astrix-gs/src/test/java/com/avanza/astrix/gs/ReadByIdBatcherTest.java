@@ -0,0 +1,138 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.gs;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.avanza.astrix.config.DynamicIntProperty;
+import com.avanza.astrix.config.DynamicLongProperty;
+
+
+public class ReadByIdBatcherTest {
+	
+	private final List<Object[]> batches = new CopyOnWriteArrayList<>();
+	private final ExecutorService executor = Executors.newCachedThreadPool();
+	private final DynamicLongProperty windowMicros = new DynamicLongProperty(TimeUnit.MILLISECONDS.toMicros(200));
+	private final DynamicIntProperty maxBatchSize = new DynamicIntProperty(100);
+	private final ReadByIdBatcher batcher = new ReadByIdBatcher(new ReadByIdBatcher.BatchReader() {
+		@Override
+		public Object[] readByIds(Class<?> type, Object[] ids) throws Throwable {
+			batches.add(ids);
+			Object[] result = new Object[ids.length];
+			for (int i = 0; i < ids.length; i++) {
+				result[i] = "entry-" + ids[i];
+			}
+			return result;
+		}
+	}, windowMicros, maxBatchSize);
+	
+	@After
+	public void after() {
+		executor.shutdownNow();
+	}
+	
+	@Test
+	public void concurrentReadsAreCoalescedIntoOneBatch() throws Exception {
+		List<Future<Object>> results = readConcurrently(5);
+		
+		for (int i = 0; i < results.size(); i++) {
+			assertEquals("entry-" + i, results.get(i).get(1, TimeUnit.SECONDS));
+		}
+		assertEquals(1, batches.size());
+		assertEquals(5, batches.get(0).length);
+	}
+	
+	@Test
+	public void batchIsIssuedWhenFull() throws Exception {
+		windowMicros.set(TimeUnit.SECONDS.toMicros(30));
+		maxBatchSize.set(3);
+		List<Future<Object>> results = readConcurrently(3);
+		
+		for (int i = 0; i < results.size(); i++) {
+			assertEquals("entry-" + i, results.get(i).get(5, TimeUnit.SECONDS));
+		}
+		assertEquals(1, batches.size());
+	}
+	
+	@Test
+	public void readFailuresArePropagatedToReader() throws Throwable {
+		ReadByIdBatcher failingBatcher = new ReadByIdBatcher(new ReadByIdBatcher.BatchReader() {
+			@Override
+			public Object[] readByIds(Class<?> type, Object[] ids) throws Throwable {
+				throw new IllegalStateException("read failed");
+			}
+		}, windowMicros, maxBatchSize);
+		try {
+			failingBatcher.readById(String.class, 1);
+			fail("Expected read failure to be propagated");
+		} catch (IllegalStateException e) {
+			// Expected
+		}
+	}
+	
+	@Test
+	public void batchIsIssuedImmediatelyWhenLeaderIsInterrupted() throws Throwable {
+		windowMicros.set(TimeUnit.SECONDS.toMicros(30));
+		
+		Thread.currentThread().interrupt();
+		try {
+			long start = System.nanoTime();
+			assertEquals("entry-1", batcher.readById(String.class, 1));
+			assertTrue("Expected batch to be issued before window elapsed", System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5));
+			assertTrue("Expected interrupt status to be restored", Thread.currentThread().isInterrupted());
+		} finally {
+			Thread.interrupted();
+		}
+		assertEquals(1, batches.size());
+	}
+	
+	private List<Future<Object>> readConcurrently(int readCount) throws InterruptedException {
+		final CountDownLatch started = new CountDownLatch(readCount);
+		List<Future<Object>> results = new ArrayList<>();
+		for (int i = 0; i < readCount; i++) {
+			final int id = i;
+			results.add(executor.submit(new Callable<Object>() {
+				@Override
+				public Object call() throws Exception {
+					started.countDown();
+					try {
+						return batcher.readById(String.class, id);
+					} catch (Throwable e) {
+						throw new RuntimeException(e);
+					}
+				}
+			}));
+		}
+		started.await();
+		return results;
+	}
+
+}
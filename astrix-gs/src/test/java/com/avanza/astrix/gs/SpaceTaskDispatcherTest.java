@@ -0,0 +1,219 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.gs;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.junit.Assume.assumeTrue;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.openspaces.core.GigaSpace;
+import org.openspaces.core.executor.Task;
+
+import com.avanza.astrix.config.DynamicConfig;
+import com.avanza.astrix.config.MapConfigSource;
+import com.avanza.astrix.core.ServiceUnavailableException;
+import com.avanza.astrix.core.util.VirtualThreads;
+import com.gigaspaces.async.AsyncFuture;
+import com.gigaspaces.async.AsyncFutureListener;
+import com.gigaspaces.async.internal.DefaultAsyncResult;
+
+
+public class SpaceTaskDispatcherTest {
+	
+	private static final AtomicInteger spaceCount = new AtomicInteger();
+	
+	private final MapConfigSource configSource = new MapConfigSource();
+	private final ExecutorService executor = Executors.newCachedThreadPool();
+	private final CountDownLatch releaseBlockedExecution = new CountDownLatch(1);
+	private final BlockingExecution blockingExecution = new BlockingExecution();
+	private GigaSpace gigaSpace;
+	private String spaceName;
+	private SpaceTaskDispatcher dispatcher;
+	
+	@Before
+	@SuppressWarnings("unchecked")
+	public void setup() {
+		// Unique name per test since the dispatcher registers its metrics in the platform MBeanServer
+		spaceName = "test-space-" + spaceCount.incrementAndGet();
+		gigaSpace = Mockito.mock(GigaSpace.class);
+		Mockito.stub(gigaSpace.getName()).toReturn(spaceName);
+		Mockito.when(gigaSpace.execute(Mockito.any(Task.class), Mockito.any())).thenAnswer(blockingExecution);
+	}
+	
+	@After
+	public void after() {
+		releaseBlockedExecution.countDown();
+		executor.shutdownNow();
+		if (dispatcher != null) {
+			dispatcher.destroy();
+		}
+	}
+	
+	@Test
+	public void rejectsTasksWhenQueueIsFull() throws Exception {
+		set("poolsize", "1");
+		set("maxQueueSize", "1");
+		dispatcher = new SpaceTaskDispatcher(gigaSpace, DynamicConfig.create(configSource));
+		
+		blockingExecution.blockNextExecution();
+		Future<Thread> blocked = observe();
+		assertTrue("Expected first task to be submitted", blockingExecution.blockedExecutionStarted.await(5, TimeUnit.SECONDS));
+		Future<Thread> queued = observe();
+		assertEquals(1, dispatcher.getMetrics().getQueueSize());
+		
+		try {
+			observe().get(5, TimeUnit.SECONDS);
+			fail("Expected task to be rejected when queue is full");
+		} catch (ExecutionException e) {
+			assertEquals(ServiceUnavailableException.class, e.getCause().getClass());
+		}
+		assertEquals(1, dispatcher.getMetrics().getRejectedTaskCount());
+		
+		releaseBlockedExecution.countDown();
+		blocked.get(5, TimeUnit.SECONDS);
+		queued.get(5, TimeUnit.SECONDS);
+		assertEquals(0, dispatcher.getMetrics().getQueueSize());
+	}
+	
+	@Test
+	public void submitsTasksOnCallingThreadWhenInlineSubmissionIsEnabled() throws Exception {
+		set("inlineSubmission", "true");
+		dispatcher = new SpaceTaskDispatcher(gigaSpace, DynamicConfig.create(configSource));
+		
+		assertSame(Thread.currentThread(), observe().get(5, TimeUnit.SECONDS));
+		assertEquals(1, dispatcher.getMetrics().getInlineSubmissionCount());
+		assertTrue(dispatcher.isWatchdogRunning());
+	}
+	
+	@Test
+	public void blockedInlineSubmissionSuspendsInlineSubmission() throws Exception {
+		set("inlineSubmission", "true");
+		set("inlineSubmissionBlockedThreshold", "20");
+		dispatcher = new SpaceTaskDispatcher(gigaSpace, DynamicConfig.create(configSource));
+		
+		blockingExecution.blockNextExecution();
+		Future<Future<Thread>> blocked = executor.submit(new Callable<Future<Thread>>() {
+			@Override
+			public Future<Thread> call() throws Exception {
+				return observe();
+			}
+		});
+		assertTrue("Expected first task to be submitted", blockingExecution.blockedExecutionStarted.await(5, TimeUnit.SECONDS));
+		awaitInlineSubmissionSuspended();
+		
+		assertNotSame("Expected task to be submitted using thread pool", Thread.currentThread(), observe().get(5, TimeUnit.SECONDS));
+		
+		releaseBlockedExecution.countDown();
+		blocked.get(5, TimeUnit.SECONDS).get(5, TimeUnit.SECONDS);
+	}
+	
+	@Test
+	public void doesNotStartWatchdogAfterDestroy() throws Exception {
+		set("inlineSubmission", "true");
+		dispatcher = new SpaceTaskDispatcher(gigaSpace, DynamicConfig.create(configSource));
+		dispatcher.destroy();
+		
+		observe().get(5, TimeUnit.SECONDS);
+		
+		assertFalse(dispatcher.isWatchdogRunning());
+	}
+	
+	@Test
+	public void usesThreadPoolWhenVirtualThreadsAreEnabledOnJvmWithoutVirtualThreadSupport() throws Exception {
+		assumeTrue(!VirtualThreads.isSupported());
+		set("virtualThreads", "true");
+		dispatcher = new SpaceTaskDispatcher(gigaSpace, DynamicConfig.create(configSource));
+		
+		assertTrue(observe().get(5, TimeUnit.SECONDS).getName().startsWith("SpaceTaskDispatcher[" + spaceName + "]"));
+	}
+	
+	private void awaitInlineSubmissionSuspended() throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 5_000;
+		while (dispatcher.getMetrics().getInlineSubmissionSuspendedCount() == 0) {
+			if (System.currentTimeMillis() > deadline) {
+				fail("Expected inline submission to be suspended");
+			}
+			Thread.sleep(10);
+		}
+	}
+	
+	@SuppressWarnings("unchecked")
+	private Future<Thread> observe() {
+		return dispatcher.observe(Mockito.mock(Task.class), 1).toBlocking().toFuture();
+	}
+	
+	private void set(String dispatcherSetting, String value) {
+		configSource.set("astrix.beans.gigaspace." + spaceName + ".spaceTaskDispatcher." + dispatcherSetting, value);
+	}
+	
+	/*
+	 * Completes each execution with the thread that submitted the task. 
+	 */
+	private class BlockingExecution implements Answer<AsyncFuture<Thread>> {
+		
+		private final CountDownLatch blockedExecutionStarted = new CountDownLatch(1);
+		private volatile boolean blockNextExecution = false;
+		
+		void blockNextExecution() {
+			this.blockNextExecution = true;
+		}
+
+		@Override
+		public AsyncFuture<Thread> answer(InvocationOnMock invocation) throws Throwable {
+			Thread submitter = Thread.currentThread();
+			if (blockNextExecution) {
+				blockNextExecution = false;
+				blockedExecutionStarted.countDown();
+				releaseBlockedExecution.await();
+			}
+			return completedFuture(submitter);
+		}
+	}
+	
+	@SuppressWarnings("unchecked")
+	private static <T> AsyncFuture<T> completedFuture(final T result) {
+		AsyncFuture<T> future = Mockito.mock(AsyncFuture.class);
+		Mockito.doAnswer(new Answer<Void>() {
+			@Override
+			public Void answer(InvocationOnMock invocation) throws Throwable {
+				AsyncFutureListener<T> listener = (AsyncFutureListener<T>) invocation.getArguments()[0];
+				listener.onResult(new DefaultAsyncResult<T>(result, null));
+				return null;
+			}
+		}).when(future).setListener(Mockito.any(AsyncFutureListener.class));
+		return future;
+	}
+
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.gs.localview;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.openspaces.core.GigaSpace;
+
+import com.j_spaces.core.client.SQLQuery;
+
+
+public class LocalViewMetricsTest {
+	
+	private final GigaSpace localView = Mockito.mock(GigaSpace.class);
+	private final SQLQuery<String> viewQuery = new SQLQuery<>(String.class, "");
+	private final LocalViewMetrics metrics = new LocalViewMetrics(localView, Arrays.<SQLQuery<?>>asList(viewQuery));
+	
+	@Test
+	public void countsReadsAgainstTypesCoveredByViewQueriesAsLocal() throws Exception {
+		GigaSpace instrumented = metrics.createInstrumentedLocalView();
+		
+		instrumented.readById(String.class, "1");
+		instrumented.readById(String.class, "2");
+		instrumented.readById(Integer.class, 1);
+		
+		assertEquals(2, metrics.getLocalReadCount());
+		assertEquals(1, metrics.getRemoteReadCount());
+		assertEquals(Collections.singletonMap(Integer.class.getName(), 1L), metrics.getRemoteReadCountByType());
+	}
+	
+	@Test
+	public void countsQueriesNotIdenticalToViewQueryOnPartiallyCoveredTypeAsRemote() throws Exception {
+		SQLQuery<Integer> partialViewQuery = new SQLQuery<>(Integer.class, "intValue() > ?").setParameters(10);
+		LocalViewMetrics metrics = new LocalViewMetrics(localView, Arrays.<SQLQuery<?>>asList(partialViewQuery));
+		GigaSpace instrumented = metrics.createInstrumentedLocalView();
+		
+		instrumented.readMultiple(new SQLQuery<>(Integer.class, "intValue() > ?").setParameters(10));
+		instrumented.readMultiple(new SQLQuery<>(Integer.class, "intValue() > ?").setParameters(0));
+		instrumented.readById(Integer.class, 1);
+		
+		assertEquals(1, metrics.getLocalReadCount());
+		assertEquals(2, metrics.getRemoteReadCount());
+	}
+	
+	@Test
+	public void nonReadOperationsAreNotCounted() throws Exception {
+		GigaSpace instrumented = metrics.createInstrumentedLocalView();
+		
+		instrumented.getName();
+		
+		assertEquals(0, metrics.getLocalReadCount());
+		assertEquals(0, metrics.getRemoteReadCount());
+	}
+	
+	@Test
+	public void countsEntriesInLocalViewPerViewQuery() throws Exception {
+		Mockito.stub(localView.count(viewQuery)).toReturn(21);
+		
+		assertEquals(21, metrics.getEntryCount());
+	}
+
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.gs.localview;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.openspaces.core.GigaSpace;
+
+import com.j_spaces.core.client.SQLQuery;
+
+
+public class LocalViewWarmupTest {
+	
+	private final GigaSpace localView = Mockito.mock(GigaSpace.class);
+	private final GigaSpace clusteredSpace = Mockito.mock(GigaSpace.class);
+	private final SQLQuery<String> stringQuery = new SQLQuery<>(String.class, "");
+	private final SQLQuery<Integer> integerQuery = new SQLQuery<>(Integer.class, "");
+	
+	@Test
+	public void completesWhenLocalViewContainsAllEntriesInCluster() throws Exception {
+		Mockito.stub(clusteredSpace.count(stringQuery)).toReturn(10);
+		Mockito.stub(clusteredSpace.count(integerQuery)).toReturn(5);
+		Mockito.when(localView.count(stringQuery)).thenReturn(0, 4, 10);
+		Mockito.when(localView.count(integerQuery)).thenReturn(5);
+		
+		LocalViewWarmup warmup = new LocalViewWarmup("test-space", localView, clusteredSpace, Arrays.<SQLQuery<?>>asList(stringQuery, integerQuery));
+		
+		assertTrue(warmup.await(5_000));
+		Mockito.verify(localView, Mockito.times(3)).count(stringQuery);
+	}
+	
+	@Test
+	public void countsEntriesInClusterOncePerViewQuery() throws Exception {
+		Mockito.stub(clusteredSpace.count(stringQuery)).toReturn(10);
+		Mockito.when(localView.count(stringQuery)).thenReturn(0, 0, 0, 10);
+		
+		LocalViewWarmup warmup = new LocalViewWarmup("test-space", localView, clusteredSpace, Arrays.<SQLQuery<?>>asList(stringQuery));
+		
+		assertTrue(warmup.await(5_000));
+		Mockito.verify(clusteredSpace, Mockito.times(1)).count(stringQuery);
+	}
+	
+	@Test
+	public void returnsFalseWhenLocalViewIsNotPopulatedWithinTimeout() throws Exception {
+		Mockito.stub(clusteredSpace.count(stringQuery)).toReturn(10);
+		Mockito.stub(localView.count(stringQuery)).toReturn(0);
+		
+		LocalViewWarmup warmup = new LocalViewWarmup("test-space", localView, clusteredSpace, Arrays.<SQLQuery<?>>asList(stringQuery));
+		
+		assertFalse(warmup.await(50));
+	}
+	
+	@Test
+	public void returnsFalseWhenCountingEntriesFails() throws Exception {
+		Mockito.stub(clusteredSpace.count(stringQuery)).toThrow(new IllegalStateException("count failed"));
+		
+		LocalViewWarmup warmup = new LocalViewWarmup("test-space", localView, clusteredSpace, Arrays.<SQLQuery<?>>asList(stringQuery));
+		
+		assertFalse(warmup.await(5_000));
+	}
+	
+	@Test
+	public void completesImmediatelyWithoutViewQueries() throws Exception {
+		LocalViewWarmup warmup = new LocalViewWarmup("test-space", localView, clusteredSpace, Collections.<SQLQuery<?>>emptyList());
+		
+		assertTrue(warmup.await(5_000));
+		Mockito.verifyZeroInteractions(localView, clusteredSpace);
+	}
+
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.gs.remoting;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.MockitoAnnotations;
+import org.openspaces.core.GigaSpace;
+import org.openspaces.core.cluster.ClusterInfo;
+
+import com.avanza.astrix.config.DynamicConfig;
+import com.avanza.astrix.config.MapConfigSource;
+import com.avanza.astrix.gs.ClusterInfoHolder;
+import com.avanza.astrix.gs.ClusterTopology;
+import com.avanza.astrix.remoting.client.AstrixServiceInvocationRequest;
+import com.avanza.astrix.remoting.client.AstrixServiceInvocationResponse;
+import com.avanza.astrix.remoting.client.RoutingKey;
+import com.avanza.astrix.remoting.server.AstrixServiceActivator;
+import com.avanza.astrix.spring.AstrixSpringContext;
+import com.gigaspaces.internal.client.spaceproxy.SpaceProxyImpl;
+import com.gigaspaces.internal.cluster.SpaceClusterInfo;
+
+
+public class AstrixPartitionedServiceInvocationTaskTest {
+	
+	@Mock
+	private AstrixSpringContext astrixSpringContext;
+	@Mock
+	private ClusterInfoHolder clusterInfoHolder;
+	@InjectMocks
+	private AstrixPartitionedServiceInvocationTask task = new AstrixPartitionedServiceInvocationTask();
+	private final AstrixServiceActivator serviceActivator = Mockito.mock(AstrixServiceActivator.class);
+	
+	@Before
+	public void setup() {
+		MockitoAnnotations.initMocks(this);
+		Mockito.stub(astrixSpringContext.getInstance(AstrixServiceActivator.class)).toReturn(serviceActivator);
+	}
+	
+	@Test
+	public void targetsEachPartitionWithAtLeastOneRequest() throws Exception {
+		task.addRequest(0, new AstrixServiceInvocationRequest());
+		task.addRequest(2, new AstrixServiceInvocationRequest());
+		task.addRequest(2, new AstrixServiceInvocationRequest());
+		
+		Object[] routingKeys = task.getTargetPartitionRoutingKeys(clusterTopology(4));
+		
+		assertEquals(new HashSet<>(Arrays.<Object>asList(RoutingKey.create(0), RoutingKey.create(2))), new HashSet<>(Arrays.asList(routingKeys)));
+		assertEquals(3, task.requestCount());
+	}
+	
+	@Test
+	public void invokesRequestsRoutedToLocalPartitionInOrder() throws Exception {
+		AstrixServiceInvocationRequest first = new AstrixServiceInvocationRequest();
+		AstrixServiceInvocationRequest second = new AstrixServiceInvocationRequest();
+		AstrixServiceInvocationResponse firstResponse = new AstrixServiceInvocationResponse();
+		AstrixServiceInvocationResponse secondResponse = new AstrixServiceInvocationResponse();
+		Mockito.stub(serviceActivator.invokeService(first)).toReturn(firstResponse);
+		Mockito.stub(serviceActivator.invokeService(second)).toReturn(secondResponse);
+		task.addRequest(0, new AstrixServiceInvocationRequest());
+		task.addRequest(1, first);
+		task.addRequest(1, second);
+		
+		// ClusterInfo instance ids are one based 
+		runningOnInstance(2);
+		ArrayList<AstrixServiceInvocationResponse> responses = task.execute();
+		
+		assertEquals(2, responses.size());
+		assertSame(firstResponse, responses.get(0));
+		assertSame(secondResponse, responses.get(1));
+		Mockito.verify(serviceActivator, Mockito.times(2)).invokeService(Mockito.any(AstrixServiceInvocationRequest.class));
+	}
+	
+	@Test
+	public void partitionWithoutRequestsReturnsNoResponses() throws Exception {
+		task.addRequest(0, new AstrixServiceInvocationRequest());
+		
+		runningOnInstance(2);
+		List<AstrixServiceInvocationResponse> responses = task.execute();
+		
+		assertEquals(0, responses.size());
+		Mockito.verifyZeroInteractions(serviceActivator);
+	}
+	
+	private void runningOnInstance(int instanceId) {
+		ClusterInfo clusterInfo = Mockito.mock(ClusterInfo.class);
+		Mockito.stub(clusterInfo.getInstanceId()).toReturn(instanceId);
+		Mockito.stub(clusterInfoHolder.getClusterInfo()).toReturn(clusterInfo);
+	}
+	
+	private static ClusterTopology clusterTopology(int partitionCount) {
+		SpaceClusterInfo spaceClusterInfo = Mockito.mock(SpaceClusterInfo.class);
+		Mockito.stub(spaceClusterInfo.getNumberOfPartitions()).toReturn(partitionCount);
+		SpaceProxyImpl space = Mockito.mock(SpaceProxyImpl.class);
+		Mockito.stub(space.getSpaceClusterInfo()).toReturn(spaceClusterInfo);
+		GigaSpace gigaSpace = Mockito.mock(GigaSpace.class);
+		Mockito.stub(gigaSpace.getName()).toReturn("test-space");
+		Mockito.stub(gigaSpace.getSpace()).toReturn(space);
+		return new ClusterTopology(gigaSpace, DynamicConfig.create(new MapConfigSource()));
+	}
+
+}
@@ -0,0 +1,275 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.gs.remoting;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.openspaces.core.GigaSpace;
+import org.openspaces.core.cluster.ClusterInfo;
+import org.openspaces.core.executor.DistributedTask;
+import org.openspaces.core.executor.Task;
+import org.springframework.context.ApplicationContext;
+
+import com.avanza.astrix.beans.core.AstrixSettings;
+import com.avanza.astrix.beans.factory.AstrixBeanKey;
+import com.avanza.astrix.beans.publish.ApiProvider;
+import com.avanza.astrix.beans.publish.SimpleAstrixBeanDefinition;
+import com.avanza.astrix.beans.service.ServiceProperties;
+import com.avanza.astrix.config.DynamicBooleanProperty;
+import com.avanza.astrix.config.DynamicConfig;
+import com.avanza.astrix.config.MapConfigSource;
+import com.avanza.astrix.ft.BeanFaultTolerance;
+import com.avanza.astrix.ft.BeanFaultToleranceFactory;
+import com.avanza.astrix.ft.DefaultHystrixCommandNamingStrategy;
+import com.avanza.astrix.ft.HystrixBeanFaultToleranceProvider;
+import com.avanza.astrix.gs.ClusterInfoHolder;
+import com.avanza.astrix.gs.GsBinder;
+import com.avanza.astrix.gs.SpaceTaskDispatcher;
+import com.avanza.astrix.remoting.client.AstrixServiceInvocationRequest;
+import com.avanza.astrix.remoting.client.AstrixServiceInvocationResponse;
+import com.avanza.astrix.remoting.client.RoutedServiceInvocationRequest;
+import com.avanza.astrix.remoting.client.RoutingKey;
+import com.avanza.astrix.remoting.server.AstrixServiceActivator;
+import com.avanza.astrix.spring.AstrixSpringContext;
+import com.gigaspaces.async.AsyncFuture;
+import com.gigaspaces.async.AsyncFutureListener;
+import com.gigaspaces.async.internal.DefaultAsyncResult;
+import com.gigaspaces.internal.client.spaceproxy.SpaceProxyImpl;
+import com.gigaspaces.internal.cluster.SpaceClusterInfo;
+
+
+public class GsRemotingTransportTest {
+	
+	private static final String SPACE_URL = "jini://*/*/test-space";
+	private static final AtomicInteger spaceCount = new AtomicInteger();
+	
+	private final DynamicConfig config = DynamicConfig.create(new MapConfigSource());
+	private final AstrixServiceActivator serviceActivator = Mockito.mock(AstrixServiceActivator.class);
+	private final ClusterInfoHolder clusterInfoHolder = Mockito.mock(ClusterInfoHolder.class);
+	private final AstrixServiceInvocationResponse localResponse = new AstrixServiceInvocationResponse();
+	private final AstrixServiceInvocationResponse remoteResponse = new AstrixServiceInvocationResponse();
+	private final SpaceClusterInfo spaceClusterInfo = Mockito.mock(SpaceClusterInfo.class);
+	private GigaSpace gigaSpace;
+	private BeanFaultTolerance faultTolerance;
+	private CollocatedServiceInvoker collocatedServiceInvoker;
+	private SpaceTaskDispatcher spaceTaskDispatcher;
+	
+	@Before
+	@SuppressWarnings("unchecked")
+	public void setup() {
+		MapConfigSource configSource = new MapConfigSource();
+		configSource.set(AstrixSettings.ENABLE_FAULT_TOLERANCE, false);
+		BeanFaultToleranceFactory factory = new BeanFaultToleranceFactory(new HystrixBeanFaultToleranceProvider(), new DefaultHystrixCommandNamingStrategy());
+		factory.setConfig(DynamicConfig.create(configSource));
+		faultTolerance = factory.create(new SimpleAstrixBeanDefinition<>(ApiProvider.create("test-provider"), AstrixBeanKey.create(GigaSpace.class)));
+		
+		// Unique name per test since the SpaceTaskDispatcher registers its metrics in the platform MBeanServer
+		gigaSpace = Mockito.mock(GigaSpace.class);
+		SpaceProxyImpl space = Mockito.mock(SpaceProxyImpl.class);
+		Mockito.stub(gigaSpace.getName()).toReturn("test-space-" + spaceCount.incrementAndGet());
+		Mockito.stub(gigaSpace.getSpace()).toReturn(space);
+		Mockito.stub(space.getSpaceClusterInfo()).toReturn(spaceClusterInfo);
+		Mockito.when(gigaSpace.execute(Mockito.any(Task.class), Mockito.any())).thenAnswer(completedFuture(remoteResponse));
+		Mockito.when(gigaSpace.execute(Mockito.any(DistributedTask.class))).thenAnswer(completedFuture(Collections.singletonList(new DefaultAsyncResult<>(remoteResponse, null))));
+		spaceTaskDispatcher = new SpaceTaskDispatcher(gigaSpace, config);
+		
+		Mockito.stub(serviceActivator.invokeService(Mockito.any(AstrixServiceInvocationRequest.class))).toReturn(localResponse);
+		ApplicationContext applicationContext = Mockito.mock(ApplicationContext.class);
+		Mockito.stub(applicationContext.getBeansOfType(ClusterInfoHolder.class)).toReturn(Collections.singletonMap("clusterInfoHolder", clusterInfoHolder));
+		AstrixSpringContext astrixSpringContext = Mockito.mock(AstrixSpringContext.class);
+		Mockito.stub(astrixSpringContext.getApplicationContext()).toReturn(applicationContext);
+		GigaSpace embeddedSpace = Mockito.mock(GigaSpace.class);
+		ServiceProperties embeddedSpaceProperties = new ServiceProperties();
+		embeddedSpaceProperties.setProperty(GsBinder.SPACE_URL_PROPERTY, SPACE_URL);
+		GsBinder gsBinder = Mockito.mock(GsBinder.class);
+		Mockito.stub(gsBinder.getEmbeddedSpace(applicationContext)).toReturn(embeddedSpace);
+		Mockito.stub(gsBinder.createProperties(embeddedSpace)).toReturn(embeddedSpaceProperties);
+		collocatedServiceInvoker = new CollocatedServiceInvoker(astrixSpringContext, gsBinder, serviceActivator, spaceTaskDispatcher, SPACE_URL);
+	}
+	
+	@After
+	public void after() {
+		spaceTaskDispatcher.destroy();
+	}
+	
+	@Test
+	public void routedRequestTargetingLocalPartitionIsInvokedWithoutUsingSpace() throws Exception {
+		clusterWithPartitions(2);
+		runningAsPrimary(2);
+		
+		AstrixServiceInvocationResponse response = transport().submitRoutedRequest(new AstrixServiceInvocationRequest(), RoutingKey.create(1)).toBlocking().first();
+		
+		assertSame(localResponse, response);
+		Mockito.verify(gigaSpace, Mockito.never()).execute(Mockito.any(Task.class), Mockito.any());
+	}
+	
+	@Test
+	public void collocatedInvocationDoesNotBlockSubscribingThread() throws Exception {
+		clusterWithPartitions(2);
+		runningAsPrimary(2);
+		final CountDownLatch releaseInvocation = new CountDownLatch(1);
+		final AtomicReference<Thread> invokingThread = new AtomicReference<>();
+		Mockito.when(serviceActivator.invokeService(Mockito.any(AstrixServiceInvocationRequest.class))).thenAnswer(new Answer<AstrixServiceInvocationResponse>() {
+			@Override
+			public AstrixServiceInvocationResponse answer(InvocationOnMock invocation) throws Throwable {
+				invokingThread.set(Thread.currentThread());
+				releaseInvocation.await(5, TimeUnit.SECONDS);
+				return localResponse;
+			}
+		});
+		
+		Future<AstrixServiceInvocationResponse> response = transport().submitRoutedRequest(new AstrixServiceInvocationRequest(), RoutingKey.create(1)).toBlocking().toFuture();
+		releaseInvocation.countDown();
+		
+		assertSame(localResponse, response.get(5, TimeUnit.SECONDS));
+		assertNotSame(Thread.currentThread(), invokingThread.get());
+	}
+	
+	@Test
+	public void routedRequestTargetingOtherPartitionIsSubmittedToSpace() throws Exception {
+		clusterWithPartitions(2);
+		runningAsPrimary(2);
+		
+		AstrixServiceInvocationResponse response = transport().submitRoutedRequest(new AstrixServiceInvocationRequest(), RoutingKey.create(0)).toBlocking().first();
+		
+		assertSame(remoteResponse, response);
+		Mockito.verifyZeroInteractions(serviceActivator);
+	}
+	
+	@Test
+	public void routedRequestIsSubmittedToSpaceWhenEmbeddedSpaceIsBackup() throws Exception {
+		clusterWithPartitions(2);
+		runningAsBackup(2);
+		
+		AstrixServiceInvocationResponse response = transport().submitRoutedRequest(new AstrixServiceInvocationRequest(), RoutingKey.create(1)).toBlocking().first();
+		
+		assertSame(remoteResponse, response);
+		Mockito.verifyZeroInteractions(serviceActivator);
+	}
+	
+	@Test
+	public void broadcastRequestOnSinglePartitionSpaceIsInvokedWithoutUsingSpace() throws Exception {
+		clusterWithPartitions(1);
+		runningAsPrimary(null);
+		
+		List<AstrixServiceInvocationResponse> responses = transport().submitBroadcastRequest(new AstrixServiceInvocationRequest()).toBlocking().first();
+		
+		assertEquals(1, responses.size());
+		assertSame(localResponse, responses.get(0));
+		Mockito.verify(gigaSpace, Mockito.never()).execute(Mockito.any(DistributedTask.class));
+	}
+	
+	@Test
+	public void broadcastRequestOnPartitionedSpaceIsSubmittedToSpace() throws Exception {
+		clusterWithPartitions(2);
+		runningAsPrimary(1);
+		
+		List<AstrixServiceInvocationResponse> responses = transport().submitBroadcastRequest(new AstrixServiceInvocationRequest()).toBlocking().first();
+		
+		assertEquals(1, responses.size());
+		assertSame(remoteResponse, responses.get(0));
+		Mockito.verifyZeroInteractions(serviceActivator);
+	}
+	
+	@Test
+	@SuppressWarnings("unchecked")
+	public void failedBatchedRoutedRequestsInvalidatesClusterTopology() throws Exception {
+		clusterWithPartitions(2);
+		Mockito.when(gigaSpace.execute(Mockito.any(DistributedTask.class), Mockito.anyVararg())).thenAnswer(failedFuture(new IllegalStateException("partition failed")));
+		GsRemotingTransport transport = new GsRemotingTransport(spaceTaskDispatcher, faultTolerance, new DynamicBooleanProperty(true));
+		assertEquals(2, transport.partitionCount());
+		
+		clusterWithPartitions(3);
+		try {
+			transport.submitRoutedRequests(Arrays.asList(new RoutedServiceInvocationRequest(new AstrixServiceInvocationRequest(), RoutingKey.create(0)),
+														 new RoutedServiceInvocationRequest(new AstrixServiceInvocationRequest(), RoutingKey.create(1)))).toBlocking().first();
+			fail("Expected batched invocation to fail");
+		} catch (IllegalStateException e) {
+			// Expected
+		}
+		
+		assertEquals(3, transport.partitionCount());
+	}
+	
+	private GsRemotingTransport transport() {
+		return new GsRemotingTransport(spaceTaskDispatcher, faultTolerance, new DynamicBooleanProperty(false), collocatedServiceInvoker);
+	}
+	
+	private void clusterWithPartitions(int partitionCount) {
+		Mockito.stub(spaceClusterInfo.getNumberOfPartitions()).toReturn(partitionCount);
+	}
+	
+	private void runningAsPrimary(Integer instanceId) {
+		runningAs(instanceId, true);
+	}
+	
+	private void runningAsBackup(Integer instanceId) {
+		runningAs(instanceId, false);
+	}
+	
+	private void runningAs(Integer instanceId, boolean primary) {
+		ClusterInfo clusterInfo = Mockito.mock(ClusterInfo.class);
+		Mockito.stub(clusterInfo.getInstanceId()).toReturn(instanceId);
+		Mockito.stub(clusterInfoHolder.getClusterInfo()).toReturn(clusterInfo);
+		Mockito.stub(clusterInfoHolder.isPrimary()).toReturn(primary);
+	}
+	
+	private static <T> Answer<AsyncFuture<T>> completedFuture(T result) {
+		return asyncResult(result, null);
+	}
+	
+	private static <T> Answer<AsyncFuture<T>> failedFuture(Exception exception) {
+		return asyncResult(null, exception);
+	}
+	
+	private static <T> Answer<AsyncFuture<T>> asyncResult(final T result, final Exception exception) {
+		return new Answer<AsyncFuture<T>>() {
+			@Override
+			@SuppressWarnings("unchecked")
+			public AsyncFuture<T> answer(InvocationOnMock invocation) throws Throwable {
+				AsyncFuture<T> future = Mockito.mock(AsyncFuture.class);
+				Mockito.doAnswer(new Answer<Void>() {
+					@Override
+					public Void answer(InvocationOnMock invocation) throws Throwable {
+						AsyncFutureListener<T> listener = (AsyncFutureListener<T>) invocation.getArguments()[0];
+						listener.onResult(new DefaultAsyncResult<T>(result, exception));
+						return null;
+					}
+				}).when(future).setListener(Mockito.any(AsyncFutureListener.class));
+				return future;
+			}
+		};
+	}
+
+}
@@ -0,0 +1,319 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.http;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.Map;
+
+import com.avanza.astrix.remoting.client.AstrixServiceInvocationRequest;
+import com.avanza.astrix.remoting.client.AstrixServiceInvocationResponse;
+/**
+ * Encodes requests and responses using a compact binary framing. <p>
+ * 
+ * Headers and strings are written as length prefixed UTF-8, and each argument (or response body) is 
+ * written as a tagged value. Strings and byte arrays, which is what versioned object serializers produce, 
+ * are written as is, as are boxed primitives. Any other value is written as a length prefixed java 
+ * serialization block. <p>
+ * 
+ * IMPLEMENTATION NOTE: Java serialization blocks are encoded and decoded using a per-thread buffer that
+ * is reused between invocations. Buffers larger than {@link #MAX_POOLED_BUFFER_SIZE} are not retained.
+ * Length prefixes are validated against {@link #MAX_FRAME_LENGTH} before any buffer is allocated, since
+ * they are read from the network.
+ */
+public final class BinaryHttpRemotingCodec implements HttpRemotingCodec {
+	
+	public static final String CONTENT_TYPE = "application/x-astrix-binary";
+	
+	static final int MAX_POOLED_BUFFER_SIZE = 1024 * 1024;
+	static final int MAX_FRAME_LENGTH = 64 * 1024 * 1024;
+	/*
+	 * The JVM limits the number of parameters of a method to 255
+	 */
+	private static final int MAX_ARGUMENT_COUNT = 255;
+	private static final byte FORMAT_VERSION = 1;
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+	
+	private static final byte NULL = 0;
+	private static final byte STRING = 1;
+	private static final byte BYTES = 2;
+	private static final byte INT = 3;
+	private static final byte LONG = 4;
+	private static final byte BOOLEAN = 5;
+	private static final byte SERIALIZED = 6;
+	
+	private static final ThreadLocal<PooledBuffer> buffers = new ThreadLocal<PooledBuffer>() {
+		@Override
+		protected PooledBuffer initialValue() {
+			return new PooledBuffer();
+		}
+	};
+
+	@Override
+	public String getContentType() {
+		return CONTENT_TYPE;
+	}
+
+	@Override
+	public void encodeRequest(AstrixServiceInvocationRequest request, OutputStream out) throws IOException {
+		DataOutputStream data = new DataOutputStream(out);
+		data.writeByte(FORMAT_VERSION);
+		writeHeaders(request.getHeaders(), data);
+		Object[] arguments = request.getArguments();
+		if (arguments == null) {
+			data.writeInt(-1);
+		} else {
+			data.writeInt(arguments.length);
+			for (Object argument : arguments) {
+				writeValue(argument, data);
+			}
+		}
+		data.flush();
+	}
+
+	@Override
+	public AstrixServiceInvocationRequest decodeRequest(InputStream in) throws IOException {
+		DataInputStream data = new DataInputStream(in);
+		readFormatVersion(data);
+		AstrixServiceInvocationRequest request = new AstrixServiceInvocationRequest();
+		readHeaders(data, request.getHeaders());
+		int argumentCount = data.readInt();
+		if (argumentCount > MAX_ARGUMENT_COUNT) {
+			throw new IOException("Illegal argument count: " + argumentCount);
+		}
+		if (argumentCount >= 0) {
+			Object[] arguments = new Object[argumentCount];
+			for (int i = 0; i < argumentCount; i++) {
+				arguments[i] = readValue(data);
+			}
+			request.setArguments(arguments);
+		}
+		return request;
+	}
+
+	@Override
+	public void encodeResponse(AstrixServiceInvocationResponse response, OutputStream out) throws IOException {
+		DataOutputStream data = new DataOutputStream(out);
+		data.writeByte(FORMAT_VERSION);
+		writeHeaders(response.getHeaders(), data);
+		writeValue(response.getResponseBody(), data);
+		writeValue(response.getException(), data);
+		writeString(response.getThrownExceptionType(), data);
+		writeString(response.getExceptionMsg(), data);
+		writeString(response.getCorrelationId(), data);
+		data.flush();
+	}
+
+	@Override
+	public AstrixServiceInvocationResponse decodeResponse(InputStream in) throws IOException {
+		DataInputStream data = new DataInputStream(in);
+		readFormatVersion(data);
+		AstrixServiceInvocationResponse response = new AstrixServiceInvocationResponse();
+		readHeaders(data, response.getHeaders());
+		response.setResponseBody(readValue(data));
+		response.setException(readValue(data));
+		response.setThrownExceptionType(readString(data));
+		response.setExceptionMsg(readString(data));
+		response.setCorrelationId(readString(data));
+		return response;
+	}
+	
+	private static void readFormatVersion(DataInputStream data) throws IOException {
+		byte version = data.readByte();
+		if (version != FORMAT_VERSION) {
+			throw new IOException("Unsupported format version: " + version);
+		}
+	}
+	
+	private static void writeHeaders(Map<String, String> headers, DataOutputStream data) throws IOException {
+		data.writeInt(headers.size());
+		for (Map.Entry<String, String> header : headers.entrySet()) {
+			writeString(header.getKey(), data);
+			writeString(header.getValue(), data);
+		}
+	}
+	
+	private static void readHeaders(DataInputStream data, Map<String, String> headers) throws IOException {
+		int headerCount = data.readInt();
+		for (int i = 0; i < headerCount; i++) {
+			headers.put(readString(data), readString(data));
+		}
+	}
+	
+	private static void writeString(String value, DataOutputStream data) throws IOException {
+		if (value == null) {
+			data.writeInt(-1);
+			return;
+		}
+		writeBytes(value.getBytes(UTF_8), data);
+	}
+	
+	private static String readString(DataInputStream data) throws IOException {
+		byte[] bytes = readBytes(data);
+		return bytes == null ? null : new String(bytes, UTF_8);
+	}
+	
+	private static void writeBytes(byte[] value, DataOutputStream data) throws IOException {
+		data.writeInt(value.length);
+		data.write(value);
+	}
+	
+	private static byte[] readBytes(DataInputStream data) throws IOException {
+		int length = data.readInt();
+		if (length < 0) {
+			return null;
+		}
+		checkFrameLength(length);
+		byte[] result = new byte[length];
+		data.readFully(result);
+		return result;
+	}
+	
+	private static void checkFrameLength(int length) throws IOException {
+		if (length > MAX_FRAME_LENGTH) {
+			throw new IOException(String.format("Frame length exceeds limit. length=%s maxFrameLength=%s", length, MAX_FRAME_LENGTH));
+		}
+	}
+	
+	private static void writeValue(Object value, DataOutputStream data) throws IOException {
+		if (value == null) {
+			data.writeByte(NULL);
+		} else if (value instanceof String) {
+			data.writeByte(STRING);
+			writeString((String) value, data);
+		} else if (value instanceof byte[]) {
+			data.writeByte(BYTES);
+			writeBytes((byte[]) value, data);
+		} else if (value instanceof Integer) {
+			data.writeByte(INT);
+			data.writeInt((Integer) value);
+		} else if (value instanceof Long) {
+			data.writeByte(LONG);
+			data.writeLong((Long) value);
+		} else if (value instanceof Boolean) {
+			data.writeByte(BOOLEAN);
+			data.writeBoolean((Boolean) value);
+		} else {
+			data.writeByte(SERIALIZED);
+			writeSerialized(value, data);
+		}
+	}
+	
+	private static Object readValue(DataInputStream data) throws IOException {
+		byte tag = data.readByte();
+		switch (tag) {
+		case NULL:
+			return null;
+		case STRING:
+			return readString(data);
+		case BYTES:
+			return readBytes(data);
+		case INT:
+			return data.readInt();
+		case LONG:
+			return data.readLong();
+		case BOOLEAN:
+			return data.readBoolean();
+		case SERIALIZED:
+			return readSerialized(data);
+		default:
+			throw new IOException("Unknown value tag: " + tag);
+		}
+	}
+
+	private static void writeSerialized(Object value, DataOutputStream data) throws IOException {
+		PooledBuffer buffer = acquireBuffer();
+		try {
+			ObjectOutputStream objectOut = new ObjectOutputStream(buffer);
+			objectOut.writeObject(value);
+			objectOut.flush();
+			data.writeInt(buffer.size());
+			buffer.writeTo(data);
+		} finally {
+			releaseBuffer(buffer);
+		}
+	}
+	
+	private static Object readSerialized(DataInputStream data) throws IOException {
+		int length = data.readInt();
+		if (length < 0) {
+			throw new IOException("Illegal frame length: " + length);
+		}
+		checkFrameLength(length);
+		PooledBuffer buffer = acquireBuffer();
+		try {
+			byte[] bytes = buffer.readFully(data, length);
+			ObjectInputStream objectIn = new ObjectInputStream(new ByteArrayInputStream(bytes, 0, length));
+			return objectIn.readObject();
+		} catch (ClassNotFoundException e) {
+			throw new IOException("Failed to decode serialized value", e);
+		} finally {
+			releaseBuffer(buffer);
+		}
+	}
+	
+	private static PooledBuffer acquireBuffer() {
+		PooledBuffer buffer = buffers.get();
+		if (buffer.inUse) {
+			// Nested use, i.e an object serialized within another codec invocation on same thread
+			return new PooledBuffer();
+		}
+		buffer.inUse = true;
+		return buffer;
+	}
+	
+	private static void releaseBuffer(PooledBuffer buffer) {
+		buffer.reset();
+		buffer.inUse = false;
+		if (buffer.capacity() > MAX_POOLED_BUFFER_SIZE && buffers.get() == buffer) {
+			buffers.remove();
+		}
+	}
+	
+	private static final class PooledBuffer extends ByteArrayOutputStream {
+		
+		private boolean inUse = false;
+		
+		PooledBuffer() {
+			super(4096);
+		}
+		
+		int capacity() {
+			return buf.length;
+		}
+		
+		/**
+		 * Reads the given number of bytes into the underlying array and returns it. Only
+		 * the first length bytes of the returned array are valid. 
+		 */
+		byte[] readFully(DataInputStream in, int length) throws IOException {
+			if (buf.length < length) {
+				buf = new byte[length];
+			}
+			in.readFully(buf, 0, length);
+			return buf;
+		}
+	}
+
+}
@@ -0,0 +1,34 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.http;
+
+import java.util.Collection;
+
+import com.avanza.astrix.http.HttpRemotingTransport.ClusterMember;
+/**
+ * Discovers the current members of a cluster exposing services over http. <p>
+ * 
+ * A {@link HttpRemotingTransport} polls its discovery periodically and replaces its member table
+ * with the result, see {@link HttpRemotingSettings#MEMBER_REFRESH_INTERVAL_MILLIS}.
+ */
+public interface ClusterMemberDiscovery {
+	
+	/**
+	 * @return the currently known cluster members, never null
+	 */
+	Collection<ClusterMember> discoverClusterMembers();
+
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.http;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.avanza.astrix.remoting.client.AstrixServiceInvocationRequest;
+import com.avanza.astrix.remoting.client.AstrixServiceInvocationResponse;
+/**
+ * Frames several service invocations into a single http entity. <p>
+ * 
+ * A batch is identified by the {@link #BATCH_SIZE_HEADER} http header, holding the number of invocations
+ * in the batch. The entity consists of that many frames, each frame being a four byte length followed by 
+ * one request (or response) encoded using the {@link HttpRemotingCodec} identified by the Content-Type. 
+ * The responses are written in the same order as the requests. <p>
+ * 
+ * IMPLEMENTATION NOTE: Each item is length prefixed rather than decoded directly from the entity stream since
+ * a codec is free to read ahead of the end of the item it decodes (java serialization does). A frame longer 
+ * than {@link #MAX_FRAME_LENGTH} is rejected before it is read.
+ */
+final class HttpRemotingBatchFraming {
+	
+	static final String BATCH_SIZE_HEADER = "X-Astrix-Batch-Size";
+	static final int MAX_FRAME_LENGTH = 64 * 1024 * 1024;
+	
+	private HttpRemotingBatchFraming() {
+	}
+	
+	static void encodeRequests(HttpRemotingCodec codec, List<AstrixServiceInvocationRequest> requests, OutputStream out) throws IOException {
+		DataOutputStream data = new DataOutputStream(out);
+		ByteArrayOutputStream frame = new ByteArrayOutputStream();
+		for (AstrixServiceInvocationRequest request : requests) {
+			frame.reset();
+			codec.encodeRequest(request, frame);
+			writeFrame(frame, data);
+		}
+		data.flush();
+	}
+	
+	static List<AstrixServiceInvocationRequest> decodeRequests(HttpRemotingCodec codec, int batchSize, InputStream in) throws IOException {
+		DataInputStream data = new DataInputStream(in);
+		List<AstrixServiceInvocationRequest> result = new ArrayList<>(batchSize);
+		for (int i = 0; i < batchSize; i++) {
+			result.add(codec.decodeRequest(readFrame(data)));
+		}
+		return result;
+	}
+	
+	static void encodeResponses(HttpRemotingCodec codec, List<AstrixServiceInvocationResponse> responses, OutputStream out) throws IOException {
+		DataOutputStream data = new DataOutputStream(out);
+		ByteArrayOutputStream frame = new ByteArrayOutputStream();
+		for (AstrixServiceInvocationResponse response : responses) {
+			frame.reset();
+			codec.encodeResponse(response, frame);
+			writeFrame(frame, data);
+		}
+		data.flush();
+	}
+	
+	static List<AstrixServiceInvocationResponse> decodeResponses(HttpRemotingCodec codec, int batchSize, InputStream in) throws IOException {
+		DataInputStream data = new DataInputStream(in);
+		List<AstrixServiceInvocationResponse> result = new ArrayList<>(batchSize);
+		for (int i = 0; i < batchSize; i++) {
+			result.add(codec.decodeResponse(readFrame(data)));
+		}
+		return result;
+	}
+	
+	private static void writeFrame(ByteArrayOutputStream frame, DataOutputStream data) throws IOException {
+		data.writeInt(frame.size());
+		frame.writeTo(data);
+	}
+	
+	private static InputStream readFrame(DataInputStream data) throws IOException {
+		int length = data.readInt();
+		if (length < 0) {
+			throw new IOException("Illegal frame length: " + length);
+		}
+		if (length > MAX_FRAME_LENGTH) {
+			throw new IOException(String.format("Frame length exceeds limit. length=%s maxFrameLength=%s", length, MAX_FRAME_LENGTH));
+		}
+		byte[] frame = new byte[length];
+		data.readFully(frame);
+		return new ByteArrayInputStream(frame);
+	}
+
+}
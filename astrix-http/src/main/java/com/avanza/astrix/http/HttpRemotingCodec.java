@@ -0,0 +1,46 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.http;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import com.avanza.astrix.remoting.client.AstrixServiceInvocationRequest;
+import com.avanza.astrix.remoting.client.AstrixServiceInvocationResponse;
+/**
+ * SPI for encoding service invocation requests and responses sent over http. <p>
+ * 
+ * The codec used for a given request is identified by the Content-Type of the http request, 
+ * and the response is always encoded using the same codec as the request. Implementations 
+ * encode and decode directly to and from the entity streams and must be thread-safe. 
+ */
+public interface HttpRemotingCodec {
+	
+	/**
+	 * @return the Content-Type identifying this codec
+	 */
+	String getContentType();
+	
+	void encodeRequest(AstrixServiceInvocationRequest request, OutputStream out) throws IOException;
+	
+	AstrixServiceInvocationRequest decodeRequest(InputStream in) throws IOException;
+	
+	void encodeResponse(AstrixServiceInvocationResponse response, OutputStream out) throws IOException;
+	
+	AstrixServiceInvocationResponse decodeResponse(InputStream in) throws IOException;
+
+}
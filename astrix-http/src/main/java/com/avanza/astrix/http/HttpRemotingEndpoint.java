@@ -1,8 +1,3 @@
-package com.avanza.astrix.http;
-
-import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
 /*
  * Copyright 2014 Avanza Bank AB
  *
@@ -18,15 +13,61 @@ import java.io.ObjectOutputStream;
  * See the License for the specific language governing permissions and
  * limitations under the License.
  */
+package com.avanza.astrix.http;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.avanza.astrix.core.util.NamedThreadFactory;
 import com.avanza.astrix.remoting.client.AstrixServiceInvocationRequest;
 import com.avanza.astrix.remoting.client.AstrixServiceInvocationResponse;
 import com.avanza.astrix.remoting.server.AstrixServiceActivator;
 /**
+ * Servlet receiving service invocations sent by a {@link HttpRemotingTransport}. <p>
+ * 
+ * When the servlet is registered with async support, each invocation is processed using
+ * a servlet 3 AsyncContext on a dedicated pool of invoker threads, i.e the container thread is released 
+ * as soon as the invocation is handed over to the invoker pool. Otherwise the invocation is processed
+ * synchronously on the container thread. An asynchronous invocation that is not completed within 
+ * {@link HttpRemotingEndpointSettings#getAsyncTimeoutMillis()} is responded to with a service-unavailable 
+ * response, and the result of the invocation is discarded when it completes. <p>
+ * 
+ * The services are invoked synchronously by the {@link AstrixServiceActivator}, i.e an invoker thread is blocked 
+ * for the duration of a service invocation. Hence the async processing only decouples the invocations from the 
+ * container thread pool, it does not allow more than {@link HttpRemotingEndpointSettings#getInvokerThreadCount()} 
+ * service invocations to execute concurrently. Use {@link HttpRemotingEndpointSettings#create(com.avanza.astrix.config.DynamicConfig)} 
+ * to size the invoker pool from configuration, see {@link HttpRemotingSettings#ENDPOINT_INVOKER_THREAD_COUNT}. <p>
+ * 
+ * The number of concurrent invocations is limited by {@link HttpRemotingEndpointSettings#getMaxConcurrentInvocations()}.
+ * Invocations exceeding the limit are rejected with a service-unavailable response, which is reported as
+ * a ServiceUnavailableException on the client side. A batch of invocations (see {@link HttpRemotingBatchFraming})
+ * counts as one invocation against the limit. The items of a batch are invoked concurrently using the invoker 
+ * pool, and any item not yet picked up by an invoker thread is invoked by the thread processing the batch. Hence
+ * a batch never waits for invoker threads that are busy processing other batches.
  * 
  * @author Elias Lindholm
  *
@@ -37,21 +78,252 @@ public class HttpRemotingEndpoint extends HttpServlet {
 	 * This is only a draft for remoting over http
 	 */
 	
+	private static final long serialVersionUID = 1L;
+	private static final Logger log = LoggerFactory.getLogger(HttpRemotingEndpoint.class);
 	private final AstrixServiceActivator serviceActivator;
+	private final HttpRemotingCodec defaultCodec = new JavaSerializationHttpRemotingCodec();
+	private final Map<String, HttpRemotingCodec> codecByContentType = new HashMap<>();
+	private final HttpRemotingEndpointSettings settings;
+	private final Semaphore invocationPermits;
+	private final ThreadPoolExecutor invokerPool;
 	
 	public HttpRemotingEndpoint(AstrixServiceActivator serviceActivator) {
+		this(serviceActivator, new HttpRemotingEndpointSettings());
+	}
+	
+	public HttpRemotingEndpoint(AstrixServiceActivator serviceActivator, HttpRemotingEndpointSettings settings) {
+		this(serviceActivator, settings, new JavaSerializationHttpRemotingCodec(), new BinaryHttpRemotingCodec());
+	}
+	
+	/**
+	 * @param serviceActivator
+	 * @param settings
+	 * @param codecs the supported codecs. Requests without a Content-Type are always decoded using java serialization.
+	 */
+	public HttpRemotingEndpoint(AstrixServiceActivator serviceActivator, HttpRemotingEndpointSettings settings, HttpRemotingCodec... codecs) {
 		this.serviceActivator = serviceActivator;
+		this.settings = settings;
+		for (HttpRemotingCodec codec : codecs) {
+			this.codecByContentType.put(codec.getContentType(), codec);
+		}
+		this.invocationPermits = new Semaphore(settings.getMaxConcurrentInvocations());
+		this.invokerPool = new ThreadPoolExecutor(settings.getInvokerThreadCount(), 
+												  settings.getInvokerThreadCount(), 
+												  0, 
+												  TimeUnit.SECONDS, 
+												  new LinkedBlockingQueue<Runnable>(), 
+												  new NamedThreadFactory("HttpRemotingEndpoint"));
 	}
 
 	@Override
 	protected void doPost(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
+		final HttpRemotingCodec codec = getCodec(req.getContentType());
+		if (codec == null) {
+			resp.sendError(HttpServletResponse.SC_UNSUPPORTED_MEDIA_TYPE, "Unsupported Content-Type: " + req.getContentType());
+			return;
+		}
+		String batchSize = req.getHeader(HttpRemotingBatchFraming.BATCH_SIZE_HEADER);
+		if (batchSize != null && !isValidBatchSize(batchSize)) {
+			resp.sendError(HttpServletResponse.SC_BAD_REQUEST, "Invalid " + HttpRemotingBatchFraming.BATCH_SIZE_HEADER + ": " + batchSize);
+			return;
+		}
+		if (!invocationPermits.tryAcquire()) {
+			writeServiceUnavailable(codec, req, resp, "Max concurrent invocations exceeded: " + settings.getMaxConcurrentInvocations());
+			return;
+		}
+		if (!req.isAsyncSupported()) {
+			try {
+				List<AstrixServiceInvocationResponse> invocationResponses;
+				try {
+					invocationResponses = invoke(codec, req);
+				} catch (Exception e) {
+					throw new ServletException(e);
+				}
+				writeResponses(codec, invocationResponses, req, resp);
+			} finally {
+				invocationPermits.release();
+			}
+			return;
+		}
+		AsyncInvocation asyncInvocation = new AsyncInvocation(codec, req.startAsync());
+		try {
+			invokerPool.execute(asyncInvocation);
+		} catch (RejectedExecutionException e) {
+			invocationPermits.release();
+			asyncInvocation.respondServiceUnavailable("HttpRemotingEndpoint is destroyed");
+		}
+	}
+	
+	private List<AstrixServiceInvocationResponse> invoke(HttpRemotingCodec codec, HttpServletRequest req) throws Exception {
+		String batchSize = req.getHeader(HttpRemotingBatchFraming.BATCH_SIZE_HEADER);
+		if (batchSize != null) {
+			return invokeBatch(codec, Integer.parseInt(batchSize), req);
+		}
+		AstrixServiceInvocationRequest invocationRequest = codec.decodeRequest(req.getInputStream());
+		return Collections.singletonList(serviceActivator.invokeService(invocationRequest));
+	}
+	
+	private List<AstrixServiceInvocationResponse> invokeBatch(HttpRemotingCodec codec, int batchSize, HttpServletRequest req) throws Exception {
+		List<FutureTask<AstrixServiceInvocationResponse>> invocations = new ArrayList<>(batchSize);
+		for (final AstrixServiceInvocationRequest invocationRequest : HttpRemotingBatchFraming.decodeRequests(codec, batchSize, req.getInputStream())) {
+			invocations.add(new FutureTask<>(new Callable<AstrixServiceInvocationResponse>() {
+				@Override
+				public AstrixServiceInvocationResponse call() throws Exception {
+					return serviceActivator.invokeService(invocationRequest);
+				}
+			}));
+		}
+		for (FutureTask<AstrixServiceInvocationResponse> invocation : invocations.subList(1, invocations.size())) {
+			try {
+				invokerPool.execute(invocation);
+			} catch (RejectedExecutionException e) {
+				// Endpoint is destroyed, invoked on current thread below
+			}
+		}
+		List<AstrixServiceInvocationResponse> invocationResponses = new ArrayList<>(batchSize);
+		for (FutureTask<AstrixServiceInvocationResponse> invocation : invocations) {
+			// No-op if the invocation is already started by an invoker thread
+			invocation.run();
+			invocationResponses.add(invocation.get());
+		}
+		return invocationResponses;
+	}
+	
+	private boolean isValidBatchSize(String batchSize) {
 		try {
-			ObjectInputStream input = new ObjectInputStream(req.getInputStream());
-			AstrixServiceInvocationRequest invocationRequest = (AstrixServiceInvocationRequest) input.readObject();
-			AstrixServiceInvocationResponse invocationResponse = serviceActivator.invokeService(invocationRequest);
-			new ObjectOutputStream(resp.getOutputStream()).writeObject(invocationResponse);
-		} catch (Exception e) {
-			throw new ServletException(e);
+			int size = Integer.parseInt(batchSize);
+			return size > 0 && size <= settings.getMaxBatchSize();
+		} catch (NumberFormatException e) {
+			return false;
+		}
+	}
+	
+	private static void writeResponses(HttpRemotingCodec codec, List<AstrixServiceInvocationResponse> invocationResponses, HttpServletRequest req, HttpServletResponse resp) throws IOException {
+		resp.setContentType(codec.getContentType());
+		String batchSize = req.getHeader(HttpRemotingBatchFraming.BATCH_SIZE_HEADER);
+		if (batchSize == null) {
+			codec.encodeResponse(invocationResponses.get(0), resp.getOutputStream());
+			return;
+		}
+		resp.setHeader(HttpRemotingBatchFraming.BATCH_SIZE_HEADER, batchSize);
+		HttpRemotingBatchFraming.encodeResponses(codec, invocationResponses, resp.getOutputStream());
+	}
+	
+	private static void writeServiceUnavailable(HttpRemotingCodec codec, HttpServletRequest req, HttpServletResponse resp, String reason) throws IOException {
+		String batchSize = req.getHeader(HttpRemotingBatchFraming.BATCH_SIZE_HEADER);
+		int responseCount = batchSize == null ? 1 : Integer.parseInt(batchSize);
+		List<AstrixServiceInvocationResponse> invocationResponses = new ArrayList<>(responseCount);
+		for (int i = 0; i < responseCount; i++) {
+			invocationResponses.add(serviceUnavailable(reason));
+		}
+		writeResponses(codec, invocationResponses, req, resp);
+	}
+	
+	private static AstrixServiceInvocationResponse serviceUnavailable(String reason) {
+		AstrixServiceInvocationResponse invocationResponse = new AstrixServiceInvocationResponse();
+		invocationResponse.setServiceUnavailable(true);
+		invocationResponse.setExceptionMsg(reason);
+		invocationResponse.setCorrelationId(UUID.randomUUID().toString());
+		return invocationResponse;
+	}
+	
+	private HttpRemotingCodec getCodec(String contentType) {
+		if (contentType == null) {
+			return defaultCodec;
+		}
+		int parametersStart = contentType.indexOf(';');
+		String mimeType = (parametersStart < 0 ? contentType : contentType.substring(0, parametersStart)).trim();
+		return codecByContentType.get(mimeType);
+	}
+	
+	@Override
+	public void destroy() {
+		invokerPool.shutdown();
+		super.destroy();
+	}
+	
+	/*
+	 * Processes an invocation on an invoker thread. The response is written either by the invoker thread, or by 
+	 * the container when the async processing times out or fails, whichever comes first. 
+	 */
+	private class AsyncInvocation implements Runnable, AsyncListener {
+		
+		private final HttpRemotingCodec codec;
+		private final AsyncContext asyncContext;
+		private final HttpServletRequest req;
+		private final HttpServletResponse resp;
+		private final AtomicBoolean responded = new AtomicBoolean(false);
+		
+		public AsyncInvocation(HttpRemotingCodec codec, AsyncContext asyncContext) {
+			this.codec = codec;
+			this.asyncContext = asyncContext;
+			this.req = (HttpServletRequest) asyncContext.getRequest();
+			this.resp = (HttpServletResponse) asyncContext.getResponse();
+			this.asyncContext.setTimeout(Math.max(0, settings.getAsyncTimeoutMillis()));
+			this.asyncContext.addListener(this);
+		}
+
+		@Override
+		public void run() {
+			try {
+				List<AstrixServiceInvocationResponse> invocationResponses = invoke(codec, req);
+				if (responded.compareAndSet(false, true)) {
+					try {
+						writeResponses(codec, invocationResponses, req, resp);
+					} finally {
+						asyncContext.complete();
+					}
+				}
+			} catch (Exception e) {
+				log.warn("Failed to process service invocation", e);
+				respondError();
+			} finally {
+				invocationPermits.release();
+			}
+		}
+		
+		void respondServiceUnavailable(String reason) {
+			if (!responded.compareAndSet(false, true)) {
+				return;
+			}
+			try {
+				writeServiceUnavailable(codec, req, resp, reason);
+			} catch (Exception e) {
+				log.warn("Failed to write service-unavailable response", e);
+			} finally {
+				asyncContext.complete();
+			}
+		}
+		
+		private void respondError() {
+			if (!responded.compareAndSet(false, true)) {
+				return;
+			}
+			try {
+				resp.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+			} catch (Exception e) {
+				log.warn("Failed to write error response", e);
+			} finally {
+				asyncContext.complete();
+			}
+		}
+
+		@Override
+		public void onTimeout(AsyncEvent event) throws IOException {
+			respondServiceUnavailable("Service invocation timed out. asyncTimeoutMillis=" + settings.getAsyncTimeoutMillis());
+		}
+
+		@Override
+		public void onError(AsyncEvent event) throws IOException {
+			respondServiceUnavailable("Service invocation failed: " + event.getThrowable());
+		}
+
+		@Override
+		public void onComplete(AsyncEvent event) throws IOException {
+		}
+
+		@Override
+		public void onStartAsync(AsyncEvent event) throws IOException {
 		}
 	}
 
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.http;
+
+import com.avanza.astrix.config.DynamicConfig;
+
+/**
+ * Contains settings for a {@link HttpRemotingEndpoint}. The initial values of the fields are used as defaults.
+ */
+public class HttpRemotingEndpointSettings {
+	
+	private int maxConcurrentInvocations = 1000;
+	private int invokerThreadCount = 200;
+	private long asyncTimeoutMillis = 60_000;
+	private int maxBatchSize = 10_000;
+	
+	/**
+	 * Creates settings using the endpoint settings defined in {@link HttpRemotingSettings}. 
+	 */
+	public static HttpRemotingEndpointSettings create(DynamicConfig config) {
+		HttpRemotingEndpointSettings result = new HttpRemotingEndpointSettings();
+		result.setInvokerThreadCount(HttpRemotingSettings.ENDPOINT_INVOKER_THREAD_COUNT.getFrom(config).get());
+		result.setMaxConcurrentInvocations(HttpRemotingSettings.ENDPOINT_MAX_CONCURRENT_INVOCATIONS.getFrom(config).get());
+		result.setAsyncTimeoutMillis(HttpRemotingSettings.ENDPOINT_ASYNC_TIMEOUT_MILLIS.getFrom(config).get());
+		result.setMaxBatchSize(HttpRemotingSettings.ENDPOINT_MAX_BATCH_SIZE.getFrom(config).get());
+		return result;
+	}
+	
+	public int getMaxConcurrentInvocations() {
+		return maxConcurrentInvocations;
+	}
+	
+	/**
+	 * Sets the maximum number of invocations being processed (or waiting for an invoker thread) 
+	 * at the same time. Invocations exceeding the limit are rejected with a service-unavailable response.
+	 * Hence at most maxConcurrentInvocations - invokerThreadCount invocations are queued waiting for an invoker thread.
+	 */
+	public void setMaxConcurrentInvocations(int maxConcurrentInvocations) {
+		this.maxConcurrentInvocations = maxConcurrentInvocations;
+	}
+	
+	public int getInvokerThreadCount() {
+		return invokerThreadCount;
+	}
+	
+	/**
+	 * Sets the number of threads used to invoke services, independent of the size of the 
+	 * servlet container thread pool. Services are invoked synchronously, hence an invoker thread 
+	 * is occupied during the entire service invocation and this is the maximum number of 
+	 * service invocations executing at the same time.
+	 */
+	public void setInvokerThreadCount(int invokerThreadCount) {
+		this.invokerThreadCount = invokerThreadCount;
+	}
+	
+	public long getAsyncTimeoutMillis() {
+		return asyncTimeoutMillis;
+	}
+	
+	/**
+	 * Sets the timeout of the asynchronous processing of a request. Zero or a negative value means no timeout.
+	 */
+	public void setAsyncTimeoutMillis(long asyncTimeoutMillis) {
+		this.asyncTimeoutMillis = asyncTimeoutMillis;
+	}
+	
+	public int getMaxBatchSize() {
+		return maxBatchSize;
+	}
+	
+	/**
+	 * Sets the maximum number of invocations in a batch, see {@link HttpRemotingBatchFraming}. Requests 
+	 * with a larger batch size are rejected with status 400 (Bad Request) before the batch is decoded.
+	 */
+	public void setMaxBatchSize(int maxBatchSize) {
+		this.maxBatchSize = maxBatchSize;
+	}
+
+}
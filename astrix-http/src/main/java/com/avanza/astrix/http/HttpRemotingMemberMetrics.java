@@ -0,0 +1,94 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.http;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+public final class HttpRemotingMemberMetrics implements HttpRemotingMemberMetricsMXBean {
+	
+	private final String remoteEndpointUri;
+	private final AtomicInteger inFlightRequests = new AtomicInteger();
+	private final AtomicLong requestCount = new AtomicLong();
+	private final AtomicLong failedRequestCount = new AtomicLong();
+	private final AtomicLong totalLatencyNanos = new AtomicLong();
+	private final AtomicLong maxLatencyNanos = new AtomicLong();
+	
+	HttpRemotingMemberMetrics(String remoteEndpointUri) {
+		this.remoteEndpointUri = remoteEndpointUri;
+	}
+	
+	/**
+	 * @return the start time of the request, to be passed to {@link #requestCompleted(long, boolean)}
+	 */
+	long requestStarted() {
+		inFlightRequests.incrementAndGet();
+		return System.nanoTime();
+	}
+	
+	void requestCompleted(long startTime, boolean successful) {
+		long latencyNanos = System.nanoTime() - startTime;
+		inFlightRequests.decrementAndGet();
+		requestCount.incrementAndGet();
+		if (!successful) {
+			failedRequestCount.incrementAndGet();
+		}
+		totalLatencyNanos.addAndGet(latencyNanos);
+		long currentMax;
+		do {
+			currentMax = maxLatencyNanos.get();
+		} while (latencyNanos > currentMax && !maxLatencyNanos.compareAndSet(currentMax, latencyNanos));
+	}
+
+	@Override
+	public String getRemoteEndpointUri() {
+		return remoteEndpointUri;
+	}
+
+	@Override
+	public int getInFlightRequests() {
+		return inFlightRequests.get();
+	}
+
+	@Override
+	public long getRequestCount() {
+		return requestCount.get();
+	}
+
+	@Override
+	public long getFailedRequestCount() {
+		return failedRequestCount.get();
+	}
+
+	@Override
+	public double getAverageLatencyMillis() {
+		long count = requestCount.get();
+		if (count == 0) {
+			return 0;
+		}
+		return toMillis(totalLatencyNanos.get()) / count;
+	}
+
+	@Override
+	public double getMaxLatencyMillis() {
+		return toMillis(maxLatencyNanos.get());
+	}
+	
+	private static double toMillis(long nanos) {
+		return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+	}
+
+}
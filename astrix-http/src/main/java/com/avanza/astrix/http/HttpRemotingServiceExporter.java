@@ -0,0 +1,85 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.http;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import com.avanza.astrix.beans.registry.ServiceRegistryExporterClient;
+import com.avanza.astrix.beans.service.ServiceProperties;
+import com.avanza.astrix.core.AstrixObjectSerializer;
+import com.avanza.astrix.remoting.server.AstrixServiceActivator;
+/**
+ * Exports services provided by a {@link HttpRemotingEndpoint} to the service registry. Each service is 
+ * registered with the {@link ServiceRegistryClusterMemberDiscovery#ENDPOINT_URI} and 
+ * {@link ServiceRegistryClusterMemberDiscovery#CLUSTER_INSTANCE_ID} properties, allowing consumers to 
+ * discover this cluster member using {@link HttpRemotingTransport#create}. <p>
+ * 
+ * The registered entries are leased, use {@link #publishServices(long)} to renew the lease periodically. 
+ */
+public final class HttpRemotingServiceExporter {
+	
+	private final AstrixServiceActivator serviceActivator;
+	private final ServiceRegistryExporterClient exporterClient;
+	private final String endpointUri;
+	private final int clusterInstanceId;
+	private final List<Class<?>> exportedApis = new CopyOnWriteArrayList<>();
+	
+	/**
+	 * @param serviceActivator - the AstrixServiceActivator used by the {@link HttpRemotingEndpoint}
+	 * @param exporterClient
+	 * @param endpointUri - the uri consumers use to reach the {@link HttpRemotingEndpoint}
+	 * @param clusterInstanceId - the id of this member within its cluster, see {@link HttpRemotingTransport.ClusterMember}
+	 */
+	public HttpRemotingServiceExporter(AstrixServiceActivator serviceActivator, ServiceRegistryExporterClient exporterClient, String endpointUri, int clusterInstanceId) {
+		this.serviceActivator = Objects.requireNonNull(serviceActivator);
+		this.exporterClient = Objects.requireNonNull(exporterClient);
+		this.endpointUri = Objects.requireNonNull(endpointUri);
+		this.clusterInstanceId = clusterInstanceId;
+	}
+	
+	/**
+	 * Makes the given provider invokable through the {@link HttpRemotingEndpoint} and registers it in 
+	 * the service registry.
+	 */
+	public <T> void exportService(Class<T> providedApi, T provider, AstrixObjectSerializer objectSerializer, long lease) {
+		this.serviceActivator.register(provider, objectSerializer, providedApi);
+		this.exportedApis.add(providedApi);
+		this.exporterClient.register(providedApi, createServiceProperties(providedApi), lease);
+	}
+	
+	/**
+	 * Registers all exported services in the service registry, renewing their lease.
+	 */
+	public void publishServices(long lease) {
+		List<ServiceProperties> serviceProperties = new ArrayList<>(exportedApis.size());
+		for (Class<?> exportedApi : exportedApis) {
+			serviceProperties.add(createServiceProperties(exportedApi));
+		}
+		this.exporterClient.registerAll(serviceProperties, lease);
+	}
+	
+	ServiceProperties createServiceProperties(Class<?> providedApi) {
+		ServiceProperties serviceProperties = new ServiceProperties();
+		serviceProperties.setApi(providedApi);
+		serviceProperties.setProperty(ServiceRegistryClusterMemberDiscovery.ENDPOINT_URI, endpointUri);
+		serviceProperties.setProperty(ServiceRegistryClusterMemberDiscovery.CLUSTER_INSTANCE_ID, Integer.toString(clusterInstanceId));
+		return serviceProperties;
+	}
+
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.http;
+
+import com.avanza.astrix.config.IntSetting;
+import com.avanza.astrix.config.LongSetting;
+/**
+ * Settings used by {@link HttpRemotingTransport} and {@link HttpRemotingEndpoint}. The connection pool sizes are 
+ * dynamic, i.e changes are applied to running transports, whereas timeouts and keep-alive are read when a transport 
+ * is created. The endpoint settings are read when an endpoint is created, see {@link HttpRemotingEndpointSettings#create}. 
+ */
+public final class HttpRemotingSettings {
+	
+	/**
+	 * Maximum number of connections in the pool shared by all cluster members.
+	 */
+	public static final IntSetting MAX_CONNECTIONS_TOTAL = IntSetting.create("AstrixHttpRemoting.maxConnectionsTotal", 500);
+	
+	/**
+	 * Maximum number of connections to a single cluster member (route).
+	 */
+	public static final IntSetting MAX_CONNECTIONS_PER_MEMBER = IntSetting.create("AstrixHttpRemoting.maxConnectionsPerMember", 100);
+	
+	/**
+	 * Defines how long an idle connection is kept alive unless the server states otherwise using a Keep-Alive header.
+	 */
+	public static final LongSetting KEEP_ALIVE_MILLIS = LongSetting.create("AstrixHttpRemoting.keepAliveMillis", 30_000L);
+	
+	public static final IntSetting CONNECT_TIMEOUT_MILLIS = IntSetting.create("AstrixHttpRemoting.connectTimeoutMillis", 1_000);
+	
+	public static final IntSetting SOCKET_TIMEOUT_MILLIS = IntSetting.create("AstrixHttpRemoting.socketTimeoutMillis", 30_000);
+	
+	/**
+	 * Defines how long to wait for a connection from the pool when all connections to a member are in use.
+	 */
+	public static final IntSetting CONNECTION_REQUEST_TIMEOUT_MILLIS = IntSetting.create("AstrixHttpRemoting.connectionRequestTimeoutMillis", 1_000);
+	
+	/**
+	 * Defines how long to wait between consecutive polls of the {@link ClusterMemberDiscovery}. Zero or a negative value 
+	 * disables polling, in which case members are only refreshed by {@link HttpRemotingTransport#refreshClusterMembers()}.
+	 */
+	public static final LongSetting MEMBER_REFRESH_INTERVAL_MILLIS = LongSetting.create("AstrixHttpRemoting.memberRefreshIntervalMillis", 10_000L);
+	
+	/**
+	 * Number of threads used by a {@link HttpRemotingEndpoint} to invoke services. Since services are invoked 
+	 * synchronously this is the maximum number of service invocations executing concurrently on an endpoint.
+	 */
+	public static final IntSetting ENDPOINT_INVOKER_THREAD_COUNT = IntSetting.create("AstrixHttpRemoting.endpoint.invokerThreadCount", 200);
+	
+	/**
+	 * Maximum number of invocations being executed or waiting for an invoker thread on a {@link HttpRemotingEndpoint}.
+	 */
+	public static final IntSetting ENDPOINT_MAX_CONCURRENT_INVOCATIONS = IntSetting.create("AstrixHttpRemoting.endpoint.maxConcurrentInvocations", 1000);
+	
+	public static final LongSetting ENDPOINT_ASYNC_TIMEOUT_MILLIS = LongSetting.create("AstrixHttpRemoting.endpoint.asyncTimeoutMillis", 60_000L);
+	
+	public static final IntSetting ENDPOINT_MAX_BATCH_SIZE = IntSetting.create("AstrixHttpRemoting.endpoint.maxBatchSize", 10_000);
+	
+	private HttpRemotingSettings() {
+	}
+
+}
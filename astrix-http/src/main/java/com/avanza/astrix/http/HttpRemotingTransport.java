@@ -15,49 +15,192 @@
  */
 package com.avanza.astrix.http;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.ObjectInputStream;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
+import javax.management.ObjectName;
 
+import org.apache.http.HeaderElement;
+import org.apache.http.HeaderElementIterator;
 import org.apache.http.HttpEntity;
 import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.config.RequestConfig;
 import org.apache.http.client.methods.HttpPost;
 import org.apache.http.concurrent.FutureCallback;
-import org.apache.http.entity.SerializableEntity;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.ContentType;
 import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
 import org.apache.http.impl.nio.client.HttpAsyncClients;
+import org.apache.http.impl.nio.conn.PoolingNHttpClientConnectionManager;
+import org.apache.http.impl.nio.reactor.DefaultConnectingIOReactor;
+import org.apache.http.impl.nio.reactor.IOReactorConfig;
+import org.apache.http.message.BasicHeaderElementIterator;
+import org.apache.http.nio.reactor.IOReactorException;
+import org.apache.http.protocol.HTTP;
+import org.apache.http.protocol.HttpContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import rx.Observable;
 import rx.Observable.OnSubscribe;
 import rx.Subscriber;
 
+import com.avanza.astrix.beans.core.AstrixMBeanExporter;
+import com.avanza.astrix.beans.factory.AstrixBeanKey;
+import com.avanza.astrix.beans.registry.ServiceRegistryClient;
+import com.avanza.astrix.config.DynamicConfig;
+import com.avanza.astrix.config.DynamicIntProperty;
+import com.avanza.astrix.config.DynamicPropertyListener;
+import com.avanza.astrix.config.MapConfigSource;
 import com.avanza.astrix.core.ServiceUnavailableException;
+import com.avanza.astrix.core.util.NamedThreadFactory;
 import com.avanza.astrix.remoting.client.AstrixServiceInvocationRequest;
 import com.avanza.astrix.remoting.client.AstrixServiceInvocationResponse;
 import com.avanza.astrix.remoting.client.RemotingTransportSpi;
 import com.avanza.astrix.remoting.client.RoutedServiceInvocationRequest;
 import com.avanza.astrix.remoting.client.RoutingKey;
 /**
+ * RemotingTransportSpi sending service invocations over http to a set of {@link ClusterMember}'s. <p>
+ * 
+ * The cluster members are provided by a {@link ClusterMemberDiscovery} which is polled periodically, 
+ * see {@link HttpRemotingSettings#MEMBER_REFRESH_INTERVAL_MILLIS}. Connection pool sizes, keep-alive 
+ * and timeouts are read from {@link HttpRemotingSettings}. Metrics for each remote endpoint are exported
+ * as a {@link HttpRemotingMemberMetricsMXBean}. 
  * 
  * @author Elias Lindholm
  *
  */
 public final class HttpRemotingTransport implements RemotingTransportSpi {
 
-	private final CloseableHttpAsyncClient httpclient = HttpAsyncClients.createDefault();
-	private final Map<Integer, ClusterMember> clusterMembers = new ConcurrentHashMap<>();
-	private final int clusterSize; // may be larger than clusterMembers.size in case not all members are discovered yet.
+	private static final Logger log = LoggerFactory.getLogger(HttpRemotingTransport.class);
+	
+	private final CloseableHttpAsyncClient httpclient;
+	private final PoolingNHttpClientConnectionManager connectionManager;
+	private final ClusterMemberDiscovery clusterMemberDiscovery;
+	private volatile ClusterMembers clusterMembers;
+	private final int clusterSize; // may be larger than number of discovered members in case not all members are discovered yet.
+	private final HttpRemotingCodec codec;
+	private final ContentType contentType;
+	private final DynamicConfig config;
+	private final ConcurrentMap<String, HttpRemotingMemberMetrics> metricsByEndpoint = new ConcurrentHashMap<>();
+	private final List<ObjectName> exportedMBeans = Collections.synchronizedList(new ArrayList<ObjectName>());
+	private final ScheduledExecutorService memberRefresher = Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("HttpRemotingTransport.memberRefresher", true));
 	
 	public HttpRemotingTransport(Collection<ClusterMember> clusterMembers, int clusterSize) {
+		this(clusterMembers, clusterSize, new JavaSerializationHttpRemotingCodec());
+	}
+	
+	/**
+	 * @param clusterMembers
+	 * @param clusterSize
+	 * @param codec the codec used to encode requests. The remote endpoint must support the given codec.
+	 */
+	public HttpRemotingTransport(Collection<ClusterMember> clusterMembers, int clusterSize, HttpRemotingCodec codec) {
+		this(staticDiscovery(clusterMembers), clusterSize, codec, new DynamicConfig(new MapConfigSource()));
+	}
+	
+	/**
+	 * @param clusterMemberDiscovery used to discover the members of the cluster
+	 * @param clusterSize
+	 * @param codec the codec used to encode requests. The remote endpoint must support the given codec.
+	 * @param config used to read {@link HttpRemotingSettings}
+	 */
+	public HttpRemotingTransport(ClusterMemberDiscovery clusterMemberDiscovery, int clusterSize, HttpRemotingCodec codec, DynamicConfig config) {
+		this.clusterMemberDiscovery = Objects.requireNonNull(clusterMemberDiscovery);
 		this.clusterSize = clusterSize;
-		for (ClusterMember clusterMember : clusterMembers) {
-			this.clusterMembers.put(clusterMember.getClusterInstanceId(), clusterMember);
+		this.codec = codec;
+		this.config = config;
+		this.contentType = ContentType.create(codec.getContentType());
+		this.clusterMembers = new ClusterMembers(Collections.<ClusterMember>emptyList(), clusterSize);
+		this.connectionManager = createConnectionManager(config);
+		this.httpclient = HttpAsyncClients.custom()
+										  .setConnectionManager(connectionManager)
+										  .setDefaultRequestConfig(RequestConfig.custom()
+												  .setConnectTimeout(HttpRemotingSettings.CONNECT_TIMEOUT_MILLIS.getFrom(config).get())
+												  .setSocketTimeout(HttpRemotingSettings.SOCKET_TIMEOUT_MILLIS.getFrom(config).get())
+												  .setConnectionRequestTimeout(HttpRemotingSettings.CONNECTION_REQUEST_TIMEOUT_MILLIS.getFrom(config).get())
+												  .build())
+										  .setKeepAliveStrategy(new KeepAliveStrategy(HttpRemotingSettings.KEEP_ALIVE_MILLIS.getFrom(config).get()))
+										  .build();
+		refreshClusterMembers();
+	}
+	
+	/**
+	 * Creates a transport that discovers the members of the cluster using the service registry, see
+	 * {@link ServiceRegistryClusterMemberDiscovery} and {@link HttpRemotingServiceExporter}. 
+	 * 
+	 * @param serviceRegistryClient
+	 * @param beanKey the service provided by the cluster
+	 * @param clusterSize
+	 * @param codec the codec used to encode requests. The remote endpoint must support the given codec.
+	 * @param config used to read {@link HttpRemotingSettings}
+	 */
+	public static HttpRemotingTransport create(ServiceRegistryClient serviceRegistryClient, AstrixBeanKey<?> beanKey, int clusterSize, HttpRemotingCodec codec, DynamicConfig config) {
+		return new HttpRemotingTransport(new ServiceRegistryClusterMemberDiscovery(serviceRegistryClient, beanKey), clusterSize, codec, config);
+	}
+	
+	private static ClusterMemberDiscovery staticDiscovery(final Collection<ClusterMember> clusterMembers) {
+		final List<ClusterMember> members = new ArrayList<>(clusterMembers);
+		return new ClusterMemberDiscovery() {
+			@Override
+			public Collection<ClusterMember> discoverClusterMembers() {
+				return members;
+			}
+		};
+	}
+	
+	private static PoolingNHttpClientConnectionManager createConnectionManager(DynamicConfig config) {
+		try {
+			final PoolingNHttpClientConnectionManager result = new PoolingNHttpClientConnectionManager(new DefaultConnectingIOReactor(IOReactorConfig.DEFAULT));
+			DynamicIntProperty maxTotal = HttpRemotingSettings.MAX_CONNECTIONS_TOTAL.getFrom(config);
+			DynamicIntProperty maxPerMember = HttpRemotingSettings.MAX_CONNECTIONS_PER_MEMBER.getFrom(config);
+			result.setMaxTotal(maxTotal.get());
+			result.setDefaultMaxPerRoute(maxPerMember.get());
+			maxTotal.addListener(new DynamicPropertyListener<Integer>() {
+				@Override
+				public void propertyChanged(Integer newValue) {
+					result.setMaxTotal(newValue);
+				}
+			});
+			maxPerMember.addListener(new DynamicPropertyListener<Integer>() {
+				@Override
+				public void propertyChanged(Integer newValue) {
+					result.setDefaultMaxPerRoute(newValue);
+				}
+			});
+			return result;
+		} catch (IOReactorException e) {
+			throw new RuntimeException("Failed to create connection manager", e);
+		}
+	}
+	
+	/**
+	 * Replaces the current cluster members with the members returned by the {@link ClusterMemberDiscovery}. 
+	 * This method is invoked periodically, but might also be invoked to apply a membership change immediately. 
+	 */
+	public void refreshClusterMembers() {
+		try {
+			this.clusterMembers = new ClusterMembers(clusterMemberDiscovery.discoverClusterMembers(), clusterSize);
+		} catch (Exception e) {
+			log.warn("Failed to discover cluster members, keeping current members: " + this.clusterMembers.all, e);
 		}
 	}
 	
@@ -65,14 +208,19 @@ public final class HttpRemotingTransport implements RemotingTransportSpi {
 	public Observable<AstrixServiceInvocationResponse> submitRoutedRequest(
 			final AstrixServiceInvocationRequest request, final RoutingKey routingKey) {
 		ClusterMember clusterMember = getTargetMember(routingKey);
-		final HttpPost postRequest = new HttpPost(clusterMember.getRemoteEndpointUri());
-		postRequest.setEntity(new SerializableEntity(request));
+		return submit(createPostRequest(clusterMember.getRemoteEndpointUri(), request));
+	}
+	
+	private Observable<AstrixServiceInvocationResponse> submit(final HttpPost postRequest) {
+		final HttpRemotingMemberMetrics metrics = getMetrics(postRequest.getURI().toString());
 		return Observable.create(new OnSubscribe<AstrixServiceInvocationResponse>() {
 			@Override
 			public void call(final Subscriber<? super AstrixServiceInvocationResponse> t1) {
+				long startTime = metrics.requestStarted();
 				try {
-					httpclient.execute(postRequest, serviceResponseCallback(t1));
+					httpclient.execute(postRequest, measured(metrics, startTime, serviceResponseCallback(t1)));
 				} catch (Exception e) {
+					metrics.requestCompleted(startTime, false);
 					t1.onError(e);
 				}
 			}
@@ -83,47 +231,140 @@ public final class HttpRemotingTransport implements RemotingTransportSpi {
 	@Override
 	public Observable<List<AstrixServiceInvocationResponse>> submitRoutedRequests(
 			Collection<RoutedServiceInvocationRequest> requests) {
-		Observable<AstrixServiceInvocationResponse> result = Observable.empty();
+		/*
+		 * All requests targeting the same remote endpoint are framed into a single http request. Note
+		 * that several cluster members (partitions) might be hosted by the same remote endpoint.
+		 */
+		Map<String, List<AstrixServiceInvocationRequest>> requestsByEndpoint = new LinkedHashMap<>();
 		for (RoutedServiceInvocationRequest request : requests) {
-			result = result.mergeWith(submitRoutedRequest(request.getRequest(), request.getRoutingkey()));
+			String remoteEndpointUri = getTargetMember(request.getRoutingkey()).getRemoteEndpointUri();
+			List<AstrixServiceInvocationRequest> endpointRequests = requestsByEndpoint.get(remoteEndpointUri);
+			if (endpointRequests == null) {
+				endpointRequests = new ArrayList<>();
+				requestsByEndpoint.put(remoteEndpointUri, endpointRequests);
+			}
+			endpointRequests.add(request.getRequest());
+		}
+		Observable<AstrixServiceInvocationResponse> result = Observable.empty();
+		for (Map.Entry<String, List<AstrixServiceInvocationRequest>> memberRequests : requestsByEndpoint.entrySet()) {
+			if (memberRequests.getValue().size() == 1) {
+				result = result.mergeWith(submit(createPostRequest(memberRequests.getKey(), memberRequests.getValue().get(0))));
+			} else {
+				result = result.mergeWith(submitBatch(memberRequests.getKey(), memberRequests.getValue()));
+			}
 		}
 		return result.toList();
 	}
+	
+	private Observable<AstrixServiceInvocationResponse> submitBatch(String remoteEndpointUri, final List<AstrixServiceInvocationRequest> requests) {
+		final HttpPost postRequest = createBatchPostRequest(remoteEndpointUri, requests);
+		final HttpRemotingMemberMetrics metrics = getMetrics(remoteEndpointUri);
+		return Observable.create(new OnSubscribe<AstrixServiceInvocationResponse>() {
+			@Override
+			public void call(final Subscriber<? super AstrixServiceInvocationResponse> t1) {
+				long startTime = metrics.requestStarted();
+				try {
+					httpclient.execute(postRequest, measured(metrics, startTime, batchResponseCallback(t1, requests.size())));
+				} catch (Exception e) {
+					metrics.requestCompleted(startTime, false);
+					t1.onError(e);
+				}
+			}
+		});
+	}
 
 	@Override
 	public Observable<List<AstrixServiceInvocationResponse>> submitBroadcastRequest(
 			AstrixServiceInvocationRequest request) {
 		Observable<AstrixServiceInvocationResponse> result = Observable.empty();
 		for (ClusterMember clusterMember : getAllClusterMembers()) {
-			final HttpPost postRequest = new HttpPost(clusterMember.getRemoteEndpointUri());
-			postRequest.setEntity(new SerializableEntity(request));
-			result = result.mergeWith(Observable.create(new OnSubscribe<AstrixServiceInvocationResponse>() {
-				@Override
-				public void call(final Subscriber<? super AstrixServiceInvocationResponse> t1) {
-					try {
-						httpclient.execute(postRequest, serviceResponseCallback(t1));
-					} catch (Exception e) {
-						t1.onError(e);
-					}
-				}
-
-			}));
+			result = result.mergeWith(submit(createPostRequest(clusterMember.getRemoteEndpointUri(), request)));
 		}
 		return result.toList();
 	}
 	
+	private HttpPost createPostRequest(String remoteEndpointUri, AstrixServiceInvocationRequest request) {
+		HttpPost postRequest = new HttpPost(remoteEndpointUri);
+		/*
+		 * The async client reads the entity content from a separate thread, hence the request is 
+		 * encoded up front rather than streamed to the connection.
+		 */
+		ByteArrayOutputStream encodedRequest = new ByteArrayOutputStream();
+		try {
+			codec.encodeRequest(request, encodedRequest);
+		} catch (IOException e) {
+			throw new RuntimeException("Failed to encode request", e);
+		}
+		postRequest.setEntity(new ByteArrayEntity(encodedRequest.toByteArray(), contentType));
+		return postRequest;
+	}
+	
+	private HttpPost createBatchPostRequest(String remoteEndpointUri, List<AstrixServiceInvocationRequest> requests) {
+		HttpPost postRequest = new HttpPost(remoteEndpointUri);
+		postRequest.setHeader(HttpRemotingBatchFraming.BATCH_SIZE_HEADER, Integer.toString(requests.size()));
+		ByteArrayOutputStream encodedRequests = new ByteArrayOutputStream();
+		try {
+			HttpRemotingBatchFraming.encodeRequests(codec, requests, encodedRequests);
+		} catch (IOException e) {
+			throw new RuntimeException("Failed to encode requests", e);
+		}
+		postRequest.setEntity(new ByteArrayEntity(encodedRequests.toByteArray(), contentType));
+		return postRequest;
+	}
+	
 	private Collection<ClusterMember> getAllClusterMembers() {
-		return this.clusterMembers.values();
+		return this.clusterMembers.all;
 	}
 	
 	private ClusterMember getTargetMember(RoutingKey routingKey) {
-		int targetPartition = routingKey.hashCode() % partitionCount();
-		ClusterMember target = this.clusterMembers.get(targetPartition);
+		int targetPartition = routingKey.hashCode() % clusterSize;
+		ClusterMember target = targetPartition >= 0 ? this.clusterMembers.byPartition[targetPartition] : null;
 		if (target == null) {
 			throw new ServiceUnavailableException("Failed to find cluster member with id: " + targetPartition);
 		}
 		return target;
 	}
+	
+	private HttpRemotingMemberMetrics getMetrics(String remoteEndpointUri) {
+		HttpRemotingMemberMetrics metrics = metricsByEndpoint.get(remoteEndpointUri);
+		if (metrics != null) {
+			return metrics;
+		}
+		metrics = new HttpRemotingMemberMetrics(remoteEndpointUri);
+		HttpRemotingMemberMetrics existing = metricsByEndpoint.putIfAbsent(remoteEndpointUri, metrics);
+		if (existing != null) {
+			return existing;
+		}
+		ObjectName objectName = AstrixMBeanExporter.register(metrics, "HttpRemotingMember", remoteEndpointUri);
+		if (objectName != null) {
+			exportedMBeans.add(objectName);
+		}
+		return metrics;
+	}
+	
+	/**
+	 * @return the metrics for all remote endpoints that requests has been sent to
+	 */
+	public Collection<HttpRemotingMemberMetrics> getMemberMetrics() {
+		return Collections.unmodifiableCollection(metricsByEndpoint.values());
+	}
+	
+	private static FutureCallback<HttpResponse> measured(final HttpRemotingMemberMetrics metrics, final long startTime, final FutureCallback<HttpResponse> callback) {
+		return new FutureCallback<HttpResponse>() {
+			public void completed(final HttpResponse response) {
+				metrics.requestCompleted(startTime, response.getStatusLine().getStatusCode() == HttpStatus.SC_OK);
+				callback.completed(response);
+			}
+			public void failed(final Exception ex) {
+				metrics.requestCompleted(startTime, false);
+				callback.failed(ex);
+			}
+			public void cancelled() {
+				metrics.requestCompleted(startTime, false);
+				callback.cancelled();
+			}
+		};
+	}
 
 	private FutureCallback<HttpResponse> serviceResponseCallback(
 			final Subscriber<? super AstrixServiceInvocationResponse> t1) {
@@ -145,12 +386,54 @@ public final class HttpRemotingTransport implements RemotingTransportSpi {
 		};
 	}
 	
+	private FutureCallback<HttpResponse> batchResponseCallback(
+			final Subscriber<? super AstrixServiceInvocationResponse> t1, final int batchSize) {
+		return new FutureCallback<HttpResponse>() {
+			public void completed(final HttpResponse response) {
+				try {
+					for (AstrixServiceInvocationResponse invocationResponse : getBatchResponse(response, batchSize)) {
+						t1.onNext(invocationResponse);
+					}
+					t1.onCompleted();
+				} catch (Exception e) {
+					t1.onError(e);
+				}
+			}
+			public void failed(final Exception ex) {
+				t1.onError(ex);
+			}
+			public void cancelled() {
+				t1.onError(new RuntimeException("Request cancelled"));
+			}
+		};
+	}
+	
+	private List<AstrixServiceInvocationResponse> getBatchResponse(final HttpResponse response, int batchSize) {
+		int statusCode = response.getStatusLine().getStatusCode();
+		if (statusCode != HttpStatus.SC_OK) {
+			throw new ServiceUnavailableException("Remote endpoint responded with status: " + response.getStatusLine());
+		}
+		try {
+			HttpEntity entity = response.getEntity();
+			try (InputStream content = entity.getContent()) {
+				return HttpRemotingBatchFraming.decodeResponses(codec, batchSize, content);
+			}
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+	
 	private AstrixServiceInvocationResponse getResponse(final HttpResponse response){
+		int statusCode = response.getStatusLine().getStatusCode();
+		if (statusCode != HttpStatus.SC_OK) {
+			throw new ServiceUnavailableException("Remote endpoint responded with status: " + response.getStatusLine());
+		}
 		try {
 			HttpEntity entity = response.getEntity();
-			ObjectInputStream inputStream = new ObjectInputStream(entity.getContent());
-			return (AstrixServiceInvocationResponse) inputStream.readObject();
-		} catch (ClassNotFoundException | IOException e) {
+			try (InputStream content = entity.getContent()) {
+				return codec.decodeResponse(content);
+			}
+		} catch (IOException e) {
 			throw new RuntimeException(e);
 		}
 	}
@@ -163,16 +446,76 @@ public final class HttpRemotingTransport implements RemotingTransportSpi {
 	@PostConstruct
 	public void init() {
 	    httpclient.start();
+		long refreshInterval = HttpRemotingSettings.MEMBER_REFRESH_INTERVAL_MILLIS.getFrom(config).get();
+		if (refreshInterval > 0) {
+			memberRefresher.scheduleWithFixedDelay(new Runnable() {
+				@Override
+				public void run() {
+					refreshClusterMembers();
+				}
+			}, refreshInterval, refreshInterval, TimeUnit.MILLISECONDS);
+		}
 	}
 	
 	@PreDestroy
 	public void destroy() throws IOException {
+		memberRefresher.shutdownNow();
+		for (ObjectName objectName : exportedMBeans) {
+			AstrixMBeanExporter.unregister(objectName);
+		}
 		httpclient.close();
 	}
 	
-	private static class ClusterMember {
-		private String remoteEndpoint;
-		private int clusterInstanceId;
+	private static final class ClusterMembers {
+		private final Collection<ClusterMember> all;
+		private final ClusterMember[] byPartition; // null elements for members not discovered yet
+		
+		public ClusterMembers(Collection<ClusterMember> clusterMembers, int clusterSize) {
+			Map<Integer, ClusterMember> memberById = new LinkedHashMap<>();
+			this.byPartition = new ClusterMember[clusterSize];
+			for (ClusterMember clusterMember : clusterMembers) {
+				memberById.put(clusterMember.getClusterInstanceId(), clusterMember);
+				if (clusterMember.getClusterInstanceId() >= 0 && clusterMember.getClusterInstanceId() < clusterSize) {
+					this.byPartition[clusterMember.getClusterInstanceId()] = clusterMember;
+				}
+			}
+			this.all = Collections.unmodifiableCollection(memberById.values());
+		}
+		
+		@Override
+		public String toString() {
+			return Arrays.toString(byPartition);
+		}
+	}
+	
+	private static final class KeepAliveStrategy implements ConnectionKeepAliveStrategy {
+		
+		private final long defaultKeepAliveMillis;
+		
+		public KeepAliveStrategy(long defaultKeepAliveMillis) {
+			this.defaultKeepAliveMillis = defaultKeepAliveMillis;
+		}
+
+		@Override
+		public long getKeepAliveDuration(HttpResponse response, HttpContext context) {
+			HeaderElementIterator keepAliveParams = new BasicHeaderElementIterator(response.headerIterator(HTTP.CONN_KEEP_ALIVE));
+			while (keepAliveParams.hasNext()) {
+				HeaderElement param = keepAliveParams.nextElement();
+				if (param.getValue() != null && param.getName().equalsIgnoreCase("timeout")) {
+					try {
+						return Long.parseLong(param.getValue()) * 1000;
+					} catch (NumberFormatException e) {
+						// Ignore, use default
+					}
+				}
+			}
+			return defaultKeepAliveMillis;
+		}
+	}
+	
+	public static final class ClusterMember {
+		private final String remoteEndpoint;
+		private final int clusterInstanceId;
 		public ClusterMember(String remoteEndpoint, int clusterInstanceId) {
 			this.remoteEndpoint = remoteEndpoint;
 			this.clusterInstanceId = clusterInstanceId;
@@ -186,6 +529,10 @@ public final class HttpRemotingTransport implements RemotingTransportSpi {
 			return clusterInstanceId;
 		}
 		
+		@Override
+		public String toString() {
+			return clusterInstanceId + "=" + remoteEndpoint;
+		}
 		
 	}
 
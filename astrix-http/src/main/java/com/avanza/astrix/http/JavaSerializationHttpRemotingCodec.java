@@ -0,0 +1,73 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.http;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+
+import com.avanza.astrix.remoting.client.AstrixServiceInvocationRequest;
+import com.avanza.astrix.remoting.client.AstrixServiceInvocationResponse;
+/**
+ * Encodes requests and responses using java serialization. This is the default codec, and
+ * is used by the endpoint for all requests without a Content-Type. 
+ */
+public final class JavaSerializationHttpRemotingCodec implements HttpRemotingCodec {
+	
+	public static final String CONTENT_TYPE = "application/x-java-serialized-object";
+
+	@Override
+	public String getContentType() {
+		return CONTENT_TYPE;
+	}
+
+	@Override
+	public void encodeRequest(AstrixServiceInvocationRequest request, OutputStream out) throws IOException {
+		writeObject(request, out);
+	}
+
+	@Override
+	public AstrixServiceInvocationRequest decodeRequest(InputStream in) throws IOException {
+		return readObject(in, AstrixServiceInvocationRequest.class);
+	}
+
+	@Override
+	public void encodeResponse(AstrixServiceInvocationResponse response, OutputStream out) throws IOException {
+		writeObject(response, out);
+	}
+
+	@Override
+	public AstrixServiceInvocationResponse decodeResponse(InputStream in) throws IOException {
+		return readObject(in, AstrixServiceInvocationResponse.class);
+	}
+	
+	private static void writeObject(Object object, OutputStream out) throws IOException {
+		ObjectOutputStream objectOut = new ObjectOutputStream(out);
+		objectOut.writeObject(object);
+		objectOut.flush();
+	}
+	
+	private static <T> T readObject(InputStream in, Class<T> type) throws IOException {
+		try {
+			return type.cast(new ObjectInputStream(in).readObject());
+		} catch (ClassNotFoundException e) {
+			throw new IOException("Failed to decode " + type.getSimpleName(), e);
+		}
+	}
+
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.http;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.avanza.astrix.beans.factory.AstrixBeanKey;
+import com.avanza.astrix.beans.registry.ServiceRegistryClient;
+import com.avanza.astrix.beans.service.ServiceProperties;
+import com.avanza.astrix.http.HttpRemotingTransport.ClusterMember;
+/**
+ * Discovers cluster members using the service registry. Each member is expected to register the
+ * given service with the {@link #ENDPOINT_URI} and {@link #CLUSTER_INSTANCE_ID} properties. 
+ * Entries lacking any of them are ignored. 
+ */
+public final class ServiceRegistryClusterMemberDiscovery implements ClusterMemberDiscovery {
+	
+	public static final String ENDPOINT_URI = "httpRemotingEndpointUri";
+	public static final String CLUSTER_INSTANCE_ID = "httpRemotingClusterInstanceId";
+	
+	private static final Logger log = LoggerFactory.getLogger(ServiceRegistryClusterMemberDiscovery.class);
+	private final ServiceRegistryClient serviceRegistryClient;
+	private final AstrixBeanKey<?> beanKey;
+	
+	public ServiceRegistryClusterMemberDiscovery(ServiceRegistryClient serviceRegistryClient, AstrixBeanKey<?> beanKey) {
+		this.serviceRegistryClient = Objects.requireNonNull(serviceRegistryClient);
+		this.beanKey = Objects.requireNonNull(beanKey);
+	}
+
+	@Override
+	public Collection<ClusterMember> discoverClusterMembers() {
+		List<ServiceProperties> registeredServices = serviceRegistryClient.list(beanKey);
+		List<ClusterMember> result = new ArrayList<>(registeredServices.size());
+		for (ServiceProperties serviceProperties : registeredServices) {
+			String endpointUri = serviceProperties.getProperty(ENDPOINT_URI);
+			String clusterInstanceId = serviceProperties.getProperty(CLUSTER_INSTANCE_ID);
+			if (endpointUri == null || clusterInstanceId == null) {
+				log.debug("Ignoring service registry entry without http remoting properties. beanKey={} properties={}", beanKey, serviceProperties);
+				continue;
+			}
+			try {
+				result.add(new ClusterMember(endpointUri, Integer.parseInt(clusterInstanceId)));
+			} catch (NumberFormatException e) {
+				log.warn("Ignoring service registry entry with invalid cluster instance id. beanKey={} properties={}", beanKey, serviceProperties);
+			}
+		}
+		return result;
+	}
+
+}
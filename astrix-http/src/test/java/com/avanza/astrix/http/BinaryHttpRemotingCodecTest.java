@@ -0,0 +1,119 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.http;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Date;
+
+import org.junit.Test;
+
+import com.avanza.astrix.remoting.client.AstrixServiceInvocationRequest;
+import com.avanza.astrix.remoting.client.AstrixServiceInvocationResponse;
+
+
+public class BinaryHttpRemotingCodecTest {
+	
+	private final BinaryHttpRemotingCodec codec = new BinaryHttpRemotingCodec();
+	
+	@Test
+	public void requestRoundTrip() throws Exception {
+		AstrixServiceInvocationRequest request = new AstrixServiceInvocationRequest();
+		request.setHeader("serviceMethodSignature", "foo(java.lang.String)");
+		request.setHeader("nullHeader", null);
+		Date date = new Date();
+		request.setArguments(new Object[] { "åäö", null, new byte[] { 1, 2 }, 21, 21L, true, date });
+		
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		codec.encodeRequest(request, out);
+		AstrixServiceInvocationRequest decoded = codec.decodeRequest(new ByteArrayInputStream(out.toByteArray()));
+		
+		assertEquals(request.getHeaders(), decoded.getHeaders());
+		Object[] arguments = decoded.getArguments();
+		assertEquals("åäö", arguments[0]);
+		assertNull(arguments[1]);
+		assertArrayEquals(new byte[] { 1, 2 }, (byte[]) arguments[2]);
+		assertEquals(21, arguments[3]);
+		assertEquals(21L, arguments[4]);
+		assertEquals(true, arguments[5]);
+		assertEquals(date, arguments[6]);
+	}
+	
+	@Test
+	public void responseRoundTrip() throws Exception {
+		AstrixServiceInvocationResponse response = new AstrixServiceInvocationResponse();
+		response.setServiceUnavailable(false);
+		response.setResponseBody("result");
+		response.setThrownExceptionType("java.lang.IllegalArgumentException");
+		response.setExceptionMsg("msg");
+		response.setCorrelationId("correlation-id");
+		
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		codec.encodeResponse(response, out);
+		AstrixServiceInvocationResponse decoded = codec.decodeResponse(new ByteArrayInputStream(out.toByteArray()));
+		
+		assertEquals(response.getHeaders(), decoded.getHeaders());
+		assertEquals("result", decoded.getResponseBody());
+		assertNull(decoded.getException());
+		assertEquals("java.lang.IllegalArgumentException", decoded.getThrownExceptionType());
+		assertEquals("msg", decoded.getExceptionMsg());
+		assertEquals("correlation-id", decoded.getCorrelationId());
+	}
+	
+	@Test
+	public void rejectsValueLargerThanMaxFrameLengthWithoutAllocatingIt() throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		DataOutputStream data = new DataOutputStream(out);
+		data.writeByte(1); // format version
+		data.writeInt(0); // header count
+		data.writeInt(1); // argument count
+		data.writeByte(2); // byte[] tag
+		data.writeInt(BinaryHttpRemotingCodec.MAX_FRAME_LENGTH + 1);
+		
+		try {
+			codec.decodeRequest(new ByteArrayInputStream(out.toByteArray()));
+			fail("Expected frame exceeding max frame length to be rejected");
+		} catch (IOException e) {
+			// Expected
+		}
+	}
+	
+	@Test
+	public void rejectsSerializedValueWithNegativeLength() throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		DataOutputStream data = new DataOutputStream(out);
+		data.writeByte(1); // format version
+		data.writeInt(0); // header count
+		data.writeInt(1); // argument count
+		data.writeByte(6); // serialized tag
+		data.writeInt(-2);
+		
+		try {
+			codec.decodeRequest(new ByteArrayInputStream(out.toByteArray()));
+			fail("Expected negative frame length to be rejected");
+		} catch (IOException e) {
+			// Expected
+		}
+	}
+
+}
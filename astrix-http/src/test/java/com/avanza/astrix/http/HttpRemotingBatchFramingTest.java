@@ -0,0 +1,66 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.http;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.avanza.astrix.remoting.client.AstrixServiceInvocationRequest;
+
+
+public class HttpRemotingBatchFramingTest {
+	
+	private final HttpRemotingCodec codec = new BinaryHttpRemotingCodec();
+	
+	@Test
+	public void requestsRoundTrip() throws Exception {
+		AstrixServiceInvocationRequest first = new AstrixServiceInvocationRequest();
+		first.setHeader("serviceApi", "first");
+		AstrixServiceInvocationRequest second = new AstrixServiceInvocationRequest();
+		second.setHeader("serviceApi", "second");
+		
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		HttpRemotingBatchFraming.encodeRequests(codec, Arrays.asList(first, second), out);
+		List<AstrixServiceInvocationRequest> decoded = HttpRemotingBatchFraming.decodeRequests(codec, 2, new ByteArrayInputStream(out.toByteArray()));
+		
+		assertEquals(2, decoded.size());
+		assertEquals("first", decoded.get(0).getHeader("serviceApi"));
+		assertEquals("second", decoded.get(1).getHeader("serviceApi"));
+	}
+	
+	@Test
+	public void rejectsFrameLargerThanMaxFrameLengthWithoutAllocatingIt() throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		new DataOutputStream(out).writeInt(HttpRemotingBatchFraming.MAX_FRAME_LENGTH + 1);
+		
+		try {
+			HttpRemotingBatchFraming.decodeRequests(codec, 1, new ByteArrayInputStream(out.toByteArray()));
+			fail("Expected frame exceeding max frame length to be rejected");
+		} catch (IOException e) {
+			// Expected
+		}
+	}
+
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.http;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import com.avanza.astrix.config.DynamicConfig;
+import com.avanza.astrix.config.MapConfigSource;
+
+
+public class HttpRemotingEndpointSettingsTest {
+	
+	@Test
+	public void readsEndpointSettingsFromConfig() throws Exception {
+		MapConfigSource configSource = new MapConfigSource();
+		configSource.set(HttpRemotingSettings.ENDPOINT_INVOKER_THREAD_COUNT, 50);
+		configSource.set(HttpRemotingSettings.ENDPOINT_MAX_CONCURRENT_INVOCATIONS, 500);
+		configSource.set(HttpRemotingSettings.ENDPOINT_ASYNC_TIMEOUT_MILLIS, 1_000L);
+		configSource.set(HttpRemotingSettings.ENDPOINT_MAX_BATCH_SIZE, 100);
+		
+		HttpRemotingEndpointSettings settings = HttpRemotingEndpointSettings.create(new DynamicConfig(configSource));
+		
+		assertEquals(50, settings.getInvokerThreadCount());
+		assertEquals(500, settings.getMaxConcurrentInvocations());
+		assertEquals(1_000L, settings.getAsyncTimeoutMillis());
+		assertEquals(100, settings.getMaxBatchSize());
+	}
+	
+	@Test
+	public void usesDefaultsWhenNotConfigured() throws Exception {
+		HttpRemotingEndpointSettings settings = HttpRemotingEndpointSettings.create(new DynamicConfig(new MapConfigSource()));
+		
+		assertEquals(new HttpRemotingEndpointSettings().getInvokerThreadCount(), settings.getInvokerThreadCount());
+		assertEquals(new HttpRemotingEndpointSettings().getMaxConcurrentInvocations(), settings.getMaxConcurrentInvocations());
+	}
+
+}
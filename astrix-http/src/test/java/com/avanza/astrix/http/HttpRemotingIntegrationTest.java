@@ -0,0 +1,414 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.http;
+
+import static org.junit.Assert.assertEquals;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.containsString;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.lang.reflect.Method;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.eclipse.jetty.servlet.ServletHolder;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+
+import com.avanza.astrix.beans.factory.AstrixBeanKey;
+import com.avanza.astrix.beans.registry.InMemoryServiceRegistry;
+import com.avanza.astrix.beans.registry.ServiceRegistryClient;
+import com.avanza.astrix.beans.registry.ServiceRegistryExporterClient;
+import com.avanza.astrix.beans.service.ServiceConsumerProperties;
+import com.avanza.astrix.config.DynamicConfig;
+import com.avanza.astrix.config.MapConfigSource;
+import com.avanza.astrix.core.AstrixObjectSerializer;
+import com.avanza.astrix.core.AstrixPartitionedRouting;
+import com.avanza.astrix.core.ServiceInvocationException;
+import com.avanza.astrix.core.ServiceUnavailableException;
+import com.avanza.astrix.http.HttpRemotingTransport.ClusterMember;
+import com.avanza.astrix.remoting.client.RemotingProxy;
+import com.avanza.astrix.remoting.client.RemotingTransport;
+import com.avanza.astrix.remoting.client.Router;
+import com.avanza.astrix.remoting.client.RoutingKey;
+import com.avanza.astrix.remoting.client.RoutingStrategy;
+import com.avanza.astrix.remoting.server.AstrixServiceActivator;
+
+@RunWith(Parameterized.class)
+public class HttpRemotingIntegrationTest {
+	
+	private final AstrixObjectSerializer objectSerializer = new AstrixObjectSerializer.NoVersioningSupport();
+	private final AstrixServiceActivator serviceActivator = new AstrixServiceActivator();
+	private final HttpRemotingCodec codec;
+	private final HttpRemotingEndpointSettings endpointSettings = new HttpRemotingEndpointSettings();
+	private final AtomicInteger httpRequestCount = new AtomicInteger();
+	private Server server;
+	private String endpointUri;
+	private HttpRemotingTransport transport;
+	
+	public HttpRemotingIntegrationTest(HttpRemotingCodec codec) {
+		this.codec = codec;
+	}
+	
+	@Parameters
+	public static Collection<Object[]> codecs() {
+		return Arrays.asList(new Object[][] {
+			{ new JavaSerializationHttpRemotingCodec() },
+			{ new BinaryHttpRemotingCodec() }
+		});
+	}
+	
+	@Before
+	public void setup() throws Exception {
+		endpointSettings.setMaxConcurrentInvocations(1);
+		server = new Server(0);
+		ServletContextHandler context = new ServletContextHandler();
+		ServletHolder endpoint = new ServletHolder(new HttpRemotingEndpoint(serviceActivator, endpointSettings) {
+			private static final long serialVersionUID = 1L;
+			@Override
+			protected void doPost(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
+				httpRequestCount.incrementAndGet();
+				super.doPost(req, resp);
+			}
+		});
+		endpoint.setAsyncSupported(true);
+		context.addServlet(endpoint, "/astrix");
+		server.setHandler(context);
+		server.start();
+		int port = ((ServerConnector) server.getConnectors()[0]).getLocalPort();
+		endpointUri = "http://localhost:" + port + "/astrix";
+		transport = createTransport(Arrays.asList(new ClusterMember(endpointUri, 0)), 1);
+	}
+	
+	private HttpRemotingTransport createTransport(List<ClusterMember> clusterMembers, int clusterSize) {
+		HttpRemotingTransport result = new HttpRemotingTransport(clusterMembers, clusterSize, codec);
+		result.init();
+		return result;
+	}
+	
+	@After
+	public void after() throws Exception {
+		transport.destroy();
+		server.stop();
+	}
+	
+	@Test
+	public void invokesServiceOverHttp() throws Exception {
+		serviceActivator.register(new GreetingServiceImpl(), objectSerializer, GreetingService.class);
+		GreetingService greetingService = createProxy();
+		
+		assertEquals("hello kalle", greetingService.greet("kalle"));
+		assertEquals(new Greeting("hello", "kalle"), greetingService.greeting("kalle"));
+		assertEquals(3, greetingService.length("foo"));
+	}
+	
+	@Test
+	public void propagatesServiceExceptions() throws Exception {
+		serviceActivator.register(new GreetingServiceImpl(), objectSerializer, GreetingService.class);
+		GreetingService greetingService = createProxy();
+		
+		try {
+			greetingService.greet(null);
+			fail("Expected exception");
+		} catch (ServiceInvocationException e) {
+			// Expected
+		}
+	}
+
+	@Test
+	public void rejectsInvocationsExceedingConcurrencyLimitAsServiceUnavailable() throws Exception {
+		final CountDownLatch invocationStarted = new CountDownLatch(1);
+		final CountDownLatch releaseInvocation = new CountDownLatch(1);
+		serviceActivator.register(new GreetingServiceImpl() {
+			@Override
+			public String greet(String name) {
+				invocationStarted.countDown();
+				try {
+					releaseInvocation.await(5, TimeUnit.SECONDS);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				return super.greet(name);
+			}
+		}, objectSerializer, GreetingService.class);
+		final GreetingService greetingService = createProxy();
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			Future<String> blockedGreeting = executor.submit(new Callable<String>() {
+				@Override
+				public String call() throws Exception {
+					return greetingService.greet("kalle");
+				}
+			});
+			assertTrue(invocationStarted.await(5, TimeUnit.SECONDS));
+			try {
+				greetingService.length("foo");
+				fail("Expected ServiceUnavailableException");
+			} catch (ServiceUnavailableException e) {
+				// Expected
+			}
+			releaseInvocation.countDown();
+			assertEquals("hello kalle", blockedGreeting.get(5, TimeUnit.SECONDS));
+			assertEquals(3, greetingService.length("foo"));
+		} finally {
+			releaseInvocation.countDown();
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void respondsServiceUnavailableWhenInvocationExceedsAsyncTimeout() throws Exception {
+		endpointSettings.setAsyncTimeoutMillis(100);
+		final CountDownLatch releaseInvocation = new CountDownLatch(1);
+		serviceActivator.register(new GreetingServiceImpl() {
+			@Override
+			public String greet(String name) {
+				try {
+					releaseInvocation.await(5, TimeUnit.SECONDS);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				return super.greet(name);
+			}
+		}, objectSerializer, GreetingService.class);
+		GreetingService greetingService = createProxy();
+		try {
+			greetingService.greet("kalle");
+			fail("Expected ServiceUnavailableException");
+		} catch (ServiceUnavailableException e) {
+			assertThat(e.getMessage(), containsString("timed out"));
+		} finally {
+			releaseInvocation.countDown();
+		}
+	}
+
+	@Test
+	public void framesAllPartitionedRequestsTargetingSameEndpointIntoOneHttpRequest() throws Exception {
+		transport.destroy();
+		transport = createTransport(Arrays.asList(new ClusterMember(endpointUri, 0), 
+												  new ClusterMember(endpointUri, 1), 
+												  new ClusterMember(endpointUri, 2), 
+												  new ClusterMember(endpointUri, 3)), 4);
+		serviceActivator.register(new PartitionedPingServiceImpl(), objectSerializer, PartitionedPingService.class);
+		PartitionedPingService ping = RemotingProxy.create(PartitionedPingService.class, PartitionedPingService.class, RemotingTransport.create(transport), objectSerializer, new ConstantRoutingStrategy());
+		
+		assertThat(ping.ping(1, 2, 3, 4, 5), containsInAnyOrder(1, 2, 3, 4, 5));
+		assertEquals(1, httpRequestCount.get());
+	}
+
+	@Test
+	public void invokesItemsInBatchConcurrently() throws Exception {
+		transport.destroy();
+		transport = createTransport(Arrays.asList(new ClusterMember(endpointUri, 0), 
+												  new ClusterMember(endpointUri, 1)), 2);
+		final CountDownLatch bothItemsStarted = new CountDownLatch(2);
+		serviceActivator.register(new PartitionedPingServiceImpl() {
+			@Override
+			public List<Integer> ping(Integer... nums) {
+				bothItemsStarted.countDown();
+				try {
+					if (!bothItemsStarted.await(5, TimeUnit.SECONDS)) {
+						throw new IllegalStateException("Batch items not invoked concurrently");
+					}
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				return super.ping(nums);
+			}
+		}, objectSerializer, PartitionedPingService.class);
+		PartitionedPingService ping = RemotingProxy.create(PartitionedPingService.class, PartitionedPingService.class, RemotingTransport.create(transport), objectSerializer, new ConstantRoutingStrategy());
+		
+		assertThat(ping.ping(1, 2), containsInAnyOrder(1, 2));
+		assertEquals(1, httpRequestCount.get());
+	}
+	
+	@Test
+	public void rejectsInvalidBatchSizeWithBadRequest() throws Exception {
+		endpointSettings.setMaxBatchSize(10);
+		
+		assertEquals(HttpServletResponse.SC_BAD_REQUEST, postBatch("11"));
+		assertEquals(HttpServletResponse.SC_BAD_REQUEST, postBatch("0"));
+		assertEquals(HttpServletResponse.SC_BAD_REQUEST, postBatch("foo"));
+	}
+	
+	private int postBatch(String batchSize) throws IOException {
+		HttpURLConnection connection = (HttpURLConnection) new URL(endpointUri).openConnection();
+		try {
+			connection.setRequestMethod("POST");
+			connection.setDoOutput(true);
+			connection.setRequestProperty("Content-Type", codec.getContentType());
+			connection.setRequestProperty(HttpRemotingBatchFraming.BATCH_SIZE_HEADER, batchSize);
+			connection.getOutputStream().close();
+			return connection.getResponseCode();
+		} finally {
+			connection.disconnect();
+		}
+	}
+
+	@Test
+	public void followsMembershipChangesDiscoveredByClusterMemberDiscovery() throws Exception {
+		final List<ClusterMember> discoveredMembers = new CopyOnWriteArrayList<>();
+		transport.destroy();
+		transport = new HttpRemotingTransport(new ClusterMemberDiscovery() {
+			@Override
+			public Collection<ClusterMember> discoverClusterMembers() {
+				return discoveredMembers;
+			}
+		}, 1, codec, new DynamicConfig(new MapConfigSource()));
+		transport.init();
+		serviceActivator.register(new GreetingServiceImpl(), objectSerializer, GreetingService.class);
+		GreetingService greetingService = createProxy();
+		try {
+			greetingService.greet("kalle");
+			fail("Expected ServiceUnavailableException");
+		} catch (ServiceUnavailableException e) {
+			// Expected
+		}
+		
+		discoveredMembers.add(new ClusterMember(endpointUri, 0));
+		transport.refreshClusterMembers();
+		
+		assertEquals("hello kalle", greetingService.greet("kalle"));
+		HttpRemotingMemberMetrics metrics = transport.getMemberMetrics().iterator().next();
+		assertEquals(endpointUri, metrics.getRemoteEndpointUri());
+		assertEquals(1, metrics.getRequestCount());
+		assertEquals(0, metrics.getInFlightRequests());
+	}
+	
+	@Test
+	public void discoversClusterMembersExportedToServiceRegistry() throws Exception {
+		InMemoryServiceRegistry serviceRegistry = new InMemoryServiceRegistry();
+		ServiceRegistryClient serviceRegistryClient = new ServiceRegistryClient(serviceRegistry, new ServiceConsumerProperties());
+		try {
+			for (int clusterInstanceId = 0; clusterInstanceId < 2; clusterInstanceId++) {
+				ServiceRegistryExporterClient exporterClient = new ServiceRegistryExporterClient(serviceRegistry, "test-subsystem", "member-" + clusterInstanceId);
+				new HttpRemotingServiceExporter(serviceActivator, exporterClient, endpointUri, clusterInstanceId)
+					.exportService(PartitionedPingService.class, new PartitionedPingServiceImpl(), objectSerializer, 60_000L);
+			}
+			transport.destroy();
+			transport = HttpRemotingTransport.create(serviceRegistryClient, AstrixBeanKey.create(PartitionedPingService.class), 2, codec, new DynamicConfig(new MapConfigSource()));
+			transport.init();
+			PartitionedPingService ping = RemotingProxy.create(PartitionedPingService.class, PartitionedPingService.class, RemotingTransport.create(transport), objectSerializer, new ConstantRoutingStrategy());
+			
+			assertThat(ping.ping(1, 2, 3, 4), containsInAnyOrder(1, 2, 3, 4));
+		} finally {
+			serviceRegistryClient.destroy();
+		}
+	}
+	
+	private GreetingService createProxy() {
+		return RemotingProxy.create(GreetingService.class, GreetingService.class, RemotingTransport.create(transport), objectSerializer, new ConstantRoutingStrategy());
+	}
+	
+	public interface GreetingService {
+		String greet(String name);
+		Greeting greeting(String name);
+		int length(String name);
+	}
+	
+	public static class GreetingServiceImpl implements GreetingService {
+		@Override
+		public String greet(String name) {
+			if (name == null) {
+				throw new IllegalArgumentException("name is required");
+			}
+			return "hello " + name;
+		}
+		@Override
+		public Greeting greeting(String name) {
+			return new Greeting("hello", name);
+		}
+		@Override
+		public int length(String name) {
+			return name.length();
+		}
+	}
+	
+	public interface PartitionedPingService {
+		List<Integer> ping(@AstrixPartitionedRouting Integer... nums);
+	}
+	
+	public static class PartitionedPingServiceImpl implements PartitionedPingService {
+		@Override
+		public List<Integer> ping(Integer... nums) {
+			return Arrays.asList(nums);
+		}
+	}
+	
+	public static class Greeting implements Serializable {
+		private static final long serialVersionUID = 1L;
+		private final String greeting;
+		private final String name;
+		
+		public Greeting(String greeting, String name) {
+			this.greeting = greeting;
+			this.name = name;
+		}
+		
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof Greeting)) {
+				return false;
+			}
+			Greeting other = (Greeting) obj;
+			return greeting.equals(other.greeting) && name.equals(other.name);
+		}
+		
+		@Override
+		public int hashCode() {
+			return greeting.hashCode() * 31 + name.hashCode();
+		}
+	}
+	
+	private static class ConstantRoutingStrategy implements RoutingStrategy {
+		@Override
+		public Router create(Method serviceMethod) {
+			return new Router() {
+				@Override
+				public RoutingKey getRoutingKey(Object... args) throws Exception {
+					return RoutingKey.create(0);
+				}
+			};
+		}
+	}
+
+}
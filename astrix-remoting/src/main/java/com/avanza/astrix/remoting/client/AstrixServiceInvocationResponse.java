@@ -83,6 +83,10 @@ public class AstrixServiceInvocationResponse implements Serializable {
 		return this.headers.get(name);
 	}
 	
+	public Map<String, String> getHeaders() {
+		return this.headers;
+	}
+	
 	public void setCorrelationId(String correlationId) {
 		this.correlationId = correlationId;
 	}
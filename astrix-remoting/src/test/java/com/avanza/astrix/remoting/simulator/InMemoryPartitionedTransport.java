@@ -0,0 +1,253 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.remoting.simulator;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PreDestroy;
+
+import rx.Observable;
+import rx.Observable.OnSubscribe;
+import rx.Subscriber;
+
+import com.avanza.astrix.core.ServiceUnavailableException;
+import com.avanza.astrix.core.util.NamedThreadFactory;
+import com.avanza.astrix.remoting.client.AstrixServiceInvocationRequest;
+import com.avanza.astrix.remoting.client.AstrixServiceInvocationResponse;
+import com.avanza.astrix.remoting.client.RemotingTransportSpi;
+import com.avanza.astrix.remoting.client.RoutedServiceInvocationRequest;
+import com.avanza.astrix.remoting.client.RoutingKey;
+import com.avanza.astrix.remoting.server.AstrixServiceActivator;
+/**
+ * RemotingTransportSpi that simulates a partitioned cluster in-process, intended for benchmarks 
+ * and capacity tests that should behave like a transport against a partitioned space without
+ * requiring any GigaSpaces infrastructure. <p>
+ * 
+ * Each partition is backed by an AstrixServiceActivator. Requests are routed to the partition
+ * given by routingKey.hashCode() % partitionCount, and both requests and responses are passed 
+ * through java serialization. The latency, jitter and failure rate of each
+ * partition can be changed at any time using {@link #getPartition(int)}. <p>
+ * 
+ * Invocations are executed asynchronously on a dedicated thread pool, hence the transport must 
+ * be destroyed when no longer used. 
+ */
+public final class InMemoryPartitionedTransport implements RemotingTransportSpi {
+	
+	private final SimulatedPartition[] partitions;
+	private final ScheduledExecutorService executor;
+	
+	private InMemoryPartitionedTransport(List<AstrixServiceActivator> partitions, int threadCount) {
+		if (partitions.isEmpty()) {
+			throw new IllegalArgumentException("At least one partition is required");
+		}
+		this.partitions = new SimulatedPartition[partitions.size()];
+		for (int partitionId = 0; partitionId < this.partitions.length; partitionId++) {
+			this.partitions[partitionId] = new SimulatedPartition(partitionId, partitions.get(partitionId));
+		}
+		this.executor = Executors.newScheduledThreadPool(threadCount, new NamedThreadFactory("InMemoryPartitionedTransport"));
+	}
+	
+	/**
+	 * Creates a transport with one partition for each given AstrixServiceActivator, the first 
+	 * activator will be used for partition 0, the second for partition 1, etc. 
+	 * 
+	 * @param partitions
+	 * @return
+	 */
+	public static InMemoryPartitionedTransport create(AstrixServiceActivator... partitions) {
+		return create(Arrays.asList(partitions), Runtime.getRuntime().availableProcessors());
+	}
+	
+	/**
+	 * @param partitions the AstrixServiceActivator for each partition, ordered by partition id.
+	 * @param threadCount number of threads used to execute invocations.
+	 * @return
+	 */
+	public static InMemoryPartitionedTransport create(List<AstrixServiceActivator> partitions, int threadCount) {
+		return new InMemoryPartitionedTransport(partitions, threadCount);
+	}
+	
+	/**
+	 * Returns the simulated partition with the given id, which can be used to
+	 * inject latency and failures on that partition.
+	 * 
+	 * @param partitionId zero based partition id
+	 * @return
+	 */
+	public SimulatedPartition getPartition(int partitionId) {
+		return partitions[partitionId];
+	}
+
+	@Override
+	public Observable<AstrixServiceInvocationResponse> submitRoutedRequest(AstrixServiceInvocationRequest request, RoutingKey routingKey) {
+		return getTargetPartition(routingKey).observe(request);
+	}
+	
+	private SimulatedPartition getTargetPartition(RoutingKey routingKey) {
+		return partitions[Math.abs(routingKey.hashCode() % partitions.length)];
+	}
+
+	@Override
+	public Observable<List<AstrixServiceInvocationResponse>> submitRoutedRequests(Collection<RoutedServiceInvocationRequest> requests) {
+		Observable<AstrixServiceInvocationResponse> result = Observable.empty();
+		for (RoutedServiceInvocationRequest request : requests) {
+			result = result.mergeWith(submitRoutedRequest(request.getRequest(), request.getRoutingkey()));
+		}
+		return result.toList();
+	}
+
+	@Override
+	public Observable<List<AstrixServiceInvocationResponse>> submitBroadcastRequest(AstrixServiceInvocationRequest request) {
+		Observable<AstrixServiceInvocationResponse> result = Observable.empty();
+		for (SimulatedPartition partition : partitions) {
+			result = result.mergeWith(partition.observe(request));
+		}
+		return result.toList();
+	}
+
+	@Override
+	public int partitionCount() {
+		return partitions.length;
+	}
+	
+	@PreDestroy
+	public void destroy() {
+		this.executor.shutdownNow();
+	}
+	
+	@SuppressWarnings("unchecked")
+	private static <T extends Serializable> T serializationRoundTrip(T object) {
+		try {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+				out.writeObject(object);
+			}
+			try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+				return (T) in.readObject();
+			}
+		} catch (IOException | ClassNotFoundException e) {
+			throw new RuntimeException("Failed to serialize: " + object, e);
+		}
+	}
+	
+	/**
+	 * A simulated partition. All settings might be changed while the transport is in use.
+	 */
+	public final class SimulatedPartition {
+		
+		private final int partitionId;
+		private final AstrixServiceActivator serviceActivator;
+		private volatile long latencyMicros = 0;
+		private volatile long jitterMicros = 0;
+		private volatile double failureRate = 0;
+		
+		private SimulatedPartition(int partitionId, AstrixServiceActivator serviceActivator) {
+			this.partitionId = partitionId;
+			this.serviceActivator = serviceActivator;
+		}
+		
+		/**
+		 * Sets the fixed latency added to each invocation on this partition.
+		 */
+		public SimulatedPartition setLatency(long latency, TimeUnit unit) {
+			this.latencyMicros = unit.toMicros(latency);
+			return this;
+		}
+		
+		/**
+		 * Sets the maximum random latency added to each invocation on this partition, on top
+		 * of the fixed latency. The added latency is uniformly distributed between zero and the 
+		 * given jitter.
+		 */
+		public SimulatedPartition setJitter(long jitter, TimeUnit unit) {
+			this.jitterMicros = unit.toMicros(jitter);
+			return this;
+		}
+		
+		/**
+		 * Sets the probability that an invocation against this partition fails with a 
+		 * ServiceUnavailableException without reaching the service provider.
+		 * 
+		 * @param failureRate value between 0 (never fail) and 1 (always fail)
+		 */
+		public SimulatedPartition setFailureRate(double failureRate) {
+			if (failureRate < 0 || failureRate > 1) {
+				throw new IllegalArgumentException("failureRate must be between 0 and 1, was: " + failureRate);
+			}
+			this.failureRate = failureRate;
+			return this;
+		}
+		
+		public int getPartitionId() {
+			return partitionId;
+		}
+		
+		private Observable<AstrixServiceInvocationResponse> observe(final AstrixServiceInvocationRequest request) {
+			return Observable.create(new OnSubscribe<AstrixServiceInvocationResponse>() {
+				@Override
+				public void call(final Subscriber<? super AstrixServiceInvocationResponse> subscriber) {
+					try {
+						executor.schedule(new Runnable() {
+							@Override
+							public void run() {
+								invoke(request, subscriber);
+							}
+						}, nextLatencyMicros(), TimeUnit.MICROSECONDS);
+					} catch (RejectedExecutionException e) {
+						subscriber.onError(new ServiceUnavailableException("InMemoryPartitionedTransport is destroyed"));
+					}
+				}
+			});
+		}
+		
+		private void invoke(AstrixServiceInvocationRequest request, Subscriber<? super AstrixServiceInvocationResponse> subscriber) {
+			try {
+				if (failureRate > 0 && ThreadLocalRandom.current().nextDouble() < failureRate) {
+					subscriber.onError(new ServiceUnavailableException("Simulated failure on partition: " + partitionId));
+					return;
+				}
+				AstrixServiceInvocationResponse response = serviceActivator.invokeService(serializationRoundTrip(request));
+				subscriber.onNext(serializationRoundTrip(response));
+				subscriber.onCompleted();
+			} catch (Exception e) {
+				subscriber.onError(e);
+			}
+		}
+		
+		private long nextLatencyMicros() {
+			long jitter = jitterMicros;
+			if (jitter <= 0) {
+				return latencyMicros;
+			}
+			return latencyMicros + ThreadLocalRandom.current().nextLong(jitter + 1);
+		}
+	}
+
+}
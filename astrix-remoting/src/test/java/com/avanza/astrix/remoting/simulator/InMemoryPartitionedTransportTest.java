@@ -0,0 +1,168 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.remoting.simulator;
+
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.avanza.astrix.context.JavaSerializationSerializer;
+import com.avanza.astrix.core.AstrixBroadcast;
+import com.avanza.astrix.core.AstrixObjectSerializer;
+import com.avanza.astrix.core.AstrixPartitionedRouting;
+import com.avanza.astrix.core.ServiceUnavailableException;
+import com.avanza.astrix.remoting.client.RemotingProxy;
+import com.avanza.astrix.remoting.client.RemotingTransport;
+import com.avanza.astrix.remoting.client.Router;
+import com.avanza.astrix.remoting.client.RoutingKey;
+import com.avanza.astrix.remoting.client.RoutingStrategy;
+import com.avanza.astrix.remoting.server.AstrixServiceActivator;
+
+public class InMemoryPartitionedTransportTest {
+	
+	AstrixObjectSerializer objectSerializer = new JavaSerializationSerializer(1);
+	AstrixServiceActivator partition0 = new AstrixServiceActivator();
+	AstrixServiceActivator partition1 = new AstrixServiceActivator();
+	InMemoryPartitionedTransport transport = InMemoryPartitionedTransport.create(partition0, partition1);
+	
+	@After
+	public void after() {
+		transport.destroy();
+	}
+	
+	@Test
+	public void routesRequestsToPartitionGivenByRoutingKey() throws Exception {
+		partition0.register(new PartitionService(0), objectSerializer, TestService.class);
+		partition1.register(new PartitionService(1), objectSerializer, TestService.class);
+		TestService testService = createProxy();
+		
+		assertEquals(0, testService.partition(2));
+		assertEquals(1, testService.partition(3));
+	}
+	
+	@Test
+	public void partitionedRequestsAreSplitOnPartitions() throws Exception {
+		partition0.register(new PartitionService(0), objectSerializer, TestService.class);
+		partition1.register(new PartitionService(1), objectSerializer, TestService.class);
+		TestService testService = createProxy();
+		
+		assertThat(testService.partitions(Arrays.asList(1, 2, 3, 4)), containsInAnyOrder(0, 0, 1, 1));
+	}
+	
+	@Test
+	public void broadcastRequestsAreSentToEachPartition() throws Exception {
+		partition0.register(new PartitionService(0), objectSerializer, TestService.class);
+		partition1.register(new PartitionService(1), objectSerializer, TestService.class);
+		TestService testService = createProxy();
+		
+		assertThat(testService.allPartitions(), containsInAnyOrder(0, 1));
+	}
+	
+	@Test
+	public void addsConfiguredLatency() throws Exception {
+		partition0.register(new PartitionService(0), objectSerializer, TestService.class);
+		partition1.register(new PartitionService(1), objectSerializer, TestService.class);
+		transport.getPartition(1).setLatency(50, TimeUnit.MILLISECONDS).setJitter(10, TimeUnit.MILLISECONDS);
+		TestService testService = createProxy();
+		
+		long start = System.nanoTime();
+		testService.partition(1);
+		assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), greaterThanOrEqualTo(50L));
+	}
+	
+	@Test
+	public void injectedFailuresAreReportedAsServiceUnavailable() throws Exception {
+		partition0.register(new PartitionService(0), objectSerializer, TestService.class);
+		partition1.register(new PartitionService(1), objectSerializer, TestService.class);
+		transport.getPartition(1).setFailureRate(1);
+		TestService testService = createProxy();
+		
+		assertEquals(0, testService.partition(0));
+		try {
+			testService.partition(1);
+			fail("Expected ServiceUnavailableException");
+		} catch (ServiceUnavailableException e) {
+			// Expected
+		}
+	}
+	
+	private TestService createProxy() {
+		return RemotingProxy.create(TestService.class, TestService.class, RemotingTransport.create(transport), objectSerializer, new FirstArgumentRoutingStrategy());
+	}
+	
+	public interface TestService {
+		int partition(int routingKey);
+		List<Integer> partitions(@AstrixPartitionedRouting List<Integer> routingKeys);
+		@AstrixBroadcast
+		List<Integer> allPartitions();
+	}
+	
+	public static class PartitionService implements TestService {
+		private final int partitionId;
+		
+		public PartitionService(int partitionId) {
+			this.partitionId = partitionId;
+		}
+		
+		@Override
+		public int partition(int routingKey) {
+			return partitionId;
+		}
+		
+		@Override
+		public List<Integer> partitions(List<Integer> keys) {
+			Integer[] result = new Integer[keys.size()];
+			Arrays.fill(result, partitionId);
+			return Arrays.asList(result);
+		}
+		
+		@Override
+		public List<Integer> allPartitions() {
+			return Arrays.asList(partitionId);
+		}
+	}
+	
+	private static class FirstArgumentRoutingStrategy implements RoutingStrategy {
+		@Override
+		public Router create(Method serviceMethod) {
+			if (serviceMethod.isAnnotationPresent(AstrixBroadcast.class)) {
+				return new Router() {
+					@Override
+					public RoutingKey getRoutingKey(Object... args) throws Exception {
+						return null; // Broadcast
+					}
+				};
+			}
+			return new Router() {
+				@Override
+				public RoutingKey getRoutingKey(Object... args) throws Exception {
+					return RoutingKey.create(args[0]);
+				}
+			};
+		}
+	}
+
+}
@@ -53,9 +53,14 @@ public class SpaceServiceRegistryEntry implements Serializable {
 	}
 	
 
-	// TODO: Use index? It will speedup reads, but slowdown writes. The number of SpaceServiceRegistryEntry is not expected to be that high, may
-	// Its best to avoid an index?
-//	@SpaceIndex(type = SpaceIndexType.BASIC)
+	/*
+	 * IMPLEMENTATION NOTE:
+	 * 
+	 * Every service lookup reads all entries for a given ServiceKey, whereas writes only happen once per
+	 * lease renewal interval for each provider. Indexing the ServiceKey avoids scanning all entries in the 
+	 * partition on each lookup at the cost of slightly slower writes.
+	 */
+	@SpaceIndex(type = SpaceIndexType.BASIC)
 	public ServiceKey getServiceKey() {
 		return serviceKey;
 	}
@@ -50,6 +50,9 @@ public class SpaceServiceRegistryEntryRepository implements ServiceRegistryEntry
 		spaceEntry.setServiceProviderKey(serviceProviderKey);
 		spaceEntry.setProperties(entry.getServiceProperties());
 		Map<String, String> metadata = new HashMap<>();
+		if (entry.getServiceMetadata() != null) {
+			metadata.putAll(entry.getServiceMetadata()); // Provider published metadata, for instance ServiceProviderLoad
+		}
 		Date now = new Date();
 		metadata.put("lastLeaseRenewalTime", now.toString());
 		metadata.put("leaseExpireTime", new Date(now.getTime() + lease).toString());
@@ -75,6 +78,7 @@ public class SpaceServiceRegistryEntryRepository implements ServiceRegistryEntry
 	public List<AstrixServiceRegistryEntry> findByServiceKey(ServiceKey serviceKey) {
 		SpaceServiceRegistryEntry template = SpaceServiceRegistryEntry.template();
 		template.setServiceKey(serviceKey);
+		template.setApiType(serviceKey.getApiClassName()); // Routes the read to the partition holding all entries for the given service
 		SpaceServiceRegistryEntry[] entries = gigaSpace.readMultiple(template);
 		List<AstrixServiceRegistryEntry> result = new ArrayList<>(entries.length);
 		for (SpaceServiceRegistryEntry spaceEntry : entries) {
@@ -74,6 +74,8 @@ public class AstrixFrameworkBean implements BeanFactoryPostProcessor, Applicatio
 	 *  - The BFPP will register an instance for each consumedAstrixBean in the BeanFactory
 	 *  - The BFPP will also register an instance of AstrixSpingContext to act as bridge
 	 *    between spring and astrix.
+	 *  - If AstrixSettings.EAGER_BIND_CONSUMED_BEANS is enabled, all consumedAstrixBeans are created and
+	 *    bound concurrently when the AstrixContext is created, before they are registered in the BeanFactory.
 	 *    
 	 * 2. BeanPostProcessor (BPP)
 	 *  - The BPP will investigate each spring-bean in the current application and search
@@ -131,6 +133,9 @@ public class AstrixFrameworkBean implements BeanFactoryPostProcessor, Applicatio
 	 * spring bean.
 	 * </pre>
 	 * 
+	 * If {@link AstrixSettings#EAGER_BIND_CONSUMED_BEANS} is enabled, all consumedAstrixBeans are created and bound concurrently 
+	 * at startup, rather than one at a time.<p>
+	 * 
 	 * @param consumedAstrixBeans
 	 */
 	public void setConsumedAstrixBeans(List<Class<? extends Object>> consumedAstrixBeans) {
@@ -208,6 +213,7 @@ public class AstrixFrameworkBean implements BeanFactoryPostProcessor, Applicatio
 	
 	private AstrixApplicationContext createAsterixContext(DynamicConfig optionalConfig) {
 		configurer.setSettings(this.settings);
+		configurer.addConsumedBeans(this.consumedAstrixBeans);
 		if (optionalConfig != null) {
 			configurer.setConfig(optionalConfig);
 		}
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.tcp;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.nio.NioSocketChannel;
+
+import java.net.InetSocketAddress;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.annotation.PreDestroy;
+
+import com.avanza.astrix.core.util.NamedThreadFactory;
+/**
+ * Client side of the tcp remoting transport. Holds one persistent connection per {@link TcpRemotingServer},
+ * shared by all {@link TcpRemotingTransport}'s targeting that server. 
+ */
+public final class TcpRemotingClient {
+	
+	private final EventLoopGroup workerGroup = new NioEventLoopGroup(0, new NamedThreadFactory("TcpRemotingClient", true));
+	private final ConcurrentMap<InetSocketAddress, TcpRemotingConnection> connections = new ConcurrentHashMap<>();
+	private final Bootstrap bootstrap;
+	
+	/**
+	 * @param connectTimeoutMillis
+	 */
+	public TcpRemotingClient(int connectTimeoutMillis) {
+		this.bootstrap = new Bootstrap().group(workerGroup)
+										.channel(NioSocketChannel.class)
+										.option(ChannelOption.TCP_NODELAY, true)
+										.option(ChannelOption.SO_KEEPALIVE, true)
+										.option(ChannelOption.CONNECT_TIMEOUT_MILLIS, connectTimeoutMillis);
+	}
+	
+	TcpRemotingConnection getConnection(InetSocketAddress serverAddress) {
+		TcpRemotingConnection connection = connections.get(serverAddress);
+		if (connection != null) {
+			return connection;
+		}
+		connection = new TcpRemotingConnection(serverAddress, bootstrap);
+		TcpRemotingConnection existing = connections.putIfAbsent(serverAddress, connection);
+		return existing != null ? existing : connection;
+	}
+	
+	@PreDestroy
+	public void destroy() {
+		for (TcpRemotingConnection connection : connections.values()) {
+			connection.close();
+		}
+		workerGroup.shutdownGracefully();
+	}
+
+}
@@ -0,0 +1,351 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.tcp;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufInputStream;
+import io.netty.buffer.ByteBufOutputStream;
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPipeline;
+import io.netty.handler.codec.CorruptedFrameException;
+import io.netty.handler.codec.LengthFieldBasedFrameDecoder;
+import io.netty.handler.codec.LengthFieldPrepender;
+import io.netty.handler.codec.MessageToMessageDecoder;
+import io.netty.handler.codec.MessageToMessageEncoder;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.charset.Charset;
+import java.util.List;
+import java.util.Map;
+
+import com.avanza.astrix.remoting.client.AstrixServiceInvocationRequest;
+import com.avanza.astrix.remoting.client.AstrixServiceInvocationResponse;
+/**
+ * Wire format used by the tcp remoting transport. <p>
+ * 
+ * Each frame is prefixed with a four byte length, followed by a format version, the frame type 
+ * (request or response) and the id of the request. Responses carry the id of the request they answer, 
+ * which allows any number of requests to be pipelined on the same connection and answered in any order. 
+ * The remaining fields of {@link AstrixServiceInvocationRequest} and {@link AstrixServiceInvocationResponse} 
+ * are written as tagged values. <p>
+ * 
+ * IMPLEMENTATION NOTE: Large byte[] values (typically arguments already serialized by the 
+ * AstrixObjectSerializer) are not copied into the outbound buffer, but wrapped and added as separate 
+ * components of a composite buffer which is written to the socket using a gathering write. 
+ */
+final class TcpRemotingCodec {
+	
+	static final int MAX_FRAME_LENGTH = 64 * 1024 * 1024;
+	
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+	private static final byte FORMAT_VERSION = 1;
+	
+	private static final byte REQUEST = 1;
+	private static final byte RESPONSE = 2;
+	
+	private static final byte NULL = 0;
+	private static final byte STRING = 1;
+	private static final byte BYTES = 2;
+	private static final byte INT = 3;
+	private static final byte LONG = 4;
+	private static final byte BOOLEAN = 5;
+	private static final byte SERIALIZED = 6;
+	
+	/**
+	 * byte[] values of at least this size are wrapped rather than copied when encoded.
+	 */
+	private static final int WRAP_THRESHOLD = 1024;
+	
+	private TcpRemotingCodec() {
+	}
+	
+	/**
+	 * Installs the frame codec in a given pipeline.
+	 */
+	static void install(ChannelPipeline pipeline) {
+		pipeline.addLast(new LengthFieldBasedFrameDecoder(MAX_FRAME_LENGTH, 0, 4, 0, 4));
+		pipeline.addLast(new LengthFieldPrepender(4));
+		pipeline.addLast(new Decoder());
+		pipeline.addLast(new Encoder());
+	}
+	
+	abstract static class Frame {
+		private final long requestId;
+		
+		Frame(long requestId) {
+			this.requestId = requestId;
+		}
+		
+		final long getRequestId() {
+			return requestId;
+		}
+	}
+	
+	static final class RequestFrame extends Frame {
+		private final AstrixServiceInvocationRequest request;
+		
+		RequestFrame(long requestId, AstrixServiceInvocationRequest request) {
+			super(requestId);
+			this.request = request;
+		}
+		
+		AstrixServiceInvocationRequest getRequest() {
+			return request;
+		}
+	}
+	
+	static final class ResponseFrame extends Frame {
+		private final AstrixServiceInvocationResponse response;
+		
+		ResponseFrame(long requestId, AstrixServiceInvocationResponse response) {
+			super(requestId);
+			this.response = response;
+		}
+		
+		AstrixServiceInvocationResponse getResponse() {
+			return response;
+		}
+	}
+	
+	@ChannelHandler.Sharable
+	static final class Encoder extends MessageToMessageEncoder<Frame> {
+		@Override
+		protected void encode(ChannelHandlerContext ctx, Frame frame, List<Object> out) throws Exception {
+			FrameWriter writer = new FrameWriter(ctx);
+			writer.current.writeByte(FORMAT_VERSION);
+			if (frame instanceof RequestFrame) {
+				writer.current.writeByte(REQUEST);
+				writer.current.writeLong(frame.getRequestId());
+				writeRequest(((RequestFrame) frame).getRequest(), writer);
+			} else {
+				writer.current.writeByte(RESPONSE);
+				writer.current.writeLong(frame.getRequestId());
+				writeResponse(((ResponseFrame) frame).getResponse(), writer);
+			}
+			out.add(writer.finish());
+		}
+	}
+	
+	@ChannelHandler.Sharable
+	static final class Decoder extends MessageToMessageDecoder<ByteBuf> {
+		@Override
+		protected void decode(ChannelHandlerContext ctx, ByteBuf frame, List<Object> out) throws Exception {
+			byte version = frame.readByte();
+			if (version != FORMAT_VERSION) {
+				throw new CorruptedFrameException("Unsupported format version: " + version);
+			}
+			byte type = frame.readByte();
+			long requestId = frame.readLong();
+			switch (type) {
+			case REQUEST:
+				out.add(new RequestFrame(requestId, readRequest(frame)));
+				break;
+			case RESPONSE:
+				out.add(new ResponseFrame(requestId, readResponse(frame)));
+				break;
+			default:
+				throw new CorruptedFrameException("Unknown frame type: " + type);
+			}
+		}
+	}
+	
+	/**
+	 * Writes a frame into a composite buffer. Small values are written to the current buffer, 
+	 * whereas large byte[] values are added as separate (wrapped) components. 
+	 */
+	private static final class FrameWriter {
+		private final ChannelHandlerContext ctx;
+		private final CompositeByteBuf frame;
+		private ByteBuf current;
+		
+		FrameWriter(ChannelHandlerContext ctx) {
+			this.ctx = ctx;
+			this.frame = ctx.alloc().compositeBuffer();
+			this.current = ctx.alloc().buffer();
+		}
+		
+		void writeBytes(byte[] bytes) {
+			current.writeInt(bytes.length);
+			if (bytes.length < WRAP_THRESHOLD) {
+				current.writeBytes(bytes);
+				return;
+			}
+			frame.addComponent(current);
+			frame.addComponent(Unpooled.wrappedBuffer(bytes));
+			current = ctx.alloc().buffer();
+		}
+		
+		ByteBuf finish() {
+			frame.addComponent(current);
+			frame.writerIndex(frame.capacity());
+			return frame;
+		}
+	}
+	
+	private static void writeRequest(AstrixServiceInvocationRequest request, FrameWriter out) throws IOException {
+		writeHeaders(request.getHeaders(), out);
+		Object[] arguments = request.getArguments();
+		if (arguments == null) {
+			out.current.writeInt(-1);
+			return;
+		}
+		out.current.writeInt(arguments.length);
+		for (Object argument : arguments) {
+			writeValue(argument, out);
+		}
+	}
+	
+	private static AstrixServiceInvocationRequest readRequest(ByteBuf in) throws IOException {
+		AstrixServiceInvocationRequest request = new AstrixServiceInvocationRequest();
+		readHeaders(in, request.getHeaders());
+		int argumentCount = in.readInt();
+		if (argumentCount >= 0) {
+			Object[] arguments = new Object[argumentCount];
+			for (int i = 0; i < argumentCount; i++) {
+				arguments[i] = readValue(in);
+			}
+			request.setArguments(arguments);
+		}
+		return request;
+	}
+	
+	private static void writeResponse(AstrixServiceInvocationResponse response, FrameWriter out) throws IOException {
+		writeHeaders(response.getHeaders(), out);
+		writeValue(response.getResponseBody(), out);
+		writeValue(response.getException(), out);
+		writeString(response.getThrownExceptionType(), out.current);
+		writeString(response.getExceptionMsg(), out.current);
+		writeString(response.getCorrelationId(), out.current);
+	}
+	
+	private static AstrixServiceInvocationResponse readResponse(ByteBuf in) throws IOException {
+		AstrixServiceInvocationResponse response = new AstrixServiceInvocationResponse();
+		readHeaders(in, response.getHeaders());
+		response.setResponseBody(readValue(in));
+		response.setException(readValue(in));
+		response.setThrownExceptionType(readString(in));
+		response.setExceptionMsg(readString(in));
+		response.setCorrelationId(readString(in));
+		return response;
+	}
+	
+	private static void writeHeaders(Map<String, String> headers, FrameWriter out) {
+		out.current.writeInt(headers.size());
+		for (Map.Entry<String, String> header : headers.entrySet()) {
+			writeString(header.getKey(), out.current);
+			writeString(header.getValue(), out.current);
+		}
+	}
+	
+	private static void readHeaders(ByteBuf in, Map<String, String> headers) {
+		int headerCount = in.readInt();
+		for (int i = 0; i < headerCount; i++) {
+			headers.put(readString(in), readString(in));
+		}
+	}
+	
+	private static void writeValue(Object value, FrameWriter out) throws IOException {
+		if (value == null) {
+			out.current.writeByte(NULL);
+		} else if (value instanceof String) {
+			out.current.writeByte(STRING);
+			writeString((String) value, out.current);
+		} else if (value instanceof byte[]) {
+			out.current.writeByte(BYTES);
+			out.writeBytes((byte[]) value);
+		} else if (value instanceof Integer) {
+			out.current.writeByte(INT);
+			out.current.writeInt((Integer) value);
+		} else if (value instanceof Long) {
+			out.current.writeByte(LONG);
+			out.current.writeLong((Long) value);
+		} else if (value instanceof Boolean) {
+			out.current.writeByte(BOOLEAN);
+			out.current.writeBoolean((Boolean) value);
+		} else {
+			out.current.writeByte(SERIALIZED);
+			writeSerialized(value, out.current);
+		}
+	}
+	
+	private static Object readValue(ByteBuf in) throws IOException {
+		byte tag = in.readByte();
+		switch (tag) {
+		case NULL:
+			return null;
+		case STRING:
+			return readString(in);
+		case BYTES:
+			byte[] bytes = new byte[in.readInt()];
+			in.readBytes(bytes);
+			return bytes;
+		case INT:
+			return in.readInt();
+		case LONG:
+			return in.readLong();
+		case BOOLEAN:
+			return in.readBoolean();
+		case SERIALIZED:
+			return readSerialized(in);
+		default:
+			throw new CorruptedFrameException("Unknown value tag: " + tag);
+		}
+	}
+	
+	private static void writeString(String value, ByteBuf out) {
+		if (value == null) {
+			out.writeInt(-1);
+			return;
+		}
+		byte[] bytes = value.getBytes(UTF_8);
+		out.writeInt(bytes.length);
+		out.writeBytes(bytes);
+	}
+	
+	private static String readString(ByteBuf in) {
+		int length = in.readInt();
+		if (length < 0) {
+			return null;
+		}
+		String result = in.toString(in.readerIndex(), length, UTF_8);
+		in.skipBytes(length);
+		return result;
+	}
+	
+	private static void writeSerialized(Object value, ByteBuf out) throws IOException {
+		int lengthIndex = out.writerIndex();
+		out.writeInt(0);
+		try (ObjectOutputStream objectOut = new ObjectOutputStream(new ByteBufOutputStream(out))) {
+			objectOut.writeObject(value);
+		}
+		out.setInt(lengthIndex, out.writerIndex() - lengthIndex - 4);
+	}
+	
+	private static Object readSerialized(ByteBuf in) throws IOException {
+		int length = in.readInt();
+		try (ObjectInputStream objectIn = new ObjectInputStream(new ByteBufInputStream(in.readSlice(length)))) {
+			return objectIn.readObject();
+		} catch (ClassNotFoundException e) {
+			throw new IOException("Failed to decode serialized value", e);
+		}
+	}
+
+}
@@ -0,0 +1,219 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.tcp;
+
+import java.lang.reflect.Method;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+
+import javax.annotation.PreDestroy;
+
+import org.kohsuke.MetaInfServices;
+
+import com.avanza.astrix.beans.inject.AstrixInject;
+import com.avanza.astrix.beans.publish.AstrixConfigAware;
+import com.avanza.astrix.beans.service.AstrixVersioningPlugin;
+import com.avanza.astrix.beans.service.BoundServiceBeanInstance;
+import com.avanza.astrix.beans.service.ServiceComponent;
+import com.avanza.astrix.beans.service.ServiceDefinition;
+import com.avanza.astrix.beans.service.ServiceProperties;
+import com.avanza.astrix.beans.service.SimpleBoundServiceBeanInstance;
+import com.avanza.astrix.config.DynamicConfig;
+import com.avanza.astrix.core.AstrixObjectSerializer;
+import com.avanza.astrix.core.util.ReflectionUtil;
+import com.avanza.astrix.ft.BeanFaultTolerance;
+import com.avanza.astrix.ft.BeanFaultToleranceFactory;
+import com.avanza.astrix.provider.component.AstrixServiceComponentNames;
+import com.avanza.astrix.remoting.client.DefaultAstrixRoutingStrategy;
+import com.avanza.astrix.remoting.client.RemotingProxy;
+import com.avanza.astrix.remoting.client.RemotingTransport;
+import com.avanza.astrix.remoting.client.Router;
+import com.avanza.astrix.remoting.client.RoutingKey;
+import com.avanza.astrix.remoting.client.RoutingStrategy;
+import com.avanza.astrix.remoting.server.AstrixServiceActivator;
+/**
+ * Provides remoting using persistent, multiplexed tcp connections as transport. <p>
+ * 
+ * On the server side, a {@link TcpRemotingServer} is started when the first service is exported. On the 
+ * client side, all beans bound to services provided by the same server share a single connection. 
+ * 
+ * The service provider uri for this component has the form "tcp-remoting:[host]:[port]". 
+ */
+@MetaInfServices(ServiceComponent.class)
+public class TcpRemotingComponent implements ServiceComponent, AstrixConfigAware {
+	
+	public static final String HOST_PROPERTY = "tcpRemotingHost";
+	public static final String PORT_PROPERTY = "tcpRemotingPort";
+	
+	private AstrixServiceActivator serviceActivator;
+	private AstrixVersioningPlugin versioningPlugin;
+	private BeanFaultToleranceFactory beanFaultToleranceFactory;
+	private DynamicConfig config;
+	private TcpRemotingServer server;
+	private TcpRemotingClient client;
+
+	@Override
+	public <T> BoundServiceBeanInstance<T> bind(ServiceDefinition<T> serviceDefinition, ServiceProperties serviceProperties) {
+		AstrixObjectSerializer objectSerializer = versioningPlugin.create(serviceDefinition.getObjectSerializerDefinition());
+		BeanFaultTolerance faultTolerance = beanFaultToleranceFactory.create(serviceDefinition);
+		InetSocketAddress serverAddress = new InetSocketAddress(serviceProperties.getProperty(HOST_PROPERTY), 
+																Integer.parseInt(serviceProperties.getProperty(PORT_PROPERTY)));
+		TcpRemotingTransport tcpRemotingTransport = new TcpRemotingTransport(getClient(), serverAddress, faultTolerance);
+		T proxy = RemotingProxy.create(serviceDefinition.getServiceType(), ReflectionUtil.classForName(serviceProperties.getProperty(ServiceProperties.API)), 
+									   RemotingTransport.create(tcpRemotingTransport), objectSerializer, new SingleServerRoutingStrategy());
+		return SimpleBoundServiceBeanInstance.create(proxy);
+	}
+
+	@Override
+	public ServiceProperties parseServiceProviderUri(String serviceProviderUri) {
+		int portSeparator = serviceProviderUri.lastIndexOf(':');
+		if (portSeparator < 0) {
+			throw new IllegalArgumentException("Illegal service provider uri, expected [host]:[port]. uri=" + serviceProviderUri);
+		}
+		return createServiceProperties(serviceProviderUri.substring(0, portSeparator), Integer.parseInt(serviceProviderUri.substring(portSeparator + 1)));
+	}
+
+	@Override
+	public <T> ServiceProperties createServiceProperties(ServiceDefinition<T> exportedServiceDefinition) {
+		return createServiceProperties(getPublishedHost(), getServer().getPort());
+	}
+	
+	private ServiceProperties createServiceProperties(String host, int port) {
+		ServiceProperties serviceProperties = new ServiceProperties();
+		serviceProperties.setProperty(HOST_PROPERTY, host);
+		serviceProperties.setProperty(PORT_PROPERTY, Integer.toString(port));
+		serviceProperties.setComponent(getName());
+		return serviceProperties;
+	}
+	
+	private String getPublishedHost() {
+		String host = TcpRemotingSettings.HOST.getFrom(config).get();
+		if (host != null) {
+			return host;
+		}
+		try {
+			return InetAddress.getLocalHost().getHostName();
+		} catch (UnknownHostException e) {
+			throw new IllegalStateException("Failed to resolve local host name, configure " + TcpRemotingSettings.HOST.name(), e);
+		}
+	}
+
+	@Override
+	public String getName() {
+		return AstrixServiceComponentNames.TCP_REMOTING;
+	}
+
+	@Override
+	public boolean canBindType(Class<?> type) {
+		return true;
+	}
+
+	@Override
+	public <T> void exportService(Class<T> providedApi, T provider, ServiceDefinition<T> serviceDefinition) {
+		AstrixObjectSerializer objectSerializer = versioningPlugin.create(serviceDefinition.getObjectSerializerDefinition()); 
+		this.serviceActivator.register(provider, objectSerializer, providedApi);
+		getServer();
+	}
+
+	@Override
+	public boolean requiresProviderInstance() {
+		return true;
+	}
+	
+	private synchronized TcpRemotingServer getServer() {
+		if (server == null) {
+			TcpRemotingServer newServer = new TcpRemotingServer(serviceActivator, 
+																new InetSocketAddress(TcpRemotingSettings.PORT.getFrom(config).get()), 
+																TcpRemotingSettings.INVOKER_THREAD_COUNT.getFrom(config).get(),
+																TcpRemotingSettings.INVOKER_QUEUE_SIZE.getFrom(config).get());
+			try {
+				newServer.start();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				newServer.stop();
+				throw new IllegalStateException("Interrupted while starting tcp remoting server", e);
+			}
+			server = newServer;
+		}
+		return server;
+	}
+	
+	synchronized boolean isServerStarted() {
+		return server != null;
+	}
+	
+	private synchronized TcpRemotingClient getClient() {
+		if (client == null) {
+			client = new TcpRemotingClient(TcpRemotingSettings.CONNECT_TIMEOUT_MILLIS.getFrom(config).get());
+		}
+		return client;
+	}
+	
+	@PreDestroy
+	public synchronized void destroy() {
+		if (server != null) {
+			server.stop();
+		}
+		if (client != null) {
+			client.destroy();
+		}
+	}
+	
+	@AstrixInject
+	public void setServiceActivator(AstrixServiceActivator serviceActivator) {
+		this.serviceActivator = serviceActivator;
+	}
+	
+	@AstrixInject
+	public void setVersioningPlugin(AstrixVersioningPlugin versioningPlugin) {
+		this.versioningPlugin = versioningPlugin;
+	}
+	
+	@AstrixInject
+	public void setBeanFaultToleranceFactory(BeanFaultToleranceFactory beanFaultToleranceFactory) {
+		this.beanFaultToleranceFactory = beanFaultToleranceFactory;
+	}
+
+	@Override
+	public void setConfig(DynamicConfig config) {
+		this.config = config;
+	}
+	
+	/**
+	 * All requests are sent to the same server, hence methods without routing annotations are routed 
+	 * using a constant routing key.
+	 */
+	private static final class SingleServerRoutingStrategy implements RoutingStrategy {
+		
+		private final DefaultAstrixRoutingStrategy astrixRoutingStrategy = new DefaultAstrixRoutingStrategy();
+		
+		@Override
+		public Router create(Method serviceMethod) {
+			Router result = astrixRoutingStrategy.create(serviceMethod);
+			if (result != null) {
+				return result;
+			}
+			return new Router() {
+				@Override
+				public RoutingKey getRoutingKey(Object... args) throws Exception {
+					return RoutingKey.create(0);
+				}
+			};
+		}
+	}
+
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.tcp;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.socket.SocketChannel;
+
+import java.net.InetSocketAddress;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import rx.Observable;
+import rx.Observable.OnSubscribe;
+import rx.Subscriber;
+import rx.functions.Action0;
+import rx.subscriptions.Subscriptions;
+
+import com.avanza.astrix.core.ServiceUnavailableException;
+import com.avanza.astrix.remoting.client.AstrixServiceInvocationRequest;
+import com.avanza.astrix.remoting.client.AstrixServiceInvocationResponse;
+import com.avanza.astrix.tcp.TcpRemotingCodec.RequestFrame;
+import com.avanza.astrix.tcp.TcpRemotingCodec.ResponseFrame;
+/**
+ * A persistent connection to a {@link TcpRemotingServer} shared by all requests sent to that server. <p>
+ * 
+ * Each request is assigned a unique id and written to the connection without waiting for responses to
+ * previously sent requests. The response is matched to its request using the id. The connection
+ * is (re)established lazily, and all pending requests fail with a {@link ServiceUnavailableException} 
+ * when a connection is lost. 
+ */
+final class TcpRemotingConnection {
+	
+	private static final Logger log = LoggerFactory.getLogger(TcpRemotingConnection.class);
+	
+	private final InetSocketAddress serverAddress;
+	private final Bootstrap bootstrap;
+	private final AtomicLong requestIdGenerator = new AtomicLong();
+	private final ConcurrentMap<Long, Subscriber<? super AstrixServiceInvocationResponse>> pendingRequests = new ConcurrentHashMap<>();
+	private ChannelFuture channelFuture;
+	
+	TcpRemotingConnection(InetSocketAddress serverAddress, Bootstrap bootstrap) {
+		this.serverAddress = serverAddress;
+		this.bootstrap = bootstrap.clone().handler(new ChannelInitializer<SocketChannel>() {
+			@Override
+			protected void initChannel(SocketChannel ch) throws Exception {
+				TcpRemotingCodec.install(ch.pipeline());
+				ch.pipeline().addLast(new ResponseHandler());
+			}
+		});
+	}
+	
+	Observable<AstrixServiceInvocationResponse> submit(final AstrixServiceInvocationRequest request) {
+		return Observable.create(new OnSubscribe<AstrixServiceInvocationResponse>() {
+			@Override
+			public void call(Subscriber<? super AstrixServiceInvocationResponse> subscriber) {
+				final long requestId = requestIdGenerator.incrementAndGet();
+				pendingRequests.put(requestId, subscriber);
+				subscriber.add(Subscriptions.create(new Action0() {
+					@Override
+					public void call() {
+						pendingRequests.remove(requestId);
+					}
+				}));
+				connect().addListener(new ChannelFutureListener() {
+					@Override
+					public void operationComplete(ChannelFuture connectFuture) throws Exception {
+						if (!connectFuture.isSuccess()) {
+							failRequest(requestId, new ServiceUnavailableException("Failed to connect to " + serverAddress, connectFuture.cause()));
+							return;
+						}
+						connectFuture.channel().writeAndFlush(new RequestFrame(requestId, request)).addListener(new ChannelFutureListener() {
+							@Override
+							public void operationComplete(ChannelFuture writeFuture) throws Exception {
+								if (!writeFuture.isSuccess()) {
+									failRequest(requestId, new ServiceUnavailableException("Failed to send request to " + serverAddress, writeFuture.cause()));
+								}
+							}
+						});
+					}
+				});
+			}
+		});
+	}
+	
+	private synchronized ChannelFuture connect() {
+		if (channelFuture != null && (!channelFuture.isDone() || channelFuture.channel().isActive())) {
+			return channelFuture;
+		}
+		channelFuture = bootstrap.connect(serverAddress);
+		return channelFuture;
+	}
+	
+	private void failRequest(long requestId, Throwable cause) {
+		Subscriber<? super AstrixServiceInvocationResponse> subscriber = pendingRequests.remove(requestId);
+		if (subscriber != null) {
+			subscriber.onError(cause);
+		}
+	}
+	
+	synchronized void close() {
+		if (channelFuture != null) {
+			channelFuture.channel().close();
+		}
+	}
+	
+	int getPendingRequestCount() {
+		return pendingRequests.size();
+	}
+	
+	private final class ResponseHandler extends SimpleChannelInboundHandler<ResponseFrame> {
+		
+		@Override
+		protected void channelRead0(ChannelHandlerContext ctx, ResponseFrame frame) throws Exception {
+			Subscriber<? super AstrixServiceInvocationResponse> subscriber = pendingRequests.remove(frame.getRequestId());
+			if (subscriber == null) {
+				return;
+			}
+			subscriber.onNext(frame.getResponse());
+			subscriber.onCompleted();
+		}
+		
+		@Override
+		public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+			for (Map.Entry<Long, Subscriber<? super AstrixServiceInvocationResponse>> pendingRequest : pendingRequests.entrySet()) {
+				failRequest(pendingRequest.getKey(), new ServiceUnavailableException("Connection to " + serverAddress + " closed"));
+			}
+			super.channelInactive(ctx);
+		}
+		
+		@Override
+		public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) throws Exception {
+			log.warn("Closing connection due to unexpected error. serverAddress=" + serverAddress, cause);
+			ctx.close();
+		}
+	}
+
+}
@@ -0,0 +1,176 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.tcp;
+
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+
+import java.net.InetSocketAddress;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.avanza.astrix.core.util.NamedThreadFactory;
+import com.avanza.astrix.remoting.client.AstrixServiceInvocationResponse;
+import com.avanza.astrix.remoting.server.AstrixServiceActivator;
+import com.avanza.astrix.tcp.TcpRemotingCodec.RequestFrame;
+import com.avanza.astrix.tcp.TcpRemotingCodec.ResponseFrame;
+/**
+ * Server side of the tcp remoting transport. Receives service invocations sent by a {@link TcpRemotingTransport}
+ * and invokes them using an {@link AstrixServiceActivator}. <p>
+ * 
+ * Invocations are handed off from the netty i/o threads to a dedicated pool of invoker threads. Hence 
+ * several requests received on the same connection are processed concurrently, and each response is written
+ * as soon as it is available. Requests that can't be queued for an invoker thread are rejected as service 
+ * unavailable. 
+ */
+public final class TcpRemotingServer {
+	
+	private static final Logger log = LoggerFactory.getLogger(TcpRemotingServer.class);
+	
+	private final AstrixServiceActivator serviceActivator;
+	private final InetSocketAddress bindAddress;
+	private final EventLoopGroup bossGroup = new NioEventLoopGroup(1, new NamedThreadFactory("TcpRemotingServer.boss", true));
+	private final EventLoopGroup workerGroup = new NioEventLoopGroup(0, new NamedThreadFactory("TcpRemotingServer.worker", true));
+	private final ExecutorService invokerPool;
+	private volatile Channel serverChannel;
+	
+	/**
+	 * @param serviceActivator used to invoke services
+	 * @param bindAddress the address to listen on, use port 0 for an ephemeral port
+	 * @param invokerThreadCount the number of threads used to invoke services
+	 */
+	public TcpRemotingServer(AstrixServiceActivator serviceActivator, InetSocketAddress bindAddress, int invokerThreadCount) {
+		this(serviceActivator, bindAddress, invokerThreadCount, TcpRemotingSettings.INVOKER_QUEUE_SIZE.defaultValue());
+	}
+	
+	/**
+	 * @param serviceActivator used to invoke services
+	 * @param bindAddress the address to listen on, use port 0 for an ephemeral port
+	 * @param invokerThreadCount the number of threads used to invoke services
+	 * @param invokerQueueSize the maximum number of received requests waiting for an invoker thread. Requests
+	 * 		  received when the queue is full are rejected as service unavailable.
+	 */
+	public TcpRemotingServer(AstrixServiceActivator serviceActivator, InetSocketAddress bindAddress, int invokerThreadCount, int invokerQueueSize) {
+		this.serviceActivator = serviceActivator;
+		this.bindAddress = bindAddress;
+		this.invokerPool = new ThreadPoolExecutor(invokerThreadCount, invokerThreadCount, 0L, TimeUnit.MILLISECONDS, 
+												  new ArrayBlockingQueue<Runnable>(invokerQueueSize), 
+												  new NamedThreadFactory("TcpRemotingServer.invoker"));
+	}
+	
+	public synchronized void start() throws InterruptedException {
+		if (serverChannel != null) {
+			return;
+		}
+		final ServiceInvocationHandler serviceInvocationHandler = new ServiceInvocationHandler();
+		ServerBootstrap bootstrap = new ServerBootstrap();
+		bootstrap.group(bossGroup, workerGroup)
+				 .channel(NioServerSocketChannel.class)
+				 .childOption(ChannelOption.TCP_NODELAY, true)
+				 .childOption(ChannelOption.SO_KEEPALIVE, true)
+				 .childHandler(new ChannelInitializer<SocketChannel>() {
+					 @Override
+					 protected void initChannel(SocketChannel ch) throws Exception {
+						 TcpRemotingCodec.install(ch.pipeline());
+						 ch.pipeline().addLast(serviceInvocationHandler);
+					 }
+				 });
+		this.serverChannel = bootstrap.bind(bindAddress).sync().channel();
+		log.info("Tcp remoting server started. address={}", serverChannel.localAddress());
+	}
+	
+	/**
+	 * @return the port this server listens on
+	 */
+	public int getPort() {
+		Channel channel = this.serverChannel;
+		if (channel == null) {
+			throw new IllegalStateException("Server not started");
+		}
+		return ((InetSocketAddress) channel.localAddress()).getPort();
+	}
+	
+	@PreDestroy
+	public synchronized void stop() {
+		if (serverChannel != null) {
+			serverChannel.close().syncUninterruptibly();
+		}
+		bossGroup.shutdownGracefully();
+		workerGroup.shutdownGracefully();
+		invokerPool.shutdown();
+	}
+	
+	@ChannelHandler.Sharable
+	private final class ServiceInvocationHandler extends SimpleChannelInboundHandler<RequestFrame> {
+		
+		@Override
+		protected void channelRead0(final ChannelHandlerContext ctx, final RequestFrame frame) throws Exception {
+			try {
+				invokerPool.execute(new Runnable() {
+					@Override
+					public void run() {
+						ctx.writeAndFlush(new ResponseFrame(frame.getRequestId(), invoke(frame)));
+					}
+				});
+			} catch (RejectedExecutionException e) {
+				String reason = invokerPool.isShutdown() ? "TcpRemotingServer is stopped" : "TcpRemotingServer is overloaded, all invoker threads are busy and the request queue is full";
+				ctx.writeAndFlush(new ResponseFrame(frame.getRequestId(), serviceUnavailable(reason)));
+			}
+		}
+		
+		private AstrixServiceInvocationResponse invoke(RequestFrame frame) {
+			try {
+				return serviceActivator.invokeService(frame.getRequest());
+			} catch (RuntimeException e) {
+				log.warn("Failed to invoke service", e);
+				return serviceUnavailable("Failed to invoke service: " + e.getMessage());
+			}
+		}
+		
+		@Override
+		public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) throws Exception {
+			log.warn("Closing connection due to unexpected error. remoteAddress=" + ctx.channel().remoteAddress(), cause);
+			ctx.close();
+		}
+	}
+	
+	private static AstrixServiceInvocationResponse serviceUnavailable(String reason) {
+		AstrixServiceInvocationResponse response = new AstrixServiceInvocationResponse();
+		response.setServiceUnavailable(true);
+		response.setExceptionMsg(reason);
+		response.setCorrelationId(UUID.randomUUID().toString());
+		return response;
+	}
+
+}
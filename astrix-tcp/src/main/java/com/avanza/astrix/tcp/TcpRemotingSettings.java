@@ -0,0 +1,52 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.tcp;
+
+import com.avanza.astrix.config.IntSetting;
+import com.avanza.astrix.config.StringSetting;
+/**
+ * Settings used by the {@link TcpRemotingComponent}. 
+ */
+public final class TcpRemotingSettings {
+	
+	/**
+	 * The port that the tcp remoting server listens on. Zero means that an ephemeral port is chosen.
+	 */
+	public static final IntSetting PORT = IntSetting.create("AstrixTcpRemoting.port", 0);
+	
+	/**
+	 * The host name published in the service registry for services exported using tcp remoting. Defaults to
+	 * the name of the local host.
+	 */
+	public static final StringSetting HOST = StringSetting.create("AstrixTcpRemoting.host", null);
+	
+	/**
+	 * The number of threads used on the server side to invoke exported services.
+	 */
+	public static final IntSetting INVOKER_THREAD_COUNT = IntSetting.create("AstrixTcpRemoting.invokerThreadCount", 200);
+	
+	/**
+	 * The maximum number of received requests waiting for an invoker thread on the server side. Requests received
+	 * when the queue is full are rejected as service unavailable.
+	 */
+	public static final IntSetting INVOKER_QUEUE_SIZE = IntSetting.create("AstrixTcpRemoting.invokerQueueSize", 1_000);
+	
+	public static final IntSetting CONNECT_TIMEOUT_MILLIS = IntSetting.create("AstrixTcpRemoting.connectTimeoutMillis", 1_000);
+	
+	private TcpRemotingSettings() {
+	}
+
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.tcp;
+
+import java.net.InetSocketAddress;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import rx.Observable;
+import rx.functions.Func1;
+
+import com.avanza.astrix.core.function.Supplier;
+import com.avanza.astrix.ft.BeanFaultTolerance;
+import com.avanza.astrix.ft.HystrixObservableCommandSettings;
+import com.avanza.astrix.remoting.client.AstrixServiceInvocationRequest;
+import com.avanza.astrix.remoting.client.AstrixServiceInvocationResponse;
+import com.avanza.astrix.remoting.client.RemotingTransportSpi;
+import com.avanza.astrix.remoting.client.RoutedServiceInvocationRequest;
+import com.avanza.astrix.remoting.client.RoutingKey;
+/**
+ * RemotingTransportSpi sending service invocations to a single {@link TcpRemotingServer} using a 
+ * persistent, multiplexed connection. <p>
+ * 
+ * The target server is not partitioned, hence all routed requests and broadcast requests are sent to the 
+ * same server, pipelined on the shared connection.
+ */
+public final class TcpRemotingTransport implements RemotingTransportSpi {
+	
+	private final TcpRemotingConnection connection;
+	private final BeanFaultTolerance faultTolerance;
+	
+	public TcpRemotingTransport(TcpRemotingClient client, InetSocketAddress serverAddress) {
+		this(client, serverAddress, null);
+	}
+	
+	/**
+	 * @param client
+	 * @param serverAddress
+	 * @param faultTolerance used to protect each request, might be null
+	 */
+	public TcpRemotingTransport(TcpRemotingClient client, InetSocketAddress serverAddress, BeanFaultTolerance faultTolerance) {
+		this.connection = client.getConnection(serverAddress);
+		this.faultTolerance = faultTolerance;
+	}
+
+	@Override
+	public Observable<AstrixServiceInvocationResponse> submitRoutedRequest(final AstrixServiceInvocationRequest request, RoutingKey routingKey) {
+		return observe(new Supplier<Observable<AstrixServiceInvocationResponse>>() {
+			@Override
+			public Observable<AstrixServiceInvocationResponse> get() {
+				return connection.submit(request);
+			}
+		});
+	}
+
+	@Override
+	public Observable<List<AstrixServiceInvocationResponse>> submitRoutedRequests(final Collection<RoutedServiceInvocationRequest> requests) {
+		if (requests.isEmpty()) {
+			return Observable.just(Collections.<AstrixServiceInvocationResponse>emptyList());
+		}
+		return observe(new Supplier<Observable<List<AstrixServiceInvocationResponse>>>() {
+			@Override
+			public Observable<List<AstrixServiceInvocationResponse>> get() {
+				Observable<AstrixServiceInvocationResponse> result = Observable.empty();
+				for (RoutedServiceInvocationRequest request : requests) {
+					result = result.mergeWith(connection.submit(request.getRequest()));
+				}
+				return result.toList();
+			}
+		});
+	}
+
+	@Override
+	public Observable<List<AstrixServiceInvocationResponse>> submitBroadcastRequest(final AstrixServiceInvocationRequest request) {
+		return observe(new Supplier<Observable<List<AstrixServiceInvocationResponse>>>() {
+			@Override
+			public Observable<List<AstrixServiceInvocationResponse>> get() {
+				return connection.submit(request).map(new Func1<AstrixServiceInvocationResponse, List<AstrixServiceInvocationResponse>>() {
+					@Override
+					public List<AstrixServiceInvocationResponse> call(AstrixServiceInvocationResponse response) {
+						return Collections.singletonList(response);
+					}
+				});
+			}
+		});
+	}
+	
+	private <T> Observable<T> observe(Supplier<Observable<T>> observable) {
+		if (faultTolerance == null) {
+			return observable.get();
+		}
+		return faultTolerance.observe(observable, new HystrixObservableCommandSettings());
+	}
+
+	@Override
+	public int partitionCount() {
+		return 1;
+	}
+
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.tcp;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.embedded.EmbeddedChannel;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import com.avanza.astrix.remoting.client.AstrixServiceInvocationRequest;
+import com.avanza.astrix.remoting.client.AstrixServiceInvocationResponse;
+import com.avanza.astrix.tcp.TcpRemotingCodec.RequestFrame;
+import com.avanza.astrix.tcp.TcpRemotingCodec.ResponseFrame;
+
+public class TcpRemotingCodecTest {
+	
+	@Test
+	public void requestRoundTrip() throws Exception {
+		byte[] largeArgument = new byte[4096];
+		Arrays.fill(largeArgument, (byte) 7);
+		AstrixServiceInvocationRequest request = new AstrixServiceInvocationRequest();
+		request.setHeader("serviceApi", "com.avanza.FooService");
+		request.setArguments(new Object[] { "foo", largeArgument, new byte[] { 1, 2 }, 21, 42L, true, null, Arrays.asList("a", "b") });
+		
+		RequestFrame decoded = (RequestFrame) roundTrip(new RequestFrame(17L, request));
+		
+		assertEquals(17L, decoded.getRequestId());
+		assertEquals("com.avanza.FooService", decoded.getRequest().getHeader("serviceApi"));
+		Object[] arguments = decoded.getRequest().getArguments();
+		assertEquals("foo", arguments[0]);
+		assertArrayEquals(largeArgument, (byte[]) arguments[1]);
+		assertArrayEquals(new byte[] { 1, 2 }, (byte[]) arguments[2]);
+		assertEquals(21, arguments[3]);
+		assertEquals(42L, arguments[4]);
+		assertEquals(true, arguments[5]);
+		assertNull(arguments[6]);
+		assertEquals(Arrays.asList("a", "b"), arguments[7]);
+	}
+	
+	@Test
+	public void responseRoundTrip() throws Exception {
+		AstrixServiceInvocationResponse response = new AstrixServiceInvocationResponse();
+		response.setResponseBody("bar");
+		response.setThrownExceptionType("java.lang.IllegalArgumentException");
+		response.setExceptionMsg("illegal");
+		response.setCorrelationId("c-1");
+		response.setServiceUnavailable(true);
+		
+		ResponseFrame decoded = (ResponseFrame) roundTrip(new ResponseFrame(4L, response));
+		
+		assertEquals(4L, decoded.getRequestId());
+		assertEquals("bar", decoded.getResponse().getResponseBody());
+		assertEquals("java.lang.IllegalArgumentException", decoded.getResponse().getThrownExceptionType());
+		assertEquals("illegal", decoded.getResponse().getExceptionMsg());
+		assertEquals("c-1", decoded.getResponse().getCorrelationId());
+		assertEquals(true, decoded.getResponse().isServiceUnavailable());
+	}
+	
+	private static Object roundTrip(Object frame) {
+		EmbeddedChannel sender = new EmbeddedChannel(new CodecInstaller());
+		EmbeddedChannel receiver = new EmbeddedChannel(new CodecInstaller());
+		
+		sender.writeOutbound(frame);
+		Object encoded;
+		while ((encoded = sender.readOutbound()) != null) {
+			receiver.writeInbound(encoded);
+		}
+		return receiver.readInbound();
+	}
+	
+	private static class CodecInstaller extends ChannelInitializer<Channel> {
+		@Override
+		protected void initChannel(Channel ch) throws Exception {
+			TcpRemotingCodec.install(ch.pipeline());
+		}
+	}
+
+}
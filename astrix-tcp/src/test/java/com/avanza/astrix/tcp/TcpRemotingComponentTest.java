@@ -0,0 +1,112 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.tcp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.avanza.astrix.beans.core.AstrixSettings;
+import com.avanza.astrix.beans.factory.AstrixBeanKey;
+import com.avanza.astrix.beans.publish.ApiProvider;
+import com.avanza.astrix.beans.service.AstrixVersioningPlugin;
+import com.avanza.astrix.beans.service.BoundServiceBeanInstance;
+import com.avanza.astrix.beans.service.ObjectSerializerDefinition;
+import com.avanza.astrix.beans.service.ServiceDefinition;
+import com.avanza.astrix.beans.service.ServiceProperties;
+import com.avanza.astrix.config.DynamicConfig;
+import com.avanza.astrix.config.MapConfigSource;
+import com.avanza.astrix.ft.BeanFaultToleranceFactory;
+import com.avanza.astrix.ft.DefaultHystrixCommandNamingStrategy;
+import com.avanza.astrix.ft.HystrixBeanFaultToleranceProvider;
+import com.avanza.astrix.remoting.server.AstrixServiceActivator;
+
+public class TcpRemotingComponentTest {
+	
+	private final MapConfigSource configSource = new MapConfigSource();
+	private final TcpRemotingComponent component = new TcpRemotingComponent();
+	private final ServiceDefinition<GreetingService> serviceDefinition = 
+			new ServiceDefinition<>(ApiProvider.create("test-provider"), AstrixBeanKey.create(GreetingService.class), ObjectSerializerDefinition.nonVersioned(), false);
+	
+	@Before
+	public void setup() {
+		configSource.set(AstrixSettings.ENABLE_FAULT_TOLERANCE, false);
+		configSource.set(TcpRemotingSettings.HOST, "localhost");
+		DynamicConfig config = DynamicConfig.create(configSource);
+		BeanFaultToleranceFactory faultToleranceFactory = new BeanFaultToleranceFactory(new HystrixBeanFaultToleranceProvider(), new DefaultHystrixCommandNamingStrategy());
+		faultToleranceFactory.setConfig(config);
+		component.setConfig(config);
+		component.setServiceActivator(new AstrixServiceActivator());
+		component.setVersioningPlugin(AstrixVersioningPlugin.Default.create());
+		component.setBeanFaultToleranceFactory(faultToleranceFactory);
+	}
+	
+	@After
+	public void after() {
+		component.destroy();
+	}
+	
+	@Test
+	public void startsServerWhenFirstServiceIsExported() throws Exception {
+		assertFalse(component.isServerStarted());
+		
+		component.exportService(GreetingService.class, new GreetingServiceImpl(), serviceDefinition);
+		
+		assertTrue(component.isServerStarted());
+	}
+	
+	@Test
+	public void bindsToExportedService() throws Exception {
+		component.exportService(GreetingService.class, new GreetingServiceImpl(), serviceDefinition);
+		ServiceProperties serviceProperties = component.createServiceProperties(serviceDefinition);
+		serviceProperties.setApi(GreetingService.class);
+		
+		BoundServiceBeanInstance<GreetingService> boundInstance = component.bind(serviceDefinition, serviceProperties);
+		
+		assertEquals("hello kalle", boundInstance.get().greet("kalle"));
+	}
+	
+	@Test
+	public void parsesServiceProviderUri() throws Exception {
+		ServiceProperties serviceProperties = component.parseServiceProviderUri("my-host:4711");
+		
+		assertEquals("my-host", serviceProperties.getProperty(TcpRemotingComponent.HOST_PROPERTY));
+		assertEquals("4711", serviceProperties.getProperty(TcpRemotingComponent.PORT_PROPERTY));
+		assertEquals(component.getName(), serviceProperties.getComponent());
+		assertFalse(component.isServerStarted());
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsServiceProviderUriWithoutPort() throws Exception {
+		component.parseServiceProviderUri("my-host");
+	}
+	
+	public interface GreetingService {
+		String greet(String name);
+	}
+	
+	public static class GreetingServiceImpl implements GreetingService {
+		@Override
+		public String greet(String name) {
+			return "hello " + name;
+		}
+	}
+
+}
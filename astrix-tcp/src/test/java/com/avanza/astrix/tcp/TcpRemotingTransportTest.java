@@ -0,0 +1,263 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.tcp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.lang.reflect.Method;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import rx.Observer;
+import rx.Subscription;
+
+import com.avanza.astrix.core.AstrixObjectSerializer;
+import com.avanza.astrix.core.ServiceInvocationException;
+import com.avanza.astrix.core.ServiceUnavailableException;
+import com.avanza.astrix.remoting.client.AstrixServiceInvocationRequest;
+import com.avanza.astrix.remoting.client.AstrixServiceInvocationResponse;
+import com.avanza.astrix.remoting.client.RemotingProxy;
+import com.avanza.astrix.remoting.client.RemotingTransport;
+import com.avanza.astrix.remoting.client.Router;
+import com.avanza.astrix.remoting.client.RoutingKey;
+import com.avanza.astrix.remoting.client.RoutingStrategy;
+import com.avanza.astrix.remoting.server.AstrixServiceActivator;
+
+public class TcpRemotingTransportTest {
+	
+	private final AstrixObjectSerializer objectSerializer = new AstrixObjectSerializer.NoVersioningSupport();
+	private final AstrixServiceActivator serviceActivator = new AstrixServiceActivator();
+	private final TcpRemotingClient client = new TcpRemotingClient(1000);
+	private TcpRemotingServer server;
+	
+	@Before
+	public void setup() throws Exception {
+		server = new TcpRemotingServer(serviceActivator, new InetSocketAddress("localhost", 0), 20);
+		server.start();
+	}
+	
+	@After
+	public void after() {
+		client.destroy();
+		server.stop();
+	}
+	
+	@Test
+	public void invokesServiceOverLoopback() throws Exception {
+		serviceActivator.register(new GreetingServiceImpl(), objectSerializer, GreetingService.class);
+		GreetingService greetingService = createProxy(server.getPort());
+		
+		assertEquals("hello kalle", greetingService.greet("kalle"));
+		assertEquals("hello pelle", greetingService.greet("pelle"));
+	}
+	
+	@Test
+	public void propagatesServiceExceptions() throws Exception {
+		serviceActivator.register(new GreetingServiceImpl(), objectSerializer, GreetingService.class);
+		GreetingService greetingService = createProxy(server.getPort());
+		
+		try {
+			greetingService.greet(null);
+			fail("Expected exception");
+		} catch (ServiceInvocationException e) {
+			// Expected
+		}
+	}
+	
+	@Test
+	public void pipelinesConcurrentRequestsOnSharedConnection() throws Exception {
+		final int concurrentRequests = 10;
+		final CountDownLatch allRequestsReceived = new CountDownLatch(concurrentRequests);
+		serviceActivator.register(new GreetingServiceImpl() {
+			@Override
+			public String greet(String name) {
+				allRequestsReceived.countDown();
+				try {
+					// Only completes if all requests are processed concurrently
+					allRequestsReceived.await(5, TimeUnit.SECONDS);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				return super.greet(name);
+			}
+		}, objectSerializer, GreetingService.class);
+		final GreetingService greetingService = createProxy(server.getPort());
+		ExecutorService executor = Executors.newFixedThreadPool(concurrentRequests);
+		try {
+			List<Future<String>> greetings = new ArrayList<>();
+			for (int i = 0; i < concurrentRequests; i++) {
+				final String name = "name-" + i;
+				greetings.add(executor.submit(new Callable<String>() {
+					@Override
+					public String call() throws Exception {
+						return greetingService.greet(name);
+					}
+				}));
+			}
+			for (int i = 0; i < concurrentRequests; i++) {
+				assertEquals("hello name-" + i, greetings.get(i).get(5, TimeUnit.SECONDS));
+			}
+			assertTrue(allRequestsReceived.await(0, TimeUnit.SECONDS));
+		} finally {
+			executor.shutdown();
+		}
+	}
+	
+	@Test
+	public void failsWithServiceUnavailableWhenServerIsNotRunning() throws Exception {
+		int unusedPort;
+		try (ServerSocket socket = new ServerSocket(0)) {
+			unusedPort = socket.getLocalPort();
+		}
+		GreetingService greetingService = createProxy(unusedPort);
+		
+		try {
+			greetingService.greet("kalle");
+			fail("Expected ServiceUnavailableException");
+		} catch (ServiceUnavailableException e) {
+			// Expected
+		}
+	}
+	
+	@Test
+	public void rejectsRequestsAsServiceUnavailableWhenInvokerQueueIsFull() throws Exception {
+		server.stop();
+		server = new TcpRemotingServer(serviceActivator, new InetSocketAddress("localhost", 0), 1, 1);
+		server.start();
+		final CountDownLatch invocationStarted = new CountDownLatch(1);
+		final CountDownLatch releaseInvocation = new CountDownLatch(1);
+		serviceActivator.register(new GreetingServiceImpl() {
+			@Override
+			public String greet(String name) {
+				invocationStarted.countDown();
+				try {
+					releaseInvocation.await(5, TimeUnit.SECONDS);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				return super.greet(name);
+			}
+		}, objectSerializer, GreetingService.class);
+		final GreetingService greetingService = createProxy(server.getPort());
+		ExecutorService executor = Executors.newFixedThreadPool(3);
+		try {
+			List<Future<String>> greetings = new ArrayList<>();
+			greetings.add(submitGreeting(executor, greetingService, "kalle"));
+			assertTrue(invocationStarted.await(5, TimeUnit.SECONDS));
+			greetings.add(submitGreeting(executor, greetingService, "pelle"));
+			greetings.add(submitGreeting(executor, greetingService, "olle"));
+			// One of the two last requests is queued, the other one is rejected
+			long deadline = System.currentTimeMillis() + 5_000;
+			while (!greetings.get(1).isDone() && !greetings.get(2).isDone() && System.currentTimeMillis() < deadline) {
+				Thread.sleep(10);
+			}
+			releaseInvocation.countDown();
+			
+			int rejectedCount = 0;
+			for (Future<String> greeting : greetings) {
+				try {
+					greeting.get(5, TimeUnit.SECONDS);
+				} catch (ExecutionException e) {
+					assertTrue(e.getCause() instanceof ServiceUnavailableException);
+					rejectedCount++;
+				}
+			}
+			assertEquals(1, rejectedCount);
+		} finally {
+			releaseInvocation.countDown();
+			executor.shutdown();
+		}
+	}
+	
+	@Test
+	public void removesPendingRequestWhenSubscriberUnsubscribes() throws Exception {
+		try (ServerSocket unresponsiveServer = new ServerSocket(0)) {
+			TcpRemotingConnection connection = client.getConnection(new InetSocketAddress("localhost", unresponsiveServer.getLocalPort()));
+			Subscription subscription = connection.submit(new AstrixServiceInvocationRequest()).subscribe(new Observer<AstrixServiceInvocationResponse>() {
+				@Override
+				public void onCompleted() {
+				}
+				@Override
+				public void onError(Throwable e) {
+				}
+				@Override
+				public void onNext(AstrixServiceInvocationResponse response) {
+				}
+			});
+			assertEquals(1, connection.getPendingRequestCount());
+			
+			subscription.unsubscribe();
+			
+			assertEquals(0, connection.getPendingRequestCount());
+		}
+	}
+	
+	private static Future<String> submitGreeting(ExecutorService executor, final GreetingService greetingService, final String name) {
+		return executor.submit(new Callable<String>() {
+			@Override
+			public String call() throws Exception {
+				return greetingService.greet(name);
+			}
+		});
+	}
+	
+	private GreetingService createProxy(int port) {
+		TcpRemotingTransport transport = new TcpRemotingTransport(client, new InetSocketAddress("localhost", port));
+		return RemotingProxy.create(GreetingService.class, GreetingService.class, RemotingTransport.create(transport), objectSerializer, new ConstantRoutingStrategy());
+	}
+	
+	public interface GreetingService {
+		String greet(String name);
+	}
+	
+	public static class GreetingServiceImpl implements GreetingService {
+		@Override
+		public String greet(String name) {
+			if (name == null) {
+				throw new IllegalArgumentException("name is required");
+			}
+			return "hello " + name;
+		}
+	}
+	
+	private static class ConstantRoutingStrategy implements RoutingStrategy {
+		@Override
+		public Router create(Method serviceMethod) {
+			return new Router() {
+				@Override
+				public RoutingKey getRoutingKey(Object... args) throws Exception {
+					return RoutingKey.create(0);
+				}
+			};
+		}
+	}
+
+}